@@ -19,7 +19,13 @@
  */
 package org.xwiki.cache;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.stability.Unstable;
 
 /**
  * Cache interface. Used to add/get/remove value from cache which can be local or distributed, with a limited capacity
@@ -51,6 +57,85 @@
      */
     T get(String key);
 
+    /**
+     * Return the value associated with the provided key, or load it and store it in the cache when there is none.
+     * <p>
+     * Implementations make sure that concurrent calls for the same missing key load the value only once: the other
+     * callers wait for the value being loaded. If the loader returns {@code null} nothing is stored in the cache, if it
+     * fails the exception is propagated to all the callers waiting for it.
+     * <p>
+     * The default implementation does not provide any of those guarantees, it's just a {@link #get(String)} followed
+     * by a {@link #set(String, Object)}.
+     *
+     * @param key the key used to access the value in the cache
+     * @param loader the function called to load the value when it's not in the cache
+     * @return the value associated with the provided key, or {@code null} if there is no value and the loader returned
+     *         {@code null}
+     * @since 10.0RC1
+     */
+    @Unstable
+    default T get(String key, Function<String, ? extends T> loader)
+    {
+        T value = get(key);
+
+        if (value == null) {
+            value = loader.apply(key);
+
+            if (value != null) {
+                set(key, value);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * @param keys the keys used to access the values in the cache
+     * @return the values associated with the provided keys, the keys without any value are not part of the returned
+     *         map
+     * @since 10.0RC1
+     */
+    @Unstable
+    default Map<String, T> getAll(Collection<String> keys)
+    {
+        Map<String, T> values = new LinkedHashMap<>();
+
+        for (String key : keys) {
+            T value = get(key);
+
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Add new values or overwrite the existing ones associated with the provided keys.
+     *
+     * @param entries the entries to store in the cache; the entries with a {@code null} value are removed
+     * @see #set(String, Object)
+     * @since 10.0RC1
+     */
+    @Unstable
+    default void setAll(Map<String, ? extends T> entries)
+    {
+        for (Map.Entry<String, ? extends T> entry : entries.entrySet()) {
+            set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return the statistics gathered by this cache, or {@code null} if the implementation does not gather any
+     * @since 10.0RC1
+     */
+    @Unstable
+    default CacheStatistics getStatistics()
+    {
+        return null;
+    }
+
     /**
      * Remove the entry associated with the provided key from the cache.
      * <p>
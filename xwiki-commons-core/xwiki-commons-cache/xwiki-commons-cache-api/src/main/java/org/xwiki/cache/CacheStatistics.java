@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Statistics gathered by a {@link Cache} since its creation.
+ * <p>
+ * It's a live view: the values change as the cache is used.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Unstable
+public interface CacheStatistics
+{
+    /**
+     * @return the number of times a lookup found a value in the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of times a lookup did not find any value in the cache
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of entries removed from the cache by the cache itself (eviction or expiration)
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of values loaded by {@link Cache#get(String, java.util.function.Function)}
+     */
+    long getLoadCount();
+
+    /**
+     * @return the number of times the loader passed to {@link Cache#get(String, java.util.function.Function)} failed
+     */
+    long getLoadFailureCount();
+
+    /**
+     * @return the total time spent loading values, in nanoseconds
+     */
+    long getTotalLoadTime();
+
+    /**
+     * @return the current total weight of the entries when the cache has a maximum weight (see
+     *         {@link org.xwiki.cache.eviction.EntryEvictionConfiguration#setMaxWeight(long)}), 0 otherwise
+     */
+    default long getTotalWeight()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the number of lookups
+     */
+    default long getRequestCount()
+    {
+        return getHitCount() + getMissCount();
+    }
+
+    /**
+     * @return the ratio of lookups which found a value in the cache, 1 when the cache was never used
+     */
+    default double getHitRate()
+    {
+        long requests = getRequestCount();
+
+        if (requests == 0) {
+            return 1.0;
+        }
+
+        return (double) getHitCount() / requests;
+    }
+
+    /**
+     * @return the average time spent loading a value, in nanoseconds
+     */
+    default long getAverageLoadTime()
+    {
+        long loads = getLoadCount() + getLoadFailureCount();
+
+        if (loads == 0) {
+            return 0;
+        }
+
+        return getTotalLoadTime() / loads;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.eviction;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Default {@link EntryWeigher} estimating the memory used by an entry, in bytes.
+ * <p>
+ * The size of {@link String}s, arrays of bytes and characters, {@link Collection}s, {@link Map}s and arrays of objects
+ * (including their elements) is estimated. Any other value is counted as a small object, so caches holding bigger
+ * values should provide their own weigher.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Unstable
+public class DefaultEntryWeigher implements EntryWeigher<Object>
+{
+    /**
+     * The shared instance.
+     */
+    public static final DefaultEntryWeigher INSTANCE = new DefaultEntryWeigher();
+
+    private static final int OBJECT_WEIGHT = 16;
+
+    private static final int REFERENCE_WEIGHT = 8;
+
+    private static final int STRING_WEIGHT = 40;
+
+    private static final int MAP_ENTRY_WEIGHT = 32;
+
+    /**
+     * How deep to go in collections of collections (protection against cycles).
+     */
+    private static final int MAX_DEPTH = 4;
+
+    @Override
+    public long weigh(String key, Object value)
+    {
+        return weigh(key, 0) + weigh(value, 0);
+    }
+
+    private long weigh(Object value, int depth)
+    {
+        if (value instanceof String) {
+            return STRING_WEIGHT + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return OBJECT_WEIGHT + (long) ((byte[]) value).length;
+        } else if (value instanceof char[]) {
+            return OBJECT_WEIGHT + 2L * ((char[]) value).length;
+        } else if (depth < MAX_DEPTH) {
+            return weighContainer(value, depth + 1);
+        }
+
+        return OBJECT_WEIGHT;
+    }
+
+    private long weighContainer(Object value, int depth)
+    {
+        if (value instanceof Collection) {
+            return weigh((Collection<?>) value, depth);
+        } else if (value instanceof Map) {
+            return weigh((Map<?, ?>) value, depth);
+        } else if (value instanceof Object[]) {
+            return weigh(Arrays.asList((Object[]) value), depth);
+        }
+
+        return OBJECT_WEIGHT;
+    }
+
+    private long weigh(Collection<?> collection, int depth)
+    {
+        long weight = OBJECT_WEIGHT;
+
+        for (Object element : collection) {
+            weight += REFERENCE_WEIGHT + weigh(element, depth);
+        }
+
+        return weight;
+    }
+
+    private long weigh(Map<?, ?> map, int depth)
+    {
+        long weight = OBJECT_WEIGHT;
+
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            weight += MAP_ENTRY_WEIGHT + weigh(entry.getKey(), depth) + weigh(entry.getValue(), depth);
+        }
+
+        return weight;
+    }
+}
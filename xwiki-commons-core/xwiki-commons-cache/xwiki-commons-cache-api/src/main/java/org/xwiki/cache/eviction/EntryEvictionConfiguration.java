@@ -21,6 +21,8 @@
 
 import java.util.HashMap;
 
+import org.xwiki.stability.Unstable;
+
 /**
  * This configuration class is used to add constraints in the configuration of the cache to create.
  * <p>
@@ -47,6 +49,18 @@ public class EntryEvictionConfiguration extends HashMap<String, Object>
      */
     public static final String TIMETOLIVE_ID = "timetolive";
 
+    /**
+     * @see #getMaxWeight()
+     * @since 10.0RC1
+     */
+    public static final String MAXWEIGHT_ID = "maxweight";
+
+    /**
+     * @see #getWeigher()
+     * @since 10.0RC1
+     */
+    public static final String WEIGHER_ID = "weigher";
+
     /**
      * The ordering/storing algorithm used by the cache.
      * 
@@ -109,4 +123,59 @@ public int getTimeToLive()
 
         return obj == null ? 0 : (Integer) get(TIMETOLIVE_ID);
     }
+
+    /**
+     * @param maxWeight see {@link #getMaxWeight()}
+     * @since 10.0RC1
+     */
+    @Unstable
+    public void setMaxWeight(long maxWeight)
+    {
+        put(MAXWEIGHT_ID, maxWeight);
+    }
+
+    /**
+     * @return the maximum total weight of the entries of the cache (as computed by {@link #getWeigher()}), 0 if
+     *         unlimited. When the cache reaches it, the defined eviction algorithm kicks in to remove existing cache
+     *         entries. Cache implementations which don't support weight based eviction ignore it.
+     * @since 10.0RC1
+     */
+    @Unstable
+    public long getMaxWeight()
+    {
+        Object obj = get(MAXWEIGHT_ID);
+
+        if (obj instanceof Number) {
+            return ((Number) obj).longValue();
+        }
+
+        return 0;
+    }
+
+    /**
+     * @param weigher see {@link #getWeigher()}
+     * @since 10.0RC1
+     */
+    @Unstable
+    public void setWeigher(EntryWeigher<?> weigher)
+    {
+        put(WEIGHER_ID, weigher);
+    }
+
+    /**
+     * @return the weigher used to compute the weight of the entries when a maximum weight is set, the
+     *         {@link DefaultEntryWeigher} if none was provided
+     * @since 10.0RC1
+     */
+    @Unstable
+    public EntryWeigher<?> getWeigher()
+    {
+        Object obj = get(WEIGHER_ID);
+
+        if (obj instanceof EntryWeigher) {
+            return (EntryWeigher<?>) obj;
+        }
+
+        return DefaultEntryWeigher.INSTANCE;
+    }
 }
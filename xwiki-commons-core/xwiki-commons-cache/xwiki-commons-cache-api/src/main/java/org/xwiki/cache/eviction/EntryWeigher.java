@@ -0,0 +1,43 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.eviction;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Compute the weight of a cache entry, used by the caches configured with a maximum weight (see
+ * {@link EntryEvictionConfiguration#setMaxWeight(long)}). The weight usually approximates the memory used by the
+ * entry, in bytes.
+ *
+ * @param <T> the class of the data stored in the cache
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Unstable
+@FunctionalInterface
+public interface EntryWeigher<T>
+{
+    /**
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @return the weight of the entry, positive or zero
+     */
+    long weigh(String key, T value);
+}
@@ -19,8 +19,12 @@
  */
 package org.xwiki.cache.internal;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.management.ObjectName;
 
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
@@ -28,13 +32,20 @@
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.CacheManagerConfiguration;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.internal.jmx.JMXCache;
+import org.xwiki.cache.util.AbstractCache;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.management.JMXBeanRegistration;
 
 /**
  * The default implementation of CacheManager. It uses ConfigurationManager to find the cache an local cache hints to
  * use to lookup cache components.
+ * <p>
+ * The statistics of the created caches having a configuration identifier are exposed through JMX (one MBean per
+ * identifier, exposing the last created cache with this identifier). The MBean is unregistered when that cache is
+ * disposed.
  * 
  * @version $Id$
  * @since 1.7M1
@@ -55,6 +66,11 @@ public class DefaultCacheManager implements CacheManager
     @Inject
     private CacheManagerConfiguration configuration;
 
+    /**
+     * The MBeans registered for each cache configuration identifier.
+     */
+    private final Map<String, JMXCache> mbeans = new HashMap<>();
+
     @Override
     public CacheFactory getCacheFactory() throws ComponentLookupException
     {
@@ -109,6 +125,61 @@ public <T> Cache<T> createNewCache(CacheConfiguration config, String cacheHint)
             throw new CacheException("Failed to get cache factory for role hint [" + cacheHint + "]", e);
         }
 
-        return cacheFactory.newCache(config);
+        Cache<T> cache = cacheFactory.newCache(config);
+
+        if (config != null && config.getConfigurationId() != null) {
+            registerMBean(config.getConfigurationId(), cache);
+        }
+
+        return cache;
+    }
+
+    private synchronized void registerMBean(String id, Cache<?> cache)
+    {
+        JMXCache mbean = this.mbeans.get(id);
+
+        if (mbean != null) {
+            mbean.setCache(cache);
+        } else if (this.componentManager.hasComponent(JMXBeanRegistration.class)) {
+            mbean = new JMXCache(cache);
+
+            try {
+                this.componentManager.<JMXBeanRegistration>getInstance(JMXBeanRegistration.class)
+                    .registerMBean(mbean, getMBeanName(id));
+
+                this.mbeans.put(id, mbean);
+            } catch (ComponentLookupException e) {
+                // Should never happen since the component existence was checked
+                return;
+            }
+        } else {
+            return;
+        }
+
+        if (cache instanceof AbstractCache) {
+            ((AbstractCache<?>) cache).addDisposeListener(() -> unregisterMBean(id, cache));
+        }
+    }
+
+    private synchronized void unregisterMBean(String id, Cache<?> cache)
+    {
+        JMXCache mbean = this.mbeans.get(id);
+
+        // Don't unregister the MBean if it's exposing a more recent cache
+        if (mbean != null && mbean.getCache() == cache) {
+            this.mbeans.remove(id);
+
+            try {
+                this.componentManager.<JMXBeanRegistration>getInstance(JMXBeanRegistration.class)
+                    .unregisterMBean(getMBeanName(id));
+            } catch (ComponentLookupException e) {
+                // Should never happen since the MBean was registered
+            }
+        }
+    }
+
+    private String getMBeanName(String id)
+    {
+        return "type=Cache,name=" + ObjectName.quote(id);
     }
 }
@@ -19,6 +19,7 @@
  */
 package org.xwiki.cache.internal;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,7 +36,7 @@
  */
 public class MapCache<T> extends AbstractCache<T>
 {
-    private Map<String, T> map = new HashMap<>();
+    private Map<String, T> map = Collections.synchronizedMap(new HashMap<>());
 
     /**
      * Default constructor.
@@ -54,7 +55,11 @@ public void set(String key, T value)
     @Override
     public T get(String key)
     {
-        return this.map.get(key);
+        T value = this.map.get(key);
+
+        this.statistics.recordGet(value);
+
+        return value;
     }
 
     @Override
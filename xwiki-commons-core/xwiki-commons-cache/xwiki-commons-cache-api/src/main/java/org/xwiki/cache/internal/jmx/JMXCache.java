@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal.jmx;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheStatistics;
+
+/**
+ * Expose the {@link CacheStatistics} of the last created cache with a given name.
+ * <p>
+ * The cache is weakly referenced so that a disposed cache can be garbage collected even if the MBean is still
+ * registered.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JMXCache implements JMXCacheMBean
+{
+    private static final double NANOSECONDS_PER_MILLISECOND = 1000000.0;
+
+    private volatile Reference<Cache<?>> cache;
+
+    /**
+     * @param cache the cache to expose
+     */
+    public JMXCache(Cache<?> cache)
+    {
+        setCache(cache);
+    }
+
+    /**
+     * @param cache the new cache to expose
+     */
+    public void setCache(Cache<?> cache)
+    {
+        this.cache = new WeakReference<>(cache);
+    }
+
+    /**
+     * @return the exposed cache, null if it was garbage collected
+     */
+    public Cache<?> getCache()
+    {
+        return this.cache.get();
+    }
+
+    private CacheStatistics getStatistics()
+    {
+        Cache<?> currentCache = getCache();
+
+        if (currentCache != null) {
+            return currentCache.getStatistics();
+        }
+
+        return null;
+    }
+
+    private long get(ToLongFunction<CacheStatistics> getter)
+    {
+        CacheStatistics statistics = getStatistics();
+
+        if (statistics != null) {
+            return getter.applyAsLong(statistics);
+        }
+
+        return 0;
+    }
+
+    private double getDouble(ToDoubleFunction<CacheStatistics> getter)
+    {
+        CacheStatistics statistics = getStatistics();
+
+        if (statistics != null) {
+            return getter.applyAsDouble(statistics);
+        }
+
+        return 0;
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return get(CacheStatistics::getHitCount);
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return get(CacheStatistics::getMissCount);
+    }
+
+    @Override
+    public double getHitRate()
+    {
+        return getDouble(CacheStatistics::getHitRate);
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return get(CacheStatistics::getEvictionCount);
+    }
+
+    @Override
+    public long getLoadCount()
+    {
+        return get(CacheStatistics::getLoadCount);
+    }
+
+    @Override
+    public long getLoadFailureCount()
+    {
+        return get(CacheStatistics::getLoadFailureCount);
+    }
+
+    @Override
+    public double getTotalLoadTime()
+    {
+        return get(CacheStatistics::getTotalLoadTime) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    @Override
+    public double getAverageLoadTime()
+    {
+        return get(CacheStatistics::getAverageLoadTime) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    @Override
+    public long getTotalWeight()
+    {
+        return get(CacheStatistics::getTotalWeight);
+    }
+}
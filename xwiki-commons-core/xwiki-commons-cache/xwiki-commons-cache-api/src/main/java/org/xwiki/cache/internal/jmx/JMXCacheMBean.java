@@ -0,0 +1,74 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal.jmx;
+
+/**
+ * MBean API exposing the statistics of a named cache.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public interface JMXCacheMBean
+{
+    /**
+     * @return the number of times a lookup found a value in the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of times a lookup did not find any value in the cache
+     */
+    long getMissCount();
+
+    /**
+     * @return the ratio of lookups which found a value in the cache
+     */
+    double getHitRate();
+
+    /**
+     * @return the number of entries removed from the cache by the cache itself (eviction or expiration)
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of values loaded in the cache
+     */
+    long getLoadCount();
+
+    /**
+     * @return the number of failed loads
+     */
+    long getLoadFailureCount();
+
+    /**
+     * @return the total time spent loading values, in milliseconds
+     */
+    double getTotalLoadTime();
+
+    /**
+     * @return the average time spent loading a value, in milliseconds
+     */
+    double getAverageLoadTime();
+
+    /**
+     * @return the current total weight of the entries, 0 if the cache is not limited by weight
+     */
+    long getTotalWeight();
+}
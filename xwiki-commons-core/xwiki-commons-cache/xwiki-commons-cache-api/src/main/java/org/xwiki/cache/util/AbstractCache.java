@@ -19,18 +19,33 @@
  */
 package org.xwiki.cache.util;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
 import javax.swing.event.EventListenerList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheStatistics;
 import org.xwiki.cache.DisposableCacheValue;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.event.CacheEntryEvent;
 import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.stability.Unstable;
 
 /**
  * Base class for {@link Cache} implementations. It provides events {@link DisposableCacheValue} management.
+ * <p>
+ * It also provides a {@link #get(String, Function)} implementation collapsing the concurrent loads of the same key and
+ * gathering the load statistics. The implementations are expected to record the other statistics (hits, misses and
+ * evictions) in {@link #statistics}.
  * 
  * @param <T> the class of the data stored in the cache.
  * @version $Id$
@@ -52,6 +67,29 @@
      */
     protected final EventListenerList cacheEntryListeners = new EventListenerList();
 
+    /**
+     * The statistics of the cache.
+     *
+     * @since 10.0RC1
+     */
+    protected final CacheStatisticsCounter statistics = new CacheStatisticsCounter();
+
+    /**
+     * The values currently being loaded.
+     */
+    private final ConcurrentMap<String, CompletableFuture<T>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time a loaded value is stored, to detect a load finished between a miss and the start of
+     * another load.
+     */
+    private final AtomicLong loaded = new AtomicLong();
+
+    /**
+     * The actions to execute when the cache is disposed.
+     */
+    private final List<Runnable> disposeListeners = new CopyOnWriteArrayList<>();
+
     /**
      * @deprecated since 8.3RC1, use {@link #AbstractCache(CacheConfiguration)} instead
      */
@@ -69,12 +107,132 @@ public AbstractCache(CacheConfiguration configuration)
         this.configuration = configuration;
     }
 
+    @Override
+    public T get(String key, Function<String, ? extends T> loader)
+    {
+        long loadedBefore = this.loaded.get();
+
+        T value = get(key);
+
+        if (value == null && key == null) {
+            // Concurrent loads can't be tracked for the null key
+            value = load(key, loader);
+            store(key, value);
+        } else if (value == null) {
+            value = loadOnce(key, loader, loadedBefore);
+        }
+
+        return value;
+    }
+
+    private T loadOnce(String key, Function<String, ? extends T> loader, long loadedBefore)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> currentFuture = this.loading.putIfAbsent(key, future);
+
+        if (currentFuture != null) {
+            // Someone else is already loading this value
+            return join(currentFuture);
+        }
+
+        T value;
+        try {
+            // A load may have been finished (and its future removed) since the miss
+            value = this.loaded.get() != loadedBefore ? get(key) : null;
+
+            if (value == null) {
+                value = load(key, loader);
+                store(key, value);
+            }
+        } catch (RuntimeException | Error e) {
+            this.loading.remove(key, future);
+            future.completeExceptionally(e);
+
+            throw e;
+        }
+
+        // The future is removed only once the value is stored, and the waiting threads are released after that
+        this.loading.remove(key, future);
+        future.complete(value);
+
+        return value;
+    }
+
+    private void store(String key, T value)
+    {
+        if (value != null) {
+            set(key, value);
+
+            this.loaded.incrementAndGet();
+        }
+    }
+
+    private T load(String key, Function<String, ? extends T> loader)
+    {
+        long start = System.nanoTime();
+
+        T value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            this.statistics.recordLoadFailure(System.nanoTime() - start);
+
+            throw e;
+        }
+
+        this.statistics.recordLoadSuccess(System.nanoTime() - start);
+
+        return value;
+    }
+
+    private T join(CompletableFuture<T> future)
+    {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Propagate the exception thrown by the loader
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    @Override
+    public CacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
     @Override
     public void dispose()
     {
         for (CacheEntryListener<T> listener : this.cacheEntryListeners.getListeners(CacheEntryListener.class)) {
             this.cacheEntryListeners.remove(CacheEntryListener.class, listener);
         }
+
+        for (Runnable listener : this.disposeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to notify the disposal of cache [{}]",
+                    getConfigurationId(), e);
+            }
+        }
+        this.disposeListeners.clear();
+    }
+
+    /**
+     * @param listener called when the cache is disposed
+     * @since 10.0RC1
+     */
+    @Unstable
+    public void addDisposeListener(Runnable listener)
+    {
+        this.disposeListeners.add(listener);
     }
 
     @Override
@@ -130,6 +288,11 @@ protected void sendEntryModifiedEvent(CacheEntryEvent<T> event)
         }
     }
 
+    private String getConfigurationId()
+    {
+        return this.configuration != null ? this.configuration.getConfigurationId() : null;
+    }
+
     /**
      * Dispose the value being removed from the cache.
      * 
@@ -145,7 +308,7 @@ protected void disposeCacheValue(T value)
                 // implementation and there is no reason to crash the whole cache because of some badly implemented
                 // dispose() we don't control.
                 LOGGER.warn("Error when trying to dispose a cache object of cache [{}]",
-                    this.configuration != null ? this.configuration.getConfigurationId() : null, e);
+                    getConfigurationId(), e);
             }
         }
     }
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xwiki.cache.CacheStatistics;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Thread safe implementation of {@link CacheStatistics} to be updated by the {@link org.xwiki.cache.Cache}
+ * implementations.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Unstable
+public class CacheStatisticsCounter implements CacheStatistics
+{
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder loadTime = new LongAdder();
+
+    private final LongAdder weight = new LongAdder();
+
+    /**
+     * @param count the number of lookups which found a value
+     */
+    public void recordHits(int count)
+    {
+        this.hits.add(count);
+    }
+
+    /**
+     * @param count the number of lookups which did not find any value
+     */
+    public void recordMisses(int count)
+    {
+        this.misses.add(count);
+    }
+
+    /**
+     * Record the result of a lookup.
+     *
+     * @param value the value found in the cache, null if none could be found
+     */
+    public void recordGet(Object value)
+    {
+        if (value != null) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+        }
+    }
+
+    /**
+     * @param count the number of evicted entries
+     */
+    public void recordEvictions(int count)
+    {
+        this.evictions.add(count);
+    }
+
+    /**
+     * @param time the time spent loading the value, in nanoseconds
+     */
+    public void recordLoadSuccess(long time)
+    {
+        this.loads.increment();
+        this.loadTime.add(time);
+    }
+
+    /**
+     * @param time the time spent before the load failed, in nanoseconds
+     */
+    public void recordLoadFailure(long time)
+    {
+        this.loadFailures.increment();
+        this.loadTime.add(time);
+    }
+
+    /**
+     * @param delta the variation of the total weight of the entries
+     */
+    public void recordWeight(long delta)
+    {
+        this.weight.add(delta);
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return this.hits.sum();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return this.misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public long getLoadCount()
+    {
+        return this.loads.sum();
+    }
+
+    @Override
+    public long getLoadFailureCount()
+    {
+        return this.loadFailures.sum();
+    }
+
+    @Override
+    public long getTotalLoadTime()
+    {
+        return this.loadTime.sum();
+    }
+
+    @Override
+    public long getTotalWeight()
+    {
+        return this.weight.sum();
+    }
+}
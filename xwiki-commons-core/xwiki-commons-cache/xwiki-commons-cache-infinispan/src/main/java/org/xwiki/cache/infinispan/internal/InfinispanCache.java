@@ -19,7 +19,15 @@
  */
 package org.xwiki.cache.infinispan.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -37,11 +45,17 @@
 import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
 import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.EntryWeigher;
 import org.xwiki.cache.infinispan.internal.event.InfinispanCacheEntryEvent;
 import org.xwiki.cache.util.AbstractCache;
 
 /**
  * Implements {@link org.xwiki.cache.Cache} based on Infinispan.
+ * <p>
+ * Infinispan only knows how to weigh a few value types so the maximum weight (see
+ * {@link EntryEvictionConfiguration#getMaxWeight()}) is enforced here: the weight of each entry is tracked from the
+ * Infinispan events and the least recently used entries are removed when the total weight exceeds the maximum.
  * 
  * @param <T> the class of the data stored in the cache.
  * @version $Id$
@@ -50,6 +64,10 @@
 @Listener
 public class InfinispanCache<T> extends AbstractCache<T>
 {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75F;
+
     /**
      * The Infinispan cache.
      */
@@ -65,6 +83,21 @@
      */
     private EmbeddedCacheManager cacheManager;
 
+    /**
+     * The maximum total weight of the entries, 0 if unlimited.
+     */
+    private final long maxWeight;
+
+    private final EntryWeigher<? super T> weigher;
+
+    /**
+     * The weight of each entry, from the least recently used to the most recently used, when the cache has a maximum
+     * weight.
+     */
+    private final Map<String, Long> weights = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private long totalWeight;
+
     /**
      * @param cacheManager the Infinispan cache manager
      * @param configuration the XWiki Cache configuration
@@ -76,9 +109,29 @@
         this.cacheManager = cacheManager;
         this.cache = cacheManager.<String, T>getCache(configuration.getConfigurationId());
 
+        EntryEvictionConfiguration eviction =
+            (EntryEvictionConfiguration) configuration.get(EntryEvictionConfiguration.CONFIGURATIONID);
+        this.maxWeight = eviction != null ? eviction.getMaxWeight() : 0;
+        this.weigher = getWeigher(eviction);
+
         this.cache.addListener(this);
     }
 
+    @SuppressWarnings("unchecked")
+    private EntryWeigher<? super T> getWeigher(EntryEvictionConfiguration eviction)
+    {
+        if (this.maxWeight > 0) {
+            return (EntryWeigher<? super T>) eviction.getWeigher();
+        }
+
+        return null;
+    }
+
+    private boolean isWeighted()
+    {
+        return this.maxWeight > 0;
+    }
+
     @Override
     public void remove(String key)
     {
@@ -90,6 +143,8 @@ public void set(String key, T obj)
     {
         if (obj != null) {
             this.cache.put(key, obj);
+
+            evictOverweight(key);
         } else {
             this.cache.remove(key);
         }
@@ -98,13 +153,64 @@ public void set(String key, T obj)
     @Override
     public T get(String key)
     {
-        return this.cache.get(key);
+        T value = this.cache.get(key);
+
+        this.statistics.recordGet(value);
+
+        if (value != null) {
+            touch(key);
+        }
+
+        return value;
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys)
+    {
+        Set<String> keySet = new LinkedHashSet<>(keys);
+        Map<String, T> values = this.cache.getAdvancedCache().getAll(keySet);
+
+        this.statistics.recordHits(values.size());
+        this.statistics.recordMisses(keySet.size() - values.size());
+
+        for (String key : values.keySet()) {
+            touch(key);
+        }
+
+        return values;
+    }
+
+    @Override
+    public void setAll(Map<String, ? extends T> entries)
+    {
+        Map<String, T> values = new HashMap<>(entries.size());
+
+        for (Map.Entry<String, ? extends T> entry : entries.entrySet()) {
+            if (entry.getValue() != null) {
+                values.put(entry.getKey(), entry.getValue());
+            } else {
+                this.cache.remove(entry.getKey());
+            }
+        }
+
+        this.cache.putAll(values);
+
+        evictOverweight(null);
     }
 
     @Override
     public void removeAll()
     {
         this.cache.clear();
+
+        // Clearing the cache does not produce any remove event
+        if (isWeighted()) {
+            synchronized (this.weights) {
+                this.statistics.recordWeight(-this.totalWeight);
+                this.totalWeight = 0;
+                this.weights.clear();
+            }
+        }
     }
 
     @Override
@@ -115,6 +221,97 @@ public void dispose()
         this.cacheManager.removeCache(this.cache.getName());
     }
 
+    // ////////////////////////////////////////////////////////////////
+    // Weight
+    // ////////////////////////////////////////////////////////////////
+
+    /**
+     * Mark the entry as the most recently used one.
+     *
+     * @param key the entry key
+     */
+    private void touch(String key)
+    {
+        if (isWeighted()) {
+            synchronized (this.weights) {
+                this.weights.get(key);
+            }
+        }
+    }
+
+    /**
+     * @param key the entry key
+     * @param value the new value of the entry
+     */
+    private void updateWeight(String key, T value)
+    {
+        if (isWeighted()) {
+            long weight = this.weigher.weigh(key, value);
+
+            synchronized (this.weights) {
+                Long previousWeight = this.weights.put(key, weight);
+                long delta = previousWeight != null ? weight - previousWeight : weight;
+                this.totalWeight += delta;
+                this.statistics.recordWeight(delta);
+            }
+        }
+    }
+
+    /**
+     * @param key the key of the removed entry
+     */
+    private void removeWeight(String key)
+    {
+        if (isWeighted()) {
+            synchronized (this.weights) {
+                Long weight = this.weights.remove(key);
+                if (weight != null) {
+                    this.totalWeight -= weight;
+                    this.statistics.recordWeight(-weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently used entries until the total weight is below the maximum. The entries are removed
+     * after the modification of the cache, outside of the Infinispan events, so that they produce the usual remove
+     * events.
+     *
+     * @param key the key of the entry which was just set, null when several entries were set
+     */
+    private void evictOverweight(String key)
+    {
+        if (!isWeighted()) {
+            return;
+        }
+
+        List<String> victims = new ArrayList<>();
+
+        synchronized (this.weights) {
+            long excess = this.totalWeight - this.maxWeight;
+
+            Long weight = key != null ? this.weights.get(key) : null;
+            if (weight != null && weight > this.maxWeight) {
+                // An entry heavier than the maximum is never kept and does not evict anything else
+                victims.add(key);
+            } else {
+                Iterator<Map.Entry<String, Long>> it = this.weights.entrySet().iterator();
+                while (excess > 0 && it.hasNext()) {
+                    Map.Entry<String, Long> entry = it.next();
+                    victims.add(entry.getKey());
+                    excess -= entry.getValue();
+                }
+            }
+        }
+
+        for (String victim : victims) {
+            if (this.cache.remove(victim) != null) {
+                this.statistics.recordEvictions(1);
+            }
+        }
+    }
+
     // ////////////////////////////////////////////////////////////////
     // Events
     // ////////////////////////////////////////////////////////////////
@@ -125,10 +322,14 @@ public void dispose()
     @CacheEntriesEvicted
     public void nodeEvicted(CacheEntriesEvictedEvent<String, T> event)
     {
+        this.statistics.recordEvictions(event.getEntries().size());
+
         for (Map.Entry<String, T> entry : event.getEntries().entrySet()) {
             String key = entry.getKey();
             T value = entry.getValue();
 
+            removeWeight(key);
+
             // Looks like eviction does not produce any pre event
             cacheEntryRemoved(key, value);
         }
@@ -140,9 +341,13 @@ public void nodeEvicted(CacheEntriesEvictedEvent<String, T> event)
     @CacheEntryExpired
     public void nodeExpired(CacheEntryExpiredEvent<String, T> event)
     {
+        this.statistics.recordEvictions(1);
+
         String key = event.getKey();
         T value = event.getValue();
 
+        removeWeight(key);
+
         // Looks like eviction does not produce any pre event
         cacheEntryRemoved(key, value);
     }
@@ -161,6 +366,8 @@ public void nodeRemoved(CacheEntryRemovedEvent<String, T> event)
                 this.preEventData.put(key, value);
             }
         } else {
+            removeWeight(key);
+
             cacheEntryRemoved(event.getKey(), this.preEventData.get(key));
 
             this.preEventData.remove(key);
@@ -176,6 +383,8 @@ public void nodeCreated(CacheEntryCreatedEvent<String, T> event)
         String key = event.getKey();
 
         if (!event.isPre()) {
+            updateWeight(key, event.getValue());
+
             cacheEntryInserted(key, event.getValue());
         }
     }
@@ -194,6 +403,8 @@ public void nodeModified(CacheEntryModifiedEvent<String, T> event)
                 this.preEventData.put(key, value);
             }
         } else {
+            updateWeight(key, value);
+
             cacheEntryInserted(key, value);
 
             this.preEventData.remove(key);
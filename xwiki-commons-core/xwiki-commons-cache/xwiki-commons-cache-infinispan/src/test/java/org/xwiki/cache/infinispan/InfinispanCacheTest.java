@@ -19,15 +19,25 @@
  */
 package org.xwiki.cache.infinispan;
 
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.cache.infinispan.internal.InfinispanCacheFactory;
 import org.xwiki.cache.infinispan.internal.InfinispanConfigurationLoader;
 import org.xwiki.cache.internal.DefaultCacheFactory;
 import org.xwiki.cache.internal.DefaultCacheManager;
 import org.xwiki.cache.internal.DefaultCacheManagerConfiguration;
 import org.xwiki.cache.tests.AbstractEvictionGenericTestCache;
+import org.xwiki.cache.tests.CacheEntryListenerTest;
 import org.xwiki.test.annotation.ComponentList;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
 /**
  * Unit tests for {@link org.xwiki.cache.infinispan.internal.InfinispanCache}.
  *
@@ -52,4 +62,82 @@ protected void customizeEviction(EntryEvictionConfiguration eviction)
         // Force expiration thread to wakeup often
         eviction.put(InfinispanConfigurationLoader.CONFX_EXPIRATION_WAKEUPINTERVAL, 100);
     }
+
+    @Test
+    public void maxWeightWithoutMaxEntries() throws Exception
+    {
+        LRUEvictionConfiguration eviction = new LRUEvictionConfiguration();
+        eviction.setMaxWeight(100);
+        eviction.setWeigher((String key, Object value) -> value.toString().length());
+        CacheConfiguration configuration = new CacheConfiguration("weighted", eviction);
+
+        Cache<Object> cache = getCacheFactory().newCache(configuration);
+        CacheEntryListenerTest listener = new CacheEntryListenerTest();
+        cache.addCacheEntryListener(listener);
+
+        cache.set("a", StringUtils.repeat('a', 30));
+        cache.set("b", StringUtils.repeat('b', 30));
+        cache.set("c", StringUtils.repeat('c', 30));
+
+        assertEquals(90, cache.getStatistics().getTotalWeight());
+
+        // Make "a" the most recently used entry
+        assertNotNull(cache.get("a"));
+
+        // Does not fit anymore: the least recently used entry is evicted
+        cache.set("d", StringUtils.repeat('d', 30));
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("d"));
+        assertEquals(90, cache.getStatistics().getTotalWeight());
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+        assertEquals("b", listener.getRemovedEvent().getEntry().getKey());
+
+        // Updating a value updates the weight
+        cache.set("a", "a");
+
+        assertEquals(61, cache.getStatistics().getTotalWeight());
+
+        // An entry heavier than the maximum is never kept and does not evict anything else
+        cache.set("e", StringUtils.repeat('e', 101));
+
+        assertNull(cache.get("e"));
+        assertNotNull(cache.get("c"));
+        assertEquals(61, cache.getStatistics().getTotalWeight());
+
+        cache.remove("c");
+
+        assertEquals(31, cache.getStatistics().getTotalWeight());
+
+        cache.removeAll();
+
+        assertEquals(0, cache.getStatistics().getTotalWeight());
+
+        cache.dispose();
+    }
+
+    @Test
+    public void maxWeightWithMaxEntries() throws Exception
+    {
+        LRUEvictionConfiguration eviction = new LRUEvictionConfiguration(10);
+        eviction.setMaxWeight(100);
+        eviction.setWeigher((String key, Object value) -> 20);
+        CacheConfiguration configuration = new CacheConfiguration("weightedwithentries", eviction);
+
+        Cache<Object> cache = getCacheFactory().newCache(configuration);
+
+        for (int i = 0; i < 100; ++i) {
+            cache.set("key" + i, new Object());
+        }
+
+        // Bounded by the maximum weight, which is reached before the maximum number of entries
+        assertNull(cache.get("key0"));
+        assertNull(cache.get("key94"));
+        assertNotNull(cache.get("key95"));
+        assertNotNull(cache.get("key99"));
+        assertEquals(100, cache.getStatistics().getTotalWeight());
+
+        cache.dispose();
+    }
 }
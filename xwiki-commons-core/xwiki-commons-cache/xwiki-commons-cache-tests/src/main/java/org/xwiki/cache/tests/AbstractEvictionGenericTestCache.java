@@ -100,6 +100,10 @@ public void createAndDestroyCacheLRUMaxEntries() throws Exception
             Assert.assertTrue("No value has been evicted from the cache",
                 eventListener.waitForEntryEvent(EventType.REMOVE));
             Assert.assertSame(VALUE, eventListener.getRemovedEvent().getEntry().getValue());
+
+            if (cache.getStatistics() != null) {
+                Assert.assertEquals(1, cache.getStatistics().getEvictionCount());
+            }
         }
 
         Assert.assertNull(cache.get(KEY));
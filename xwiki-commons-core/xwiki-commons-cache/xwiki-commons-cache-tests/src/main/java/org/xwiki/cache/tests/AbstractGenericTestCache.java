@@ -19,11 +19,28 @@
  */
 package org.xwiki.cache.tests;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.CacheStatistics;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.management.JMXBeanRegistration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 
 /**
  * Base class for testing cache component implementation.
@@ -213,4 +230,156 @@ public void recreateCache() throws Exception
 
         Assert.assertEquals(VALUE, cache.get(KEY));
     }
+
+    /**
+     * Validate {@link Cache#get(String, java.util.function.Function)}.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void getWithLoader() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        Assert.assertEquals(VALUE, cache.get(KEY, key -> VALUE));
+        Assert.assertEquals(VALUE, cache.get(KEY));
+        Assert.assertEquals(VALUE, cache.get(KEY, key -> {
+            throw new AssertionError("The value should not be loaded again");
+        }));
+
+        // Null values are not stored
+        Assert.assertNull(cache.get(KEY2, key -> null));
+        Assert.assertEquals(VALUE2, cache.get(KEY2, key -> VALUE2));
+
+        // Exceptions are propagated
+        IllegalStateException exception = new IllegalStateException();
+        String failingKey = "failing";
+        try {
+            cache.get(failingKey, key -> {
+                throw exception;
+            });
+            Assert.fail("Should have thrown an exception");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(exception, e);
+        }
+        Assert.assertNull(cache.get(failingKey));
+
+        CacheStatistics statistics = cache.getStatistics();
+        if (statistics != null) {
+            Assert.assertEquals(3, statistics.getLoadCount());
+            Assert.assertEquals(1, statistics.getLoadFailureCount());
+        }
+
+        cache.dispose();
+    }
+
+    /**
+     * Validate that concurrent loads of the same key are collapsed.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void getWithLoaderConcurrently() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Object> first = executor.submit(() -> cache.get(KEY, key -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return VALUE;
+            }));
+            loading.await();
+
+            Future<Object> second = executor.submit(() -> cache.get(KEY, key -> {
+                loads.incrementAndGet();
+                return VALUE2;
+            }));
+
+            // Give some time to the second call to wait for the first one
+            Thread.sleep(50);
+            release.countDown();
+
+            Assert.assertEquals(VALUE, first.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(VALUE, second.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        cache.dispose();
+    }
+
+    /**
+     * Validate {@link Cache#getAll(java.util.Collection)} and {@link Cache#setAll(Map)}.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void getAllSetAll() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        String removedKey = "removed";
+        cache.set(removedKey, VALUE);
+
+        Map<String, Object> entries = new HashMap<>();
+        entries.put(KEY, VALUE);
+        entries.put(KEY2, VALUE2);
+        entries.put(removedKey, null);
+        cache.setAll(entries);
+
+        Map<String, Object> values = cache.getAll(Arrays.asList(KEY, KEY2, removedKey, "missing"));
+
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals(VALUE, values.get(KEY));
+        Assert.assertEquals(VALUE2, values.get(KEY2));
+
+        CacheStatistics statistics = cache.getStatistics();
+        if (statistics != null) {
+            Assert.assertEquals(2, statistics.getHitCount());
+            Assert.assertEquals(2, statistics.getMissCount());
+            Assert.assertEquals(0.5, statistics.getHitRate(), 0);
+        }
+
+        cache.dispose();
+    }
+
+    /**
+     * Validate that the MBean exposing a cache is unregistered when the cache is disposed.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void unregisterMBeanOnDispose() throws Exception
+    {
+        JMXBeanRegistration jmxRegistration = this.componentManager.registerMockComponent(JMXBeanRegistration.class);
+
+        CacheManager cacheManager = this.componentManager.getInstance(CacheManager.class);
+
+        Cache<Object> cache = cacheManager.createNewCache(new CacheConfiguration("mbeancache"));
+
+        String mbeanName = "type=Cache,name=\"mbeancache\"";
+        verify(jmxRegistration).registerMBean(any(), eq(mbeanName));
+
+        cache.dispose();
+
+        verify(jmxRegistration).unregisterMBean(mbeanName);
+    }
 }
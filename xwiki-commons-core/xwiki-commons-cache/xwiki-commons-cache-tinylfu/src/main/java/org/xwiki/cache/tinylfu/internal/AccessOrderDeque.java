@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+/**
+ * A doubly linked list of {@link CacheNode}s ordered from the least recently used to the most recently used. The links
+ * are stored in the nodes themselves so that moving a node does not allocate anything.
+ * <p>
+ * Not thread safe, the deque is only used while holding the eviction lock of the cache.
+ *
+ * @param <T> the class of the data stored in the cache
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class AccessOrderDeque<T>
+{
+    private CacheNode<T> first;
+
+    private CacheNode<T> last;
+
+    private int size;
+
+    private long weight;
+
+    /**
+     * @return the least recently used node, or null if the deque is empty
+     */
+    public CacheNode<T> peekFirst()
+    {
+        return this.first;
+    }
+
+    /**
+     * @return the most recently used node, or null if the deque is empty
+     */
+    public CacheNode<T> peekLast()
+    {
+        return this.last;
+    }
+
+    /**
+     * @return the number of nodes in the deque
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the total weight of the nodes in the deque
+     */
+    public long weight()
+    {
+        return this.weight;
+    }
+
+    /**
+     * @param node a node of the deque
+     * @param newWeight the new weight of the node
+     */
+    public void setWeight(CacheNode<T> node, long newWeight)
+    {
+        this.weight += newWeight - node.getWeight();
+        node.setWeight(newWeight);
+    }
+
+    /**
+     * @param node the node to add as the most recently used
+     */
+    public void addLast(CacheNode<T> node)
+    {
+        node.setPrevious(this.last);
+        node.setNext(null);
+
+        if (this.last != null) {
+            this.last.setNext(node);
+        } else {
+            this.first = node;
+        }
+        this.last = node;
+
+        ++this.size;
+        this.weight += node.getWeight();
+    }
+
+    /**
+     * @param node the node to remove from the deque
+     */
+    public void remove(CacheNode<T> node)
+    {
+        CacheNode<T> previous = node.getPrevious();
+        CacheNode<T> next = node.getNext();
+
+        if (previous != null) {
+            previous.setNext(next);
+        } else {
+            this.first = next;
+        }
+
+        if (next != null) {
+            next.setPrevious(previous);
+        } else {
+            this.last = previous;
+        }
+
+        node.setPrevious(null);
+        node.setNext(null);
+
+        --this.size;
+        this.weight -= node.getWeight();
+    }
+
+    /**
+     * @param node the node to move to the most recently used position
+     */
+    public void moveToBack(CacheNode<T> node)
+    {
+        if (node != this.last) {
+            remove(node);
+            addLast(node);
+        }
+    }
+
+    /**
+     * Remove all the nodes.
+     */
+    public void clear()
+    {
+        this.first = null;
+        this.last = null;
+        this.size = 0;
+        this.weight = 0;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+/**
+ * An entry of a {@link TinyLFUCache}.
+ * <p>
+ * The value and the timestamps can be read without any lock but are only modified while holding the eviction lock of
+ * the cache, like the fields used to link the node in its access order queue.
+ *
+ * @param <T> the class of the data stored in the cache
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class CacheNode<T>
+{
+    /**
+     * The queue containing the node.
+     *
+     * @version $Id$
+     */
+    public enum Queue
+    {
+        /**
+         * The admission window, containing the recently added entries.
+         */
+        WINDOW,
+
+        /**
+         * The entries of the main space which were not accessed since they entered it.
+         */
+        PROBATION,
+
+        /**
+         * The entries of the main space which were accessed since they entered it.
+         */
+        PROTECTED
+    }
+
+    private final String key;
+
+    private volatile T value;
+
+    private volatile long writeTime;
+
+    private volatile long accessTime;
+
+    private volatile boolean alive = true;
+
+    private long weight;
+
+    private Queue queue = Queue.WINDOW;
+
+    private CacheNode<T> previous;
+
+    private CacheNode<T> next;
+
+    /**
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @param weight the weight of the entry, 0 if the cache is not limited by weight
+     * @param now the current time in nanoseconds
+     */
+    public CacheNode(String key, T value, long weight, long now)
+    {
+        this.key = key;
+        this.value = value;
+        this.weight = weight;
+        this.writeTime = now;
+        this.accessTime = now;
+    }
+
+    /**
+     * @return the key of the entry
+     */
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @return the value of the entry
+     */
+    public T getValue()
+    {
+        return this.value;
+    }
+
+    /**
+     * @param value the new value of the entry
+     * @param now the current time in nanoseconds
+     */
+    public void setValue(T value, long now)
+    {
+        this.value = value;
+        this.writeTime = now;
+        this.accessTime = now;
+    }
+
+    /**
+     * @return the last time the value was set, in nanoseconds
+     */
+    public long getWriteTime()
+    {
+        return this.writeTime;
+    }
+
+    /**
+     * @return the last time the value was accessed, in nanoseconds
+     */
+    public long getAccessTime()
+    {
+        return this.accessTime;
+    }
+
+    /**
+     * @param now the current time in nanoseconds
+     */
+    public void setAccessTime(long now)
+    {
+        this.accessTime = now;
+    }
+
+    /**
+     * @return false if the entry was removed from the cache
+     */
+    public boolean isAlive()
+    {
+        return this.alive;
+    }
+
+    /**
+     * Indicate that the entry was removed from the cache.
+     */
+    public void retire()
+    {
+        this.alive = false;
+    }
+
+    /**
+     * @return the weight of the entry, 0 if the cache is not limited by weight
+     */
+    public long getWeight()
+    {
+        return this.weight;
+    }
+
+    /**
+     * @return the queue containing the node
+     */
+    public Queue getQueue()
+    {
+        return this.queue;
+    }
+
+    /**
+     * @param queue the queue containing the node
+     */
+    public void setQueue(Queue queue)
+    {
+        this.queue = queue;
+    }
+
+    void setWeight(long weight)
+    {
+        this.weight = weight;
+    }
+
+    CacheNode<T> getPrevious()
+    {
+        return this.previous;
+    }
+
+    void setPrevious(CacheNode<T> previous)
+    {
+        this.previous = previous;
+    }
+
+    CacheNode<T> getNext()
+    {
+        return this.next;
+    }
+
+    void setNext(CacheNode<T> next)
+    {
+        this.next = next;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+/**
+ * Approximate the access frequency of the keys of a cache in a small amount of memory (a count-min sketch with 4 bits
+ * counters).
+ * <p>
+ * The counters are periodically halved so that the frequencies reflect the recent history: when the number of
+ * recorded accesses reaches 10 times the maximum size of the cache.
+ * <p>
+ * Not thread safe, the accesses are expected to be recorded while holding the eviction lock of the cache.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class FrequencySketch
+{
+    private static final long[] SEEDS =
+        { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final int MAX_COUNTER = 15;
+
+    private static final int MIN_SIZE = 16;
+
+    private static final int SAMPLE_FACTOR = 10;
+
+    private static final int COUNTER_BITS = 4;
+
+    private static final int COUNTERS_PER_ENTRY = 4;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    /**
+     * @param maximumSize the maximum number of entries in the cache
+     */
+    public FrequencySketch(int maximumSize)
+    {
+        int length = Integer.highestOneBit(Math.max(maximumSize, MIN_SIZE) - 1) << 1;
+
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = SAMPLE_FACTOR * Math.max(maximumSize, MIN_SIZE);
+    }
+
+    /**
+     * @param item the element
+     * @return the estimated number of recent accesses of the element, between 0 and 15
+     */
+    public int frequency(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & (COUNTERS_PER_ENTRY - 1)) * COUNTERS_PER_ENTRY;
+
+        int frequency = MAX_COUNTER;
+        for (int i = 0; i < COUNTERS_PER_ENTRY; ++i) {
+            int index = indexOf(hash, i);
+            int count = (int) ((this.table[index] >>> ((start + i) * COUNTER_BITS)) & MAX_COUNTER);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Record an access of the element.
+     *
+     * @param item the element
+     */
+    public void increment(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & (COUNTERS_PER_ENTRY - 1)) * COUNTERS_PER_ENTRY;
+
+        boolean added = false;
+        for (int i = 0; i < COUNTERS_PER_ENTRY; ++i) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added) {
+            ++this.size;
+
+            if (this.size >= this.sampleSize) {
+                reset();
+            }
+        }
+    }
+
+    private boolean incrementAt(int index, int counter)
+    {
+        int offset = counter * COUNTER_BITS;
+        long mask = (long) MAX_COUNTER << offset;
+
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << offset;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Halve all the counters.
+     */
+    private void reset()
+    {
+        for (int i = 0; i < this.table.length; ++i) {
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+
+        this.size /= 2;
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long value = (hash + SEEDS[i]) * SEEDS[i];
+        value += value >>> Integer.SIZE;
+
+        return ((int) value) & this.tableMask;
+    }
+
+    private static int spread(int value)
+    {
+        // Make sure close hashes end up in different table entries
+        int hash = ((value >>> 16) ^ value) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Record the accesses to the cache entries without taking any lock so that they can be applied to the eviction policy
+ * later, in batch.
+ * <p>
+ * The buffer is striped by thread to reduce contention and is lossy: when a stripe is full the access is dropped,
+ * which only makes the eviction policy a bit less accurate.
+ *
+ * @param <T> the class of the data stored in the cache
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class ReadBuffer<T>
+{
+    private static final int STRIPE_SIZE = 32;
+
+    private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+    private static final int MAX_STRIPES = 16;
+
+    private final Stripe<T>[] stripes;
+
+    private final int stripesMask;
+
+    private static final class Stripe<T>
+    {
+        private final AtomicReferenceArray<CacheNode<T>> buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+
+        private final AtomicLong writeCounter = new AtomicLong();
+
+        private volatile long readCounter;
+
+        /**
+         * @return true if the stripe should be drained
+         */
+        boolean offer(CacheNode<T> node)
+        {
+            long write = this.writeCounter.get();
+            long pending = write - this.readCounter;
+
+            if (pending < STRIPE_SIZE && this.writeCounter.compareAndSet(write, write + 1)) {
+                this.buffer.lazySet((int) write & STRIPE_MASK, node);
+
+                return pending + 1 >= STRIPE_SIZE / 2;
+            }
+
+            return pending >= STRIPE_SIZE;
+        }
+
+        void drain(Consumer<CacheNode<T>> consumer)
+        {
+            long read = this.readCounter;
+            long write = this.writeCounter.get();
+
+            for (; read < write; ++read) {
+                int index = (int) read & STRIPE_MASK;
+                CacheNode<T> node = this.buffer.get(index);
+
+                if (node == null) {
+                    // Not published yet
+                    break;
+                }
+
+                this.buffer.lazySet(index, null);
+                consumer.accept(node);
+            }
+
+            this.readCounter = read;
+        }
+    }
+
+    /**
+     * Default constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public ReadBuffer()
+    {
+        int count = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; ++i) {
+            this.stripes[i] = new Stripe<>();
+        }
+        this.stripesMask = count - 1;
+    }
+
+    /**
+     * Record an access.
+     *
+     * @param node the accessed node
+     * @return true if the buffer should be drained
+     */
+    public boolean offer(CacheNode<T> node)
+    {
+        return this.stripes[(int) Thread.currentThread().getId() & this.stripesMask].offer(node);
+    }
+
+    /**
+     * Pass the recorded accesses to the provided consumer. Only one thread at a time is expected to drain the buffer.
+     *
+     * @param consumer the consumer of the recorded accesses
+     */
+    public void drain(Consumer<CacheNode<T>> consumer)
+    {
+        for (Stripe<T> stripe : this.stripes) {
+            stripe.drain(consumer);
+        }
+    }
+}
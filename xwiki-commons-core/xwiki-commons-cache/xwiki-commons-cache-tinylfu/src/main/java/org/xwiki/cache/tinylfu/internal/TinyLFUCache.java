@@ -0,0 +1,592 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.EntryWeigher;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.cache.tinylfu.internal.CacheNode.Queue;
+import org.xwiki.cache.tinylfu.internal.event.TinyLFUCacheEntryEvent;
+import org.xwiki.cache.util.AbstractCache;
+
+/**
+ * Local {@link org.xwiki.cache.Cache} based on a {@link ConcurrentHashMap} and the W-TinyLFU eviction policy.
+ * <p>
+ * New entries enter a small admission window (1% of the maximum number of entries) managed as a LRU. The entries
+ * leaving the window are moved to the main space, a segmented LRU made of a probation and a protected (80%) segment.
+ * When the cache is full, the entry which entered the probation segment last competes with the least recently used
+ * one of that segment and the one which was the least frequently accessed recently (according to a
+ * {@link FrequencySketch}) is evicted. This keeps the frequently used entries in the cache even when many entries are
+ * used only once.
+ * <p>
+ * Reads don't take any lock: the accesses are recorded in a {@link ReadBuffer} and applied to the eviction policy in
+ * batch. Writes update the map and the eviction policy while holding a lock. The events are always sent outside of
+ * that lock.
+ * <p>
+ * Supported {@link LRUEvictionConfiguration} properties are the maximum number of entries, the maximum weight (in which
+ * case the window and the protected segment are sized in weight instead of number of entries), the lifespan and the
+ * maximum idle time. The expired entries are removed when accessed and by a background task every
+ * {@value #DEFAULT_EXPIRATION_WAKEUPINTERVAL} milliseconds (see {@link #CONFX_EXPIRATION_WAKEUPINTERVAL}).
+ *
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class TinyLFUCache<T> extends AbstractCache<T>
+{
+    /**
+     * The name of the eviction configuration property containing the interval in milliseconds between two searches
+     * for expired entries.
+     */
+    public static final String CONFX_EXPIRATION_WAKEUPINTERVAL = "tinylfu.expiration.wakeupinterval";
+
+    /**
+     * The default interval in milliseconds between two searches for expired entries.
+     */
+    public static final long DEFAULT_EXPIRATION_WAKEUPINTERVAL = 1000L;
+
+    private static final int PERCENT = 100;
+
+    private static final int WINDOW_PERCENT = 1;
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * The number of entries for which frequencies are tracked when the cache is only limited by weight.
+     */
+    private static final int DEFAULT_SKETCH_SIZE = 1024;
+
+    private final ConcurrentMap<String, CacheNode<T>> data = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final ReadBuffer<T> readBuffer = new ReadBuffer<>();
+
+    private final AccessOrderDeque<T> window = new AccessOrderDeque<>();
+
+    private final AccessOrderDeque<T> probation = new AccessOrderDeque<>();
+
+    private final AccessOrderDeque<T> protectedSegment = new AccessOrderDeque<>();
+
+    private final FrequencySketch sketch;
+
+    private final int maximumSize;
+
+    private final long maximumWeight;
+
+    private final EntryWeigher<? super T> weigher;
+
+    private final long windowMaximum;
+
+    private final long protectedMaximum;
+
+    private final long lifespan;
+
+    private final long maxIdle;
+
+    private final ScheduledFuture<?> expirationTask;
+
+    /**
+     * @param configuration the configuration of the cache
+     * @param scheduler the scheduler used to regularly remove the expired entries
+     */
+    public TinyLFUCache(CacheConfiguration configuration, ScheduledExecutorService scheduler)
+    {
+        super(configuration);
+
+        EntryEvictionConfiguration eviction = null;
+        if (configuration != null) {
+            eviction = (EntryEvictionConfiguration) configuration.get(EntryEvictionConfiguration.CONFIGURATIONID);
+        }
+
+        this.maximumSize = (int) getLong(eviction, LRUEvictionConfiguration.MAXENTRIES_ID, 0);
+        this.maximumWeight = getLong(eviction, EntryEvictionConfiguration.MAXWEIGHT_ID, 0);
+        this.weigher = getWeigher(eviction);
+
+        // The segments are sized in weight when the cache is limited by weight
+        long capacity = isWeighted() ? this.maximumWeight : this.maximumSize;
+        this.windowMaximum = Math.max(1, capacity * WINDOW_PERCENT / PERCENT);
+        this.protectedMaximum = (capacity - this.windowMaximum) * PROTECTED_PERCENT / PERCENT;
+        if (this.maximumSize > 0 || !isWeighted()) {
+            this.sketch = new FrequencySketch(this.maximumSize);
+        } else {
+            this.sketch = new FrequencySketch(DEFAULT_SKETCH_SIZE);
+        }
+
+        this.lifespan = TimeUnit.SECONDS.toNanos(getLong(eviction, LRUEvictionConfiguration.LIFESPAN_ID, 0));
+        this.maxIdle = TimeUnit.SECONDS.toNanos(getLong(eviction, EntryEvictionConfiguration.TIMETOLIVE_ID, 0));
+
+        if (isExpiring() && scheduler != null) {
+            long interval = getLong(eviction, CONFX_EXPIRATION_WAKEUPINTERVAL, DEFAULT_EXPIRATION_WAKEUPINTERVAL);
+            this.expirationTask =
+                scheduler.scheduleWithFixedDelay(this::expireEntries, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.expirationTask = null;
+        }
+    }
+
+    private static long getLong(EntryEvictionConfiguration eviction, String key, long defaultValue)
+    {
+        if (eviction != null && eviction.get(key) instanceof Number) {
+            return ((Number) eviction.get(key)).longValue();
+        }
+
+        return defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private EntryWeigher<? super T> getWeigher(EntryEvictionConfiguration eviction)
+    {
+        if (this.maximumWeight > 0) {
+            return (EntryWeigher<? super T>) eviction.getWeigher();
+        }
+
+        return null;
+    }
+
+    private boolean isWeighted()
+    {
+        return this.maximumWeight > 0;
+    }
+
+    private long weigh(String key, T value)
+    {
+        if (this.weigher != null) {
+            return this.weigher.weigh(key, value);
+        }
+
+        return 0;
+    }
+
+    private long getUsed(AccessOrderDeque<T> deque)
+    {
+        if (isWeighted()) {
+            return deque.weight();
+        }
+
+        return deque.size();
+    }
+
+    private boolean isExpiring()
+    {
+        return this.lifespan > 0 || this.maxIdle > 0;
+    }
+
+    private boolean isExpired(CacheNode<T> node, long now)
+    {
+        return (this.lifespan > 0 && now - node.getWriteTime() >= this.lifespan)
+            || (this.maxIdle > 0 && now - node.getAccessTime() >= this.maxIdle);
+    }
+
+    @Override
+    public T get(String key)
+    {
+        CacheNode<T> node = this.data.get(key);
+
+        T value = null;
+        if (node != null) {
+            if (isExpiring()) {
+                long now = System.nanoTime();
+
+                if (isExpired(node, now)) {
+                    expire(node);
+                } else {
+                    node.setAccessTime(now);
+                    value = node.getValue();
+                }
+            } else {
+                value = node.getValue();
+            }
+
+            if (value != null && this.readBuffer.offer(node)) {
+                tryDrainReadBuffer();
+            }
+        }
+
+        this.statistics.recordGet(value);
+
+        return value;
+    }
+
+    @Override
+    public void set(String key, T value)
+    {
+        if (value == null) {
+            remove(key);
+
+            return;
+        }
+
+        long now = System.nanoTime();
+        // Computing the weight can be expensive so it's done outside of the lock
+        long weight = weigh(key, value);
+        List<CacheNode<T>> removed = new ArrayList<>(0);
+        T previousValue = null;
+
+        this.evictionLock.lock();
+        try {
+            drainReadBuffer();
+
+            CacheNode<T> node = this.data.get(key);
+
+            if (node != null && isExpired(node, now)) {
+                removeNode(node);
+                removed.add(node);
+                node = null;
+            }
+
+            if (node != null) {
+                previousValue = node.getValue();
+                node.setValue(value, now);
+                updateWeight(node, weight);
+                onAccess(node);
+            } else {
+                node = new CacheNode<>(key, value, weight, now);
+                this.data.put(key, node);
+                onAdd(node);
+            }
+
+            evict(node, removed);
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        if (previousValue != null) {
+            if (previousValue != value) {
+                disposeCacheValue(previousValue);
+            }
+
+            sendEntryModifiedEvent(createEvent(key, value));
+        } else {
+            sendEntryAddedEvent(createEvent(key, value));
+        }
+
+        sendEvictedEvents(removed);
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        CacheNode<T> node;
+
+        this.evictionLock.lock();
+        try {
+            node = this.data.remove(key);
+
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        if (node != null) {
+            sendEntryRemovedEvent(createEvent(key, node.getValue()));
+        }
+    }
+
+    @Override
+    public void removeAll()
+    {
+        List<CacheNode<T>> removed;
+
+        this.evictionLock.lock();
+        try {
+            removed = clear();
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        for (CacheNode<T> node : removed) {
+            sendEntryRemovedEvent(createEvent(node.getKey(), node.getValue()));
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        super.dispose();
+
+        if (this.expirationTask != null) {
+            this.expirationTask.cancel(false);
+        }
+
+        this.evictionLock.lock();
+        try {
+            clear();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the expired entries.
+     */
+    public void expireEntries()
+    {
+        long now = System.nanoTime();
+        List<CacheNode<T>> removed = new ArrayList<>(0);
+
+        this.evictionLock.lock();
+        try {
+            drainReadBuffer();
+
+            for (CacheNode<T> node : this.data.values()) {
+                if (isExpired(node, now)) {
+                    removeNode(node);
+                    removed.add(node);
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        sendEvictedEvents(removed);
+    }
+
+    /**
+     * @return the number of entries in the cache, including the expired entries which were not removed yet
+     */
+    public int size()
+    {
+        return this.data.size();
+    }
+
+    private void expire(CacheNode<T> node)
+    {
+        boolean removed = false;
+
+        this.evictionLock.lock();
+        try {
+            if (node.isAlive()) {
+                removeNode(node);
+                removed = true;
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        if (removed) {
+            this.statistics.recordEvictions(1);
+            sendEntryRemovedEvent(createEvent(node.getKey(), node.getValue()));
+        }
+    }
+
+    private List<CacheNode<T>> clear()
+    {
+        List<CacheNode<T>> removed = new ArrayList<>(this.data.values());
+
+        this.statistics.recordWeight(
+            -(this.window.weight() + this.probation.weight() + this.protectedSegment.weight()));
+
+        this.data.clear();
+        for (CacheNode<T> node : removed) {
+            node.retire();
+        }
+        this.window.clear();
+        this.probation.clear();
+        this.protectedSegment.clear();
+
+        return removed;
+    }
+
+    private void sendEvictedEvents(List<CacheNode<T>> nodes)
+    {
+        if (!nodes.isEmpty()) {
+            this.statistics.recordEvictions(nodes.size());
+
+            for (CacheNode<T> node : nodes) {
+                sendEntryRemovedEvent(createEvent(node.getKey(), node.getValue()));
+            }
+        }
+    }
+
+    private TinyLFUCacheEntryEvent<T> createEvent(String key, T value)
+    {
+        return new TinyLFUCacheEntryEvent<>(new TinyLFUCacheEntry<>(this, key, value));
+    }
+
+    // Eviction policy, all the following methods expect the eviction lock to be held
+
+    private void tryDrainReadBuffer()
+    {
+        if (this.evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer()
+    {
+        this.readBuffer.drain(this::onAccess);
+    }
+
+    private AccessOrderDeque<T> getDeque(Queue queue)
+    {
+        switch (queue) {
+            case PROBATION:
+                return this.probation;
+            case PROTECTED:
+                return this.protectedSegment;
+            default:
+                return this.window;
+        }
+    }
+
+    private void removeNode(CacheNode<T> node)
+    {
+        this.data.remove(node.getKey(), node);
+        unlink(node);
+    }
+
+    private void unlink(CacheNode<T> node)
+    {
+        if (node.isAlive()) {
+            node.retire();
+            getDeque(node.getQueue()).remove(node);
+            if (node.getWeight() != 0) {
+                this.statistics.recordWeight(-node.getWeight());
+            }
+        }
+    }
+
+    private void onAdd(CacheNode<T> node)
+    {
+        this.sketch.increment(node.getKey());
+
+        node.setQueue(Queue.WINDOW);
+        this.window.addLast(node);
+        if (node.getWeight() != 0) {
+            this.statistics.recordWeight(node.getWeight());
+        }
+    }
+
+    private void updateWeight(CacheNode<T> node, long weight)
+    {
+        long delta = weight - node.getWeight();
+
+        if (delta != 0) {
+            getDeque(node.getQueue()).setWeight(node, weight);
+            this.statistics.recordWeight(delta);
+        }
+    }
+
+    private void onAccess(CacheNode<T> node)
+    {
+        if (!node.isAlive()) {
+            return;
+        }
+
+        this.sketch.increment(node.getKey());
+
+        if (node.getQueue() == Queue.PROBATION) {
+            // Accessed again while in probation: promote it
+            this.probation.remove(node);
+            node.setQueue(Queue.PROTECTED);
+            this.protectedSegment.addLast(node);
+
+            while (getUsed(this.protectedSegment) > this.protectedMaximum) {
+                // Demote the least recently used protected entry
+                CacheNode<T> demoted = this.protectedSegment.peekFirst();
+                this.protectedSegment.remove(demoted);
+                demoted.setQueue(Queue.PROBATION);
+                this.probation.addLast(demoted);
+            }
+        } else {
+            getDeque(node.getQueue()).moveToBack(node);
+        }
+    }
+
+    private void evict(CacheNode<T> written, List<CacheNode<T>> removed)
+    {
+        if (this.maximumSize <= 0 && !isWeighted()) {
+            return;
+        }
+
+        if (isWeighted() && written.getWeight() > this.maximumWeight) {
+            // The entry could never fit, don't evict anything else to make room for it
+            removeNode(written);
+            removed.add(written);
+        }
+
+        // Move the entries overflowing the admission window to the probation segment
+        while (getUsed(this.window) > this.windowMaximum) {
+            CacheNode<T> node = this.window.peekFirst();
+            this.window.remove(node);
+            node.setQueue(Queue.PROBATION);
+            this.probation.addLast(node);
+        }
+
+        while (isOverflowing()) {
+            CacheNode<T> victim = selectVictim();
+
+            removeNode(victim);
+            removed.add(victim);
+        }
+    }
+
+    private boolean isOverflowing()
+    {
+        if (this.maximumSize > 0
+            && this.window.size() + this.probation.size() + this.protectedSegment.size() > this.maximumSize) {
+            return true;
+        }
+
+        return isWeighted()
+            && this.window.weight() + this.probation.weight() + this.protectedSegment.weight() > this.maximumWeight;
+    }
+
+    private CacheNode<T> selectVictim()
+    {
+        CacheNode<T> victim = this.probation.peekFirst();
+
+        if (victim == null) {
+            victim = this.protectedSegment.peekFirst();
+
+            if (victim == null) {
+                victim = this.window.peekFirst();
+            }
+
+            return victim;
+        }
+
+        // The last entry which entered the probation segment competes with the least recently used one
+        CacheNode<T> candidate = this.probation.peekLast();
+        if (candidate != victim
+            && this.sketch.frequency(candidate.getKey()) <= this.sketch.frequency(victim.getKey())) {
+            return candidate;
+        }
+
+        return victim;
+    }
+}
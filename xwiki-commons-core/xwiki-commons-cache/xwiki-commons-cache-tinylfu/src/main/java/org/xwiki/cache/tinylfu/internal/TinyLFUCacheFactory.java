@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+
+/**
+ * Create local caches based on the W-TinyLFU eviction policy (see {@link TinyLFUCache}).
+ * <p>
+ * It can be used instead of Infinispan for local caches by setting the {@code cache.defaultLocalCache} configuration
+ * property to {@code tinylfu}.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component
+@Named("tinylfu")
+@Singleton
+public class TinyLFUCacheFactory implements CacheFactory, Disposable
+{
+    private ScheduledExecutorService scheduler;
+
+    private synchronized ScheduledExecutorService getScheduler()
+    {
+        if (this.scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new BasicThreadFactory.Builder().namingPattern("TinyLFU cache expiration").daemon(true)
+                    .priority(Thread.MIN_PRIORITY).build());
+            // Don't keep the tasks of the disposed caches
+            executor.setRemoveOnCancelPolicy(true);
+
+            this.scheduler = executor;
+        }
+
+        return this.scheduler;
+    }
+
+    @Override
+    public <T> Cache<T> newCache(CacheConfiguration configuration) throws CacheException
+    {
+        return new TinyLFUCache<>(configuration, getScheduler());
+    }
+
+    @Override
+    public synchronized void dispose() throws ComponentLifecycleException
+    {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+}
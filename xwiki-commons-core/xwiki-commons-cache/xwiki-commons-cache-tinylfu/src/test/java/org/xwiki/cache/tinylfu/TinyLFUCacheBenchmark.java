@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.helpers.NOPLogger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.infinispan.internal.InfinispanCacheFactory;
+import org.xwiki.cache.tinylfu.internal.TinyLFUCacheFactory;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.util.ReflectionUtils;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compare the throughput and hit rate of the TinyLFU and Infinispan caches with a skewed access distribution (a few
+ * keys are accessed much more often than the others), missing values being stored in the cache.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TinyLFUCacheBenchmark
+{
+    private static final int MAX_ENTRIES = 1000;
+
+    private static final int KEYS = 20000;
+
+    private static final int ACCESSES = 1 << 16;
+
+    @Param({ "tinylfu", "infinispan" })
+    private String implementation;
+
+    private CacheFactory factory;
+
+    private Cache<String> cache;
+
+    private String[] accesses;
+
+    private int index;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        if (this.implementation.equals("infinispan")) {
+            InfinispanCacheFactory infinispanFactory = new InfinispanCacheFactory();
+            ReflectionUtils.setFieldValue(infinispanFactory, "componentManager", mock(ComponentManager.class));
+            ReflectionUtils.setFieldValue(infinispanFactory, "logger", NOPLogger.NOP_LOGGER);
+            infinispanFactory.initialize();
+            this.factory = infinispanFactory;
+        } else {
+            this.factory = new TinyLFUCacheFactory();
+        }
+
+        this.cache = this.factory.newCache(new LRUCacheConfiguration("benchmark", MAX_ENTRIES));
+
+        // Skewed distribution: the lower the key the more often it's accessed
+        Random random = new Random(42);
+        this.accesses = new String[ACCESSES];
+        for (int i = 0; i < ACCESSES; ++i) {
+            this.accesses[i] = "key" + (int) (KEYS * Math.pow(random.nextDouble(), 4));
+        }
+
+        this.cache.set(this.accesses[0], this.accesses[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        System.out.format("%n%s hit rate: %.3f%n", this.implementation, this.cache.getStatistics().getHitRate());
+
+        this.cache.dispose();
+        ((Disposable) this.factory).dispose();
+    }
+
+    @Benchmark
+    public String getOrSet()
+    {
+        String key = this.accesses[this.index++ & (ACCESSES - 1)];
+
+        String value = this.cache.get(key);
+        if (value == null) {
+            value = key;
+            this.cache.set(key, value);
+        }
+
+        return value;
+    }
+
+    @Benchmark
+    public String getHit()
+    {
+        return this.cache.get(this.accesses[0]);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(TinyLFUCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.cache.internal.DefaultCacheFactory;
+import org.xwiki.cache.internal.DefaultCacheManager;
+import org.xwiki.cache.internal.DefaultCacheManagerConfiguration;
+import org.xwiki.cache.tests.AbstractEvictionGenericTestCache;
+import org.xwiki.cache.tinylfu.internal.TinyLFUCache;
+import org.xwiki.cache.tinylfu.internal.TinyLFUCacheFactory;
+import org.xwiki.test.annotation.ComponentList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link TinyLFUCache}.
+ *
+ * @version $Id$
+ */
+@ComponentList({
+    TinyLFUCacheFactory.class,
+    DefaultCacheManager.class,
+    DefaultCacheFactory.class,
+    DefaultCacheManagerConfiguration.class
+})
+public class TinyLFUCacheTest extends AbstractEvictionGenericTestCache
+{
+    public TinyLFUCacheTest()
+    {
+        super("tinylfu", true);
+    }
+
+    @Override
+    protected void customizeEviction(EntryEvictionConfiguration eviction)
+    {
+        // Force expiration thread to wakeup often
+        eviction.put(TinyLFUCache.CONFX_EXPIRATION_WAKEUPINTERVAL, 100);
+    }
+
+    @Test
+    public void frequentlyUsedEntriesSurviveScan() throws Exception
+    {
+        Cache<Object> cache = getCacheFactory().newCache(new LRUCacheConfiguration("test", 100));
+
+        for (int i = 0; i < 50; ++i) {
+            cache.set("hot" + i, i);
+        }
+        // Make sure the accesses are applied to the eviction policy
+        for (int round = 0; round < 5; ++round) {
+            for (int i = 0; i < 50; ++i) {
+                cache.get("hot" + i);
+            }
+            cache.set("trigger", round);
+        }
+
+        // Entries used only once should not push out the frequently used ones
+        for (int i = 0; i < 1000; ++i) {
+            cache.set("cold" + i, i);
+        }
+
+        int hits = 0;
+        for (int i = 0; i < 50; ++i) {
+            if (cache.get("hot" + i) != null) {
+                ++hits;
+            }
+        }
+
+        assertEquals(50, hits);
+        assertEquals(100, ((TinyLFUCache<Object>) cache).size());
+        assertNotNull(cache.getStatistics());
+        assertEquals(1051 - 100, cache.getStatistics().getEvictionCount());
+
+        cache.dispose();
+    }
+
+    @Test
+    public void weightEviction() throws Exception
+    {
+        LRUCacheConfiguration configuration = new LRUCacheConfiguration("test");
+        LRUEvictionConfiguration eviction = configuration.getLRUEvictionConfiguration();
+        eviction.setMaxWeight(100);
+        eviction.setWeigher((String key, String value) -> value.length());
+
+        Cache<String> cache = getCacheFactory().newCache(configuration);
+
+        cache.set("a", StringUtils.repeat('a', 30));
+        cache.set("b", StringUtils.repeat('b', 30));
+        cache.set("c", StringUtils.repeat('c', 30));
+
+        assertEquals(90, cache.getStatistics().getTotalWeight());
+
+        // Does not fit anymore
+        cache.set("d", StringUtils.repeat('d', 30));
+
+        assertEquals(3, ((TinyLFUCache<String>) cache).size());
+        assertEquals(90, cache.getStatistics().getTotalWeight());
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+
+        // The new entry was not used more than the existing ones so it's the one rejected
+        assertNull(cache.get("d"));
+
+        // Updating a value updates the weight
+        cache.set("a", "a");
+
+        assertEquals(61, cache.getStatistics().getTotalWeight());
+
+        // An entry heavier than the maximum is never kept and does not evict anything else
+        cache.set("e", StringUtils.repeat('e', 101));
+
+        assertNull(cache.get("e"));
+        assertEquals(3, ((TinyLFUCache<String>) cache).size());
+        assertEquals(61, cache.getStatistics().getTotalWeight());
+
+        cache.removeAll();
+
+        assertEquals(0, cache.getStatistics().getTotalWeight());
+
+        cache.dispose();
+    }
+}
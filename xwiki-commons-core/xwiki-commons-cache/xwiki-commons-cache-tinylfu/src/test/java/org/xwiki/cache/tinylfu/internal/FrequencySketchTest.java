@@ -0,0 +1,58 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link FrequencySketch}.
+ *
+ * @version $Id$
+ */
+public class FrequencySketchTest
+{
+    @Test
+    public void incrementAndReset()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+
+        assertEquals(0, sketch.frequency("key"));
+
+        for (int i = 0; i < 5; ++i) {
+            sketch.increment("key");
+        }
+        assertEquals(5, sketch.frequency("key"));
+
+        // Counters are saturated at 15
+        for (int i = 0; i < 20; ++i) {
+            sketch.increment("key");
+        }
+        assertEquals(15, sketch.frequency("key"));
+
+        // Recording many other accesses ages the counters
+        for (int i = 0; i < 160; ++i) {
+            sketch.increment("other" + i);
+        }
+        assertTrue(sketch.frequency("key") < 15);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculate checksums of the classpath used to decide if the {@link ComponentDescriptorIndex} is still valid.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+final class ClasspathChecksum
+{
+    static final String FILE_PROTOCOL = "file";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathChecksum.class);
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    private ClasspathChecksum()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param classLoader the classloader
+     * @param jarChecksums filled with the checksum of each JAR file of the classpath
+     * @return a checksum of all the JAR files and of the class files of all the directories of the classloader and
+     *         its parents
+     */
+    static long getClasspathChecksum(ClassLoader classLoader, Map<String, Long> jarChecksums)
+    {
+        CRC32 checksum = new CRC32();
+
+        for (File entry : getClasspath(classLoader)) {
+            checksum.update(entry.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+
+            try {
+                if (entry.isDirectory()) {
+                    updateChecksum(checksum, entry);
+                } else if (entry.isFile()) {
+                    long jarChecksum = getJarChecksum(entry);
+                    jarChecksums.put(entry.getAbsolutePath(), jarChecksum);
+                    checksum.update(Long.toString(jarChecksum).getBytes(StandardCharsets.US_ASCII));
+                }
+            } catch (IOException e) {
+                // Make sure the index is not reused
+                LOGGER.debug("Failed to calculate the checksum of [{}]", entry, e);
+                checksum.update(Long.toString(System.nanoTime()).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        return checksum.getValue();
+    }
+
+    /**
+     * @param jarFile the JAR file
+     * @return a checksum of the content of the JAR file, computed from the CRC of all its entries
+     * @throws IOException when failing to read the JAR file
+     */
+    static long getJarChecksum(File jarFile) throws IOException
+    {
+        CRC32 checksum = new CRC32();
+
+        try (ZipFile zipFile = new ZipFile(jarFile)) {
+            for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+                ZipEntry entry = entries.nextElement();
+
+                checksum.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                checksum.update(Long.toString(entry.getCrc()).getBytes(StandardCharsets.US_ASCII));
+                checksum.update(Long.toString(entry.getSize()).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        return checksum.getValue();
+    }
+
+    private static Set<File> getClasspath(ClassLoader classLoader)
+    {
+        Set<File> classpath = new LinkedHashSet<>();
+
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    if (url.getProtocol().equals(FILE_PROTOCOL)) {
+                        try {
+                            classpath.add(new File(url.toURI()));
+                        } catch (Exception e) {
+                            LOGGER.debug("Unsupported classpath URL [{}]", url, e);
+                        }
+                    }
+                }
+            }
+        }
+
+        // The application classloader is not a URLClassLoader starting with Java 9
+        for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                classpath.add(new File(path));
+            }
+        }
+
+        return classpath;
+    }
+
+    private static void updateChecksum(CRC32 checksum, File directory) throws IOException
+    {
+        Path root = directory.toPath();
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Iterator<Path> it = paths.sorted().iterator(); it.hasNext();) {
+                Path path = it.next();
+                if (path.toString().endsWith(CLASS_EXTENSION)) {
+                    checksum.update(root.relativize(path).toString().getBytes(StandardCharsets.UTF_8));
+                    checksum.update(Long.toString(Files.size(path)).getBytes(StandardCharsets.US_ASCII));
+                    checksum.update(Long.toString(Files.getLastModifiedTime(path).toMillis())
+                        .getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.xwiki.component.annotation;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -35,6 +36,12 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -48,6 +55,7 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
 import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.stability.Unstable;
 
 /**
  * Dynamically loads all components defined using Annotations and declared in META-INF/components.txt files.
@@ -72,6 +80,26 @@
     @Deprecated
     public static final String COMPONENT_OVERRIDE_LIST = "META-INF/component-overrides.txt";
 
+    /**
+     * The system property which can be used to disable the parallel creation of the component descriptors.
+     *
+     * @since 10.0RC1
+     */
+    public static final String PROPERTY_PARALLEL = "xwiki.component.annotation.parallel";
+
+    /**
+     * The system property indicating the directory where to store the index of the component descriptors found in JAR
+     * files.
+     *
+     * @since 10.0RC1
+     */
+    public static final String PROPERTY_INDEX_DIRECTORY = "xwiki.component.annotation.indexDirectory";
+
+    /**
+     * Below this number of components creating the descriptors in parallel does not worth the cost of the threads.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
     /**
      * The encoding used to parse component list files.
      */
@@ -82,11 +110,64 @@
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ComponentAnnotationLoader.class);
 
+    /**
+     * Indicate if the summary of the loading of the components declared in the classloader has already been logged at
+     * info level.
+     */
+    private static final AtomicBoolean SUMMARY_LOGGED = new AtomicBoolean();
+
     /**
      * Factory to create a Component Descriptor from an annotated class.
      */
     private ComponentDescriptorFactory factory = new ComponentDescriptorFactory();
 
+    /**
+     * @see #setParallel(boolean)
+     */
+    private boolean parallel = !"false".equals(System.getProperty(PROPERTY_PARALLEL));
+
+    /**
+     * @see #setIndexDirectory(File)
+     */
+    private File indexDirectory;
+
+    /**
+     * Default constructor.
+     */
+    public ComponentAnnotationLoader()
+    {
+        String directory = System.getProperty(PROPERTY_INDEX_DIRECTORY);
+        if (directory != null) {
+            this.indexDirectory = new File(directory);
+        }
+    }
+
+    /**
+     * @param parallel true if the component descriptors should be created in parallel when there are many components
+     *            to register (enabled by default)
+     * @since 10.0RC1
+     */
+    @Unstable
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Indicate where to store the index of the descriptors of the components found in JAR files, which make the next
+     * {@link #initialize(ComponentManager, ClassLoader)} a lot faster since it does not need to parse annotations of
+     * components coming from JAR files which did not change. Something like a directory in the permanent directory is
+     * a good place.
+     *
+     * @param indexDirectory the directory where to store the index, null to disable it (the default)
+     * @since 10.0RC1
+     */
+    @Unstable
+    public void setIndexDirectory(File indexDirectory)
+    {
+        this.indexDirectory = indexDirectory;
+    }
+
     /**
      * Loads all components defined using annotations.
      *
@@ -97,14 +178,24 @@
     public void initialize(ComponentManager manager, ClassLoader classLoader)
     {
         try {
+            long start = System.nanoTime();
+
+            ComponentDescriptorIndex index = null;
+            if (this.indexDirectory != null) {
+                index = new ComponentDescriptorIndex(this.indexDirectory,
+                    this.factory.getComponentDependencyFactories(), classLoader);
+            }
+            Map<String, String> sources = new HashMap<>();
+
             // Find all declared components by retrieving the list defined in COMPONENT_LIST.
-            List<ComponentDeclaration> componentDeclarations = getDeclaredComponents(classLoader, COMPONENT_LIST);
+            List<ComponentDeclaration> componentDeclarations =
+                getDeclaredComponents(classLoader, COMPONENT_LIST, index, sources);
 
             // Find all the Component overrides and adds them to the bottom of the list as component declarations with
             // the highest priority of 0. This is purely for backward compatibility since the override files is now
             // deprecated.
             List<ComponentDeclaration> componentOverrideDeclarations =
-                getDeclaredComponents(classLoader, COMPONENT_OVERRIDE_LIST);
+                getDeclaredComponents(classLoader, COMPONENT_OVERRIDE_LIST, index, sources);
             for (ComponentDeclaration componentOverrideDeclaration : componentOverrideDeclarations) {
                 // Since the old way to declare an override was to define it in both a component.txt and a
                 // component-overrides.txt file we first need to remove the override component declaration stored in
@@ -115,7 +206,13 @@ public void initialize(ComponentManager manager, ClassLoader classLoader)
                     .getImplementationClassName(), 0));
             }
 
-            initialize(manager, classLoader, componentDeclarations);
+            long declarationsTime = System.nanoTime() - start;
+
+            register(manager, classLoader, componentDeclarations, index, sources, declarationsTime);
+
+            if (index != null) {
+                index.save();
+            }
         } catch (Exception e) {
             // Make sure we make the calling code fail in order to fail fast and prevent the application to start
             // if something is amiss.
@@ -145,36 +242,40 @@ public void initialize(ComponentManager manager, ClassLoader classLoader,
      */
     public void register(ComponentManager manager, ClassLoader classLoader,
         List<ComponentDeclaration> componentDeclarations)
+    {
+        register(manager, classLoader, componentDeclarations, null, null, -1);
+    }
+
+    private void register(ComponentManager manager, ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, ComponentDescriptorIndex index, Map<String, String> sources,
+        long declarationsTime)
     {
         try {
             // 2) For each component class name found, load its class and use introspection to find the necessary
             // annotations required to create a Component Descriptor.
+            long start = System.nanoTime();
+            List<List<ComponentDescriptor<?>>> componentsDescriptors =
+                createComponentsDescriptors(classLoader, componentDeclarations, index, sources);
+            long descriptorsTime = System.nanoTime() - start;
+
+            // Priorities are resolved sequentially in the order of the declarations whatever the way the descriptors
+            // were created so that the result (and the warnings) are always the same.
+            start = System.nanoTime();
             Map<RoleHint<?>, ComponentDescriptor<?>> descriptorMap =
                 new HashMap<RoleHint<?>, ComponentDescriptor<?>>();
             Map<RoleHint<?>, Integer> priorityMap = new HashMap<RoleHint<?>, Integer>();
 
-            for (ComponentDeclaration componentDeclaration : componentDeclarations) {
-                Class<?> componentClass;
-                try {
-                    componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
-                } catch (Exception e) {
-                    throw new RuntimeException(
-                        String.format("Failed to load component class [%s] for annotation parsing",
-                            componentDeclaration.getImplementationClassName()), e);
-                }
+            for (int i = 0; i < componentDeclarations.size(); ++i) {
+                ComponentDeclaration componentDeclaration = componentDeclarations.get(i);
 
-                // Look for ComponentRole annotations and register one component per ComponentRole found
-                for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
-                    for (ComponentDescriptor<?> componentDescriptor : this.factory.createComponentDescriptors(
-                        componentClass, componentRoleType)) {
-                        // If there's already a existing role/hint in the list of descriptors then decide which one
-                        // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
-                        RoleHint<?> roleHint =
-                            new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
-
-                        addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
-                            true);
-                    }
+                for (ComponentDescriptor<?> componentDescriptor : componentsDescriptors.get(i)) {
+                    // If there's already a existing role/hint in the list of descriptors then decide which one
+                    // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
+                    RoleHint<?> roleHint =
+                        new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
+
+                    addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
+                        true);
                 }
             }
 
@@ -182,6 +283,24 @@ public void register(ComponentManager manager, ClassLoader classLoader,
             for (ComponentDescriptor<?> descriptor : descriptorMap.values()) {
                 manager.registerComponent(descriptor);
             }
+            long registrationTime = System.nanoTime() - start;
+
+            if (declarationsTime >= 0) {
+                long hits = index != null ? index.getHits() : 0;
+                // Only the first load is logged at info level (the boot of the application) since the loader is also
+                // used a lot in tests
+                logSummary(SUMMARY_LOGGED.compareAndSet(false, true),
+                    "Registered [{}] components in [{}] ms (declarations: [{}] ms, descriptors: [{}] ms with [{}] "
+                        + "index hits and [{}] index misses, created in parallel: [{}], registration: [{}] ms)",
+                    descriptorMap.size(), toMilliseconds(declarationsTime + descriptorsTime + registrationTime),
+                    toMilliseconds(declarationsTime), toMilliseconds(descriptorsTime), hits,
+                    index != null ? componentDeclarations.size() - hits : componentDeclarations.size(),
+                    isParallel(componentDeclarations), toMilliseconds(registrationTime));
+            } else {
+                LOGGER.debug("Registered [{}] components in [{}] ms (descriptors: [{}] ms, registration: [{}] ms)",
+                    descriptorMap.size(), toMilliseconds(descriptorsTime + registrationTime),
+                    toMilliseconds(descriptorsTime), toMilliseconds(registrationTime));
+            }
         } catch (Exception e) {
             // Make sure we make the calling code fail in order to fail fast and prevent the application to start
             // if something is amiss.
@@ -189,6 +308,94 @@ public void register(ComponentManager manager, ClassLoader classLoader,
         }
     }
 
+    private static void logSummary(boolean info, String message, Object... arguments)
+    {
+        if (info) {
+            LOGGER.info(message, arguments);
+        } else {
+            LOGGER.debug(message, arguments);
+        }
+    }
+
+    private static long toMilliseconds(long nanoseconds)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanoseconds);
+    }
+
+    private boolean isParallel(List<ComponentDeclaration> componentDeclarations)
+    {
+        return this.parallel && Runtime.getRuntime().availableProcessors() >= 2
+            && componentDeclarations.size() >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * @return the descriptors of each passed component declaration, in the same order
+     */
+    private List<List<ComponentDescriptor<?>>> createComponentsDescriptors(ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, ComponentDescriptorIndex index, Map<String, String> sources)
+        throws InterruptedException
+    {
+        Function<ComponentDeclaration, List<ComponentDescriptor<?>>> creator =
+            declaration -> createComponentDescriptors(classLoader, declaration, index,
+                sources != null ? sources.get(declaration.getImplementationClassName()) : null);
+
+        if (!isParallel(componentDeclarations)) {
+            return componentDeclarations.stream().map(creator).collect(Collectors.toList());
+        }
+
+        // Use a dedicated pool to not compete with (or be blocked by) other tasks using the common pool. A parallel
+        // stream started from one of the pool threads is executed in this pool and keeps the declarations order.
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return pool.submit(() -> componentDeclarations.parallelStream().map(creator).collect(Collectors.toList()))
+                .get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new RuntimeException("Failed to create the component descriptors", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<ComponentDescriptor<?>> createComponentDescriptors(ClassLoader classLoader,
+        ComponentDeclaration componentDeclaration, ComponentDescriptorIndex index, String source)
+    {
+        String className = componentDeclaration.getImplementationClassName();
+
+        if (index != null && source != null) {
+            List<ComponentDescriptor<?>> descriptors = index.get(source, className, classLoader);
+            if (descriptors != null) {
+                return descriptors;
+            }
+        }
+
+        Class<?> componentClass;
+        try {
+            componentClass = classLoader.loadClass(className);
+        } catch (Exception e) {
+            throw new RuntimeException(
+                String.format("Failed to load component class [%s] for annotation parsing", className), e);
+        }
+
+        // Look for ComponentRole annotations and register one component per ComponentRole found
+        List<ComponentDescriptor<?>> descriptors = new ArrayList<>();
+        for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
+            for (ComponentDescriptor<?> componentDescriptor : this.factory.createComponentDescriptors(componentClass,
+                componentRoleType)) {
+                descriptors.add(componentDescriptor);
+            }
+        }
+
+        if (index != null && source != null) {
+            index.put(source, className, descriptors);
+        }
+
+        return descriptors;
+    }
+
     private void addComponent(Map<RoleHint<?>, ComponentDescriptor<?>> descriptorMap,
         Map<RoleHint<?>, Integer> priorityMap, RoleHint<?> roleHint, ComponentDescriptor<?> componentDescriptor,
         ComponentDeclaration componentDeclaration, boolean warn)
@@ -431,12 +638,14 @@ public Set<Class<?>> findComponentRoleClasses(Class<?> componentClass)
      *
      * @param classLoader the classloader to use to find the resources
      * @param location the name of the resources to look for
+     * @param index the index of the component descriptors, null if disabled
+     * @param sources filled with the identifier of the indexed JAR file declaring each component
      * @return the list of component implementation class names
      * @throws IOException in case of an error loading the component list resource
      * @since 3.3M1
      */
-    private List<ComponentDeclaration> getDeclaredComponents(ClassLoader classLoader, String location)
-        throws IOException
+    private List<ComponentDeclaration> getDeclaredComponents(ClassLoader classLoader, String location,
+        ComponentDescriptorIndex index, Map<String, String> sources) throws IOException
     {
         List<ComponentDeclaration> annotatedClassNames = new ArrayList<ComponentDeclaration>();
         Enumeration<URL> urls = classLoader.getResources(location);
@@ -448,7 +657,16 @@ private List<ComponentDeclaration> getDeclaredComponents(ClassLoader classLoader
             InputStream componentListStream = url.openStream();
 
             try {
-                annotatedClassNames.addAll(getDeclaredComponents(componentListStream));
+                List<ComponentDeclaration> declarations = getDeclaredComponents(componentListStream);
+
+                String source = index != null ? index.addSource(url) : null;
+                if (source != null) {
+                    for (ComponentDeclaration declaration : declarations) {
+                        sources.putIfAbsent(declaration.getImplementationClassName(), source);
+                    }
+                }
+
+                annotatedClassNames.addAll(declarations);
             } finally {
                 componentListStream.close();
             }
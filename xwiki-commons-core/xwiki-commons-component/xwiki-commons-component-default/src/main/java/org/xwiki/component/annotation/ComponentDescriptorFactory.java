@@ -47,9 +47,29 @@
      * Load all Component Descriptor Factories implementations using the JDK's Service Loader facility. Note that we
      * cannot use Components to do this since it would be a chicken and egg issue since this factory class is used to
      * initialize Components...
+     * <p>
+     * The factories are loaded once and for all since a {@link ServiceLoader} cannot be iterated by several threads at
+     * the same time and component descriptors can be created in parallel.
      */
-    private ServiceLoader<ComponentDependencyFactory> componentDependencyFactories = ServiceLoader
-        .load(ComponentDependencyFactory.class);
+    private final List<ComponentDependencyFactory> componentDependencyFactories = new ArrayList<>();
+
+    /**
+     * Default constructor.
+     */
+    public ComponentDescriptorFactory()
+    {
+        for (ComponentDependencyFactory factory : ServiceLoader.load(ComponentDependencyFactory.class)) {
+            this.componentDependencyFactories.add(factory);
+        }
+    }
+
+    /**
+     * @return the factories used to create the component dependencies
+     */
+    List<ComponentDependencyFactory> getComponentDependencyFactories()
+    {
+        return this.componentDependencyFactories;
+    }
 
     /**
      * Create component descriptors for the passed component implementation class and component role class. There can be
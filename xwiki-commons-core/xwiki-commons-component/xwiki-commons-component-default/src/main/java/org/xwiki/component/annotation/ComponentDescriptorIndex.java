@@ -0,0 +1,331 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+/**
+ * Binary index of the component descriptors found in each JAR file, stored on disk so that the next start can create
+ * the descriptors without parsing the annotations.
+ * <p>
+ * Each JAR file is identified by its path and a checksum of its content (computed from the CRC of all its entries,
+ * which does not require to read more than the ZIP central directory). The descriptors of a JAR file are forgotten as
+ * soon as its checksum changes. Components coming from anything else than a JAR file (a directory for example) are
+ * never indexed.
+ * <p>
+ * The descriptors also depend on classes coming from other JAR files (the super classes and interfaces of the
+ * components, which provide roles and injected fields), so the whole index is also forgotten as soon as anything
+ * changes in the classpath: the index is associated with a checksum of all the JAR files and of the class files of all
+ * the directories of the classloader and its parents.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+final class ComponentDescriptorIndex
+{
+    /**
+     * The name of the index file in the index directory.
+     */
+    static final String FILE_NAME = "components.index";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentDescriptorIndex.class);
+
+    private static final int VERSION = 2;
+
+    private static final String JAR_SEPARATOR = "!/";
+
+    private final File file;
+
+    private final String signature;
+
+    private final long classpathChecksum;
+
+    /**
+     * The checksums of the JAR files of the classpath.
+     */
+    private final Map<String, Long> checksums = new HashMap<>();
+
+    /**
+     * The JAR files found in the index file.
+     */
+    private final Map<String, IndexedJar> previousJars = new HashMap<>();
+
+    /**
+     * The JAR files currently in the classloader.
+     */
+    private final Map<String, IndexedJar> jars = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private volatile boolean modified;
+
+    /**
+     * The indexed descriptors of a JAR file.
+     *
+     * @version $Id$
+     */
+    private static final class IndexedJar
+    {
+        private final long checksum;
+
+        /**
+         * The serialized descriptors indexed by component implementation class name.
+         */
+        private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+
+        IndexedJar(long checksum)
+        {
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * @param directory the directory where to store the index
+     * @param factories the factories used to create the component dependencies, the index is reset when they change
+     * @param classLoader the classloader containing the components, the index is reset when its classpath changes
+     */
+    ComponentDescriptorIndex(File directory, Iterable<?> factories, ClassLoader classLoader)
+    {
+        this.file = new File(directory, FILE_NAME);
+
+        StringBuilder builder = new StringBuilder();
+        for (Object factory : factories) {
+            builder.append(factory.getClass().getName()).append(',');
+        }
+        this.signature = builder.toString();
+
+        this.classpathChecksum = ClasspathChecksum.getClasspathChecksum(classLoader, this.checksums);
+
+        load();
+    }
+
+    private void load()
+    {
+        if (!this.file.exists()) {
+            return;
+        }
+
+        try (DataInputStream input =
+            new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if (input.readInt() != VERSION || !input.readUTF().equals(this.signature)
+                || input.readLong() != this.classpathChecksum) {
+                LOGGER.debug("Ignoring component index [{}] since it was produced in a different context", this.file);
+
+                return;
+            }
+
+            for (int jarCount = input.readInt(); jarCount > 0; --jarCount) {
+                String path = input.readUTF();
+                IndexedJar jar = new IndexedJar(input.readLong());
+                for (int classCount = input.readInt(); classCount > 0; --classCount) {
+                    String className = input.readUTF();
+                    byte[] descriptors = new byte[input.readInt()];
+                    input.readFully(descriptors);
+                    jar.classes.put(className, descriptors);
+                }
+                this.previousJars.put(path, jar);
+            }
+        } catch (Exception e) {
+            this.previousJars.clear();
+
+            LOGGER.warn("Failed to read the component index [{}], it will be rebuilt", this.file, e);
+        }
+    }
+
+    /**
+     * Register a resource listing components.
+     *
+     * @param url the URL of the components list
+     * @return the identifier of the JAR file containing the resource, null if it cannot be indexed
+     */
+    String addSource(URL url)
+    {
+        File jarFile = getJarFile(url);
+
+        if (jarFile == null) {
+            return null;
+        }
+
+        String path = jarFile.getAbsolutePath();
+
+        if (!this.jars.containsKey(path)) {
+            Long checksum = this.checksums.get(path);
+            if (checksum == null) {
+                try {
+                    checksum = ClasspathChecksum.getJarChecksum(jarFile);
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to calculate the checksum of [{}], not indexing its components", jarFile, e);
+
+                    return null;
+                }
+            }
+
+            IndexedJar previousJar = this.previousJars.get(path);
+            if (previousJar != null && previousJar.checksum == checksum.longValue()) {
+                this.jars.put(path, previousJar);
+            } else {
+                this.jars.put(path, new IndexedJar(checksum));
+                this.modified = true;
+            }
+        }
+
+        return path;
+    }
+
+    private File getJarFile(URL url)
+    {
+        if (url.getProtocol().equals("jar")) {
+            String spec = url.getPath();
+            int index = spec.indexOf(JAR_SEPARATOR);
+            if (index > 0) {
+                try {
+                    URL jarURL = new URL(spec.substring(0, index));
+                    if (jarURL.getProtocol().equals(ClasspathChecksum.FILE_PROTOCOL)) {
+                        return new File(jarURL.toURI());
+                    }
+                } catch (Exception e) {
+                    LOGGER.debug("Unsupported component list URL [{}]", url, e);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param source the identifier of the JAR file declaring the component
+     * @param className the component implementation class name
+     * @param classLoader the classloader to use to resolve the classes
+     * @return the indexed descriptors or null if the component is not indexed
+     */
+    List<ComponentDescriptor<?>> get(String source, String className, ClassLoader classLoader)
+    {
+        IndexedJar jar = this.jars.get(source);
+
+        if (jar != null) {
+            byte[] bytes = jar.classes.get(className);
+
+            if (bytes != null) {
+                try {
+                    List<ComponentDescriptor<?>> descriptors =
+                        ComponentDescriptorSerializer.read(bytes, className, classLoader);
+
+                    this.hits.increment();
+
+                    return descriptors;
+                } catch (Exception e) {
+                    LOGGER.debug("Failed to read indexed descriptors for component [{}]", className, e);
+
+                    jar.classes.remove(className);
+                    this.modified = true;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param source the identifier of the JAR file declaring the component
+     * @param className the component implementation class name
+     * @param descriptors the descriptors to index
+     */
+    void put(String source, String className, List<ComponentDescriptor<?>> descriptors)
+    {
+        IndexedJar jar = this.jars.get(source);
+
+        if (jar != null) {
+            try {
+                jar.classes.put(className, ComponentDescriptorSerializer.write(descriptors));
+                this.modified = true;
+            } catch (IOException e) {
+                // Will be created from the annotations each time
+                LOGGER.debug("Can't index the descriptors of component [{}]: {}", className, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the number of component implementations found in the index
+     */
+    long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * Write the index on disk if it changed.
+     */
+    void save()
+    {
+        if (!this.modified && this.previousJars.keySet().equals(this.jars.keySet())) {
+            return;
+        }
+
+        try {
+            File directory = this.file.getParentFile();
+            directory.mkdirs();
+
+            // Write in a temporary file to not end up with a corrupted index
+            File temporaryFile = File.createTempFile(FILE_NAME, null, directory);
+            try (DataOutputStream output =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                output.writeInt(VERSION);
+                output.writeUTF(this.signature);
+                output.writeLong(this.classpathChecksum);
+                output.writeInt(this.jars.size());
+                for (Map.Entry<String, IndexedJar> entry : this.jars.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue().checksum);
+                    output.writeInt(entry.getValue().classes.size());
+                    for (Map.Entry<String, byte[]> classEntry : entry.getValue().classes.entrySet()) {
+                        output.writeUTF(classEntry.getKey());
+                        output.writeInt(classEntry.getValue().length);
+                        output.write(classEntry.getValue());
+                    }
+                }
+            }
+
+            Files.move(temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to save the component index [{}]", this.file, e);
+        }
+    }
+}
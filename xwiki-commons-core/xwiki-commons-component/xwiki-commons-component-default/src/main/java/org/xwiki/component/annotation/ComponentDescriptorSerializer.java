@@ -0,0 +1,244 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.util.DefaultParameterizedType;
+
+/**
+ * Binary serialization of the component descriptors stored in the {@link ComponentDescriptorIndex}. Only the standard
+ * descriptors and dependencies (the ones created from the annotations) are supported.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+final class ComponentDescriptorSerializer
+{
+    private static final byte TYPE_NULL = 0;
+
+    private static final byte TYPE_CLASS = 1;
+
+    private static final byte TYPE_PARAMETERIZED = 2;
+
+    /**
+     * Thrown when a descriptor cannot be stored in the index.
+     *
+     * @version $Id$
+     */
+    private static final class UnsupportedDescriptorException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedDescriptorException(String message)
+        {
+            super(message);
+        }
+    }
+
+    private ComponentDescriptorSerializer()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param descriptors the descriptors to serialize
+     * @return the serialized descriptors
+     * @throws IOException when the descriptors cannot be serialized
+     */
+    static byte[] write(List<ComponentDescriptor<?>> descriptors) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(descriptors.size());
+            for (ComponentDescriptor<?> descriptor : descriptors) {
+                if (descriptor.getClass() != DefaultComponentDescriptor.class) {
+                    throw new UnsupportedDescriptorException("Unsupported descriptor " + descriptor.getClass());
+                }
+
+                writeType(descriptor.getRoleType(), output);
+                writeString(descriptor.getRoleHint(), output);
+                output.writeUTF(descriptor.getInstantiationStrategy().name());
+                output.writeInt(descriptor.getComponentDependencies().size());
+                for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+                    writeDependency(dependency, output);
+                }
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeDependency(ComponentDependency<?> dependency, DataOutputStream output) throws IOException
+    {
+        if (dependency.getClass() != DefaultComponentDependency.class) {
+            throw new UnsupportedDescriptorException("Unsupported dependency " + dependency.getClass());
+        }
+
+        writeString(dependency.getName(), output);
+        writeType(dependency.getRoleType(), output);
+        writeString(dependency.getRoleHint(), output);
+
+        String[] hints = dependency.getHints();
+        if (hints != null) {
+            output.writeInt(hints.length);
+            for (String hint : hints) {
+                writeString(hint, output);
+            }
+        } else {
+            output.writeInt(-1);
+        }
+
+        Class<?> mappingType = dependency.getMappingType();
+        writeString(mappingType != null ? mappingType.getName() : null, output);
+    }
+
+    private static void writeType(Type type, DataOutputStream output) throws IOException
+    {
+        if (type == null) {
+            output.writeByte(TYPE_NULL);
+        } else if (type instanceof Class) {
+            output.writeByte(TYPE_CLASS);
+            output.writeUTF(((Class<?>) type).getName());
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+
+            output.writeByte(TYPE_PARAMETERIZED);
+            writeType(parameterizedType.getOwnerType(), output);
+            writeType(parameterizedType.getRawType(), output);
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            output.writeInt(arguments.length);
+            for (Type argument : arguments) {
+                writeType(argument, output);
+            }
+        } else {
+            throw new UnsupportedDescriptorException("Unsupported type " + type);
+        }
+    }
+
+    private static void writeString(String value, DataOutputStream output) throws IOException
+    {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    /**
+     * @param bytes the serialized descriptors
+     * @param className the name of the component implementation class
+     * @param classLoader the classloader to use to resolve the classes
+     * @return the descriptors
+     * @throws IOException when failing to parse the descriptors
+     * @throws ClassNotFoundException when a class cannot be found in the classloader
+     */
+    static List<ComponentDescriptor<?>> read(byte[] bytes, String className, ClassLoader classLoader)
+        throws IOException, ClassNotFoundException
+    {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        Class<?> implementation = classLoader.loadClass(className);
+
+        int count = input.readInt();
+        List<ComponentDescriptor<?>> descriptors = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            DefaultComponentDescriptor<Object> descriptor = new DefaultComponentDescriptor<>();
+            descriptor.setImplementation(implementation);
+            descriptor.setRoleType(readType(input, classLoader));
+            descriptor.setRoleHint(readString(input));
+            descriptor.setInstantiationStrategy(ComponentInstantiationStrategy.valueOf(input.readUTF()));
+            for (int dependencyCount = input.readInt(); dependencyCount > 0; --dependencyCount) {
+                descriptor.addComponentDependency(readDependency(input, classLoader));
+            }
+
+            descriptors.add(descriptor);
+        }
+
+        return descriptors;
+    }
+
+    private static ComponentDependency<?> readDependency(DataInputStream input, ClassLoader classLoader)
+        throws IOException, ClassNotFoundException
+    {
+        DefaultComponentDependency<?> dependency = new DefaultComponentDependency<>();
+
+        dependency.setName(readString(input));
+        dependency.setRoleType(readType(input, classLoader));
+        dependency.setRoleHint(readString(input));
+
+        int hintCount = input.readInt();
+        if (hintCount >= 0) {
+            String[] hints = new String[hintCount];
+            for (int i = 0; i < hintCount; ++i) {
+                hints[i] = readString(input);
+            }
+            dependency.setHints(hints);
+        }
+
+        String mappingType = readString(input);
+        if (mappingType != null) {
+            dependency.setMappingType(Class.forName(mappingType, false, classLoader));
+        }
+
+        return dependency;
+    }
+
+    private static Type readType(DataInputStream input, ClassLoader classLoader)
+        throws IOException, ClassNotFoundException
+    {
+        Type type;
+
+        byte kind = input.readByte();
+        if (kind == TYPE_CLASS) {
+            type = Class.forName(input.readUTF(), false, classLoader);
+        } else if (kind == TYPE_PARAMETERIZED) {
+            Type ownerType = readType(input, classLoader);
+            Class<?> rawType = (Class<?>) readType(input, classLoader);
+            Type[] arguments = new Type[input.readInt()];
+            for (int i = 0; i < arguments.length; ++i) {
+                arguments[i] = readType(input, classLoader);
+            }
+            type = new DefaultParameterizedType(ownerType, rawType, arguments);
+        } else {
+            type = null;
+        }
+
+        return type;
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
@@ -40,6 +40,7 @@
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.InjectionPlan.InjectionPoint;
 import org.xwiki.component.internal.RoleHint;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentLifecycleException;
@@ -91,11 +92,30 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
          */
         public volatile R instance;
 
+        /**
+         * The compiled descriptor. Lazily initialized when needed and forgotten with the entry when the component is
+         * unregistered.
+         */
+        private volatile InjectionPlan<R> injectionPlan;
+
         public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
         {
             this.descriptor = descriptor;
             this.instance = instance;
         }
+
+        public InjectionPlan<R> getInjectionPlan() throws NoSuchMethodException
+        {
+            InjectionPlan<R> plan = this.injectionPlan;
+
+            if (plan == null) {
+                // Creating the same plan twice concurrently is harmless
+                plan = new InjectionPlan<>(this.descriptor);
+                this.injectionPlan = plan;
+            }
+
+            return plan;
+        }
     }
 
     private Map<Type, Map<String, ComponentEntry<?>>> componentEntries = new ConcurrentHashMap<>();
@@ -107,6 +127,13 @@ public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
      */
     private ServiceLoader<LifecycleHandler> lifecycleHandlers = ServiceLoader.load(LifecycleHandler.class);
 
+    /**
+     * True if an extending class overwrite {@link #getDependencyInstance(ComponentDescriptor, Object,
+     * ComponentDependency)}, in which case it has to be called for each dependency.
+     */
+    private final boolean customDependencyInstance = isOverwritten("getDependencyInstance", ComponentDescriptor.class,
+        Object.class, ComponentDependency.class);
+
     public EmbeddableComponentManager()
     {
         registerThis();
@@ -123,6 +150,22 @@ public EmbeddableComponentManager(String namespace)
         this.namespace = namespace;
     }
 
+    private boolean isOverwritten(String methodName, Class<?>... parameterTypes)
+    {
+        for (Class<?> currentClass = getClass(); currentClass != EmbeddableComponentManager.class;
+            currentClass = currentClass.getSuperclass()) {
+            try {
+                currentClass.getDeclaredMethod(methodName, parameterTypes);
+
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Try the parent class
+            }
+        }
+
+        return false;
+    }
+
     @Override
     public String getNamespace()
     {
@@ -337,21 +380,29 @@ public void setParent(ComponentManager parentComponentManager)
         this.parent = parentComponentManager;
     }
 
-    private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
+    private <T> T createInstance(ComponentEntry<T> componentEntry) throws Exception
     {
-        T instance = descriptor.getImplementation().newInstance();
+        ComponentDescriptor<T> descriptor = componentEntry.descriptor;
+        InjectionPlan<T> plan = componentEntry.getInjectionPlan();
+
+        T instance = plan.newInstance();
 
         // Set each dependency
-        for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+        for (InjectionPoint injectionPoint : plan.getInjectionPoints()) {
 
             // TODO: Handle dependency cycles
 
             // Handle different field types
-            Object fieldValue = getDependencyInstance(descriptor, instance, dependency);
+            Object fieldValue;
+            if (this.customDependencyInstance) {
+                fieldValue = getDependencyInstance(descriptor, instance, injectionPoint.getDependency());
+            } else {
+                fieldValue = getDependencyInstance(descriptor, instance, injectionPoint);
+            }
 
             // Set the field by introspection
             if (fieldValue != null) {
-                ReflectionUtils.setFieldValue(instance, dependency.getName(), fieldValue);
+                injectionPoint.inject(instance, fieldValue);
             }
         }
 
@@ -365,6 +416,12 @@ private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
 
     protected Object getDependencyInstance(ComponentDescriptor<?> descriptor, Object parentInstance,
         ComponentDependency<?> dependency) throws ComponentLookupException
+    {
+        return getDependencyInstance(descriptor, parentInstance, new InjectionPoint(dependency, null));
+    }
+
+    private Object getDependencyInstance(ComponentDescriptor<?> descriptor, Object parentInstance,
+        InjectionPoint injectionPoint) throws ComponentLookupException
     {
         // TODO: Handle dependency cycles
 
@@ -380,30 +437,50 @@ protected Object getDependencyInstance(ComponentDescriptor<?> descriptor, Object
         // Step 3: No producer found, handle scalar and collection types by looking up standard component
         // implementations.
 
-        Class<?> dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
-
-        if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
-            fieldValue = createLogger(parentInstance.getClass());
-        } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
-            fieldValue = getInstanceList(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-        } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
-            fieldValue = getInstanceMap(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-        } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
-            // Check if there's a Provider registered for the type
-            if (hasComponent(dependency.getRoleType(), dependency.getRoleHint())) {
+        ComponentDependency<?> dependency = injectionPoint.getDependency();
+
+        switch (injectionPoint.getKind()) {
+            case LOGGER:
+                fieldValue = createLogger(parentInstance.getClass());
+                break;
+            case LIST:
+                fieldValue = getInstanceList(injectionPoint.getElementType());
+                break;
+            case MAP:
+                fieldValue = getInstanceMap(injectionPoint.getElementType());
+                break;
+            case PROVIDER:
+                // Check if there's a Provider registered for the type
+                if (hasComponent(dependency.getRoleType(), dependency.getRoleHint())) {
+                    fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                } else {
+                    fieldValue = getGenericProvider(descriptor, injectionPoint);
+                }
+                break;
+            case DESCRIPTOR:
+                fieldValue = new DefaultComponentDescriptor<>(descriptor);
+                break;
+            default:
                 fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
-            } else {
-                fieldValue = createGenericProvider(descriptor, dependency);
-            }
-        } else if (dependencyRoleClass.isAssignableFrom(ComponentDescriptor.class)) {
-            fieldValue = new DefaultComponentDescriptor<>(descriptor);
-        } else {
-            fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                break;
         }
 
         return fieldValue;
     }
 
+    private Provider<?> getGenericProvider(ComponentDescriptor<?> descriptor, InjectionPoint injectionPoint)
+    {
+        // A generic provider only depends on the dependency so it can be shared by all the instances of the component
+        Provider<?> provider = injectionPoint.getGenericProvider();
+
+        if (provider == null) {
+            provider = createGenericProvider(descriptor, injectionPoint.getDependency());
+            injectionPoint.setGenericProvider(provider);
+        }
+
+        return provider;
+    }
+
     protected Provider<?> createGenericProvider(ComponentDescriptor<?> descriptor, ComponentDependency<?> dependency)
     {
         return new GenericProvider<>(this, new RoleHint<>(
@@ -443,13 +520,13 @@ private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exce
                     if (componentEntry.instance != null) {
                         instance = componentEntry.instance;
                     } else {
-                        componentEntry.instance = createInstance(descriptor);
+                        componentEntry.instance = createInstance(componentEntry);
                         instance = componentEntry.instance;
                     }
                 }
             }
         } else {
-            instance = createInstance(descriptor);
+            instance = createInstance(componentEntry);
         }
 
         return instance;
@@ -0,0 +1,285 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * The result of the analysis of a {@link ComponentDescriptor}: everything needed to create and inject an instance of
+ * the component which does not depend on the instance itself. A plan is attached to a registered descriptor, so it
+ * goes away with it when the component is unregistered or registered again.
+ *
+ * @param <T> the type of the component implementation
+ * @version $Id$
+ * @since 10.0RC1
+ */
+final class InjectionPlan<T>
+{
+    /**
+     * The different ways to produce the value of a dependency.
+     *
+     * @version $Id$
+     */
+    enum DependencyKind
+    {
+        /**
+         * A {@link Logger} dedicated to the component.
+         */
+        LOGGER,
+
+        /**
+         * The {@link List} of all the components of the generic role.
+         */
+        LIST,
+
+        /**
+         * The {@link Map} of all the components of the generic role, indexed by hint.
+         */
+        MAP,
+
+        /**
+         * A registered {@link Provider} or a {@link GenericProvider}.
+         */
+        PROVIDER,
+
+        /**
+         * A copy of the descriptor of the component.
+         */
+        DESCRIPTOR,
+
+        /**
+         * A standard component.
+         */
+        COMPONENT
+    }
+
+    private final Constructor<? extends T> constructor;
+
+    private final InjectionPoint[] injectionPoints;
+
+    /**
+     * A dependency of the component with everything resolved in advance.
+     *
+     * @version $Id$
+     */
+    static final class InjectionPoint
+    {
+        private final ComponentDependency<?> dependency;
+
+        private final DependencyKind kind;
+
+        private final Type elementType;
+
+        private final Field field;
+
+        private volatile Provider<?> genericProvider;
+
+        /**
+         * @param dependency the dependency
+         * @param field the field in which to inject the dependency or null if there is no such field
+         */
+        InjectionPoint(ComponentDependency<?> dependency, Field field)
+        {
+            this.dependency = dependency;
+            this.field = field;
+            this.kind = getKind(ReflectionUtils.getTypeClass(dependency.getRoleType()));
+
+            if (this.kind == DependencyKind.LIST || this.kind == DependencyKind.MAP
+                || this.kind == DependencyKind.PROVIDER) {
+                this.elementType = ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType());
+            } else {
+                this.elementType = null;
+            }
+        }
+
+        private static DependencyKind getKind(Class<?> roleClass)
+        {
+            // Keep the same order as before the introduction of the injection plans since a role class can be
+            // assignable from several of the tested types (Object for example)
+            DependencyKind kind;
+            if (roleClass.isAssignableFrom(Logger.class)) {
+                kind = DependencyKind.LOGGER;
+            } else if (roleClass.isAssignableFrom(List.class)) {
+                kind = DependencyKind.LIST;
+            } else if (roleClass.isAssignableFrom(Map.class)) {
+                kind = DependencyKind.MAP;
+            } else if (roleClass.isAssignableFrom(Provider.class)) {
+                kind = DependencyKind.PROVIDER;
+            } else if (roleClass.isAssignableFrom(ComponentDescriptor.class)) {
+                kind = DependencyKind.DESCRIPTOR;
+            } else {
+                kind = DependencyKind.COMPONENT;
+            }
+
+            return kind;
+        }
+
+        /**
+         * @return the dependency
+         */
+        ComponentDependency<?> getDependency()
+        {
+            return this.dependency;
+        }
+
+        /**
+         * @return the way to produce the value of the dependency
+         */
+        DependencyKind getKind()
+        {
+            return this.kind;
+        }
+
+        /**
+         * @return the last generic argument of the role type for {@link DependencyKind#LIST}, {@link DependencyKind#MAP}
+         *         and {@link DependencyKind#PROVIDER} dependencies
+         */
+        Type getElementType()
+        {
+            return this.elementType;
+        }
+
+        /**
+         * @return the cached {@link GenericProvider} or null if none was created yet
+         */
+        Provider<?> getGenericProvider()
+        {
+            return this.genericProvider;
+        }
+
+        /**
+         * @param genericProvider the {@link GenericProvider} to reuse for next instances
+         */
+        void setGenericProvider(Provider<?> genericProvider)
+        {
+            this.genericProvider = genericProvider;
+        }
+
+        /**
+         * @param instance the instance in which to inject the value
+         * @param value the value to inject
+         */
+        void inject(Object instance, Object value)
+        {
+            if (this.field != null) {
+                try {
+                    this.field.set(instance, value);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(String.format("Failed to set field [%s] in instance of [%s]",
+                        this.field.getName(), instance.getClass().getName()), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param descriptor the descriptor of the component
+     * @throws NoSuchMethodException when the component implementation does not have a constructor without parameters
+     */
+    InjectionPlan(ComponentDescriptor<T> descriptor) throws NoSuchMethodException
+    {
+        Class<? extends T> implementation = descriptor.getImplementation();
+
+        this.constructor = implementation.getDeclaredConstructor();
+        makeAccessible(this.constructor, implementation);
+
+        Collection<ComponentDependency<?>> dependencies = descriptor.getComponentDependencies();
+        this.injectionPoints = new InjectionPoint[dependencies.size()];
+        int i = 0;
+        for (ComponentDependency<?> dependency : dependencies) {
+            Field field = getField(implementation, dependency.getName());
+            if (field != null) {
+                makeAccessible(field, implementation);
+            }
+
+            this.injectionPoints[i++] = new InjectionPoint(dependency, field);
+        }
+    }
+
+    private static void makeAccessible(AccessibleObject object, Class<?> implementation)
+    {
+        try {
+            object.setAccessible(true);
+        } catch (SecurityException e) {
+            // It probably means the Java security manager has been configured to prevent accessing private fields.
+            throw new RuntimeException(String.format("Failed to access [%s] in [%s]. The Java Security Manager has "
+                + "probably been configured to prevent it. XWiki requires this ability to work.", object,
+                implementation.getName()), e);
+        }
+    }
+
+    /**
+     * Same search as {@link ReflectionUtils#setFieldValue(Object, String, Object)}.
+     */
+    private static Field getField(Class<?> implementation, String fieldName)
+    {
+        for (Class<?> targetClass = implementation; targetClass != null; targetClass = targetClass.getSuperclass()) {
+            for (Field field : targetClass.getDeclaredFields()) {
+                if (field.getName().equalsIgnoreCase(fieldName)) {
+                    return field;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a new instance of the component implementation, without any dependency injected
+     * @throws Exception when failing to create the instance
+     */
+    T newInstance() throws Exception
+    {
+        try {
+            return this.constructor.newInstance();
+        } catch (InvocationTargetException e) {
+            // Behave like Class#newInstance() and throw what the constructor throws
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * @return the dependencies to inject in each new instance, the returned array must not be modified
+     */
+    InjectionPoint[] getInjectionPoints()
+    {
+        return this.injectionPoints;
+    }
+}
@@ -19,8 +19,18 @@
  */
 package org.xwiki.component.annotation;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -32,6 +42,7 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.xwiki.component.ProviderTest;
 import org.xwiki.component.descriptor.ComponentDescriptor;
@@ -55,6 +66,9 @@
     @Rule
     public final JMockRule mockery = new JMockRule();
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @SuppressWarnings("deprecation")
     @ComponentRole
     public interface NotGenericRole<T>
@@ -162,6 +176,8 @@ private class TestableComponentAnnotationLoader extends ComponentAnnotationLoade
     {
         private Logger logger;
 
+        private AtomicInteger parsed = new AtomicInteger();
+
         TestableComponentAnnotationLoader(Logger logger)
         {
             this.logger = logger;
@@ -172,6 +188,14 @@ protected Logger getLogger()
         {
             return this.logger;
         }
+
+        @Override
+        public Set<Type> findComponentRoleTypes(Class<?> componentClass)
+        {
+            this.parsed.incrementAndGet();
+
+            return super.findComponentRoleTypes(componentClass);
+        }
     }
 
     @Before
@@ -319,4 +343,105 @@ public void testFindComponentRoleTypesWithExtendingNonGenericRole()
         Assert.assertEquals(1, types.size());
         Assert.assertEquals(GenericRole.class, types.iterator().next());
     }
+
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testIndex() throws Exception
+    {
+        File jar = this.folder.newFile("components.jar");
+        writeComponentsJAR(jar, GenericComponent.class, ProviderTest.TestComponentWithProviders.class);
+        File dependencyJar = this.folder.newFile("dependency.jar");
+        writeDependencyJAR(dependencyJar, "1.0");
+        File indexDirectory = this.folder.newFolder("index");
+
+        final ComponentManager mockManager = this.mockery.mock(ComponentManager.class);
+        final ComponentDescriptor descriptor1 = this.loader.getComponentsDescriptors(GenericComponent.class).get(0);
+        final ComponentDescriptor descriptor2 =
+            this.loader.getComponentsDescriptors(ProviderTest.TestComponentWithProviders.class).get(0);
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                exactly(4).of(mockManager).registerComponent(descriptor1);
+                exactly(4).of(mockManager).registerComponent(descriptor2);
+            }
+        });
+
+        // No logging expected either
+        Logger logger = this.mockery.mock(Logger.class, "indexLogger");
+
+        // First time: the annotations are parsed and the index is created
+        TestableComponentAnnotationLoader indexedLoader = newIndexedLoader(indexDirectory, logger);
+        indexedLoader.initialize(mockManager, newJARClassLoader(jar, dependencyJar));
+        Assert.assertEquals(2, indexedLoader.parsed.get());
+        Assert.assertTrue(new File(indexDirectory, ComponentDescriptorIndex.FILE_NAME).exists());
+
+        // Second time: the descriptors are taken from the index
+        indexedLoader = newIndexedLoader(indexDirectory, logger);
+        indexedLoader.initialize(mockManager, newJARClassLoader(jar, dependencyJar));
+        Assert.assertEquals(0, indexedLoader.parsed.get());
+
+        // The JAR changed: the annotations are parsed again
+        jar.delete();
+        writeComponentsJAR(jar, ProviderTest.TestComponentWithProviders.class, GenericComponent.class);
+        indexedLoader = newIndexedLoader(indexDirectory, logger);
+        indexedLoader.initialize(mockManager, newJARClassLoader(jar, dependencyJar));
+        Assert.assertEquals(2, indexedLoader.parsed.get());
+
+        // Another JAR of the classpath changed (it could contain the super class of a component): the annotations
+        // are parsed again
+        dependencyJar.delete();
+        writeDependencyJAR(dependencyJar, "2.0");
+        indexedLoader = newIndexedLoader(indexDirectory, logger);
+        indexedLoader.initialize(mockManager, newJARClassLoader(jar, dependencyJar));
+        Assert.assertEquals(2, indexedLoader.parsed.get());
+    }
+
+    private TestableComponentAnnotationLoader newIndexedLoader(File indexDirectory, Logger logger)
+    {
+        TestableComponentAnnotationLoader indexedLoader = new TestableComponentAnnotationLoader(logger);
+        indexedLoader.setIndexDirectory(indexDirectory);
+
+        return indexedLoader;
+    }
+
+    private void writeComponentsJAR(File jar, Class<?>... componentClasses) throws IOException
+    {
+        try (ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(jar))) {
+            stream.putNextEntry(new ZipEntry(ComponentAnnotationLoader.COMPONENT_LIST));
+            for (Class<?> componentClass : componentClasses) {
+                stream.write((componentClass.getName() + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            stream.closeEntry();
+        }
+    }
+
+    private void writeDependencyJAR(File jar, String version) throws IOException
+    {
+        try (ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(jar))) {
+            stream.putNextEntry(new ZipEntry("version.txt"));
+            stream.write(version.getBytes(StandardCharsets.UTF_8));
+            stream.closeEntry();
+        }
+    }
+
+    /**
+     * @return a classloader which find the components list only in the passed JAR files
+     */
+    private ClassLoader newJARClassLoader(File... jars) throws IOException
+    {
+        URL[] urls = new URL[jars.length];
+        for (int i = 0; i < jars.length; ++i) {
+            urls[i] = jars[i].toURI().toURL();
+        }
+
+        return new URLClassLoader(urls, getClass().getClassLoader())
+        {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException
+            {
+                return findResources(name);
+            }
+        };
+    }
 }
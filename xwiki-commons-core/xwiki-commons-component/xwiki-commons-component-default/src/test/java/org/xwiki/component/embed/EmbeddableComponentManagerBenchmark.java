@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.annotation.Role;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLookupException;
+
+/**
+ * Measure the cost of looking up a {@link ComponentInstantiationStrategy#PER_LOOKUP} component with the usual kinds of
+ * dependencies (logger, components, list and provider).
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmbeddableComponentManagerBenchmark
+{
+    @Role
+    public interface BenchmarkRole
+    {
+    }
+
+    @Role
+    public interface PerLookupRole
+    {
+    }
+
+    @Component
+    @Singleton
+    public static class SingletonComponent implements BenchmarkRole
+    {
+    }
+
+    @Component
+    @Named("other")
+    @Singleton
+    public static class OtherSingletonComponent implements BenchmarkRole
+    {
+    }
+
+    @Component
+    @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+    public static class PerLookupComponent implements PerLookupRole
+    {
+        @Inject
+        private Logger logger;
+
+        @Inject
+        private BenchmarkRole component;
+
+        @Inject
+        @Named("other")
+        private BenchmarkRole otherComponent;
+
+        @Inject
+        private Provider<BenchmarkRole> provider;
+
+        @Inject
+        private List<BenchmarkRole> components;
+    }
+
+    private EmbeddableComponentManager componentManager;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        this.componentManager = new EmbeddableComponentManager();
+
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        for (Class<?> componentClass : new Class<?>[] { SingletonComponent.class, OtherSingletonComponent.class,
+            PerLookupComponent.class }) {
+            for (ComponentDescriptor<?> descriptor : loader.getComponentsDescriptors(componentClass)) {
+                this.componentManager.registerComponent(descriptor);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object lookupSingleton() throws ComponentLookupException
+    {
+        return this.componentManager.getInstance(BenchmarkRole.class);
+    }
+
+    @Benchmark
+    public Object lookupPerLookup() throws ComponentLookupException
+    {
+        return this.componentManager.getInstance(PerLookupRole.class);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(EmbeddableComponentManagerBenchmark.class.getSimpleName()).build())
+            .run();
+    }
+}
@@ -26,6 +26,8 @@
 import java.util.List;
 import java.util.Map;
 
+import javax.inject.Provider;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -614,4 +616,72 @@ public void testComponentDescriptorInjection() throws Exception
         Assert.assertNotNull(impl.getComponentDescriptor());
     }
 
+    public static class PerLookupRoleImpl implements Role
+    {
+        private Role role;
+
+        private Provider<Role> roleProvider;
+
+        private Logger logger;
+    }
+
+    @Test
+    public void testPerLookupComponentInjection() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> d1 = new DefaultComponentDescriptor<>();
+        d1.setRoleType(Role.class);
+        d1.setRoleHint("dependency");
+        d1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(d1);
+
+        DefaultComponentDescriptor<Role> d2 = new DefaultComponentDescriptor<>();
+        d2.setRoleType(Role.class);
+        d2.setImplementation(PerLookupRoleImpl.class);
+        d2.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        DefaultComponentDependency<Role> roleDependency = new DefaultComponentDependency<>();
+        roleDependency.setRoleType(Role.class);
+        roleDependency.setRoleHint("dependency");
+        roleDependency.setName("role");
+        d2.addComponentDependency(roleDependency);
+        DefaultComponentDependency<Provider<Role>> providerDependency = new DefaultComponentDependency<>();
+        providerDependency.setRoleType(new DefaultParameterizedType(null, Provider.class, Role.class));
+        providerDependency.setRoleHint("dependency");
+        providerDependency.setName("roleProvider");
+        d2.addComponentDependency(providerDependency);
+        DefaultComponentDependency<Logger> loggerDependency = new DefaultComponentDependency<>();
+        loggerDependency.setRoleType(Logger.class);
+        loggerDependency.setName("logger");
+        d2.addComponentDependency(loggerDependency);
+        ecm.registerComponent(d2);
+
+        PerLookupRoleImpl instance1 = ecm.getInstance(Role.class);
+        PerLookupRoleImpl instance2 = ecm.getInstance(Role.class);
+
+        Assert.assertNotSame(instance1, instance2);
+        Assert.assertSame(ecm.getInstance(Role.class, "dependency"), instance1.role);
+        Assert.assertSame(instance1.role, instance2.role);
+        Assert.assertNotNull(instance1.logger);
+        // The generic provider is shared by all the instances
+        Assert.assertSame(instance1.roleProvider, instance2.roleProvider);
+        Assert.assertSame(instance1.role, instance1.roleProvider.get());
+
+        // A new registration of the dependency is taken into account
+        DefaultComponentDescriptor<Role> d3 = new DefaultComponentDescriptor<>();
+        d3.setRoleType(Role.class);
+        d3.setRoleHint("dependency");
+        d3.setImplementation(OtherRoleImpl.class);
+        ecm.registerComponent(d3);
+
+        PerLookupRoleImpl instance3 = ecm.getInstance(Role.class);
+        Assert.assertTrue(instance3.role instanceof OtherRoleImpl);
+        Assert.assertTrue(instance3.roleProvider.get() instanceof OtherRoleImpl);
+
+        // A new registration of the component itself is taken into account
+        d2.setImplementation(ComponentDescriptorRoleImpl.class);
+        ecm.registerComponent(d2);
+
+        Assert.assertTrue(ecm.getInstance(Role.class) instanceof ComponentDescriptorRoleImpl);
+    }
 }
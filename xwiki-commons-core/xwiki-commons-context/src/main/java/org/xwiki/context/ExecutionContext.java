@@ -19,6 +19,7 @@
  */
 package org.xwiki.context;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +30,10 @@
 /**
  * Contains all state data related to the current user action. Note that the execution context is independent of the
  * environment and all environment-dependent data are stored in the Container component instead.
+ * <p>
+ * Inherited properties are shared (copy-on-write) between an execution context and the contexts inheriting from it so
+ * that creating a new context is cheap: nothing is copied until one of the contexts declares, modifies or removes a
+ * property.
  *
  * @version $Id$
  * @since 1.5M2
@@ -43,6 +48,22 @@
      */
     private Map<String, ExecutionContextProperty> properties = new HashMap<String, ExecutionContextProperty>();
 
+    /**
+     * True when {@link #properties} may be used by other execution contexts and must be copied before being modified.
+     */
+    private boolean propertiesShared;
+
+    /**
+     * The properties to inherit (see {@link #inheritFrom(ExecutionContext)}), shared with all the contexts inheriting
+     * from this one. Null when it needs to be recalculated.
+     */
+    private Map<String, ExecutionContextProperty> inheritableProperties;
+
+    /**
+     * True when some of the {@link #inheritableProperties} need to be cloned when inherited.
+     */
+    private boolean inheritableClonedValues;
+
     /**
      * @param key the key under which is stored the property to retrieve
      * @return the property matching the passed key
@@ -99,11 +120,16 @@ public void removeProperty(String key)
     {
         ExecutionContextProperty property = this.properties.get(key);
 
-        if (property != null && property.isFinal()) {
-            throw new PropertyIsFinalException(key);
-        }
+        if (property != null) {
+            if (property.isFinal()) {
+                throw new PropertyIsFinalException(key);
+            }
 
-        this.properties.remove(key);
+            getWritableProperties().remove(key);
+            if (property.isInherited()) {
+                this.inheritableProperties = null;
+            }
+        }
     }
 
     /**
@@ -120,6 +146,10 @@ public void setProperty(String key, Object value)
             property = this.properties.get(key);
         } else if (property.isFinal()) {
             throw new PropertyIsFinalException(key);
+        } else if (property.isShared()) {
+            // Other contexts are using this instance
+            property = property.copy();
+            putProperty(property);
         }
 
         property.setValue(value);
@@ -148,7 +178,57 @@ private void declareProperty(ExecutionContextProperty property)
             throw new PropertyAlreadyExistsException(property.getKey());
         }
 
-        this.properties.put(property.getKey(), property);
+        putProperty(property);
+    }
+
+    /**
+     * @param property the property to add or replace
+     */
+    private void putProperty(ExecutionContextProperty property)
+    {
+        getWritableProperties().put(property.getKey(), property);
+
+        if (property.isInherited()) {
+            this.inheritableProperties = null;
+        }
+    }
+
+    /**
+     * @return the properties, copied first if they are shared with other contexts
+     */
+    private Map<String, ExecutionContextProperty> getWritableProperties()
+    {
+        if (this.propertiesShared) {
+            this.properties = new HashMap<String, ExecutionContextProperty>(this.properties);
+            this.propertiesShared = false;
+        }
+
+        return this.properties;
+    }
+
+    /**
+     * @return the properties to inherit, which must not be modified
+     */
+    private Map<String, ExecutionContextProperty> getInheritableProperties()
+    {
+        if (this.inheritableProperties == null) {
+            Map<String, ExecutionContextProperty> inheritable = new HashMap<String, ExecutionContextProperty>();
+            boolean clonedValues = false;
+
+            for (ExecutionContextProperty property : this.properties.values()) {
+                if (property.isInherited()) {
+                    // From now on the property instance is shared with other contexts
+                    property.setShared();
+                    inheritable.put(property.getKey(), property);
+                    clonedValues |= property.isCloneValue();
+                }
+            }
+
+            this.inheritableProperties = Collections.unmodifiableMap(inheritable);
+            this.inheritableClonedValues = clonedValues;
+        }
+
+        return this.inheritableProperties;
     }
 
     /**
@@ -169,13 +249,28 @@ private void declareProperty(ExecutionContextProperty property)
      */
     public void inheritFrom(ExecutionContext executionContext)
     {
-        for (ExecutionContextProperty property : executionContext.properties.values()) {
-            if (property.isInherited()) {
-                if (this.properties.containsKey(property.getKey())) {
-                    checkIfInheritedPropertyMayBeIgnored(property);
-                } else {
-                    declareProperty(property.clone());
-                }
+        Map<String, ExecutionContextProperty> inheritable = executionContext.getInheritableProperties();
+
+        if (this.properties.isEmpty() && !executionContext.inheritableClonedValues) {
+            // Most common case: a new context inheriting from the current one. Nothing can conflict so just share the
+            // inherited properties, they will be copied as soon as one of the contexts modifies them.
+            this.properties = inheritable;
+            this.propertiesShared = true;
+            // All the properties are inheritable
+            this.inheritableProperties = inheritable;
+            this.inheritableClonedValues = false;
+
+            return;
+        }
+
+        for (ExecutionContextProperty property : inheritable.values()) {
+            if (this.properties.containsKey(property.getKey())) {
+                checkIfInheritedPropertyMayBeIgnored(property);
+            } else if (property.isCloneValue()) {
+                declareProperty(property.clone());
+            } else {
+                // Shared until modified
+                declareProperty(property);
             }
         }
     }
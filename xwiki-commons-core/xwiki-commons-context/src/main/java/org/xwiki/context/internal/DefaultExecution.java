@@ -19,7 +19,9 @@
  */
 package org.xwiki.context.internal;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
 
 import javax.inject.Singleton;
 
@@ -40,50 +42,57 @@
 public class DefaultExecution implements Execution
 {
     /**
-     * Isolate the execution context by thread.
+     * Isolate the execution context by thread. The last element of the list is the current context. A plain
+     * {@link ArrayList} is used since it's only accessed by its thread (and unlike most of the alternatives it accepts
+     * null elements).
      */
-    private ThreadLocal<Stack<ExecutionContext>> context = new ThreadLocal<Stack<ExecutionContext>>();
+    private ThreadLocal<List<ExecutionContext>> context = new ThreadLocal<List<ExecutionContext>>();
 
     @Override
     public void pushContext(ExecutionContext context)
     {
-        Stack<ExecutionContext> stack = this.context.get();
+        List<ExecutionContext> stack = this.context.get();
         if (stack == null) {
-            stack = new Stack<ExecutionContext>();
+            stack = new ArrayList<ExecutionContext>();
             this.context.set(stack);
         } else if (!stack.isEmpty()) {
-            context.inheritFrom(stack.peek());
+            context.inheritFrom(stack.get(stack.size() - 1));
         }
 
-        stack.push(context);
+        stack.add(context);
     }
 
     @Override
     public void popContext()
     {
-        this.context.get().pop();
+        List<ExecutionContext> stack = this.context.get();
+        if (stack == null || stack.isEmpty()) {
+            throw new EmptyStackException();
+        }
+
+        stack.remove(stack.size() - 1);
     }
 
     @Override
     public ExecutionContext getContext()
     {
-        Stack<ExecutionContext> stack = this.context.get();
-        return stack == null || stack.isEmpty() ? null : stack.peek();
+        List<ExecutionContext> stack = this.context.get();
+        return stack == null || stack.isEmpty() ? null : stack.get(stack.size() - 1);
     }
 
     @Override
     public void setContext(ExecutionContext context)
     {
-        Stack<ExecutionContext> stack = this.context.get();
+        List<ExecutionContext> stack = this.context.get();
         if (stack == null) {
-            stack = new Stack<ExecutionContext>();
+            stack = new ArrayList<ExecutionContext>();
             this.context.set(stack);
-            stack.push(context);
+            stack.add(context);
         } else if (stack.isEmpty()) {
-            stack.push(context);
+            stack.add(context);
         } else {
             if (context != null) {
-                context.inheritFrom(stack.peek());
+                context.inheritFrom(stack.get(stack.size() - 1));
             }
             stack.set(stack.size() - 1, context);
         }
@@ -64,6 +64,9 @@ public class ExecutionContextProperty implements Cloneable
     /** @see #isClonedFrom(ExecutionContextProperty) */
     private WeakReference<ExecutionContextProperty> clonedFrom;
 
+    /** @see #isShared() */
+    private boolean shared;
+
     /**
      * @param key The execution context key.
      * @param initialValue The initial value.
@@ -140,6 +143,35 @@ public boolean isInherited()
         return this.inherited;
     }
 
+    /**
+     * @return wether the value should be cloned when this property is cloned
+     * @since 10.0RC1
+     */
+    public boolean isCloneValue()
+    {
+        return this.cloneValue;
+    }
+
+    /**
+     * @return true if this property instance may be used by several execution contexts, in which case it should not be
+     *         modified anymore (see {@link #copy()})
+     * @since 10.0RC1
+     */
+    public boolean isShared()
+    {
+        return this.shared;
+    }
+
+    /**
+     * Indicate that this property instance may be used by several execution contexts.
+     *
+     * @since 10.0RC1
+     */
+    public void setShared()
+    {
+        this.shared = true;
+    }
+
     /**
      * @return the type of the value
      */
@@ -184,6 +216,23 @@ public ExecutionContextProperty clone()
         return clone;
     }
 
+    /**
+     * Unlike {@link #clone()} the value is never cloned.
+     *
+     * @return a new property with the same metadata and value, which can be modified without impacting the execution
+     *         contexts sharing this instance
+     * @since 10.0RC1
+     */
+    public ExecutionContextProperty copy()
+    {
+        ExecutionContextProperty copy = new ExecutionContextProperty(getKey(), getValue(), this.cloneValue, isFinal(),
+            isInherited(), this.nonNull, getType());
+
+        copy.clonedFrom = this.clonedFrom;
+
+        return copy;
+    }
+
     /**
      * Check that this instance was cloned from the specified instance.
      *
@@ -21,6 +21,8 @@
 
 import static org.hamcrest.Matchers.hasEntry;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -54,6 +56,67 @@ public void inheritance()
         assertEquals("shadowed", context.getProperty("shadowed"));
     }
 
+    @Test
+    public void inheritanceIsolation()
+    {
+        ExecutionContext parent = new ExecutionContext();
+        parent.newProperty("inherited").inherited().initial("parent").declare();
+        parent.newProperty("removed").inherited().initial("parent").declare();
+        parent.setProperty("local", "parent");
+
+        ExecutionContext context = new ExecutionContext();
+        context.inheritFrom(parent);
+
+        assertEquals("parent", context.getProperty("inherited"));
+        assertFalse(context.hasProperty("local"));
+
+        // Modifications in the child are not visible in the parent
+        context.setProperty("inherited", "child");
+        context.removeProperty("removed");
+        context.setProperty("local", "child");
+
+        assertEquals("parent", parent.getProperty("inherited"));
+        assertEquals("parent", parent.getProperty("removed"));
+        assertEquals("parent", parent.getProperty("local"));
+
+        // Modifications in the parent are not visible in the child
+        ExecutionContext context2 = new ExecutionContext();
+        context2.inheritFrom(parent);
+        parent.setProperty("inherited", "modified");
+        parent.newProperty("new").inherited().initial("parent").declare();
+
+        assertEquals("parent", context2.getProperty("inherited"));
+        assertFalse(context2.hasProperty("new"));
+
+        // But they are inherited by new children
+        ExecutionContext context3 = new ExecutionContext();
+        context3.inheritFrom(parent);
+
+        assertEquals("modified", context3.getProperty("inherited"));
+        assertEquals("parent", context3.getProperty("new"));
+
+        // Grand children inherit what their parent inherited
+        ExecutionContext context4 = new ExecutionContext();
+        context4.inheritFrom(context3);
+
+        assertEquals("modified", context4.getProperty("inherited"));
+        assertEquals("parent", context4.getProperty("removed"));
+    }
+
+    @Test
+    public void inheritanceWithClonedValue()
+    {
+        ExecutionContext parent = new ExecutionContext();
+        Map<String, String> value = new HashMap<>();
+        parent.newProperty("cloned").inherited().cloneValue().initial(value).declare();
+
+        ExecutionContext context = new ExecutionContext();
+        context.inheritFrom(parent);
+
+        assertEquals(value, context.getProperty("cloned"));
+        assertNotSame(value, context.getProperty("cloned"));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void illegalInheritance()
     {
@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextInitializer;
+
+/**
+ * Measure the cost of the typical push/clone/pop cycles of {@link ExecutionContext}s on top of a context containing a
+ * realistic number of properties.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionContextBenchmark
+{
+    private static final int PROPERTIES = 20;
+
+    private DefaultExecution execution;
+
+    private DefaultExecutionContextManager manager;
+
+    private ExecutionContext rootContext;
+
+    @Setup
+    public void setup()
+    {
+        this.execution = new DefaultExecution();
+
+        this.manager = new DefaultExecutionContextManager();
+        Provider<List<ExecutionContextInitializer>> initializers = Collections::emptyList;
+        ReflectionUtils.setFieldValue(this.manager, "execution", this.execution);
+        ReflectionUtils.setFieldValue(this.manager, "initializerProvider", initializers);
+
+        // Half of the properties are inherited, like in a real request context
+        this.rootContext = new ExecutionContext();
+        for (int i = 0; i < PROPERTIES; ++i) {
+            if (i % 2 == 0) {
+                this.rootContext.newProperty("inherited" + i).inherited().initial(i).declare();
+            } else {
+                this.rootContext.setProperty("property" + i, i);
+            }
+        }
+        this.rootContext.newProperty("final").inherited().makeFinal().initial("final").declare();
+
+        this.execution.pushContext(this.rootContext);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.execution.removeContext();
+    }
+
+    @Benchmark
+    public Object pushReadPop()
+    {
+        this.execution.pushContext(new ExecutionContext());
+        Object value = this.execution.getContext().getProperty("inherited0");
+        this.execution.popContext();
+
+        return value;
+    }
+
+    @Benchmark
+    public Object pushWritePop()
+    {
+        ExecutionContext context = new ExecutionContext();
+        this.execution.pushContext(context);
+        context.setProperty("inherited0", "value");
+        context.setProperty("local", "value");
+        this.execution.popContext();
+
+        return context;
+    }
+
+    @Benchmark
+    public Object cloneContext() throws ExecutionContextException
+    {
+        return this.manager.clone(this.rootContext);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(ExecutionContextBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -26,6 +26,7 @@
 import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
 import org.xwiki.extension.repository.ExtensionRepositoryId;
 import org.xwiki.extension.version.VersionConstraint;
+import org.xwiki.stability.Unstable;
 
 /**
  * Provide some general extension manager configuration.
@@ -90,4 +91,59 @@ default VersionConstraint getRecomendedVersionConstraint(String id)
     {
         return null;
     }
+
+    /**
+     * @return true if the searches on {@link org.xwiki.extension.repository.ExtensionRepositoryManager} should be
+     *         answered from a local index of the installed, local and core extensions (and of the extensions of the
+     *         remote repositories when {@link #isSearchIndexRemote()} is true) instead of asking each remote repository
+     * @since 10.0RC1
+     */
+    @Unstable
+    default boolean isSearchIndexEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return true if the local search index should also contain all the extensions of the remote repositories
+     * @since 10.0RC1
+     */
+    @Unstable
+    default boolean isSearchIndexRemote()
+    {
+        return false;
+    }
+
+    /**
+     * @return the number of seconds between two refreshes (in background) of the extensions of the remote repositories
+     *         in the local search index
+     * @since 10.0RC1
+     */
+    @Unstable
+    default int getSearchIndexRemoteRefreshInterval()
+    {
+        return 3600;
+    }
+
+    /**
+     * @return true if {@link org.xwiki.extension.repository.ExtensionRepositoryManager} should ask all the
+     *         repositories at the same time when resolving an extension, instead of asking them one after the other
+     * @since 10.0RC1
+     */
+    @Unstable
+    default boolean isResolveParallel()
+    {
+        return false;
+    }
+
+    /**
+     * @return the number of seconds during which a repository which could not find an extension is not asked again for
+     *         it when resolving in parallel, 0 to disable it
+     * @since 10.0RC1
+     */
+    @Unstable
+    default int getResolveNotFoundTTL()
+    {
+        return 0;
+    }
 }
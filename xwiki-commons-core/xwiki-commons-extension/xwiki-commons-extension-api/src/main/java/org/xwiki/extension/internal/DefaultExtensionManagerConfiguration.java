@@ -81,6 +81,16 @@ public class DefaultExtensionManagerConfiguration implements ExtensionManagerCon
      */
     private static final String CK_CORE_PREFIX = CK_PREFIX + "core.";
 
+    /**
+     * The prefix of all the extension search index related properties.
+     */
+    private static final String CK_INDEX_PREFIX = CK_PREFIX + "index.";
+
+    /**
+     * The prefix of all the extension resolution related properties.
+     */
+    private static final String CK_RESOLVE_PREFIX = CK_PREFIX + "resolve.";
+
     /**
      * The prefix of all the extension repository related properties.
      */
@@ -279,6 +289,36 @@ public boolean resolveCoreExtensions()
         return this.configuration.get().getProperty(CK_CORE_PREFIX + "resolve", true);
     }
 
+    @Override
+    public boolean isSearchIndexEnabled()
+    {
+        return this.configuration.get().getProperty(CK_INDEX_PREFIX + "enabled", false);
+    }
+
+    @Override
+    public boolean isSearchIndexRemote()
+    {
+        return this.configuration.get().getProperty(CK_INDEX_PREFIX + "remote", false);
+    }
+
+    @Override
+    public int getSearchIndexRemoteRefreshInterval()
+    {
+        return this.configuration.get().getProperty(CK_INDEX_PREFIX + "remoteRefreshInterval", 3600);
+    }
+
+    @Override
+    public boolean isResolveParallel()
+    {
+        return this.configuration.get().getProperty(CK_RESOLVE_PREFIX + "parallel", false);
+    }
+
+    @Override
+    public int getResolveNotFoundTTL()
+    {
+        return this.configuration.get().getProperty(CK_RESOLVE_PREFIX + "notFoundTTL", 0);
+    }
+
     protected List<String> getRecommendedVersions()
     {
         // Try configuration
@@ -20,6 +20,7 @@
 package org.xwiki.extension.repository.internal;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -33,19 +34,23 @@
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.extension.Extension;
 import org.xwiki.extension.ExtensionDependency;
 import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ExtensionManagerConfiguration;
 import org.xwiki.extension.ExtensionNotFoundException;
 import org.xwiki.extension.ResolveException;
 import org.xwiki.extension.repository.AbstractAdvancedSearchableExtensionRepository;
@@ -57,6 +62,7 @@
 import org.xwiki.extension.repository.ExtensionRepositoryId;
 import org.xwiki.extension.repository.ExtensionRepositoryManager;
 import org.xwiki.extension.repository.ExtensionRepositorySource;
+import org.xwiki.extension.repository.internal.index.ExtensionIndexManager;
 import org.xwiki.extension.repository.result.IterableResult;
 import org.xwiki.extension.repository.search.AdvancedSearchable;
 import org.xwiki.extension.repository.search.ExtensionQuery;
@@ -72,7 +78,7 @@
 @Component
 @Singleton
 public class DefaultExtensionRepositoryManager extends AbstractAdvancedSearchableExtensionRepository
-    implements ExtensionRepositoryManager, Initializable
+    implements ExtensionRepositoryManager, Initializable, Disposable
 {
     /**
      * Used to lookup {@link ExtensionRepositoryFactory}s.
@@ -92,6 +98,15 @@ public class DefaultExtensionRepositoryManager extends AbstractAdvancedSearchabl
     @Inject
     private List<ExtensionRepositorySource> repositoriesSources;
 
+    @Inject
+    private ExtensionManagerConfiguration configuration;
+
+    /**
+     * Used to search in the local index instead of the remote repositories, when enabled.
+     */
+    @Inject
+    private Provider<ExtensionIndexManager> indexManagerProvider;
+
     /**
      * The registered repositories.
      */
@@ -102,6 +117,11 @@ public class DefaultExtensionRepositoryManager extends AbstractAdvancedSearchabl
 
     private LRUMap<ExtensionRepositoryDescriptor, ExtensionRepository> repositoriesCache = new LRUMap<>(100);
 
+    /**
+     * Used to ask all the repositories at the same time when resolving an extension, when enabled.
+     */
+    private ParallelExtensionResolver parallelResolver;
+
     private class ExtensionRepositoryEntry implements Comparable<ExtensionRepositoryEntry>
     {
         private ExtensionRepository repository;
@@ -140,6 +160,8 @@ public void initialize() throws InitializationException
         // Set descriptor
         setDescriptor(new DefaultExtensionRepositoryDescriptor("remote"));
 
+        this.parallelResolver = new ParallelExtensionResolver(this.componentManager, this.logger);
+
         // Load default extension repositories
         for (ExtensionRepositorySource repositoriesSource : this.repositoriesSources) {
             for (ExtensionRepositoryDescriptor repositoryDescriptor : repositoriesSource
@@ -153,6 +175,14 @@ public void initialize() throws InitializationException
         }
     }
 
+    // Disposable
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.parallelResolver.dispose();
+    }
+
     // ExtensionRepositoryManager
 
     private void updateRepositories()
@@ -165,6 +195,14 @@ private void updateRepositories()
 
         // Convert to list of ExtensionRepository
         this.repositories = entryStream.map(ExtensionRepositoryEntry::getRepository).collect(Collectors.toList());
+
+        // Make sure the new repositories are asked again for the extensions they used to miss
+        this.parallelResolver.clearNotFound();
+
+        // Make sure the remote extensions are indexed again
+        if (this.configuration.isSearchIndexEnabled() && this.configuration.isSearchIndexRemote()) {
+            this.indexManagerProvider.get().invalidate(true);
+        }
     }
 
     @Override
@@ -279,6 +317,10 @@ public Collection<ExtensionRepository> getRepositories()
     @Override
     public Extension resolve(ExtensionId extensionId) throws ResolveException
     {
+        if (this.configuration.isResolveParallel()) {
+            return resolveInParallel(this.repositories, extensionId, ExtensionRepository::resolve, "extension");
+        }
+
         ResolveException lastException = null;
 
         for (ExtensionRepository repository : this.repositories) {
@@ -306,6 +348,11 @@ public Extension resolve(ExtensionId extensionId) throws ResolveException
     @Override
     public Extension resolve(ExtensionDependency extensionDependency) throws ResolveException
     {
+        if (this.configuration.isResolveParallel()) {
+            return resolveInParallel(getRepositories(extensionDependency), extensionDependency,
+                ExtensionRepository::resolve, "extension dependency");
+        }
+
         Set<ExtensionRepositoryDescriptor> checkedRepositories = new HashSet<>();
 
         Exception lastException = null;
@@ -374,6 +421,52 @@ public Extension resolve(ExtensionDependency extensionDependency) throws Resolve
         }
     }
 
+    private <T> Extension resolveInParallel(Collection<ExtensionRepository> repositories, T request,
+        ParallelExtensionResolver.RepositoryResolver<T> resolver, String type) throws ResolveException
+    {
+        Extension extension;
+        try {
+            extension = this.parallelResolver.resolve(repositories, request, resolver,
+                this.configuration.getResolveNotFoundTTL());
+        } catch (ResolveException e) {
+            throw new ResolveException(MessageFormat.format("Failed to resolve {0} [{1}]", type, request), e);
+        }
+
+        if (extension == null) {
+            throw new ExtensionNotFoundException(MessageFormat.format("Could not find {0} [{1}]", type, request));
+        }
+
+        return extension;
+    }
+
+    /**
+     * @return the repositories declared in the extension dependency followed by the configured repositories
+     */
+    private List<ExtensionRepository> getRepositories(ExtensionDependency extensionDependency)
+    {
+        Set<ExtensionRepositoryDescriptor> checkedRepositories = new HashSet<>();
+        List<ExtensionRepository> dependencyRepositories = new ArrayList<>();
+
+        for (ExtensionRepositoryDescriptor repositoryDescriptor : extensionDependency.getRepositories()) {
+            if (checkedRepositories.add(repositoryDescriptor)) {
+                try {
+                    dependencyRepositories.add(getRepository(repositoryDescriptor));
+                } catch (ExtensionRepositoryException e) {
+                    this.logger.warn("Invalid repository [{}] in extension dependency [{}]: {}", repositoryDescriptor,
+                        extensionDependency, ExceptionUtils.getRootCauseMessage(e));
+                }
+            }
+        }
+
+        for (ExtensionRepository repository : this.repositories) {
+            if (checkedRepositories.add(repository.getDescriptor())) {
+                dependencyRepositories.add(repository);
+            }
+        }
+
+        return dependencyRepositories;
+    }
+
     @Override
     public IterableResult<Version> resolveVersions(String id, int offset, int nb) throws ResolveException
     {
@@ -419,6 +512,16 @@ public boolean exists(ExtensionId extensionId)
     @Override
     public IterableResult<Extension> search(ExtensionQuery query) throws SearchException
     {
+        if (this.configuration.isSearchIndexEnabled()) {
+            ExtensionIndexManager indexManager = this.indexManagerProvider.get();
+
+            // Complete with the repositories which are not (yet) in the index
+            List<ExtensionRepository> notIndexedRepositories =
+                this.repositories.stream().filter(r -> !indexManager.isIndexed(r)).collect(Collectors.toList());
+
+            return RepositoryUtils.search(query, indexManager.search(query), notIndexedRepositories);
+        }
+
         return RepositoryUtils.search(query, this.repositories);
     }
 
@@ -0,0 +1,279 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionNotFoundException;
+import org.xwiki.extension.ResolveException;
+import org.xwiki.extension.repository.ExtensionRepository;
+import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
+
+/**
+ * Ask several repositories at the same time to resolve an extension and return the answer of the first repository (in
+ * priority order) which found it, as soon as all the repositories before it answered.
+ * <p>
+ * The repositories which could not find an extension are remembered for a while and not asked again for it.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class ParallelExtensionResolver
+{
+    /**
+     * Resolve a request in a specific repository.
+     *
+     * @param <T> the type of the request
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface RepositoryResolver<T>
+    {
+        /**
+         * @param repository the repository where to search
+         * @param request the extension id or dependency to resolve
+         * @return the resolved extension
+         * @throws ResolveException when failing to resolve the extension
+         */
+        Extension resolve(ExtensionRepository repository, T request) throws ResolveException;
+    }
+
+    private static final int THREADS = 8;
+
+    private static final int NOT_FOUND_CACHE_SIZE = 1000;
+
+    private static final ThreadLocal<Boolean> RESOLVING = new ThreadLocal<>();
+
+    private final ComponentManager componentManager;
+
+    private final Logger logger;
+
+    /**
+     * The time until which a repository is known to not contain an extension.
+     */
+    private final Map<Pair<ExtensionRepositoryDescriptor, Object>, Long> notFound =
+        Collections.synchronizedMap(new LRUMap<>(NOT_FOUND_CACHE_SIZE));
+
+    private ThreadPoolExecutor executor;
+
+    private final class ResolveTask extends FutureTask<Extension>
+    {
+        private final ExtensionRepository repository;
+
+        private <T> ResolveTask(ExtensionRepository repository, T request, RepositoryResolver<T> resolver)
+        {
+            super(() -> resolver.resolve(repository, request));
+
+            this.repository = repository;
+        }
+
+        @Override
+        public void run()
+        {
+            RESOLVING.set(Boolean.TRUE);
+
+            try {
+                super.run();
+            } finally {
+                RESOLVING.remove();
+            }
+        }
+
+        private void fail(Throwable cause)
+        {
+            setException(cause);
+        }
+    }
+
+    /**
+     * @param componentManager used to initialize the execution context of the resolution threads
+     * @param logger the logger to log
+     */
+    public ParallelExtensionResolver(ComponentManager componentManager, Logger logger)
+    {
+        this.componentManager = componentManager;
+        this.logger = logger;
+    }
+
+    /**
+     * @param <T> the type of the request
+     * @param repositories the repositories to ask, in priority order
+     * @param request the extension id or dependency to resolve
+     * @param resolver resolve the request in a repository
+     * @param notFoundTTL the number of seconds during which a repository which could not find the extension is not
+     *            asked again for it, 0 to disable it
+     * @return the extension found in the repository with the highest priority or null if none found it
+     * @throws ResolveException when none of the repositories found the extension and at least one failed to resolve it
+     *             for another reason
+     */
+    public <T> Extension resolve(Collection<ExtensionRepository> repositories, T request,
+        RepositoryResolver<T> resolver, int notFoundTTL) throws ResolveException
+    {
+        List<ResolveTask> tasks = new ArrayList<>(repositories.size());
+
+        try {
+            for (ExtensionRepository repository : repositories) {
+                if (notFoundTTL > 0 && isNotFound(repository, request)) {
+                    this.logger.debug("Skipping repository [{}] which recently could not find [{}]",
+                        repository.getDescriptor(), request);
+                } else {
+                    ResolveTask task = new ResolveTask(repository, request, resolver);
+                    tasks.add(task);
+                    execute(task);
+                }
+            }
+
+            return getResult(tasks, request, notFoundTTL);
+        } finally {
+            // Stop the resolutions which are not needed anymore
+            for (ResolveTask task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    private Extension getResult(List<ResolveTask> tasks, Object request, int notFoundTTL) throws ResolveException
+    {
+        ResolveException lastException = null;
+
+        for (ResolveTask task : tasks) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new ResolveException("Interrupted while resolving [" + request + "]", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof ExtensionNotFoundException) {
+                    this.logger.debug("Could not find [{}] in repository [{}]", request,
+                        task.repository.getDescriptor(), cause);
+
+                    if (notFoundTTL > 0) {
+                        this.notFound.put(Pair.of(task.repository.getDescriptor(), request),
+                            System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(notFoundTTL));
+                    }
+                } else {
+                    this.logger.error("Unexpected error when trying to find [{}] in repository [{}]", request,
+                        task.repository.getDescriptor(), cause);
+
+                    lastException = cause instanceof ResolveException ? (ResolveException) cause
+                        : new ResolveException("Failed to resolve [" + request + "]", cause);
+                }
+            }
+        }
+
+        if (lastException != null) {
+            throw lastException;
+        }
+
+        return null;
+    }
+
+    private boolean isNotFound(ExtensionRepository repository, Object request)
+    {
+        Pair<ExtensionRepositoryDescriptor, Object> key = Pair.of(repository.getDescriptor(), request);
+
+        Long expiration = this.notFound.get(key);
+
+        if (expiration != null) {
+            if (expiration > System.currentTimeMillis()) {
+                return true;
+            }
+
+            this.notFound.remove(key);
+        }
+
+        return false;
+    }
+
+    private void execute(ResolveTask task)
+    {
+        // Resolve in the current thread when called from a resolution thread to not wait for itself
+        if (RESOLVING.get() == null) {
+            try {
+                getExecutor().execute(() -> {
+                    try {
+                        new ExecutionContextRunnable(task, this.componentManager).run();
+                    } catch (RuntimeException e) {
+                        // Failed to initialize the execution context
+                        task.fail(e);
+                    }
+                });
+
+                return;
+            } catch (RejectedExecutionException e) {
+                // The resolver is being disposed, resolve in the current thread
+            }
+        }
+
+        task.run();
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (this.executor == null) {
+            BasicThreadFactory threadFactory =
+                new BasicThreadFactory.Builder().namingPattern("Extension resolver %d").daemon(true).build();
+            this.executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        return this.executor;
+    }
+
+    /**
+     * Forget all the remembered missing extensions.
+     */
+    public void clearNotFound()
+    {
+        this.notFound.clear();
+    }
+
+    /**
+     * Stop the resolution threads.
+     */
+    public synchronized void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+}
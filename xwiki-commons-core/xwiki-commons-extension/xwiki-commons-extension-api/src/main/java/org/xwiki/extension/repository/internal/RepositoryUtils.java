@@ -398,31 +398,47 @@ public static <E extends Extension> IterableResult<E> appendSearchResults(Iterab
     public static IterableResult<Extension> search(ExtensionQuery query, Iterable<ExtensionRepository> repositories)
         throws SearchException
     {
-        IterableResult<Extension> searchResult = null;
+        return search(query, null, repositories);
+    }
+
+    /**
+     * Complete a search result with the extensions found in the provided repositories.
+     *
+     * @param query the search query
+     * @param previousSearchResult the result of the search in other extensions, null if none
+     * @param repositories the repositories to search
+     * @return the search result
+     * @throws SearchException error while searching on provided repository
+     * @since 10.0RC1
+     */
+    public static IterableResult<Extension> search(ExtensionQuery query, IterableResult<Extension> previousSearchResult,
+        Iterable<ExtensionRepository> repositories) throws SearchException
+    {
+        IterableResult<Extension> searchResult = previousSearchResult;
 
         int currentOffset = query.getOffset() > 0 ? query.getOffset() : 0;
         int currentNb = query.getLimit();
 
         // A local index would avoid things like this...
         for (ExtensionRepository repository : repositories) {
-            try {
-                searchResult = search(repository, query, currentOffset, currentNb, searchResult);
-
-                if (searchResult != null) {
-                    if (currentOffset > 0) {
-                        currentOffset = query.getOffset() - searchResult.getTotalHits();
-                        if (currentOffset < 0) {
-                            currentOffset = 0;
-                        }
+            if (searchResult != null) {
+                if (currentOffset > 0) {
+                    currentOffset = query.getOffset() - searchResult.getTotalHits();
+                    if (currentOffset < 0) {
+                        currentOffset = 0;
                     }
+                }
 
-                    if (currentNb > 0) {
-                        currentNb = query.getLimit() - searchResult.getSize();
-                        if (currentNb < 0) {
-                            currentNb = 0;
-                        }
+                if (currentNb > 0) {
+                    currentNb = query.getLimit() - searchResult.getSize();
+                    if (currentNb < 0) {
+                        currentNb = 0;
                     }
                 }
+            }
+
+            try {
+                searchResult = search(repository, query, currentOffset, currentNb, searchResult);
             } catch (SearchException e) {
                 LOGGER.error(
                     "Failed to search on repository [{}] with query [{}]. " + "Ignore and go to next repository.",
@@ -0,0 +1,422 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.InstalledExtension;
+import org.xwiki.extension.internal.converter.ExtensionIdConverter;
+import org.xwiki.extension.repository.internal.RepositoryUtils;
+import org.xwiki.extension.repository.result.CollectionIterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+import org.xwiki.extension.repository.search.ExtensionQuery.COMPARISON;
+import org.xwiki.extension.repository.search.ExtensionQuery.Filter;
+
+/**
+ * An in memory index of extensions answering {@link ExtensionQuery}s without matching each extension.
+ * <p>
+ * The extensions are matched exactly like {@link RepositoryUtils#matches(Pattern, Collection, Extension)} does and
+ * the result is in the order in which the extensions were added (unless the query contains sort clauses):
+ * <ul>
+ * <li>the text of the query is searched in the searchable fields (id, name, summary, description and features) using
+ * an inverted index of the trigrams of these fields, the candidates are then checked with a simple
+ * {@link String#contains(CharSequence)}. Queries containing regular expression characters are matched with the
+ * regular expression on the pre computed lower case fields.</li>
+ * <li>{@link COMPARISON#EQUAL} filters on the facet fields (type, category, namespaces, etc.) are resolved with an
+ * index of the extensions associated to each value of these fields, other filters are checked on the candidates.</li>
+ * </ul>
+ * <p>
+ * Not thread safe, the index is not supposed to be modified while being searched.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class ExtensionIndex
+{
+    /**
+     * The fields indexed by default to resolve {@link COMPARISON#EQUAL} filters.
+     */
+    public static final Set<String> DEFAULT_FACETS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        Extension.FIELD_TYPE, Extension.FIELD_CATEGORY, Extension.FIELD_NAMESPACES, Extension.FIELD_ALLOWEDNAMESPACES,
+        Extension.FIELD_REPOSITORY, InstalledExtension.PKEY_NAMESPACES)));
+
+    private static final int GRAM = 3;
+
+    /**
+     * The characters which make a query a regular expression (the query is not quoted when searching in a
+     * collection).
+     */
+    private static final String REGEX_CHARACTERS = "\\[](){}.*+?^$|";
+
+    private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
+
+    private static final class Document
+    {
+        private final Extension extension;
+
+        private final int rank;
+
+        /**
+         * The lower case searchable fields.
+         */
+        private final String[] texts;
+
+        Document(Extension extension, int rank, String[] texts)
+        {
+            this.extension = extension;
+            this.rank = rank;
+            this.texts = texts;
+        }
+    }
+
+    /**
+     * A sorted list of document numbers.
+     */
+    private static final class Postings
+    {
+        private int[] documents = new int[2];
+
+        private int size;
+
+        void add(int document)
+        {
+            if (this.size == this.documents.length) {
+                this.documents = Arrays.copyOf(this.documents, this.size * 2);
+            }
+
+            this.documents[this.size++] = document;
+        }
+
+        boolean contains(int document)
+        {
+            return Arrays.binarySearch(this.documents, 0, this.size, document) >= 0;
+        }
+    }
+
+    private final Set<String> facetFields;
+
+    private final List<Document> documents = new ArrayList<>();
+
+    private final Map<ExtensionId, Integer> documentsById = new HashMap<>();
+
+    private final BitSet live = new BitSet();
+
+    private final Map<Long, Postings> grams = new HashMap<>();
+
+    private final Map<String, Map<String, BitSet>> facets = new HashMap<>();
+
+    /**
+     * Create an index using the {@link #DEFAULT_FACETS}.
+     */
+    public ExtensionIndex()
+    {
+        this(DEFAULT_FACETS);
+    }
+
+    /**
+     * @param facetFields the fields to index to resolve {@link COMPARISON#EQUAL} filters
+     */
+    public ExtensionIndex(Set<String> facetFields)
+    {
+        this.facetFields = facetFields;
+    }
+
+    /**
+     * @return the number of extensions in the index
+     */
+    public int size()
+    {
+        return this.documentsById.size();
+    }
+
+    /**
+     * Add an extension to the index. If another extension with the same id is already indexed, the one with the
+     * lowest rank is kept.
+     *
+     * @param extension the extension to index
+     * @param rank the priority of the extension (lowest is first) when several extensions have the same id
+     * @return true if the extension was added to the index
+     */
+    public boolean add(Extension extension, int rank)
+    {
+        Integer existing = this.documentsById.get(extension.getId());
+        if (existing != null) {
+            if (this.documents.get(existing).rank <= rank) {
+                return false;
+            }
+
+            this.live.clear(existing);
+        }
+
+        int number = this.documents.size();
+
+        String[] texts = getTexts(extension);
+        this.documents.add(new Document(extension, rank, texts));
+        this.documentsById.put(extension.getId(), number);
+        this.live.set(number);
+
+        indexGrams(number, texts);
+        indexFacets(number, extension);
+
+        return true;
+    }
+
+    /**
+     * @param extensionId the identifier of the extension to remove from the index
+     * @return true if the extension was removed from the index
+     */
+    public boolean remove(ExtensionId extensionId)
+    {
+        Integer number = this.documentsById.remove(extensionId);
+
+        if (number != null) {
+            this.live.clear(number);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private String[] getTexts(Extension extension)
+    {
+        Object[] fields = new Object[] { extension.getId().getId(), extension.getDescription(), extension.getSummary(),
+            extension.getName(), ExtensionIdConverter.toStringList(extension.getExtensionFeatures()) };
+
+        String[] texts = new String[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            if (fields[i] != null) {
+                texts[i] = fields[i].toString().toLowerCase();
+            }
+        }
+
+        return texts;
+    }
+
+    private static boolean isSingleLine(String text)
+    {
+        return StringUtils.containsNone(text, LINE_TERMINATORS);
+    }
+
+    private static long gram(String text, int index)
+    {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private void indexGrams(int number, String[] texts)
+    {
+        Set<Long> documentGrams = new HashSet<>();
+        for (String text : texts) {
+            // The regular expression used to match each field does not cross lines so a text containing several
+            // lines can never be matched by a query without regular expression characters
+            if (text != null && isSingleLine(text)) {
+                for (int i = 0; i + GRAM <= text.length(); ++i) {
+                    documentGrams.add(gram(text, i));
+                }
+            }
+        }
+
+        for (Long documentGram : documentGrams) {
+            this.grams.computeIfAbsent(documentGram, k -> new Postings()).add(number);
+        }
+    }
+
+    private void indexFacets(int number, Extension extension)
+    {
+        for (String field : this.facetFields) {
+            Object value = extension.get(field);
+
+            this.facets.computeIfAbsent(field, k -> new HashMap<>())
+                .computeIfAbsent(value != null ? String.valueOf(value) : null, k -> new BitSet()).set(number);
+        }
+    }
+
+    /**
+     * @param query the query
+     * @return the search result
+     */
+    public CollectionIterableResult<Extension> search(ExtensionQuery query)
+    {
+        BitSet candidates = (BitSet) this.live.clone();
+
+        // Resolve the filters which are indexed
+        List<Filter> filters = new ArrayList<>(query.getFilters().size());
+        for (Filter filter : query.getFilters()) {
+            Map<String, BitSet> facet =
+                filter.getComparison() == COMPARISON.EQUAL ? this.facets.get(filter.getField()) : null;
+
+            if (facet != null) {
+                BitSet values = facet.get(filter.getValue() != null ? String.valueOf(filter.getValue()) : null);
+                if (values != null) {
+                    candidates.and(values);
+                } else {
+                    candidates.clear();
+                }
+            } else {
+                filters.add(filter);
+            }
+        }
+
+        String text = StringUtils.isEmpty(query.getQuery()) ? null : query.getQuery().toLowerCase();
+
+        if (text == null && filters.isEmpty() && query.getSortClauses().isEmpty()) {
+            // No need to check or sort each candidate
+            return getPage(candidates, query.getOffset(), query.getLimit());
+        }
+
+        List<Extension> result = match(candidates, text, filters);
+
+        RepositoryUtils.sort(result, query.getSortClauses());
+
+        return RepositoryUtils.getIterableResult(query.getOffset(), query.getLimit(), result);
+    }
+
+    private CollectionIterableResult<Extension> getPage(BitSet candidates, int offset, int limit)
+    {
+        int total = candidates.cardinality();
+
+        List<Extension> page = new ArrayList<>(limit > 0 ? Math.min(limit, total) : total);
+
+        int skip = Math.max(offset, 0);
+        for (int number = candidates.nextSetBit(0); number >= 0 && (limit < 0 || page.size() < limit);
+            number = candidates.nextSetBit(number + 1)) {
+            if (skip > 0) {
+                --skip;
+            } else {
+                page.add(this.documents.get(number).extension);
+            }
+        }
+
+        return new CollectionIterableResult<>(total, offset, page);
+    }
+
+    private List<Extension> match(BitSet candidates, String text, List<Filter> filters)
+    {
+        List<Extension> result = new ArrayList<>();
+
+        if (text == null) {
+            for (int number = candidates.nextSetBit(0); number >= 0; number = candidates.nextSetBit(number + 1)) {
+                addIfMatching(number, filters, result);
+            }
+        } else if (StringUtils.containsAny(text, REGEX_CHARACTERS) || !isSingleLine(text)) {
+            Pattern pattern = Pattern.compile(
+                RepositoryUtils.SEARCH_PATTERN_SUFFIXNPREFIX + text + RepositoryUtils.SEARCH_PATTERN_SUFFIXNPREFIX);
+
+            for (int number = candidates.nextSetBit(0); number >= 0; number = candidates.nextSetBit(number + 1)) {
+                if (matches(pattern, this.documents.get(number).texts)) {
+                    addIfMatching(number, filters, result);
+                }
+            }
+        } else if (text.length() >= GRAM) {
+            matchGrams(candidates, text, filters, result);
+        } else {
+            for (int number = candidates.nextSetBit(0); number >= 0; number = candidates.nextSetBit(number + 1)) {
+                if (contains(this.documents.get(number).texts, text)) {
+                    addIfMatching(number, filters, result);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void matchGrams(BitSet candidates, String text, List<Filter> filters, List<Extension> result)
+    {
+        List<Postings> textPostings = new ArrayList<>(text.length() - GRAM + 1);
+        for (int i = 0; i + GRAM <= text.length(); ++i) {
+            Postings postings = this.grams.get(gram(text, i));
+
+            if (postings == null) {
+                // No extension contains this gram
+                return;
+            }
+
+            textPostings.add(postings);
+        }
+
+        // Start with the smallest list of documents
+        textPostings.sort((p1, p2) -> p1.size - p2.size);
+        Postings smallest = textPostings.get(0);
+
+        for (int i = 0; i < smallest.size; ++i) {
+            int number = smallest.documents[i];
+
+            if (candidates.get(number) && containsAll(textPostings, number)
+                && contains(this.documents.get(number).texts, text)) {
+                addIfMatching(number, filters, result);
+            }
+        }
+    }
+
+    private boolean containsAll(List<Postings> textPostings, int number)
+    {
+        for (int i = 1; i < textPostings.size(); ++i) {
+            if (!textPostings.get(i).contains(number)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void addIfMatching(int number, List<Filter> filters, List<Extension> result)
+    {
+        Extension extension = this.documents.get(number).extension;
+
+        if (RepositoryUtils.matches(filters, extension)) {
+            result.add(extension);
+        }
+    }
+
+    private boolean contains(String[] texts, String text)
+    {
+        for (String documentText : texts) {
+            if (documentText != null && documentText.contains(text) && isSingleLine(documentText)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean matches(Pattern pattern, String[] texts)
+    {
+        for (String documentText : texts) {
+            if (documentText != null && pattern.matcher(documentText).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionManagerConfiguration;
+import org.xwiki.extension.repository.CoreExtensionRepository;
+import org.xwiki.extension.repository.ExtensionRepository;
+import org.xwiki.extension.repository.ExtensionRepositoryManager;
+import org.xwiki.extension.repository.InstalledExtensionRepository;
+import org.xwiki.extension.repository.LocalExtensionRepository;
+import org.xwiki.extension.repository.internal.RepositoryUtils;
+import org.xwiki.extension.repository.result.IterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+import org.xwiki.extension.repository.search.Searchable;
+
+/**
+ * Maintain an {@link ExtensionIndex} of the installed, local and core extensions and, optionally, of the extensions
+ * provided by the remote repositories.
+ * <p>
+ * The index is rebuilt lazily (at the next search) when it's invalidated, which happens each time an extension is
+ * installed, uninstalled or upgraded (see {@link ExtensionIndexListener}). The installed, local and core extensions are
+ * stored by their repositories so rebuilding it does not involve any network access.
+ * <p>
+ * The extensions of the remote repositories (see {@link ExtensionManagerConfiguration#isSearchIndexRemote()}) are
+ * loaded in a background thread, when the index is first used, when the list of remote repositories changes and every
+ * {@link ExtensionManagerConfiguration#getSearchIndexRemoteRefreshInterval()} seconds. Until then the remote
+ * repositories which are not indexed are searched the usual way (see {@link #isIndexed(ExtensionRepository)}).
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = ExtensionIndexManager.class)
+@Singleton
+public class ExtensionIndexManager implements Disposable
+{
+    private static final int RANK_INSTALLED = 0;
+
+    private static final int RANK_LOCAL = 1;
+
+    private static final int RANK_CORE = 2;
+
+    private static final int RANK_REMOTE = 3;
+
+    @Inject
+    private Provider<InstalledExtensionRepository> installedRepositoryProvider;
+
+    @Inject
+    private Provider<LocalExtensionRepository> localRepositoryProvider;
+
+    @Inject
+    private Provider<CoreExtensionRepository> coreRepositoryProvider;
+
+    @Inject
+    private Provider<ExtensionRepositoryManager> repositoryManagerProvider;
+
+    @Inject
+    private ExtensionManagerConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    private volatile ExtensionIndex index;
+
+    private volatile boolean outdated = true;
+
+    /**
+     * The extensions of the remote repositories, by repository id, in the order of the repositories.
+     */
+    private volatile Map<String, List<Extension>> remoteExtensions = Collections.emptyMap();
+
+    private ScheduledExecutorService remoteExecutor;
+
+    /**
+     * @param query the query
+     * @return the found extensions
+     */
+    public IterableResult<Extension> search(ExtensionQuery query)
+    {
+        return getIndex().search(query);
+    }
+
+    /**
+     * @param repository a remote repository
+     * @return true if the extensions of the provided repository are in the index
+     */
+    public boolean isIndexed(ExtensionRepository repository)
+    {
+        return this.remoteExtensions.containsKey(repository.getDescriptor().getId());
+    }
+
+    /**
+     * Make sure the index is rebuilt before the next search.
+     *
+     * @param remoteChanged true if the extensions of the remote repositories should be asked again
+     */
+    public void invalidate(boolean remoteChanged)
+    {
+        if (remoteChanged) {
+            startRemoteIndexing(true);
+        }
+
+        this.outdated = true;
+    }
+
+    /**
+     * @return the up to date index
+     */
+    public ExtensionIndex getIndex()
+    {
+        if (this.outdated || this.index == null) {
+            synchronized (this) {
+                if (this.outdated || this.index == null) {
+                    // Reset the flag first to not miss an invalidation happening during the indexing
+                    this.outdated = false;
+
+                    this.index = createIndex();
+                }
+            }
+        }
+
+        return this.index;
+    }
+
+    private ExtensionIndex createIndex()
+    {
+        ExtensionIndex newIndex = new ExtensionIndex();
+
+        add(newIndex, this.installedRepositoryProvider.get().getInstalledExtensions(), RANK_INSTALLED);
+        add(newIndex, this.localRepositoryProvider.get().getLocalExtensions(), RANK_LOCAL);
+        add(newIndex, this.coreRepositoryProvider.get().getCoreExtensions(), RANK_CORE);
+
+        if (this.configuration.isSearchIndexRemote()) {
+            startRemoteIndexing(false);
+
+            int rank = RANK_REMOTE;
+            for (List<Extension> extensions : this.remoteExtensions.values()) {
+                add(newIndex, extensions, rank++);
+            }
+        }
+
+        return newIndex;
+    }
+
+    private void add(ExtensionIndex newIndex, Collection<? extends Extension> extensions, int rank)
+    {
+        for (Extension extension : extensions) {
+            newIndex.add(extension, rank);
+        }
+    }
+
+    /**
+     * Start the periodic loading of the extensions of the remote repositories if not already started.
+     *
+     * @param now true if the extensions should be loaded again right away when the loading is already started
+     */
+    private synchronized void startRemoteIndexing(boolean now)
+    {
+        if (this.remoteExecutor == null) {
+            BasicThreadFactory threadFactory =
+                new BasicThreadFactory.Builder().namingPattern("Extension remote indexer").daemon(true).build();
+            this.remoteExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+
+            int interval = this.configuration.getSearchIndexRemoteRefreshInterval();
+            if (interval > 0) {
+                this.remoteExecutor.scheduleWithFixedDelay(this::loadRemoteExtensions, 0, interval, TimeUnit.SECONDS);
+            } else {
+                this.remoteExecutor.execute(this::loadRemoteExtensions);
+            }
+        } else if (now) {
+            this.remoteExecutor.execute(this::loadRemoteExtensions);
+        }
+    }
+
+    private void loadRemoteExtensions()
+    {
+        Collection<ExtensionRepository> repositories = this.repositoryManagerProvider.get().getRepositories();
+
+        Map<String, List<Extension>> extensions = new LinkedHashMap<>();
+        for (ExtensionRepository repository : repositories) {
+            if (repository instanceof Searchable) {
+                String id = repository.getDescriptor().getId();
+                try {
+                    List<Extension> repositoryExtensions = new ArrayList<>();
+                    for (Extension extension : RepositoryUtils.search(repository, new ExtensionQuery(""), null)) {
+                        repositoryExtensions.add(extension);
+                    }
+                    extensions.put(id, repositoryExtensions);
+                } catch (Exception e) {
+                    this.logger.warn("Failed to index the extensions of repository [{}]. Keeping the previous ones.",
+                        repository.getDescriptor(), e);
+
+                    List<Extension> previousExtensions = this.remoteExtensions.get(id);
+                    if (previousExtensions != null) {
+                        extensions.put(id, previousExtensions);
+                    }
+                }
+            }
+        }
+
+        this.remoteExtensions = extensions;
+        this.outdated = true;
+    }
+
+    @Override
+    public synchronized void dispose() throws ComponentLifecycleException
+    {
+        if (this.remoteExecutor != null) {
+            this.remoteExecutor.shutdownNow();
+            this.remoteExecutor = null;
+        }
+    }
+}
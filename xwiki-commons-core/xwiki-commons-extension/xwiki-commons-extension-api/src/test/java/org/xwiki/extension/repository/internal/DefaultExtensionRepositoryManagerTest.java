@@ -24,29 +24,52 @@
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.extension.DefaultExtensionDependency;
 import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionDependency;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ExtensionManagerConfiguration;
+import org.xwiki.extension.ExtensionNotFoundException;
 import org.xwiki.extension.ResolveException;
 import org.xwiki.extension.repository.DefaultExtensionRepositoryDescriptor;
 import org.xwiki.extension.repository.ExtensionRepository;
 import org.xwiki.extension.repository.ExtensionRepositoryManager;
+import org.xwiki.extension.repository.internal.index.ExtensionIndexManager;
 import org.xwiki.extension.repository.result.CollectionIterableResult;
 import org.xwiki.extension.repository.result.IterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
 import org.xwiki.extension.repository.search.SearchException;
 import org.xwiki.extension.repository.search.Searchable;
 import org.xwiki.extension.test.ExtensionUtils;
 import org.xwiki.extension.version.Version;
 import org.xwiki.extension.version.internal.DefaultVersion;
+import org.xwiki.extension.version.internal.DefaultVersionConstraint;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.google.common.collect.Lists;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
@@ -191,4 +214,171 @@ public void search() throws SearchException, ComponentLookupException
         assertSearch("pattern", 0, 1, this.extension1);
         assertSearch("pattern", 1, -1, this.extension2, this.extension3, this.extension4);
     }
+
+    @Test
+    public void searchWithIndex() throws Exception
+    {
+        ExtensionManagerConfiguration configuration = this.mock.getInstance(ExtensionManagerConfiguration.class);
+        when(configuration.isSearchIndexEnabled()).thenReturn(true);
+        ExtensionIndexManager indexManager = mock(ExtensionIndexManager.class);
+        Provider<ExtensionIndexManager> indexManagerProvider =
+            this.mock.getInstance(new DefaultParameterizedType(null, Provider.class, ExtensionIndexManager.class));
+        when(indexManagerProvider.get()).thenReturn(indexManager);
+        when(indexManager.isIndexed(any())).thenReturn(true);
+        ExtensionQuery query = new ExtensionQuery("pattern");
+        when(indexManager.search(query)).thenReturn(toIterableExtensions(this.extension1, this.extension4));
+
+        assertSameElements(Arrays.asList(this.extension1, this.extension4),
+            this.mock.getComponentUnderTest().search(query));
+
+        verify(this.mockSearchableRepository1, never()).search(any(), anyInt(), anyInt());
+        verify(this.mockSearchableRepository2, never()).search(any(), anyInt(), anyInt());
+    }
+
+    private void enableParallelResolve(int notFoundTTL) throws Exception
+    {
+        this.mock.registerMockComponent(ExecutionContextManager.class);
+        this.mock.registerMockComponent(Execution.class);
+
+        ExtensionManagerConfiguration configuration = this.mock.getInstance(ExtensionManagerConfiguration.class);
+        when(configuration.isResolveParallel()).thenReturn(true);
+        when(configuration.getResolveNotFoundTTL()).thenReturn(notFoundTTL);
+    }
+
+    @Test
+    public void resolveInParallelWaitsForHigherPriority() throws Exception
+    {
+        enableParallelResolve(0);
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+        CountDownLatch started = new CountDownLatch(1);
+        // Only answers when the second repository is being asked too
+        when(this.mockRepository1.resolve(extensionId)).thenAnswer(invocation -> {
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            return this.extension1;
+        });
+        when(this.mockRepository2.resolve(extensionId)).thenAnswer(invocation -> {
+            started.countDown();
+            return this.extension2;
+        });
+
+        assertSame(this.extension1, this.mock.getComponentUnderTest().resolve(extensionId));
+    }
+
+    @Test
+    public void resolveInParallelCancelsLowerPriority() throws Exception
+    {
+        enableParallelResolve(0);
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(this.mockRepository1.resolve(extensionId)).thenAnswer(invocation -> {
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            return this.extension1;
+        });
+        // Never answers
+        when(this.mockRepository2.resolve(extensionId)).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return this.extension2;
+        });
+
+        assertSame(this.extension1, this.mock.getComponentUnderTest().resolve(extensionId));
+        Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void resolveInParallelWhenHigherPriorityMisses() throws Exception
+    {
+        enableParallelResolve(0);
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+        when(this.mockRepository1.resolve(extensionId)).thenThrow(new ExtensionNotFoundException("not found"));
+        when(this.mockRepository2.resolve(extensionId)).thenReturn(this.extension2);
+
+        assertSame(this.extension2, this.mock.getComponentUnderTest().resolve(extensionId));
+
+        ExtensionDependency dependency = new DefaultExtensionDependency("id", new DefaultVersionConstraint("1.0"));
+        when(this.mockRepository1.resolve(dependency)).thenThrow(new ExtensionNotFoundException("not found"));
+        when(this.mockRepository2.resolve(dependency)).thenReturn(this.extension2);
+
+        assertSame(this.extension2, this.mock.getComponentUnderTest().resolve(dependency));
+    }
+
+    @Test
+    public void resolveInParallelWithErrors() throws Exception
+    {
+        enableParallelResolve(0);
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+        when(this.mockRepository1.resolve(extensionId)).thenThrow(new ResolveException("error"));
+        when(this.mockRepository2.resolve(extensionId)).thenThrow(new ExtensionNotFoundException("not found"));
+
+        try {
+            this.mock.getComponentUnderTest().resolve(extensionId);
+            Assert.fail("Should have failed");
+        } catch (ExtensionNotFoundException e) {
+            Assert.fail("Should not be a not found error");
+        } catch (ResolveException e) {
+            assertEquals("error", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void resolveInParallelRemembersMisses() throws Exception
+    {
+        enableParallelResolve(60);
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+        when(this.mockRepository1.resolve(extensionId)).thenThrow(new ExtensionNotFoundException("not found"));
+        when(this.mockRepository2.resolve(extensionId)).thenThrow(new ExtensionNotFoundException("not found"));
+
+        for (int i = 0; i < 2; ++i) {
+            try {
+                this.mock.getComponentUnderTest().resolve(extensionId);
+                Assert.fail("Should have failed");
+            } catch (ExtensionNotFoundException e) {
+                // Expected
+            }
+        }
+
+        verify(this.mockRepository1, times(1)).resolve(extensionId);
+        verify(this.mockRepository2, times(1)).resolve(extensionId);
+
+        // The misses are forgotten when the repositories change
+        this.mock.getComponentUnderTest().removeRepository("unknown");
+        doReturn(this.extension2).when(this.mockRepository2).resolve(extensionId);
+
+        assertSame(this.extension2, this.mock.getComponentUnderTest().resolve(extensionId));
+    }
+
+    @Test
+    public void searchWithIndexAndNotIndexedRepository() throws Exception
+    {
+        ExtensionManagerConfiguration configuration = this.mock.getInstance(ExtensionManagerConfiguration.class);
+        when(configuration.isSearchIndexEnabled()).thenReturn(true);
+        ExtensionIndexManager indexManager = mock(ExtensionIndexManager.class);
+        Provider<ExtensionIndexManager> indexManagerProvider =
+            this.mock.getInstance(new DefaultParameterizedType(null, Provider.class, ExtensionIndexManager.class));
+        when(indexManagerProvider.get()).thenReturn(indexManager);
+        when(indexManager.isIndexed(this.mockRepository1)).thenReturn(true);
+        ExtensionQuery query = new ExtensionQuery("pattern");
+        when(indexManager.search(query)).thenReturn(toIterableExtensions(this.extension1, this.extension2));
+        when(this.mockSearchableRepository2.search("pattern", 0, -1))
+            .thenReturn(toIterableExtensions(this.extension3, this.extension4));
+
+        IterableResult<Extension> result = this.mock.getComponentUnderTest().search(query);
+
+        // The repository which is not indexed is still searched
+        assertEquals(Arrays.asList(this.extension1, this.extension2, this.extension3, this.extension4),
+            Lists.newArrayList(result));
+        assertEquals(4, result.getTotalHits());
+        verify(this.mockSearchableRepository1, never()).search(any(), anyInt(), anyInt());
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.repository.internal.RepositoryUtils;
+import org.xwiki.extension.repository.result.IterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+import org.xwiki.extension.repository.search.ExtensionQuery.COMPARISON;
+import org.xwiki.extension.repository.search.ExtensionQuery.ORDER;
+
+/**
+ * Compare {@link ExtensionIndex} with the scan of all the extensions done by
+ * {@link RepositoryUtils#searchInCollection(ExtensionQuery, java.util.Collection, boolean)}, for a paged search among
+ * 50 000 extensions.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtensionIndexBenchmark
+{
+    private static final int EXTENSIONS = 50000;
+
+    @Param({ "text", "filter", "sort" })
+    private String kind;
+
+    private List<Extension> extensions;
+
+    private ExtensionIndex index;
+
+    private ExtensionQuery query;
+
+    @Setup
+    public void setup()
+    {
+        this.extensions = ExtensionIndexTest.createExtensions(EXTENSIONS);
+
+        this.index = new ExtensionIndex();
+        for (Extension extension : this.extensions) {
+            this.index.add(extension, 0);
+        }
+
+        switch (this.kind) {
+            case "filter":
+                this.query = new ExtensionQuery("office");
+                this.query.addFilter(Extension.FIELD_TYPE, "xar", COMPARISON.EQUAL);
+                this.query.addFilter(Extension.FIELD_CATEGORY, "macro", COMPARISON.EQUAL);
+                break;
+            case "sort":
+                this.query = new ExtensionQuery("chart");
+                this.query.addSort(Extension.FIELD_NAME, ORDER.ASC);
+                break;
+            default:
+                this.query = new ExtensionQuery("ldap importer");
+                break;
+        }
+        this.query.setOffset(20);
+        this.query.setLimit(20);
+    }
+
+    @Benchmark
+    public IterableResult<Extension> scan()
+    {
+        return RepositoryUtils.searchInCollection(this.query, this.extensions, false);
+    }
+
+    @Benchmark
+    public IterableResult<Extension> index()
+    {
+        return this.index.search(this.query);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(ExtensionIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
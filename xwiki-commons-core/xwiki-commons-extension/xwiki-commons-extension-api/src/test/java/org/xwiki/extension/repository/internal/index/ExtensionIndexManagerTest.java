@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ExtensionManagerConfiguration;
+import org.xwiki.extension.repository.DefaultExtensionRepositoryDescriptor;
+import org.xwiki.extension.repository.ExtensionRepository;
+import org.xwiki.extension.repository.ExtensionRepositoryManager;
+import org.xwiki.extension.repository.result.CollectionIterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+import org.xwiki.extension.repository.search.Searchable;
+import org.xwiki.extension.test.EmptyExtension;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Validate {@link ExtensionIndexManager}.
+ * 
+ * @version $Id$
+ */
+public class ExtensionIndexManagerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<ExtensionIndexManager> mocker =
+        new MockitoComponentMockingRule<>(ExtensionIndexManager.class);
+
+    private ExtensionRepository remoteRepository;
+
+    private Extension remoteExtension = new EmptyExtension(new ExtensionId("remote", "1.0"), "jar");
+
+    @Before
+    public void before() throws Exception
+    {
+        this.remoteRepository =
+            mock(ExtensionRepository.class, withSettings().extraInterfaces(Searchable.class).name("remote"));
+        when(this.remoteRepository.getDescriptor())
+            .thenReturn(new DefaultExtensionRepositoryDescriptor("remote", "type", new URI("uri:uri")));
+        ExtensionRepositoryManager repositoryManager = this.mocker.getInstance(ExtensionRepositoryManager.class);
+        when(repositoryManager.getRepositories()).thenReturn(Arrays.asList(this.remoteRepository));
+
+        ExtensionManagerConfiguration configuration = this.mocker.getInstance(ExtensionManagerConfiguration.class);
+        when(configuration.isSearchIndexRemote()).thenReturn(true);
+        when(configuration.getSearchIndexRemoteRefreshInterval()).thenReturn(3600);
+    }
+
+    @Test
+    public void remoteExtensionsAreLoadedInBackground() throws Exception
+    {
+        CountDownLatch remoteReleased = new CountDownLatch(1);
+        when(((Searchable) this.remoteRepository).search(eq(""), anyInt(), anyInt())).then(invocation -> {
+            remoteReleased.await();
+
+            return new CollectionIterableResult<>(1, 0, Arrays.asList(this.remoteExtension));
+        });
+
+        ExtensionIndexManager indexManager = this.mocker.getComponentUnderTest();
+
+        // The search does not wait for the remote repository
+        assertEquals(0, indexManager.search(new ExtensionQuery("remote")).getTotalHits());
+        assertFalse(indexManager.isIndexed(this.remoteRepository));
+
+        remoteReleased.countDown();
+
+        long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!indexManager.isIndexed(this.remoteRepository) && System.nanoTime() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(indexManager.isIndexed(this.remoteRepository));
+        assertEquals(1, indexManager.search(new ExtensionQuery("remote")).getTotalHits());
+
+        indexManager.dispose();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.repository.internal.RepositoryUtils;
+import org.xwiki.extension.repository.result.IterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+import org.xwiki.extension.repository.search.ExtensionQuery.COMPARISON;
+import org.xwiki.extension.repository.search.ExtensionQuery.ORDER;
+import org.xwiki.extension.test.EmptyExtension;
+
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate {@link ExtensionIndex}.
+ * 
+ * @version $Id$
+ */
+public class ExtensionIndexTest
+{
+    private static final String[] WORDS =
+        { "wiki", "Page", "macro", "Office", "importer", "LDAP", "chart", "Blog", "tag", "Notification" };
+
+    private static final String[] TYPES = { "jar", "xar", "webjar" };
+
+    private List<Extension> extensions;
+
+    private ExtensionIndex index;
+
+    /**
+     * Create pseudo random extensions similar to the ones usually found in a repository.
+     */
+    public static List<Extension> createExtensions(int count)
+    {
+        Random random = new Random(42);
+
+        List<Extension> extensions = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String word1 = WORDS[random.nextInt(WORDS.length)];
+            String word2 = WORDS[random.nextInt(WORDS.length)];
+
+            EmptyExtension extension = new EmptyExtension(
+                new ExtensionId("org.xwiki.contrib:" + word1.toLowerCase() + '-' + word2.toLowerCase() + '-' + i,
+                    random.nextInt(3) + ".0"),
+                TYPES[random.nextInt(TYPES.length)]);
+            extension.setName(word1 + ' ' + word2 + " Application " + i);
+            extension.setSummary("A " + word2 + " for " + word1);
+            if (random.nextBoolean()) {
+                extension.setDescription("The " + word1 + " extension\nto do " + word2 + " things");
+            } else {
+                extension.setDescription("The " + word1 + " extension to do " + word2 + " things");
+            }
+            extension.setCategory(WORDS[random.nextInt(3)].toLowerCase());
+            if (random.nextInt(4) == 0) {
+                extension.addExtensionFeature(new ExtensionId("feature-" + word2.toLowerCase() + "-" + i));
+            }
+
+            extensions.add(extension);
+        }
+
+        return extensions;
+    }
+
+    @Before
+    public void before()
+    {
+        this.extensions = createExtensions(500);
+
+        this.index = new ExtensionIndex();
+        for (Extension extension : this.extensions) {
+            this.index.add(extension, 0);
+        }
+    }
+
+    private void assertSameResult(ExtensionQuery query)
+    {
+        IterableResult<Extension> expected = RepositoryUtils.searchInCollection(query, this.extensions, false);
+        IterableResult<Extension> actual = this.index.search(query);
+
+        assertEquals("Wrong total hits for query [" + query.getQuery() + "]", expected.getTotalHits(),
+            actual.getTotalHits());
+        assertEquals("Wrong result for query [" + query.getQuery() + "]", Lists.newArrayList(expected),
+            Lists.newArrayList(actual));
+    }
+
+    @Test
+    public void searchText()
+    {
+        for (String text : Arrays.asList("", "macro", "MACRO", "ma", "o", "office importer", "org.xwiki.contrib:blog",
+            "page-tag-1", "extension to do", "extension\nto", "feature-chart", "application 42", "unknown",
+            "macro.*chart", "^notification", "wiki|ldap")) {
+            assertSameResult(new ExtensionQuery(text));
+        }
+    }
+
+    @Test
+    public void searchWithFilters()
+    {
+        ExtensionQuery query = new ExtensionQuery("macro");
+        query.addFilter(Extension.FIELD_TYPE, "xar", COMPARISON.EQUAL);
+        query.addFilter(Extension.FIELD_CATEGORY, "page", COMPARISON.EQUAL);
+        assertSameResult(query);
+        assertTrue(this.index.search(query).getTotalHits() > 0);
+
+        query = new ExtensionQuery("blog");
+        query.addFilter(Extension.FIELD_TYPE, "unknown", COMPARISON.EQUAL);
+        assertSameResult(query);
+        assertEquals(0, this.index.search(query).getTotalHits());
+
+        // Not indexed filters
+        query = new ExtensionQuery("tag");
+        query.addFilter(Extension.FIELD_NAME, "chart", COMPARISON.MATCH);
+        query.addFilter(Extension.FIELD_SUMMARY, null, COMPARISON.EQUAL);
+        assertSameResult(query);
+
+        query = new ExtensionQuery("tag");
+        query.addFilter(Extension.FIELD_CATEGORY, "wiki", COMPARISON.MATCH);
+        assertSameResult(query);
+
+        // Filter without text
+        query = new ExtensionQuery("");
+        query.addFilter(Extension.FIELD_TYPE, "webjar", COMPARISON.EQUAL);
+        IterableResult<Extension> result = this.index.search(query);
+        assertTrue(result.getTotalHits() > 0);
+        for (Extension extension : result) {
+            assertEquals("webjar", extension.getType());
+        }
+    }
+
+    @Test
+    public void searchSortedAndPaged()
+    {
+        ExtensionQuery query = new ExtensionQuery("wiki");
+        query.addSort(Extension.FIELD_NAME, ORDER.DESC);
+        query.setOffset(10);
+        query.setLimit(20);
+        assertSameResult(query);
+
+        query = new ExtensionQuery("");
+        query.setOffset(490);
+        query.setLimit(20);
+        assertSameResult(query);
+        assertEquals(10, this.index.search(query).getSize());
+
+        query.setOffset(600);
+        assertSameResult(query);
+    }
+
+    @Test
+    public void addAndRemove()
+    {
+        Extension extension = this.extensions.get(0);
+
+        EmptyExtension other = new EmptyExtension(extension.getId(), "other");
+
+        // Lower priority
+        assertFalse(this.index.add(other, 1));
+        assertSame(extension, this.index.search(new ExtensionQuery(extension.getId().getId())).iterator().next());
+
+        // Higher priority
+        assertTrue(this.index.add(other, -1));
+        assertEquals(500, this.index.size());
+        assertSame(other, this.index.search(new ExtensionQuery(extension.getId().getId())).iterator().next());
+
+        assertTrue(this.index.remove(extension.getId()));
+        assertFalse(this.index.remove(extension.getId()));
+        assertEquals(499, this.index.size());
+        assertEquals(0, this.index.search(new ExtensionQuery(extension.getId().getId())).getTotalHits());
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.xwiki.job;
 
+import java.io.File;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -30,6 +31,7 @@
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
@@ -159,9 +161,35 @@ public S getStatus()
     public void initialize(Request request)
     {
         this.request = castRequest(request);
+        initializeLogProperties(this.request);
         this.status = createNewStatus(this.request);
     }
 
+    /**
+     * Indicate in the request where to move the log events which don't fit in memory, unless it's already specified.
+     *
+     * @param request the request of the job
+     */
+    private void initializeLogProperties(Request request)
+    {
+        if (request instanceof AbstractRequest && request.getProperty(Request.PROPERTY_LOG_MAX_IN_MEMORY) == null
+            && this.componentManager != null && this.componentManager.hasComponent(JobManagerConfiguration.class)) {
+            try {
+                JobManagerConfiguration configuration =
+                    this.componentManager.getInstance(JobManagerConfiguration.class);
+
+                int maxInMemory = configuration.getMaxInMemoryLogs();
+                File folder = configuration.getLogTemporaryFolder();
+                if (maxInMemory >= 0 && folder != null) {
+                    ((AbstractRequest) request).setProperty(Request.PROPERTY_LOG_MAX_IN_MEMORY, maxInMemory);
+                    ((AbstractRequest) request).setProperty(Request.PROPERTY_LOG_FOLDER, folder.getAbsolutePath());
+                }
+            } catch (ComponentLookupException e) {
+                this.logger.warn("Failed to get the job manager configuration", e);
+            }
+        }
+    }
+
     @Override
     public void run()
     {
@@ -228,6 +256,15 @@ protected void jobStarting()
             ((AbstractJobStatus) this.status).startListening();
         }
 
+        // Don't wait for the end of the job to store its log
+        try {
+            if (this.request.getId() != null && this.store != null) {
+                this.store.storeLogWhileRunning(this.status);
+            }
+        } catch (Throwable t) {
+            this.logger.warn(LOG_STATUS_STORE_FAILED, "Failed to store job status [{}]", this.status, t);
+        }
+
         if (getRequest().isVerbose()) {
             if (getStatus().getRequest().getId() != null) {
                 this.logger.info(LOG_BEGIN_ID, "Starting job of type [{}] with identifier [{}]", getType(),
@@ -30,6 +30,7 @@
 import org.xwiki.job.event.status.QuestionAnsweredEvent;
 import org.xwiki.job.event.status.QuestionAskedEvent;
 import org.xwiki.job.internal.DefaultJobProgress;
+import org.xwiki.job.internal.JobLogQueueFactory;
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LogQueue;
 import org.xwiki.logging.LoggerManager;
@@ -78,10 +79,11 @@
     /**
      * Take care of progress related events to produce a progression information usually used in a progress bar.
      */
-    private final DefaultJobProgress progress = new DefaultJobProgress();
+    private final DefaultJobProgress progress;
 
     /**
-     * Log sent during job execution.
+     * Log sent during job execution, indexed by level so that counting the errors does not go through all the logs.
+     * The oldest logs are moved to disk beyond {@link Request#PROPERTY_LOG_MAX_IN_MEMORY}.
      */
     private final LogQueue logs;
 
@@ -168,10 +170,21 @@ public AbstractJobStatus(String jobType, R request, JobStatus parentJobStatus,
 
         this.isolated = parentJobStatus == null;
 
+        this.progress = new DefaultJobProgress(null,
+            getIntProperty(request, Request.PROPERTY_PROGRESS_MAX_CHILDREN, DefaultJobProgress.DEFAULT_MAX_CHILDREN),
+            getIntProperty(request, Request.PROPERTY_PROGRESS_MAX_DEPTH, DefaultJobProgress.DEFAULT_MAX_DEPTH));
+
         this.observationManager = observationManager;
         this.loggerManager = loggerManager;
 
-        this.logs = new LogQueue();
+        this.logs = JobLogQueueFactory.createLogQueue(request);
+    }
+
+    private static int getIntProperty(Request request, String key, int def)
+    {
+        Number value = request != null ? request.<Number>getProperty(key) : null;
+
+        return value != null ? value.intValue() : def;
     }
 
     /**
@@ -179,6 +192,8 @@ public AbstractJobStatus(String jobType, R request, JobStatus parentJobStatus,
      */
     public void startListening()
     {
+        this.progress.setListeningThread(Thread.currentThread());
+
         // Register progress listener
         this.observationManager.addListener(new WrappedThreadEventListener(this.progress));
 
@@ -205,6 +220,8 @@ public void stopListening()
 
         // Make sure the progress is closed
         this.progress.getRootStep().finish();
+
+        this.progress.setListeningThread(null);
     }
 
     // JobStatus
@@ -26,6 +26,8 @@
 import java.util.List;
 import java.util.Map;
 
+import org.xwiki.stability.Unstable;
+
 /**
  * Base class for {@link Request} implementations.
  *
@@ -195,4 +197,14 @@ public void setVerbose(boolean verbose)
     {
         this.verbose = verbose;
     }
+
+    /**
+     * @param priority the priority of the job, see {@link #getPriority()}
+     * @since 10.0RC1
+     */
+    @Unstable
+    public void setPriority(int priority)
+    {
+        setProperty(PROPERTY_PRIORITY, priority);
+    }
 }
@@ -20,8 +20,11 @@
 package org.xwiki.job;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.Map;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Some job manager related configuration.
@@ -42,4 +45,68 @@
      * @since 7.2M2
      */
     int getJobStatusCacheSize();
+
+    /**
+     * @return the way job statuses are stored: {@code folder} for one XML file per job status in a tree of folders
+     *         derived from the job id, or {@code segment} for a single append-only file indexed by job id
+     * @since 10.0RC1
+     */
+    @Unstable
+    default String getJobStatusStorage()
+    {
+        return "folder";
+    }
+
+    /**
+     * @return the maximum number of jobs executed at the same time, 0 or less for no limit (jobs which can't be
+     *         executed right away wait in a queue ordered by priority)
+     * @since 10.0RC1
+     */
+    @Unstable
+    default int getMaxThreads()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of jobs executed at the same time in some job groups (including their sub groups)
+     * @since 10.0RC1
+     */
+    @Unstable
+    default Map<JobGroupPath, Integer> getGroupMaxThreads()
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return true if the jobs should be executed in virtual threads when supported by the Java runtime
+     * @since 10.0RC1
+     */
+    @Unstable
+    default boolean isVirtualThreads()
+    {
+        return false;
+    }
+
+    /**
+     * @return the maximum number of log events of a job to keep in memory, the oldest ones are moved to a temporary
+     *         file in {@link #getLogTemporaryFolder()} beyond it, -1 to keep all of them in memory
+     * @since 10.0RC1
+     */
+    @Unstable
+    default int getMaxInMemoryLogs()
+    {
+        return -1;
+    }
+
+    /**
+     * @return the folder where to move the log events of the jobs which don't fit in memory (see
+     *         {@link #getMaxInMemoryLogs()}), null if the log events should be kept in memory
+     * @since 10.0RC1
+     */
+    @Unstable
+    default File getLogTemporaryFolder()
+    {
+        return null;
+    }
 }
@@ -23,6 +23,7 @@
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.stability.Unstable;
 
 /**
  * Store and retrieve {@link JobStatus} instances.
@@ -53,4 +54,17 @@
      * @param id the id of the job
      */
     void remove(List<String> id);
+
+    /**
+     * Regularly store the new log events of a running job until it's finished so that they are not lost if the
+     * application stops before the end of the job.
+     *
+     * @param status the status of the running job
+     * @since 10.0RC1
+     */
+    @Unstable
+    default void storeLogWhileRunning(JobStatus status)
+    {
+        // Only the finished jobs are stored by default
+    }
 }
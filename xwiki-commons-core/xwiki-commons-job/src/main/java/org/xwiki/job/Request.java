@@ -23,6 +23,8 @@
 import java.util.Collection;
 import java.util.List;
 
+import org.xwiki.stability.Unstable;
+
 /**
  * A {@link Job} request.
  *
@@ -41,6 +43,42 @@ public interface Request extends Serializable
      */
     String PROPERTY_INTERACTIVE = "interactive";
 
+    /**
+     * @see #getPriority()
+     * @since 10.0RC1
+     */
+    String PROPERTY_PRIORITY = "priority";
+
+    /**
+     * The maximum number of steps of a progress level to keep in memory, the oldest finished steps are forgotten
+     * beyond it (the progress offset stays accurate). -1 to keep all of them.
+     * 
+     * @since 10.0RC1
+     */
+    String PROPERTY_PROGRESS_MAX_CHILDREN = "progress.maxChildren";
+
+    /**
+     * The depth of the progress levels starting from which only the current step is kept in memory. -1 to disable it.
+     * 
+     * @since 10.0RC1
+     */
+    String PROPERTY_PROGRESS_MAX_DEPTH = "progress.maxDepth";
+
+    /**
+     * The maximum number of log events of the job to keep in memory, the oldest ones are moved to a temporary file
+     * located in {@link #PROPERTY_LOG_FOLDER} beyond it. -1 to keep all of them in memory.
+     * 
+     * @since 10.0RC1
+     */
+    String PROPERTY_LOG_MAX_IN_MEMORY = "log.maxInMemory";
+
+    /**
+     * The path of the folder where to move the oldest log events of the job (see {@link #PROPERTY_LOG_MAX_IN_MEMORY}).
+     * 
+     * @since 10.0RC1
+     */
+    String PROPERTY_LOG_FOLDER = "log.folder";
+
     /**
      * @return list based identifier used to access the job. If none is provided the job will not be accessible by id
      *         and the status of the job will not be stored.
@@ -91,4 +129,17 @@ public interface Request extends Serializable
      * @since 5.4RC1
      */
     boolean isVerbose();
+
+    /**
+     * @return the priority of the job: when several jobs are waiting to be executed, the ones with the highest priority
+     *         are executed first (jobs with the same priority are executed in the order in which they were submitted)
+     * @since 10.0RC1
+     */
+    @Unstable
+    default int getPriority()
+    {
+        Number priority = getProperty(PROPERTY_PRIORITY);
+
+        return priority != null ? priority.intValue() : 0;
+    }
 }
@@ -22,22 +22,19 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -50,10 +47,14 @@
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobExecutor;
 import org.xwiki.job.JobGroupPath;
+import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.Request;
 
 /**
  * Default implementation of {@link JobExecutor}.
+ * <p>
+ * The jobs are executed by a {@link JobScheduler} configured through {@link JobManagerConfiguration}: by default there
+ * is no limit to the number of jobs executed at the same time.
  *
  * @version $Id$
  * @since 6.1M2
@@ -62,99 +63,7 @@
 @Singleton
 public class DefaultJobExecutor implements JobExecutor, Initializable, Disposable
 {
-    private class JobGroupExecutor extends JobThreadExecutor implements ThreadFactory
-    {
-        private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
-
-        private final JobGroupPath path;
-
-        private Job currentJob;
-
-        private String groupThreadName;
-
-        JobGroupExecutor(JobGroupPath path)
-        {
-            super(1, 36000L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
-
-            setThreadFactory(this);
-
-            this.path = path;
-            this.groupThreadName = this.path + " job group daemon thread";
-        }
-
-        @Override
-        protected void beforeExecute(Thread t, Runnable r)
-        {
-            DefaultJobExecutor.this.lockTree.lock(this.path);
-
-            this.currentJob = (Job) r;
-
-            Thread.currentThread().setName(this.groupThreadName + " - " + this.currentJob);
-
-            super.beforeExecute(t, r);
-        }
-
-        @Override
-        protected void afterExecute(Runnable r, Throwable t)
-        {
-            Thread.currentThread().setName(this.groupThreadName);
-
-            DefaultJobExecutor.this.lockTree.unlock(this.path);
-
-            this.currentJob = null;
-
-            super.afterExecute(r, t);
-
-            Job job = (Job) r;
-
-            List<String> jobId = job.getRequest().getId();
-            if (jobId != null) {
-                synchronized (DefaultJobExecutor.this.groupedJobs) {
-                    Queue<Job> jobQueue = DefaultJobExecutor.this.groupedJobs.get(jobId);
-                    if (jobQueue != null) {
-                        if (jobQueue.peek() == job) {
-                            jobQueue.poll();
-                        }
-                    }
-                }
-            }
-        }
-
-        @Override
-        public Thread newThread(Runnable r)
-        {
-            Thread thread = this.threadFactory.newThread(r);
-
-            thread.setDaemon(true);
-            thread.setName(this.groupThreadName);
-
-            return thread;
-        }
-    }
-
-    private class JobThreadExecutor extends ThreadPoolExecutor
-    {
-        JobThreadExecutor(int maximumPoolSize, long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue)
-        {
-            super(0, maximumPoolSize, keepAliveTime, unit, workQueue);
-        }
-
-        @Override
-        protected void afterExecute(Runnable r, Throwable t)
-        {
-            Job job = (Job) r;
-
-            List<String> jobId = job.getRequest().getId();
-            if (jobId != null) {
-                synchronized (DefaultJobExecutor.this.jobs) {
-                    Job storedJob = DefaultJobExecutor.this.jobs.get(jobId);
-                    if (storedJob == job) {
-                        DefaultJobExecutor.this.jobs.remove(jobId);
-                    }
-                }
-            }
-        }
-    }
+    private static final String THREAD_NAME = "Job executor daemon thread";
 
     /**
      * Used to lookup {@link Job} implementations.
@@ -163,6 +72,12 @@ protected void afterExecute(Runnable r, Throwable t)
     @Named("context")
     private Provider<ComponentManager> componentManager;
 
+    @Inject
+    private JobManagerConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
     private final Map<List<String>, Queue<Job>> groupedJobs = new ConcurrentHashMap<List<String>, Queue<Job>>();
 
     private final Map<List<String>, Job> jobs = new ConcurrentHashMap<List<String>, Job>();
@@ -173,23 +88,45 @@ protected void afterExecute(Runnable r, Throwable t)
     private final JobGroupPathLockTree lockTree = new JobGroupPathLockTree();
 
     /**
-     * Map<groupname, group executor>.
-     */
-    private final Map<JobGroupPath, JobGroupExecutor> groupExecutors =
-        new ConcurrentHashMap<JobGroupPath, JobGroupExecutor>();
-
-    /**
-     * Execute non grouped jobs.
+     * Execute the jobs.
      */
-    private JobThreadExecutor jobExecutor;
+    private JobScheduler scheduler;
 
     private volatile boolean disposed;
 
     @Override
     public void initialize() throws InitializationException
     {
-        this.jobExecutor =
-            new JobThreadExecutor(Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        this.scheduler = new JobScheduler(this.lockTree, this.configuration.getMaxThreads(),
+            this.configuration.getGroupMaxThreads(), createThreadFactory(), this::finished, this.logger);
+    }
+
+    private ThreadFactory createThreadFactory()
+    {
+        if (this.configuration.isVirtualThreads()) {
+            try {
+                // Virtual threads are only available starting with Java 21
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class).invoke(builder, THREAD_NAME);
+
+                return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (Exception e) {
+                this.logger.warn("Virtual threads are not supported by this Java runtime, using platform threads: {}",
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        return runnable -> {
+            Thread thread = defaultFactory.newThread(runnable);
+
+            thread.setDaemon(true);
+            thread.setName(THREAD_NAME);
+
+            return thread;
+        };
     }
 
     @Override
@@ -198,21 +135,34 @@ public void dispose() throws ComponentLifecycleException
         synchronized (this) {
             this.disposed = true;
 
-            this.jobExecutor.shutdownNow();
-            for (JobGroupExecutor executor : this.groupExecutors.values()) {
-                executor.shutdownNow();
-            }
+            this.scheduler.shutdownNow();
         }
     }
 
+    /**
+     * @return the scheduler executing the jobs, to access its statistics
+     * @since 10.0RC1
+     */
+    public JobScheduler getScheduler()
+    {
+        return this.scheduler;
+    }
+
+    /**
+     * @return the locks protecting the grouped jobs, to access its statistics
+     * @since 10.0RC1
+     */
+    public JobGroupPathLockTree getLockTree()
+    {
+        return this.lockTree;
+    }
+
     // JobManager
 
     @Override
     public Job getCurrentJob(JobGroupPath path)
     {
-        JobGroupExecutor executor = this.groupExecutors.get(path);
-
-        return executor != null ? executor.currentJob : null;
+        return this.scheduler.getCurrentJob(path);
     }
 
     @Override
@@ -270,8 +220,11 @@ public Job execute(String jobType, Request request) throws JobException
     public void execute(Job job)
     {
         if (!this.disposed) {
-            if (job instanceof GroupedJob) {
-                executeGroupedJob((GroupedJob) job);
+            JobGroupPath path = job instanceof GroupedJob ? ((GroupedJob) job).getGroupPath() : null;
+
+            // If path is null execute as non grouped job
+            if (path != null) {
+                executeGroupedJob(job, path);
             } else {
                 executeSingleJob(job);
             }
@@ -282,46 +235,52 @@ public void execute(Job job)
 
     private void executeSingleJob(Job job)
     {
-        this.jobExecutor.execute(job);
-
+        // Registered before being submitted so that it can't finish before being registered
         List<String> jobId = job.getRequest().getId();
         if (jobId != null) {
             synchronized (this.jobs) {
                 this.jobs.put(jobId, job);
             }
         }
+
+        this.scheduler.submit(job, null);
     }
 
-    private void executeGroupedJob(GroupedJob job)
+    private void executeGroupedJob(Job job, JobGroupPath path)
     {
-        synchronized (this.groupExecutors) {
-            JobGroupPath path = job.getGroupPath();
-
-            // If path is null execute as non grouped job
-            if (path == null) {
-                executeSingleJob(job);
-
-                return;
+        List<String> jobId = job.getRequest().getId();
+        if (jobId != null) {
+            synchronized (this.groupedJobs) {
+                Queue<Job> jobQueue = this.groupedJobs.get(jobId);
+                if (jobQueue == null) {
+                    jobQueue = new ConcurrentLinkedQueue<Job>();
+                    this.groupedJobs.put(jobId, jobQueue);
+                }
+                jobQueue.offer(job);
             }
+        }
 
-            JobGroupExecutor groupExecutor = this.groupExecutors.get(path);
+        this.scheduler.submit(job, path);
+    }
 
-            if (groupExecutor == null) {
-                groupExecutor = new JobGroupExecutor(path);
-                this.groupExecutors.put(path, groupExecutor);
+    private void finished(Job job)
+    {
+        List<String> jobId = job.getRequest().getId();
+        if (jobId != null) {
+            synchronized (this.jobs) {
+                Job storedJob = this.jobs.get(jobId);
+                if (storedJob == job) {
+                    this.jobs.remove(jobId);
+                }
             }
 
-            groupExecutor.execute(job);
-
-            List<String> jobId = job.getRequest().getId();
-            if (jobId != null) {
-                synchronized (this.groupedJobs) {
-                    Queue<Job> jobQueue = this.groupedJobs.get(jobId);
-                    if (jobQueue == null) {
-                        jobQueue = new ConcurrentLinkedQueue<Job>();
-                        this.groupedJobs.put(jobId, jobQueue);
+            synchronized (this.groupedJobs) {
+                Queue<Job> jobQueue = this.groupedJobs.get(jobId);
+                if (jobQueue != null) {
+                    jobQueue.remove(job);
+                    if (jobQueue.isEmpty()) {
+                        this.groupedJobs.remove(jobId);
                     }
-                    jobQueue.offer(job);
                 }
             }
         }
@@ -20,6 +20,10 @@
 package org.xwiki.job.internal;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -28,6 +32,7 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.environment.Environment;
+import org.xwiki.job.JobGroupPath;
 import org.xwiki.job.JobManagerConfiguration;
 
 /**
@@ -40,6 +45,8 @@
 @Singleton
 public class DefaultJobManagerConfiguration implements JobManagerConfiguration
 {
+    private static final String PREFIX = "job.";
+
     /**
      * Used to get permanent directory.
      */
@@ -88,4 +95,49 @@ public int getJobStatusCacheSize()
     {
         return this.configuration.get().getProperty("job.statusCacheSize", 50);
     }
+
+    @Override
+    public String getJobStatusStorage()
+    {
+        return this.configuration.get().getProperty("job.statusStorage", "folder");
+    }
+
+    @Override
+    public int getMaxThreads()
+    {
+        return this.configuration.get().getProperty(PREFIX + "maxThreads", 0);
+    }
+
+    @Override
+    public Map<JobGroupPath, Integer> getGroupMaxThreads()
+    {
+        // Each property is a group path (with elements separated by '/') associated to a maximum number of threads
+        Properties properties = this.configuration.get().getProperty(PREFIX + "groupMaxThreads", Properties.class);
+
+        Map<JobGroupPath, Integer> groupMaxThreads = new HashMap<>();
+        for (String path : properties.stringPropertyNames()) {
+            groupMaxThreads.put(new JobGroupPath(Arrays.asList(path.split("/"))),
+                Integer.valueOf(properties.getProperty(path).trim()));
+        }
+
+        return groupMaxThreads;
+    }
+
+    @Override
+    public boolean isVirtualThreads()
+    {
+        return this.configuration.get().getProperty(PREFIX + "virtualThreads", false);
+    }
+
+    @Override
+    public int getMaxInMemoryLogs()
+    {
+        return this.configuration.get().getProperty(PREFIX + "log.maxInMemory", -1);
+    }
+
+    @Override
+    public File getLogTemporaryFolder()
+    {
+        return new File(this.environment.getTemporaryDirectory(), "jobs/logs/");
+    }
 }
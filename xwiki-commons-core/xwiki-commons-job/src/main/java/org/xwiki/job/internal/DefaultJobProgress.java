@@ -35,11 +35,31 @@
 import org.xwiki.observation.event.Event;
 
 /**
+ * Build the progress tree of a job from the progress events.
+ * <p>
+ * To support jobs with a very high number of steps the oldest finished steps of a level are forgotten when it contains
+ * more than a configurable number of steps, and only the current step is kept for the levels deeper than a
+ * configurable depth (see {@link DefaultJobProgressStep#foldChildren(int)}).
+ *
  * @version $Id$
  * @since 4.0M1
  */
 public class DefaultJobProgress implements EventListener, JobProgress
 {
+    /**
+     * The default maximum number of steps to keep in memory for each level.
+     * 
+     * @since 10.0RC1
+     */
+    public static final int DEFAULT_MAX_CHILDREN = 1000;
+
+    /**
+     * The default depth starting from which only the current step of a level is kept in memory, -1 to disable it.
+     * 
+     * @since 10.0RC1
+     */
+    public static final int DEFAULT_MAX_DEPTH = -1;
+
     /**
      * The object used to log messages.
      */
@@ -54,10 +74,16 @@ public class DefaultJobProgress implements EventListener, JobProgress
 
     private final String listenerName;
 
+    private final transient int maxChildren;
+
+    private final transient int maxDepth;
+
     private final DefaultJobProgressStep rootStep;
 
     private transient DefaultJobProgressStep currentStep;
 
+    private transient volatile Thread listeningThread;
+
     /**
      * Default constructor.
      */
@@ -71,6 +97,21 @@ public DefaultJobProgress()
      */
     public DefaultJobProgress(String name)
     {
+        this(name, DEFAULT_MAX_CHILDREN, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param name the name associated to the job progress
+     * @param maxChildren the maximum number of steps to keep in memory for each level, -1 to keep all of them
+     * @param maxDepth the depth starting from which only the current step of a level is kept in memory, -1 to disable
+     *            it
+     * @since 10.0RC1
+     */
+    public DefaultJobProgress(String name, int maxChildren, int maxDepth)
+    {
+        this.maxChildren = maxChildren;
+        this.maxDepth = maxDepth;
+
         this.listenerName = name != null ? name : getClass().getName() + '_' + System.identityHashCode(this);
 
         this.rootStep =
@@ -78,6 +119,25 @@ public DefaultJobProgress(String name)
         this.currentStep = this.rootStep;
     }
 
+    /**
+     * @param thread the thread producing the progress events listened to by this progress, null if it's not listening
+     *            anymore
+     * @since 10.0RC1
+     */
+    public void setListeningThread(Thread thread)
+    {
+        this.listeningThread = thread;
+    }
+
+    /**
+     * @return true if this progress is listening to the progress events produced by the current thread
+     * @since 10.0RC1
+     */
+    public boolean isListening()
+    {
+        return this.listeningThread == Thread.currentThread();
+    }
+
     // EventListener
 
     @Override
@@ -115,7 +175,7 @@ private void onPushLevelProgress(int steps, Object source, boolean singlesteplev
     {
         if (this.currentStep.isLevelFinished()) {
             // If current step is done move to next one
-            this.currentStep = this.currentStep.getParent().nextStep(null, source);
+            this.currentStep = nextStep(this.currentStep.getParent(), null, source);
         }
 
         // Add level
@@ -156,7 +216,31 @@ private void onStartStepProgress(Message message, Object source)
         }
 
         // Start a new step
-        this.currentStep = this.currentStep.getParent().nextStep(message, source);
+        this.currentStep = nextStep(this.currentStep.getParent(), message, source);
+    }
+
+    private DefaultJobProgressStep nextStep(DefaultJobProgressStep level, Message message, Object source)
+    {
+        DefaultJobProgressStep step = level.nextStep(message, source);
+
+        // Forget the oldest steps if needed
+        if (this.maxDepth >= 0 && getDepth(level) >= this.maxDepth) {
+            level.foldChildren(1);
+        } else if (this.maxChildren >= 0) {
+            level.foldChildren(Math.max(this.maxChildren, 1));
+        }
+
+        return step;
+    }
+
+    private int getDepth(DefaultJobProgressStep step)
+    {
+        int depth = 0;
+        for (DefaultJobProgressStep parent = step.getParent(); parent != null; parent = parent.getParent()) {
+            ++depth;
+        }
+
+        return depth;
     }
 
     /**
@@ -170,8 +254,8 @@ private void onStepProgress(Object source)
         onStartStepProgress(null, source);
 
         // if there is only one step close it and move to the next one
-        if (this.currentStep.getParent().getChildren().size() == 1) {
-            this.currentStep = this.currentStep.getParent().nextStep(null, source);
+        if (this.currentStep.getParent().getChildrenCount() == 1) {
+            this.currentStep = nextStep(this.currentStep.getParent(), null, source);
         }
     }
 
@@ -19,23 +19,35 @@
  */
 package org.xwiki.job.internal;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.job.AbstractJobStatus;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobContext;
 import org.xwiki.job.event.status.EndStepProgressEvent;
+import org.xwiki.job.event.status.JobProgress;
 import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.job.event.status.PopLevelProgressEvent;
 import org.xwiki.job.event.status.PushLevelProgressEvent;
 import org.xwiki.job.event.status.StartStepProgressEvent;
 import org.xwiki.job.event.status.StepProgressEvent;
 import org.xwiki.logging.Message;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 
 /**
  * Default implementation of {@link JobProgressManager}.
+ * <p>
+ * When the progress events are only listened to by the progress of the current job (and of its parents running in
+ * the same thread) the progress is updated directly instead of going through the {@link ObservationManager}.
  *
  * @version $Id$
  * @since 6.1M1
@@ -47,23 +59,26 @@ public class DefaultJobProgressManager implements JobProgressManager
     @Inject
     private ObservationManager observationManager;
 
+    @Inject
+    private JobContext jobContext;
+
     @Override
     public void pushLevelProgress(Object source)
     {
-        this.observationManager.notify(new PushLevelProgressEvent(), source);
+        notify(new PushLevelProgressEvent(), source, null);
     }
 
     @Override
     public void pushLevelProgress(int steps, Object source)
     {
-        this.observationManager.notify(new PushLevelProgressEvent(steps), source);
+        notify(new PushLevelProgressEvent(steps), source, null);
     }
 
     @Override
     @Deprecated
     public void stepPropress(Object source)
     {
-        this.observationManager.notify(StepProgressEvent.INSTANCE, source);
+        notify(StepProgressEvent.INSTANCE, source, null);
     }
 
     @Override
@@ -81,7 +96,7 @@ public void startStep(Object source, String name)
     @Override
     public void startStep(Object source, Message message)
     {
-        this.observationManager.notify(StartStepProgressEvent.INSTANCE, source, message);
+        notify(StartStepProgressEvent.INSTANCE, source, message);
     }
 
     @Override
@@ -93,13 +108,13 @@ public void startStep(Object source, String translationKey, String message, Obje
     @Override
     public void endStep(Object source)
     {
-        this.observationManager.notify(EndStepProgressEvent.INSTANCE, source);
+        notify(EndStepProgressEvent.INSTANCE, source, null);
     }
 
     @Override
     public void popLevelProgress(Object source)
     {
-        this.observationManager.notify(PopLevelProgressEvent.INSTANCE, source);
+        notify(PopLevelProgressEvent.INSTANCE, source, null);
     }
 
     @Override
@@ -135,4 +150,57 @@ private Message toMessage(String translationKey, String message, Object[] argume
     {
         return new Message(translationKey, message, arguments);
     }
+
+    private void notify(Event event, Object source, Object data)
+    {
+        List<DefaultJobProgress> progresses = getCurrentProgresses();
+
+        if (progresses.isEmpty() || this.observationManager.hasListener(event, getNames(progresses))) {
+            this.observationManager.notify(event, source, data);
+        } else {
+            for (DefaultJobProgress progress : progresses) {
+                progress.onEvent(event, source, data);
+            }
+        }
+    }
+
+    /**
+     * @return the progress of the jobs listening to the progress events of the current thread
+     */
+    private List<DefaultJobProgress> getCurrentProgresses()
+    {
+        Job job = this.jobContext.getCurrentJob();
+
+        if (job == null) {
+            return Collections.emptyList();
+        }
+
+        List<DefaultJobProgress> progresses = null;
+        for (JobStatus status = job.getStatus(); status instanceof AbstractJobStatus;
+            status = ((AbstractJobStatus<?>) status).getParentJobStatus()) {
+            JobProgress progress = status.getProgress();
+            if (progress instanceof DefaultJobProgress && ((DefaultJobProgress) progress).isListening()) {
+                if (progresses == null) {
+                    progresses = new ArrayList<>(2);
+                }
+                progresses.add((DefaultJobProgress) progress);
+            }
+        }
+
+        return progresses != null ? progresses : Collections.emptyList();
+    }
+
+    private List<String> getNames(List<DefaultJobProgress> progresses)
+    {
+        if (progresses.size() == 1) {
+            return Collections.singletonList(progresses.get(0).getName());
+        }
+
+        List<String> names = new ArrayList<>(progresses.size());
+        for (DefaultJobProgress progress : progresses) {
+            names.add(progress.getName());
+        }
+
+        return names;
+    }
 }
@@ -56,6 +56,13 @@ public class DefaultJobProgressStep implements JobProgressStep
 
     protected List<DefaultJobProgressStep> children;
 
+    /**
+     * The number of finished children which have been removed from {@link #children} to save memory.
+     * 
+     * @since 10.0RC1
+     */
+    protected int foldedChildren;
+
     private final long startTime;
 
     private boolean finished;
@@ -76,7 +83,7 @@ public DefaultJobProgressStep(Message message, Object source, DefaultJobProgress
         this.source = source;
 
         if (this.parent != null) {
-            this.index = parent.children.size();
+            this.index = parent.getChildrenCount();
             this.startTime = this.index == 0 ? parent.startTime : System.nanoTime();
         } else {
             this.index = 0;
@@ -91,7 +98,7 @@ public DefaultJobProgressStep(Message message, Object source, DefaultJobProgress
      */
     public boolean isVirtual()
     {
-        return getParent() != null && getParent().getChildren().isEmpty();
+        return getParent() != null && getParent().getChildrenCount() == 0;
     }
 
     @Override
@@ -112,6 +119,52 @@ public List<DefaultJobProgressStep> getChildren()
         return this.children != null ? this.children : Collections.<DefaultJobProgressStep>emptyList();
     }
 
+    /**
+     * @return the number of children, including the ones which are not retained anymore (see
+     *         {@link #foldChildren(int)})
+     * @since 10.0RC1
+     */
+    public int getChildrenCount()
+    {
+        return this.foldedChildren + (this.children != null ? this.children.size() : 0);
+    }
+
+    /**
+     * @return the number of finished children which are not retained anymore (see {@link #foldChildren(int)})
+     * @since 10.0RC1
+     */
+    public int getFoldedChildrenCount()
+    {
+        return this.foldedChildren;
+    }
+
+    /**
+     * Forget the oldest finished children when there is more than the passed number of children. The offset of the
+     * step is not impacted since it's updated when each child is finished.
+     * <p>
+     * To not move the whole list each time a child is added the children are forgotten by batch: half of the retained
+     * children are removed when the limit is exceeded.
+     * 
+     * @param maximumRetainedChildren the maximum number of children to keep in memory
+     * @since 10.0RC1
+     */
+    public void foldChildren(int maximumRetainedChildren)
+    {
+        if (this.children != null && this.children.size() > maximumRetainedChildren) {
+            int toRemove = this.children.size() - Math.max(maximumRetainedChildren / 2, 1);
+
+            int removed = 0;
+            while (removed < toRemove && this.children.get(removed).isFinished()) {
+                ++removed;
+            }
+
+            if (removed > 0) {
+                this.children.subList(0, removed).clear();
+                this.foldedChildren += removed;
+            }
+        }
+    }
+
     @Override
     public double getOffset()
     {
@@ -153,8 +206,9 @@ public DefaultJobProgressStep addStep(Message stepMessage, Object newStepSource)
 
         // Update offset if needed
         if (this.maximumChildren <= 0) {
-            this.childSize = 1.0D / this.children.size();
-            double newOffset = this.childSize * (this.children.size() - 1);
+            int count = getChildrenCount();
+            this.childSize = 1.0D / count;
+            double newOffset = this.childSize * (count - 1);
             move(newOffset - this.offset);
         }
 
@@ -196,6 +250,7 @@ public DefaultJobProgressStep addLevel(int steps, Object newLevelSource, boolean
         } else {
             this.children = new ArrayList<>();
         }
+        this.foldedChildren = 0;
 
         this.levelStep = levelStep;
 
@@ -19,19 +19,27 @@
  */
 package org.xwiki.job.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.collections4.map.AbstractReferenceMap.ReferenceStrength;
+import org.apache.commons.collections4.map.ReferenceIdentityMap;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
 import org.apache.commons.configuration2.builder.fluent.Parameters;
@@ -43,7 +51,11 @@
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.event.AbstractCacheEntryListener;
+import org.xwiki.cache.event.CacheEntryEvent;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.job.DefaultJobStatus;
@@ -51,17 +63,44 @@
 import org.xwiki.job.JobStatusStore;
 import org.xwiki.job.annotation.Serializable;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
+import org.xwiki.job.internal.store.AbstractJobStatusLogStream;
+import org.xwiki.job.internal.store.JobStatusFolderMigrator;
+import org.xwiki.job.internal.store.JobStatusLogStream;
+import org.xwiki.job.internal.store.JobStatusSegmentLogStream;
+import org.xwiki.job.internal.store.JobStatusSegmentStorage;
+import org.xwiki.job.internal.store.JobStatusWriteQueue;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
 
 /**
  * Default implementation of {@link JobStatusStorage}.
+ * <p>
+ * Depending on {@link JobManagerConfiguration#getJobStatusStorage()} the job statuses are stored either in a tree of
+ * folders derived from the job id (one XML file per job) or in a {@link JobStatusSegmentStorage}.
+ * <p>
+ * In both cases the log of the job is stored separately from the status so that saving again a job status only appends
+ * the new log events: in a {@link JobStatusLogStream} located in the folder of the job, or in the log associated to the
+ * key of the job status in the {@link JobStatusSegmentStorage} (see {@link JobStatusSegmentLogStream}) so that no file
+ * is created for each job.
+ * <p>
+ * All the writes go through a {@link JobStatusWriteQueue} which never writes the same job status (and so its log)
+ * from two threads at the same time. The new log events of the running jobs registered with
+ * {@link #storeLogWhileRunning(JobStatus)} are regularly written through it too, without the rest of the status.
  *
  * @version $Id$
  * @since 6.1M2
  */
 @Component
 @Singleton
-public class DefaultJobStatusStore implements JobStatusStore, Initializable
+public class DefaultJobStatusStore implements JobStatusStore, Initializable, Disposable
 {
+    /**
+     * The value of {@link JobManagerConfiguration#getJobStatusStorage()} to store the job statuses in a
+     * {@link JobStatusSegmentStorage}.
+     */
+    public static final String STORAGE_SEGMENT = "segment";
+
     /**
      * The current version of the store. Should be upgraded if any change is made.
      */
@@ -70,7 +109,7 @@ public class DefaultJobStatusStore implements JobStatusStore, Initializable
     /**
      * The name of the file where the job status is stored.
      */
-    private static final String FILENAME_STATUS = "status.xml";
+    private static final String FILENAME_STATUS = JobStatusFolderMigrator.FILENAME_STATUS;
 
     /**
      * The name of the file where various information about the status store are stored (like the version of the store).
@@ -92,6 +131,16 @@ public class DefaultJobStatusStore implements JobStatusStore, Initializable
      */
     private static final String FOLDER_NULL = "&null";
 
+    /**
+     * The maximum number of job statuses waiting to be written.
+     */
+    private static final int WRITE_QUEUE_CAPACITY = 1000;
+
+    /**
+     * The interval in seconds between two writes of the new log events of the running jobs.
+     */
+    private static final long LOG_FLUSH_INTERVAL = 10;
+
     private static final JobStatus NOSTATUS = new DefaultJobStatus<>(null, null, null, null, null);
 
     /**
@@ -111,59 +160,67 @@ public class DefaultJobStatusStore implements JobStatusStore, Initializable
 
     private JobStatusSerializer serializer;
 
-    private ExecutorService executorService;
+    private JobStatusWriteQueue writeQueue;
 
     private Cache<JobStatus> cache;
 
-    class JobStatusSerializerRunnable implements Runnable
-    {
-        /**
-         * The status to store.
-         */
-        private final JobStatus status;
+    /**
+     * @see JobManagerConfiguration#getMaxInMemoryLogs()
+     */
+    private int maxInMemoryLogs;
 
-        JobStatusSerializerRunnable(JobStatus status)
-        {
-            this.status = status;
-        }
+    /**
+     * @see JobManagerConfiguration#getLogTemporaryFolder()
+     */
+    private File logTemporaryFolder;
 
-        @Override
-        public void run()
-        {
-            saveJobStatus(this.status);
-        }
-    }
+    /**
+     * The storage to use instead of the folders, null when storing the job statuses in folders.
+     */
+    private JobStatusSegmentStorage segmentStorage;
+
+    /**
+     * The number of log events of each (loaded or stored) log which are already in its log stream.
+     */
+    private final Map<LogQueue, Integer> storedLogs =
+        Collections.synchronizedMap(new ReferenceIdentityMap<>(ReferenceStrength.WEAK, ReferenceStrength.HARD));
+
+    /**
+     * The running jobs whose new log events are regularly written.
+     */
+    private final Set<JobStatus> runningStatuses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The job statuses for which only the log should be written the next time they are taken from the write queue.
+     */
+    private final Set<JobStatus> logOnlyStatuses = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService logFlusher;
 
     @Override
     public void initialize() throws InitializationException
     {
         try {
             this.serializer = new JobStatusSerializer();
+            this.maxInMemoryLogs = this.configuration.getMaxInMemoryLogs();
+            this.logTemporaryFolder = this.configuration.getLogTemporaryFolder();
 
-            // Check if the store need to be upgraded
-            File folder = this.configuration.getStorage();
-            File file = new File(folder, INDEX_FILE);
-
-            FileBasedConfigurationBuilder<PropertiesConfiguration> builder =
-                new FileBasedConfigurationBuilder<PropertiesConfiguration>(PropertiesConfiguration.class, null, true)
-                    .configure(new Parameters().properties().setFile(file));
-            PropertiesConfiguration properties = builder.getConfiguration();
-            int version = properties.getInt(INDEX_FILE_VERSION, 0);
-            if (VERSION > version) {
-                repair();
-
-                // Update version
-                properties.setProperty(INDEX_FILE_VERSION, VERSION);
-                builder.save();
+            if (STORAGE_SEGMENT.equals(this.configuration.getJobStatusStorage())) {
+                initializeSegmentStorage();
+            } else {
+                initializeFolderStorage();
             }
         } catch (Exception e) {
             this.logger.error("Failed to load jobs", e);
         }
 
-        BasicThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("Job status serializer")
-            .daemon(true).priority(Thread.MIN_PRIORITY).build();
-        this.executorService =
-            new ThreadPoolExecutor(0, 10, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+        this.writeQueue = new JobStatusWriteQueue(WRITE_QUEUE_CAPACITY,
+            status -> getSegmentKey(status.getRequest().getId()), this::saveJobStatus);
+
+        this.logFlusher = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("Job log flusher").daemon(true).build());
+        this.logFlusher.scheduleWithFixedDelay(this::flushRunningLogs, LOG_FLUSH_INTERVAL, LOG_FLUSH_INTERVAL,
+            TimeUnit.SECONDS);
 
         // Initialize cache
         LRUCacheConfiguration cacheConfiguration =
@@ -173,6 +230,103 @@ public void initialize() throws InitializationException
         } catch (CacheException e) {
             throw new InitializationException("Failed to initialize job status cache", e);
         }
+
+        // Delete the log events moved to disk when a job status is not cached anymore
+        this.cache.addCacheEntryListener(new AbstractCacheEntryListener<JobStatus>()
+        {
+            @Override
+            public void cacheEntryRemoved(CacheEntryEvent<JobStatus> event)
+            {
+                closeLog(event.getEntry().getValue());
+            }
+        });
+    }
+
+    private void closeLog(JobStatus status)
+    {
+        // The log of a job which is still running is still used by the job
+        if (status != null && status.getState() == State.FINISHED && status.getLog() instanceof Closeable) {
+            try {
+                ((Closeable) status.getLog()).close();
+            } catch (IOException e) {
+                this.logger.warn("Failed to close the log of job status [{}]", status.getRequest().getId(), e);
+            }
+        }
+    }
+
+    private void initializeFolderStorage() throws Exception
+    {
+        // Check if the store need to be upgraded
+        File folder = this.configuration.getStorage();
+        File file = new File(folder, INDEX_FILE);
+
+        FileBasedConfigurationBuilder<PropertiesConfiguration> builder =
+            new FileBasedConfigurationBuilder<PropertiesConfiguration>(PropertiesConfiguration.class, null, true)
+                .configure(new Parameters().properties().setFile(file));
+        PropertiesConfiguration properties = builder.getConfiguration();
+        int version = properties.getInt(INDEX_FILE_VERSION, 0);
+        if (VERSION > version) {
+            repair();
+
+            // Update version
+            properties.setProperty(INDEX_FILE_VERSION, VERSION);
+            builder.save();
+        }
+    }
+
+    private void initializeSegmentStorage() throws IOException
+    {
+        File folder = this.configuration.getStorage();
+
+        this.segmentStorage =
+            new JobStatusSegmentStorage(folder, JobStatusSegmentStorage.DEFAULT_COMPACTION_THRESHOLD);
+        this.segmentStorage.open();
+
+        // Move the statuses previously stored in folders
+        if (JobStatusFolderMigrator.needsMigration(folder)) {
+            this.logger.info("Migrating job statuses from folders to the segment storage in [{}]", folder);
+
+            int count = new JobStatusFolderMigrator(this.serializer, this::getSegmentKey).migrate(folder,
+                this.segmentStorage);
+
+            this.logger.info("Migrated [{}] job statuses", count);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.logFlusher.shutdownNow();
+
+        try {
+            if (!this.writeQueue.close(1, TimeUnit.MINUTES)) {
+                this.logger.warn("Timeout while writing the [{}] remaining job statuses", this.writeQueue.getSize());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.logger.debug("Job status write queue: [{}] writes in [{}]ns on average ([{}]ns max), [{}] coalesced, "
+            + "[{}] max pending, [{}] blocked", this.writeQueue.getWriteCount(),
+            this.writeQueue.getAverageWriteTime(), this.writeQueue.getMaxWriteTime(),
+            this.writeQueue.getCoalescedCount(), this.writeQueue.getMaxSize(), this.writeQueue.getBlockedCount());
+
+        if (this.segmentStorage != null) {
+            try {
+                this.segmentStorage.close();
+            } catch (IOException e) {
+                throw new ComponentLifecycleException("Failed to close the job status storage", e);
+            }
+        }
+    }
+
+    /**
+     * @return the queue of job statuses waiting to be written, to monitor it
+     * @since 10.0RC1
+     */
+    public JobStatusWriteQueue getWriteQueue()
+    {
+        return this.writeQueue;
     }
 
     private String toUniqueString(List<String> id)
@@ -203,6 +357,27 @@ private String encode(String name)
         return encoded;
     }
 
+    /**
+     * @param id the id of the job
+     * @return the key of the job status in the segment storage (the same as the path of its folder in the folder
+     *         layout)
+     */
+    private String getSegmentKey(List<String> id)
+    {
+        StringBuilder key = new StringBuilder();
+
+        if (id != null) {
+            for (String idElement : id) {
+                if (key.length() > 0) {
+                    key.append('/');
+                }
+                key.append(encode(idElement));
+            }
+        }
+
+        return key.toString();
+    }
+
     /**
      * Load jobs from directory.
      * 
@@ -231,7 +406,8 @@ private void repairFolder(File folder)
                 repairFolder(file);
             } else if (file.getName().equals(FILENAME_STATUS)) {
                 try {
-                    JobStatus status = loadStatus(folder);
+                    JobStatus status = loadStatus(folder,
+                        new JobStatusLogStream(new File(folder, JobStatusLogStream.FILENAME), this.serializer));
 
                     if (status != null) {
                         File properFolder = getJobFolder(status.getRequest().getId());
@@ -240,6 +416,11 @@ private void repairFolder(File folder)
                             // Move the status in its right place
                             try {
                                 FileUtils.moveFileToDirectory(file, properFolder, true);
+
+                                File logFile = new File(folder, JobStatusLogStream.FILENAME);
+                                if (logFile.exists()) {
+                                    FileUtils.moveFileToDirectory(logFile, properFolder, true);
+                                }
                             } catch (IOException e) {
                                 this.logger.error("Failed to move job status file", e);
                             }
@@ -252,19 +433,41 @@ private void repairFolder(File folder)
         }
     }
 
-    private JobStatus loadStatus(List<String> id)
+    private JobStatus loadStatus(List<String> id) throws IOException
     {
-        return loadStatus(getJobFolder(id));
+        AbstractJobStatusLogStream logStream = getLogStream(id);
+
+        JobStatus status;
+        if (this.segmentStorage != null) {
+            byte[] bytes = this.segmentStorage.get(getSegmentKey(id));
+
+            status = bytes != null ? this.serializer.read(new ByteArrayInputStream(bytes), logStream) : null;
+        } else {
+            status = loadStatus(getJobFolder(id), logStream);
+        }
+
+        if (status != null) {
+            // Remember which log events don't need to be written again
+            LogQueue log = status.getLog();
+            int storedSize = logStream.size();
+            if (log.size() == storedSize) {
+                this.storedLogs.put(log, storedSize);
+            }
+        }
+
+        return status;
     }
 
     /**
      * @param folder the folder from where to load the job status
+     * @param logStream the stream where the log of the job is stored
+     * @throws IOException when failing to load the job status
      */
-    private JobStatus loadStatus(File folder)
+    private JobStatus loadStatus(File folder, AbstractJobStatusLogStream logStream) throws IOException
     {
         File statusFile = new File(folder, FILENAME_STATUS);
         if (statusFile.exists()) {
-            return loadJobStatus(statusFile);
+            return loadJobStatus(statusFile, logStream);
         }
 
         return null;
@@ -272,12 +475,51 @@ private JobStatus loadStatus(File folder)
 
     /**
      * @param statusFile the file containing job status to load
+     * @param logStream the stream where the log of the job is stored
      * @return the job status
-     * @throws Exception when failing to load the job status from the file
+     * @throws IOException when failing to load the job status from the file
      */
-    private JobStatus loadJobStatus(File statusFile)
+    private JobStatus loadJobStatus(File statusFile, AbstractJobStatusLogStream logStream) throws IOException
     {
-        return this.serializer.read(statusFile);
+        return this.serializer.read(statusFile, logStream);
+    }
+
+    private AbstractJobStatusLogStream getLogStream(List<String> id)
+    {
+        if (this.segmentStorage != null) {
+            return new JobStatusSegmentLogStream(this.segmentStorage, getSegmentKey(id), this.serializer,
+                this.maxInMemoryLogs, this.logTemporaryFolder);
+        }
+
+        return new JobStatusLogStream(new File(getJobFolder(id), JobStatusLogStream.FILENAME), this.serializer,
+            this.maxInMemoryLogs, this.logTemporaryFolder);
+    }
+
+    /**
+     * Write the log events which are not yet in the log stream. Never called concurrently for the same job (see
+     * {@link JobStatusWriteQueue}).
+     *
+     * @param log the log to store
+     * @param logStream the stream where to store the log
+     * @throws IOException when failing to write the log stream
+     */
+    private void saveLog(LogQueue log, AbstractJobStatusLogStream logStream) throws IOException
+    {
+        Integer storedSize = this.storedLogs.get(log);
+
+        int size;
+        if (storedSize != null && storedSize == logStream.size()) {
+            List<LogEvent> newEvents = log.getLogs(storedSize, Integer.MAX_VALUE);
+            logStream.append(newEvents);
+            size = storedSize + newEvents.size();
+        } else {
+            // Unknown log or modified stream: write everything again
+            List<LogEvent> events = log.getLogs(0, Integer.MAX_VALUE);
+            logStream.write(events);
+            size = events.size();
+        }
+
+        this.storedLogs.put(log, size);
     }
 
     // JobStatusStorage
@@ -306,10 +548,25 @@ private File getJobFolder(List<String> id)
     private void saveJobStatus(JobStatus status)
     {
         try {
-            File statusFile = getJobFolder(status.getRequest().getId());
-            statusFile = new File(statusFile, FILENAME_STATUS);
+            AbstractJobStatusLogStream logStream = getLogStream(status.getRequest().getId());
+            saveLog(status.getLog(), logStream);
+
+            // The rest of the status is written once the job is finished
+            if (this.logOnlyStatuses.remove(status) && status.getState() != State.FINISHED) {
+                return;
+            }
+
+            if (this.segmentStorage != null) {
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                this.serializer.write(status, stream, logStream);
+
+                this.segmentStorage.put(getSegmentKey(status.getRequest().getId()), stream.toByteArray());
+            } else {
+                File statusFile = getJobFolder(status.getRequest().getId());
+                statusFile = new File(statusFile, FILENAME_STATUS);
 
-            this.serializer.write(status, statusFile);
+                this.serializer.write(status, statusFile, logStream);
+            }
         } catch (Exception e) {
             this.logger.warn("Failed to save job status [{}]", status, e);
         }
@@ -320,32 +577,20 @@ public JobStatus getJobStatus(List<String> id)
     {
         String idString = toUniqueString(id);
 
-        JobStatus status = this.cache.get(idString);
-
-        if (status == null) {
-            status = maybeLoadStatus(id, idString);
-        }
+        JobStatus status = this.cache.get(idString, key -> maybeLoadStatus(id));
 
         return status == NOSTATUS ? null : status;
     }
 
-    private synchronized JobStatus maybeLoadStatus(List<String> id, String idString)
+    private JobStatus maybeLoadStatus(List<String> id)
     {
-        JobStatus status = this.cache.get(idString);
-
-        if (status == null) {
-            try {
-                status = loadStatus(id);
-
-                this.cache.set(idString, status);
-            } catch (Exception e) {
-                this.logger.warn("Failed to load job status for id {}", id, e);
+        try {
+            return loadStatus(id);
+        } catch (Exception e) {
+            this.logger.warn("Failed to load job status for id {}", id, e);
 
-                this.cache.remove(idString);
-            }
+            return null;
         }
-
-        return status;
     }
 
     @Override
@@ -368,22 +613,67 @@ private void store(JobStatus status, boolean async)
             }
 
             // Only store Serializable job status on file system
-            if (status.getClass().isAnnotationPresent(Serializable.class) || status instanceof java.io.Serializable) {
+            if (isSerializable(status)) {
+                // Make sure the whole status is written
+                this.logOnlyStatuses.remove(status);
+
                 if (async) {
-                    this.executorService.execute(new JobStatusSerializerRunnable(status));
+                    this.writeQueue.add(status);
                 } else {
-                    saveJobStatus(status);
+                    // Make sure an older version of the status won't be written after this one
+                    this.writeQueue.write(status);
                 }
             }
         }
     }
 
+    private boolean isSerializable(JobStatus status)
+    {
+        return status.getClass().isAnnotationPresent(Serializable.class) || status instanceof java.io.Serializable;
+    }
+
+    @Override
+    public void storeLogWhileRunning(JobStatus status)
+    {
+        if (status != null && status.getRequest() != null && status.getRequest().getId() != null
+            && isSerializable(status)) {
+            this.runningStatuses.add(status);
+        }
+    }
+
+    /**
+     * Add the running jobs registered with {@link #storeLogWhileRunning(JobStatus)} to the write queue so that their
+     * new log events are written. Called regularly.
+     */
+    void flushRunningLogs()
+    {
+        for (JobStatus status : this.runningStatuses) {
+            if (status.getState() == State.FINISHED) {
+                // The whole status is stored by the job
+                this.runningStatuses.remove(status);
+            } else {
+                this.logOnlyStatuses.add(status);
+                this.writeQueue.add(status);
+            }
+        }
+    }
+
     @Override
     public void remove(List<String> id)
     {
+        // Don't write again a removed job status
+        this.writeQueue.remove(getSegmentKey(id));
+
         File jobFolder = getJobFolder(id);
 
-        if (jobFolder.exists()) {
+        if (this.segmentStorage != null) {
+            try {
+                // Also remove the log
+                this.segmentStorage.remove(getSegmentKey(id));
+            } catch (IOException e) {
+                this.logger.warn("Failed to remove job status [{}]", id, e);
+            }
+        } else if (jobFolder.exists()) {
             try {
                 FileUtils.deleteDirectory(jobFolder);
             } catch (IOException e) {
@@ -19,56 +19,148 @@
  */
 package org.xwiki.job.internal;
 
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.xwiki.job.JobGroupPath;
 
 /**
  * Helper for hierarchical locking.
+ * <p>
+ * Locking a job group excludes any other lock on the same group, on one of its parents or on one of its sub groups,
+ * while sibling groups can be locked at the same time. Instead of a read/write lock for each group ever locked, each
+ * group currently involved in a lock has a node counting the number of locked sub groups (the intention locks) and
+ * indicating if the group itself is locked. All the nodes are protected by the same monitor, a lock only needs to
+ * walk the parents of the group once and the nodes are removed as soon as they are not used anymore.
+ * <p>
+ * The locks are only taken with {@link #tryLock(JobGroupPath)}: nothing ever waits for a job group here. The grouped
+ * jobs which can't be executed yet stay in the queue of the {@link JobScheduler} which makes sure a job is not passed
+ * by the following jobs of overlapping groups, and the time they spend waiting is measured by the
+ * {@link JobTypeStatistics} queue time.
+ * <p>
+ * The locks are not reentrant and are not owned by a thread: a job group locked by a thread can be unlocked by
+ * another one.
  *
  * @version $Id$
  * @since 6.1M2
  */
 public class JobGroupPathLockTree
 {
-    private final Map<JobGroupPath, ReadWriteLock> tree = new ConcurrentHashMap<JobGroupPath, ReadWriteLock>();
+    private static final class Node
+    {
+        private boolean locked;
+
+        /**
+         * The number of locked sub groups.
+         */
+        private int lockedChildren;
+    }
+
+    private final Map<JobGroupPath, Node> tree = new HashMap<>();
+
+    private long lockCount;
+
+    private long failedTryLockCount;
+
+    private boolean isLockable(JobGroupPath key)
+    {
+        Node node = this.tree.get(key);
+        if (node != null && (node.locked || node.lockedChildren > 0)) {
+            return false;
+        }
+
+        for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
+            Node parent = this.tree.get(path);
+            if (parent != null && parent.locked) {
+                return false;
+            }
+        }
 
-    private synchronized ReadWriteLock getLock(JobGroupPath key)
+        return true;
+    }
+
+    private void doLock(JobGroupPath key)
     {
-        ReadWriteLock lock = this.tree.get(key);
+        this.tree.computeIfAbsent(key, k -> new Node()).locked = true;
 
-        if (lock == null) {
-            lock = new ReentrantReadWriteLock(true);
-            this.tree.put(key, lock);
+        for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
+            this.tree.computeIfAbsent(path, k -> new Node()).lockedChildren++;
         }
 
-        return lock;
+        this.lockCount++;
     }
 
     /**
-     * @param key lock provided job group and all its parents
+     * Lock provided job group and all its parents only if they are all available.
+     *
+     * @param key the job group to lock
+     * @return true if the job group and its parents have been locked, false if nothing has been locked
+     * @since 10.0RC1
      */
-    public void lock(JobGroupPath key)
+    public synchronized boolean tryLock(JobGroupPath key)
     {
-        getLock(key).writeLock().lock();
+        if (!isLockable(key)) {
+            this.failedTryLockCount++;
 
-        for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
-            getLock(path).readLock().lock();
+            return false;
         }
+
+        doLock(key);
+
+        return true;
     }
 
     /**
      * @param key unlock provided job group and all its parents
      */
-    public void unlock(JobGroupPath key)
+    public synchronized void unlock(JobGroupPath key)
     {
-        getLock(key).writeLock().unlock();
+        Node node = this.tree.get(key);
+        if (node == null || !node.locked) {
+            throw new IllegalMonitorStateException("The job group [" + key + "] is not locked");
+        }
+
+        node.locked = false;
+        reclaim(key, node);
 
         for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
-            getLock(path).readLock().unlock();
+            Node parent = this.tree.get(path);
+            parent.lockedChildren--;
+            reclaim(path, parent);
         }
     }
+
+    private void reclaim(JobGroupPath path, Node node)
+    {
+        if (!node.locked && node.lockedChildren == 0) {
+            this.tree.remove(path);
+        }
+    }
+
+    /**
+     * @return the number of job groups currently locked or containing locked sub groups
+     * @since 10.0RC1
+     */
+    public synchronized int getNodeCount()
+    {
+        return this.tree.size();
+    }
+
+    /**
+     * @return the number of times a job group was locked
+     * @since 10.0RC1
+     */
+    public synchronized long getLockCount()
+    {
+        return this.lockCount;
+    }
+
+    /**
+     * @return the number of times {@link #tryLock(JobGroupPath)} failed to take the lock
+     * @since 10.0RC1
+     */
+    public synchronized long getFailedTryLockCount()
+    {
+        return this.failedTryLockCount;
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+
+import org.xwiki.job.Request;
+import org.xwiki.logging.IndexedLogQueue;
+
+/**
+ * Create the queues containing the log of the jobs.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public final class JobLogQueueFactory
+{
+    private JobLogQueueFactory()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param request the request of the job
+     * @return a new queue for the log of the job, configured from {@link Request#PROPERTY_LOG_MAX_IN_MEMORY} and
+     *         {@link Request#PROPERTY_LOG_FOLDER}
+     */
+    public static IndexedLogQueue createLogQueue(Request request)
+    {
+        if (request == null) {
+            return new IndexedLogQueue();
+        }
+
+        Number maxInMemory = request.<Number>getProperty(Request.PROPERTY_LOG_MAX_IN_MEMORY);
+        String folder = request.<String>getProperty(Request.PROPERTY_LOG_FOLDER);
+
+        return createLogQueue(maxInMemory != null ? maxInMemory.intValue() : -1,
+            folder != null ? new File(folder) : null);
+    }
+
+    /**
+     * @param maxInMemory the maximum number of log events to keep in memory, -1 to keep all of them in memory
+     * @param folder the folder where to move the log events which don't fit in memory
+     * @return a new queue for the log of a job
+     */
+    public static IndexedLogQueue createLogQueue(int maxInMemory, File folder)
+    {
+        if (maxInMemory < 0 || folder == null) {
+            return new IndexedLogQueue();
+        }
+
+        return new IndexedLogQueue(maxInMemory, folder);
+    }
+}
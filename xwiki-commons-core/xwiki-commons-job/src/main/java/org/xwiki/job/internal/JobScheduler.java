@@ -0,0 +1,382 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobGroupPath;
+
+/**
+ * Execute jobs with a limited number of threads.
+ * <p>
+ * The jobs waiting to be executed are queued by priority and then by submission order. A free thread executes the first
+ * job of the queue which can be executed right away: a grouped job can't be executed while a job of the same group,
+ * of a parent group or of a sub group is running (see {@link JobGroupPathLockTree}) or while the maximum number of
+ * jobs configured for one of its groups is reached. A grouped job also can't pass a waiting job of the same group, of a
+ * parent group or of a sub group which is before it in the queue, so that a job is never starved by a continuous flow
+ * of jobs in its sub groups. Threads are created as needed, up to the global limit, and stopped
+ * after some time without anything to execute.
+ * <p>
+ * The contention between the grouped jobs is measured by the time they spend in the queue, for each job type (see
+ * {@link #getStatistics()}).
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JobScheduler
+{
+    private static final long KEEP_ALIVE = TimeUnit.SECONDS.toNanos(60);
+
+    private static final class Task implements Comparable<Task>
+    {
+        private final Job job;
+
+        private final JobGroupPath path;
+
+        private final int priority;
+
+        private final long sequence;
+
+        private final long submitTime = System.nanoTime();
+
+        private Task(Job job, JobGroupPath path, long sequence)
+        {
+            this.job = job;
+            this.path = path;
+            this.priority = job.getRequest().getPriority();
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task other)
+        {
+            int result = Integer.compare(other.priority, this.priority);
+
+            return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    private final JobGroupPathLockTree lockTree;
+
+    private final int maxThreads;
+
+    private final Map<JobGroupPath, Integer> groupMaxThreads;
+
+    private final ThreadFactory threadFactory;
+
+    private final Consumer<Job> finishedCallback;
+
+    private final Logger logger;
+
+    private final SortedSet<Task> queue = new TreeSet<>();
+
+    /**
+     * The number of running jobs in each group which has a limit.
+     */
+    private final Map<JobGroupPath, Integer> groupRunningJobs = new HashMap<>();
+
+    private final Map<JobGroupPath, Job> currentJobs = new ConcurrentHashMap<>();
+
+    private final Map<String, JobTypeStatistics> statistics = new ConcurrentHashMap<>();
+
+    private final Set<Thread> workers = new HashSet<>();
+
+    private long sequence;
+
+    private int idleWorkers;
+
+    private boolean shutdown;
+
+    /**
+     * @param lockTree the locks to take before executing grouped jobs
+     * @param maxThreads the maximum number of jobs executed at the same time, 0 or less for no limit
+     * @param groupMaxThreads the maximum number of jobs executed at the same time in some groups
+     * @param threadFactory the factory used to create the threads executing the jobs
+     * @param finishedCallback called after the execution of each job
+     * @param logger the logger
+     */
+    public JobScheduler(JobGroupPathLockTree lockTree, int maxThreads, Map<JobGroupPath, Integer> groupMaxThreads,
+        ThreadFactory threadFactory, Consumer<Job> finishedCallback, Logger logger)
+    {
+        this.lockTree = lockTree;
+        this.maxThreads = maxThreads;
+        this.groupMaxThreads = groupMaxThreads;
+        this.threadFactory = threadFactory;
+        this.finishedCallback = finishedCallback;
+        this.logger = logger;
+    }
+
+    /**
+     * @param job the job to execute
+     * @param path the group of the job, null if it's not a grouped job
+     */
+    public synchronized void submit(Job job, JobGroupPath path)
+    {
+        if (this.shutdown) {
+            throw new RejectedExecutionException("The job scheduler is shutdown");
+        }
+
+        this.queue.add(new Task(job, path, this.sequence++));
+
+        if (this.idleWorkers > 0) {
+            notifyAll();
+        } else {
+            startWorker();
+        }
+    }
+
+    private void startWorker()
+    {
+        if (this.maxThreads <= 0 || this.workers.size() < this.maxThreads) {
+            Thread thread = this.threadFactory.newThread(this::work);
+            this.workers.add(thread);
+            thread.start();
+        }
+    }
+
+    private void work()
+    {
+        try {
+            for (Task task = next(); task != null; task = next()) {
+                run(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                this.workers.remove(Thread.currentThread());
+            }
+        }
+    }
+
+    private synchronized Task next() throws InterruptedException
+    {
+        long deadline = System.nanoTime() + KEEP_ALIVE;
+
+        while (!this.shutdown) {
+            Task task = poll();
+            if (task != null) {
+                // Make sure the other jobs which can be executed are not waiting for this one to finish
+                if (!this.queue.isEmpty() && this.idleWorkers == 0) {
+                    startWorker();
+                }
+
+                return task;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+
+            this.idleWorkers++;
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } finally {
+                this.idleWorkers--;
+            }
+        }
+
+        return null;
+    }
+
+    private Task poll()
+    {
+        // The groups of the waiting jobs which are before in the queue
+        List<JobGroupPath> reserved = null;
+
+        for (Iterator<Task> it = this.queue.iterator(); it.hasNext();) {
+            Task task = it.next();
+
+            if (task.path == null) {
+                it.remove();
+
+                return task;
+            } else if (!isReserved(task.path, reserved) && isBelowGroupLimits(task.path)
+                && this.lockTree.tryLock(task.path)) {
+                it.remove();
+
+                updateGroupRunningJobs(task.path, 1);
+                this.currentJobs.put(task.path, task.job);
+
+                return task;
+            }
+
+            // Make sure the following jobs of the same groups don't pass this one indefinitely
+            if (reserved == null) {
+                reserved = new ArrayList<>();
+            }
+            reserved.add(task.path);
+        }
+
+        return null;
+    }
+
+    private boolean isReserved(JobGroupPath path, List<JobGroupPath> reserved)
+    {
+        if (reserved != null) {
+            for (JobGroupPath reservedPath : reserved) {
+                if (isAncestorOrSelf(reservedPath, path) || isAncestorOrSelf(path, reservedPath)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isAncestorOrSelf(JobGroupPath ancestor, JobGroupPath path)
+    {
+        List<String> ancestorElements = ancestor.getPath();
+        List<String> elements = path.getPath();
+
+        return elements.size() >= ancestorElements.size()
+            && elements.subList(0, ancestorElements.size()).equals(ancestorElements);
+    }
+
+    private boolean isBelowGroupLimits(JobGroupPath path)
+    {
+        for (JobGroupPath group = path; group != null; group = group.getParent()) {
+            Integer limit = this.groupMaxThreads.get(group);
+            if (limit != null && this.groupRunningJobs.getOrDefault(group, 0) >= limit) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void updateGroupRunningJobs(JobGroupPath path, int delta)
+    {
+        for (JobGroupPath group = path; group != null; group = group.getParent()) {
+            if (this.groupMaxThreads.containsKey(group)) {
+                this.groupRunningJobs.merge(group, delta, Integer::sum);
+            }
+        }
+    }
+
+    private void run(Task task)
+    {
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        if (task.path != null) {
+            thread.setName(task.path + " job group daemon thread - " + task.job);
+        }
+
+        JobTypeStatistics typeStatistics =
+            this.statistics.computeIfAbsent(Objects.toString(task.job.getType(), ""), key -> new JobTypeStatistics());
+        long start = System.nanoTime();
+        typeStatistics.started(start - task.submitTime);
+
+        try {
+            task.job.run();
+        } catch (Exception e) {
+            this.logger.error("Unexpected error when executing job [{}]", task.job, e);
+        } finally {
+            typeStatistics.finished(System.nanoTime() - start);
+
+            thread.setName(threadName);
+
+            finished(task);
+        }
+    }
+
+    private void finished(Task task)
+    {
+        synchronized (this) {
+            if (task.path != null) {
+                // Unlocked by the thread which took the lock
+                this.lockTree.unlock(task.path);
+                this.currentJobs.remove(task.path, task.job);
+                updateGroupRunningJobs(task.path, -1);
+
+                // Some waiting jobs might be executable now
+                notifyAll();
+            }
+        }
+
+        this.finishedCallback.accept(task.job);
+    }
+
+    /**
+     * @param path the job group
+     * @return the job currently executed in the passed group, null if none
+     */
+    public Job getCurrentJob(JobGroupPath path)
+    {
+        return this.currentJobs.get(path);
+    }
+
+    /**
+     * @return the number of jobs waiting to be executed
+     */
+    public synchronized int getQueueSize()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * @return the number of threads executing jobs or waiting for jobs to execute
+     */
+    public synchronized int getThreadCount()
+    {
+        return this.workers.size();
+    }
+
+    /**
+     * @return the execution statistics of each job type
+     */
+    public Map<String, JobTypeStatistics> getStatistics()
+    {
+        return Collections.unmodifiableMap(this.statistics);
+    }
+
+    /**
+     * Stop the execution of the jobs: the waiting jobs are forgotten and the running ones are interrupted.
+     */
+    public synchronized void shutdownNow()
+    {
+        this.shutdown = true;
+
+        this.queue.clear();
+        for (Thread worker : this.workers) {
+            worker.interrupt();
+        }
+
+        notifyAll();
+    }
+}
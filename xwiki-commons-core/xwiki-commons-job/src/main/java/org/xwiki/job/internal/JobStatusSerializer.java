@@ -33,12 +33,25 @@
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.internal.store.AbstractJobStatusLogStream;
+import org.xwiki.job.internal.xstream.LogQueueConverter;
 import org.xwiki.job.internal.xstream.SafeXStream;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.DataHolder;
+import com.thoughtworks.xstream.core.MapBackedDataHolder;
+import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.xml.CompactWriter;
+import com.thoughtworks.xstream.io.xml.XppDriver;
 
 /**
  * Serialize/unserialize tool for job statuses.
+ * <p>
+ * The log of a job status is either serialized in the XML with the rest of the status (the export format) or, when a
+ * {@link AbstractJobStatusLogStream} is provided, stored in it separately.
  *
  * @version $Id$
  * @since 5.2M2
@@ -55,6 +68,11 @@
      */
     private XStream xstream;
 
+    /**
+     * The driver used by default by {@link XStream}.
+     */
+    private HierarchicalStreamDriver driver = new XppDriver();
+
     /**
      * Default constructor.
      *
@@ -63,6 +81,19 @@
     public JobStatusSerializer() throws ParserConfigurationException
     {
         this.xstream = new SafeXStream();
+
+        this.xstream.registerConverter(
+            new LogQueueConverter(this.xstream.getConverterLookup().lookupConverterForType(LogQueue.class)));
+    }
+
+    private DataHolder createDataHolder(AbstractJobStatusLogStream logStream)
+    {
+        DataHolder dataHolder = new MapBackedDataHolder();
+        if (logStream != null) {
+            dataHolder.put(LogQueueConverter.CONTEXT_LOG_STREAM, logStream);
+        }
+
+        return dataHolder;
     }
 
     /**
@@ -71,13 +102,25 @@ public JobStatusSerializer() throws ParserConfigurationException
      * @throws IOException when failing to serialize the status
      */
     public void write(JobStatus status, File file) throws IOException
+    {
+        write(status, file, null);
+    }
+
+    /**
+     * @param status the status to serialize
+     * @param file the file to serialize the status to
+     * @param logStream the stream where the log is stored, null to serialize the log with the status
+     * @throws IOException when failing to serialize the status
+     * @since 10.0RC1
+     */
+    public void write(JobStatus status, File file, AbstractJobStatusLogStream logStream) throws IOException
     {
         File tempFile = File.createTempFile(file.getName(), ".tmp");
 
         FileOutputStream stream = FileUtils.openOutputStream(tempFile);
 
         try {
-            write(status, stream);
+            write(status, stream, logStream);
         } finally {
             IOUtils.closeQuietly(stream);
         }
@@ -93,11 +136,49 @@ public void write(JobStatus status, File file) throws IOException
      * @throws IOException when failing to serialize the status
      */
     public void write(JobStatus status, OutputStream stream) throws IOException
+    {
+        write(status, stream, null);
+    }
+
+    /**
+     * @param status the status to serialize
+     * @param stream the stream to serialize the status to
+     * @param logStream the stream where the log is stored, null to serialize the log with the status
+     * @throws IOException when failing to serialize the status
+     * @since 10.0RC1
+     */
+    public void write(JobStatus status, OutputStream stream, AbstractJobStatusLogStream logStream)
+        throws IOException
     {
         OutputStreamWriter writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
         writer.write("<?xml version=\"1.0\" encoding=\"" + DEFAULT_ENCODING + "\"?>\n");
-        this.xstream.toXML(status, writer);
-        writer.flush();
+        HierarchicalStreamWriter xmlWriter = this.driver.createWriter(writer);
+        this.xstream.marshal(status, xmlWriter, createDataHolder(logStream));
+        xmlWriter.flush();
+    }
+
+    /**
+     * @param logEvent the log event to serialize
+     * @param stream the stream to serialize the log event to
+     * @throws IOException when failing to serialize the log event
+     * @since 10.0RC1
+     */
+    public void write(LogEvent logEvent, OutputStream stream) throws IOException
+    {
+        OutputStreamWriter writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
+        HierarchicalStreamWriter xmlWriter = new CompactWriter(writer);
+        this.xstream.marshal(logEvent, xmlWriter);
+        xmlWriter.flush();
+    }
+
+    /**
+     * @param stream the stream to read
+     * @return the log event
+     * @since 10.0RC1
+     */
+    public LogEvent readLogEvent(InputStream stream)
+    {
+        return (LogEvent) this.xstream.fromXML(stream);
     }
 
     /**
@@ -109,6 +190,20 @@ public JobStatus read(File file)
         return (JobStatus) this.xstream.fromXML(file);
     }
 
+    /**
+     * @param file the file to read
+     * @param logStream the stream where the log is stored
+     * @return the status
+     * @throws IOException when failing to read the file
+     * @since 10.0RC1
+     */
+    public JobStatus read(File file, AbstractJobStatusLogStream logStream) throws IOException
+    {
+        try (InputStream stream = FileUtils.openInputStream(file)) {
+            return read(stream, logStream);
+        }
+    }
+
     /**
      * @param stream the stream to read
      * @return the status
@@ -117,4 +212,16 @@ public JobStatus read(InputStream stream)
     {
         return (JobStatus) this.xstream.fromXML(stream);
     }
+
+    /**
+     * @param stream the stream to read
+     * @param logStream the stream where the log is stored
+     * @return the status
+     * @since 10.0RC1
+     */
+    public JobStatus read(InputStream stream, AbstractJobStatusLogStream logStream)
+    {
+        return (JobStatus) this.xstream.unmarshal(this.driver.createReader(stream),
+            null, createDataHolder(logStream));
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The time spent by the jobs of a given type waiting to be executed and being executed.
+ * <p>
+ * For grouped jobs the queue time includes the time spent waiting for the jobs of the same group, of a parent group or
+ * of a sub group to finish.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JobTypeStatistics
+{
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder queueTime = new LongAdder();
+
+    private final LongAccumulator maxQueueTime = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder runTime = new LongAdder();
+
+    void started(long waitedTime)
+    {
+        this.count.increment();
+        this.queueTime.add(waitedTime);
+        this.maxQueueTime.accumulate(waitedTime);
+    }
+
+    void finished(long executionTime)
+    {
+        this.runTime.add(executionTime);
+    }
+
+    /**
+     * @return the number of jobs which have been started
+     */
+    public long getCount()
+    {
+        return this.count.sum();
+    }
+
+    /**
+     * @return the total time spent by the jobs waiting to be started, in nanoseconds
+     */
+    public long getQueueTime()
+    {
+        return this.queueTime.sum();
+    }
+
+    /**
+     * @return the longest time spent by a job waiting to be started, in nanoseconds
+     */
+    public long getMaxQueueTime()
+    {
+        return this.maxQueueTime.get();
+    }
+
+    /**
+     * @return the average time spent by a job waiting to be started, in nanoseconds
+     */
+    public long getAverageQueueTime()
+    {
+        long jobs = getCount();
+
+        return jobs > 0 ? getQueueTime() / jobs : 0;
+    }
+
+    /**
+     * @return the total time spent executing the finished jobs, in nanoseconds
+     */
+    public long getRunTime()
+    {
+        return this.runTime.sum();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.job.internal.JobLogQueueFactory;
+import org.xwiki.job.internal.JobStatusSerializer;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Base class for the storages of the log of a job which can be extended without writing again the existing log events.
+ * Each log event is stored as a separate record containing its serialized form.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public abstract class AbstractJobStatusLogStream
+{
+    private final JobStatusSerializer serializer;
+
+    private final int maxInMemory;
+
+    private final File spillFolder;
+
+    /**
+     * Called for each record read from the storage.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    protected interface RecordConsumer
+    {
+        /**
+         * @param record the serialized log event
+         * @throws IOException when failing to handle the record
+         */
+        void accept(byte[] record) throws IOException;
+    }
+
+    /**
+     * @param serializer the serializer used to write and read the log events
+     * @param maxInMemory the maximum number of log events to keep in memory when reading the log, -1 to keep all of
+     *            them in memory
+     * @param spillFolder the folder where to move the log events which don't fit in memory
+     */
+    protected AbstractJobStatusLogStream(JobStatusSerializer serializer, int maxInMemory, File spillFolder)
+    {
+        this.serializer = serializer;
+        this.maxInMemory = maxInMemory;
+        this.spillFolder = spillFolder;
+    }
+
+    /**
+     * @return the number of log events in the storage
+     * @throws IOException when failing to read the storage
+     */
+    public abstract int size() throws IOException;
+
+    /**
+     * @param events the log events to add at the end of the storage
+     * @throws IOException when failing to write the storage
+     */
+    public void append(List<LogEvent> events) throws IOException
+    {
+        if (!events.isEmpty()) {
+            writeRecords(toRecords(events), false);
+        }
+    }
+
+    /**
+     * @param events the log events to replace the content of the storage with
+     * @throws IOException when failing to write the storage
+     */
+    public void write(List<LogEvent> events) throws IOException
+    {
+        writeRecords(toRecords(events), true);
+    }
+
+    private List<byte[]> toRecords(List<LogEvent> events) throws IOException
+    {
+        List<byte[]> records = new ArrayList<>(events.size());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        for (LogEvent event : events) {
+            record.reset();
+            this.serializer.write(event, record);
+            records.add(record.toByteArray());
+        }
+
+        return records;
+    }
+
+    private LogEvent toLogEvent(byte[] record)
+    {
+        return this.serializer.readLogEvent(new ByteArrayInputStream(record));
+    }
+
+    /**
+     * @return all the log events of the storage
+     * @throws IOException when failing to read the storage
+     */
+    public LogQueue read() throws IOException
+    {
+        LogQueue queue = JobLogQueueFactory.createLogQueue(this.maxInMemory, this.spillFolder);
+
+        readRecords(record -> queue.add(toLogEvent(record)));
+
+        return queue;
+    }
+
+    /**
+     * @param count the maximum number of log events to return
+     * @return the last log events of the storage
+     * @throws IOException when failing to read the storage
+     */
+    public List<LogEvent> readLast(int count) throws IOException
+    {
+        List<byte[]> records = readLastRecords(count);
+
+        List<LogEvent> events = new ArrayList<>(records.size());
+        for (byte[] record : records) {
+            events.add(toLogEvent(record));
+        }
+
+        return events;
+    }
+
+    /**
+     * Delete the log.
+     *
+     * @throws IOException when failing to delete the log
+     */
+    public abstract void delete() throws IOException;
+
+    /**
+     * @param records the serialized log events to write
+     * @param reset true if the records should replace the current content of the storage
+     * @throws IOException when failing to write the storage
+     */
+    protected abstract void writeRecords(List<byte[]> records, boolean reset) throws IOException;
+
+    /**
+     * @param consumer called with each record of the storage, in order
+     * @throws IOException when failing to read the storage
+     */
+    protected abstract void readRecords(RecordConsumer consumer) throws IOException;
+
+    /**
+     * @param count the maximum number of records to return
+     * @return the last records of the storage, in order
+     * @throws IOException when failing to read the storage
+     */
+    protected abstract List<byte[]> readLastRecords(int count) throws IOException;
+}
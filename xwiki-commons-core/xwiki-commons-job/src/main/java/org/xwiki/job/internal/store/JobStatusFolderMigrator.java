@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.internal.JobStatusSerializer;
+
+/**
+ * Move the job statuses stored in a tree of folders (one {@code status.xml} file per job) to a
+ * {@link JobStatusSegmentStorage}.
+ * <p>
+ * The id of each job status is read from the status itself so statuses stored in the wrong folder are migrated with the
+ * right key. The log stored next to a job status (see {@link JobStatusLogStream}) is moved to the log associated to the
+ * same key. The migrated files are deleted, along with the folders left empty.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JobStatusFolderMigrator
+{
+    /**
+     * The name of the file where the job status is stored in the folder layout.
+     */
+    public static final String FILENAME_STATUS = "status.xml";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobStatusFolderMigrator.class);
+
+    private final JobStatusSerializer serializer;
+
+    private final Function<List<String>, String> keyFunction;
+
+    /**
+     * @param serializer used to read the job statuses
+     * @param keyFunction the function used to get the key of a job status in the segment storage from its id
+     */
+    public JobStatusFolderMigrator(JobStatusSerializer serializer, Function<List<String>, String> keyFunction)
+    {
+        this.serializer = serializer;
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * @param folder the root folder of the folder layout
+     * @return true if the folder contains job statuses to migrate
+     */
+    public static boolean needsMigration(File folder)
+    {
+        if (new File(folder, FILENAME_STATUS).exists()) {
+            return true;
+        }
+
+        File[] children = folder.listFiles(File::isDirectory);
+        if (children != null) {
+            for (File child : children) {
+                if (needsMigration(child)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param folder the root folder of the folder layout
+     * @param storage the storage where to copy the job statuses
+     * @return the number of migrated job statuses
+     * @throws IOException when failing to write in the storage
+     */
+    public int migrate(File folder, JobStatusSegmentStorage storage) throws IOException
+    {
+        List<File> migratedFiles = new ArrayList<>();
+
+        migrateFolder(folder, storage, migratedFiles);
+
+        for (File file : migratedFiles) {
+            if (!file.delete()) {
+                LOGGER.warn("Failed to delete the migrated job status file [{}]", file);
+            }
+
+            File logFile = new File(file.getParentFile(), JobStatusLogStream.FILENAME);
+            if (logFile.exists() && !logFile.delete()) {
+                LOGGER.warn("Failed to delete the migrated job log file [{}]", logFile);
+            }
+        }
+        deleteEmptyFolders(folder);
+
+        return migratedFiles.size();
+    }
+
+    private void migrateFolder(File folder, JobStatusSegmentStorage storage, List<File> migratedFiles)
+        throws IOException
+    {
+        File[] children = folder.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    migrateFolder(child, storage, migratedFiles);
+                } else if (child.getName().equals(FILENAME_STATUS) && migrateFile(child, storage)) {
+                    migratedFiles.add(child);
+                }
+            }
+        }
+    }
+
+    private boolean migrateFile(File file, JobStatusSegmentStorage storage) throws IOException
+    {
+        JobStatus status;
+        try {
+            status = this.serializer.read(file);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to load job status [{}], it won't be migrated", file, e);
+
+            return false;
+        }
+
+        if (status == null || status.getRequest() == null) {
+            LOGGER.warn("Job status [{}] does not have any request, it won't be migrated", file);
+
+            return false;
+        }
+
+        String key = this.keyFunction.apply(status.getRequest().getId());
+        storage.put(key, Files.readAllBytes(file.toPath()));
+
+        File logFile = new File(file.getParentFile(), JobStatusLogStream.FILENAME);
+        if (logFile.exists()) {
+            List<byte[]> records = new ArrayList<>();
+            new JobStatusLogStream(logFile, this.serializer).readRecords(records::add);
+            storage.appendLog(key, records, true);
+        }
+
+        return true;
+    }
+
+    private void deleteEmptyFolders(File folder)
+    {
+        File[] children = folder.listFiles(File::isDirectory);
+
+        if (children != null) {
+            for (File child : children) {
+                deleteEmptyFolders(child);
+
+                String[] content = child.list();
+                if (content != null && content.length == 0) {
+                    child.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.xwiki.job.internal.JobStatusSerializer;
+
+/**
+ * Append-only file containing the log of a job.
+ * <p>
+ * The file starts with a header containing the number of log events and the end of the last complete record. Each log
+ * event is then stored as a record made of its size, its serialized form and its size again, so that the file can be
+ * read from the end. The header is updated after the records are written so a partially written record is ignored and
+ * overwritten by the next append.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JobStatusLogStream extends AbstractJobStatusLogStream
+{
+    /**
+     * The name of the file where the log of a job is stored.
+     */
+    public static final String FILENAME = "status.log";
+
+    private static final int MAGIC = 0x584a4c31;
+
+    private static final int INT_SIZE = Integer.BYTES;
+
+    private static final int HEADER_SIZE = INT_SIZE * 2 + Long.BYTES;
+
+    private final File file;
+
+    private static final class Header
+    {
+        private int count;
+
+        private long end = HEADER_SIZE;
+    }
+
+    /**
+     * @param file the file where the log is stored
+     * @param serializer the serializer used to write and read the log events
+     */
+    public JobStatusLogStream(File file, JobStatusSerializer serializer)
+    {
+        this(file, serializer, -1, null);
+    }
+
+    /**
+     * @param file the file where the log is stored
+     * @param serializer the serializer used to write and read the log events
+     * @param maxInMemory the maximum number of log events to keep in memory when reading the log, -1 to keep all of
+     *            them in memory
+     * @param spillFolder the folder where to move the log events which don't fit in memory
+     */
+    public JobStatusLogStream(File file, JobStatusSerializer serializer, int maxInMemory, File spillFolder)
+    {
+        super(serializer, maxInMemory, spillFolder);
+
+        this.file = file;
+    }
+
+    /**
+     * @return the file where the log is stored
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    @Override
+    public int size() throws IOException
+    {
+        if (!this.file.exists()) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            return readHeader(channel).count;
+        }
+    }
+
+    @Override
+    protected void writeRecords(List<byte[]> records, boolean reset) throws IOException
+    {
+        if (records.isEmpty() && !this.file.exists()) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        for (byte[] record : records) {
+            stream.writeInt(record.length);
+            stream.write(record);
+            stream.writeInt(record.length);
+        }
+
+        this.file.getParentFile().mkdirs();
+
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Header header;
+            if (reset) {
+                header = new Header();
+                channel.truncate(HEADER_SIZE);
+            } else {
+                header = readHeader(channel);
+            }
+
+            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()), header.end);
+
+            header.count += records.size();
+            header.end += bytes.size();
+
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            headerBuffer.putInt(MAGIC).putInt(header.count).putLong(header.end).flip();
+            writeFully(channel, headerBuffer, 0);
+        }
+    }
+
+    @Override
+    protected void readRecords(RecordConsumer consumer) throws IOException
+    {
+        if (this.file.exists()) {
+            try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+                Header header = readHeader(channel);
+
+                channel.position(HEADER_SIZE);
+                DataInputStream stream = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                for (int i = 0; i < header.count; ++i) {
+                    byte[] record = new byte[stream.readInt()];
+                    stream.readFully(record);
+                    stream.readInt();
+
+                    consumer.accept(record);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected List<byte[]> readLastRecords(int count) throws IOException
+    {
+        if (!this.file.exists()) {
+            return Collections.emptyList();
+        }
+
+        List<byte[]> records = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+
+            ByteBuffer sizeBuffer = ByteBuffer.allocate(INT_SIZE);
+            long position = header.end;
+            for (int i = Math.min(count, header.count); i > 0; --i) {
+                sizeBuffer.clear();
+                readFully(channel, sizeBuffer, position - INT_SIZE);
+                ByteBuffer record = ByteBuffer.allocate(sizeBuffer.getInt(0));
+                position -= INT_SIZE + record.capacity();
+                readFully(channel, record, position);
+                position -= INT_SIZE;
+
+                records.add(record.array());
+            }
+        }
+
+        Collections.reverse(records);
+
+        return records;
+    }
+
+    @Override
+    public void delete() throws IOException
+    {
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    private Header readHeader(FileChannel channel) throws IOException
+    {
+        Header header = new Header();
+
+        if (channel.size() >= HEADER_SIZE) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, buffer, 0);
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid job log file [" + this.file + "]");
+            }
+
+            header.count = buffer.getInt();
+            header.end = buffer.getLong();
+        }
+
+        return header;
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException
+    {
+        for (long position = offset; buffer.hasRemaining();) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of job log file [" + this.file + "]");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException
+    {
+        for (long position = offset; buffer.hasRemaining();) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.file.toString();
+    }
+}
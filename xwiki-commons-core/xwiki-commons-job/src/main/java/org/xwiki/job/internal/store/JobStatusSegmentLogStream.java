@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.xwiki.job.internal.JobStatusSerializer;
+
+/**
+ * Log of a job stored in the {@link JobStatusSegmentStorage} next to the job status, under the same key (see
+ * {@link JobStatusSegmentStorage#appendLog(String, List, boolean)}).
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JobStatusSegmentLogStream extends AbstractJobStatusLogStream
+{
+    private final JobStatusSegmentStorage storage;
+
+    private final String key;
+
+    /**
+     * @param storage the storage where the log is stored
+     * @param key the key of the job status in the storage
+     * @param serializer the serializer used to write and read the log events
+     * @param maxInMemory the maximum number of log events to keep in memory when reading the log, -1 to keep all of
+     *            them in memory
+     * @param spillFolder the folder where to move the log events which don't fit in memory
+     */
+    public JobStatusSegmentLogStream(JobStatusSegmentStorage storage, String key, JobStatusSerializer serializer,
+        int maxInMemory, File spillFolder)
+    {
+        super(serializer, maxInMemory, spillFolder);
+
+        this.storage = storage;
+        this.key = key;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.storage.getLogSize(this.key);
+    }
+
+    @Override
+    public void delete() throws IOException
+    {
+        this.storage.removeLog(this.key);
+    }
+
+    @Override
+    protected void writeRecords(List<byte[]> records, boolean reset) throws IOException
+    {
+        this.storage.appendLog(this.key, records, reset);
+    }
+
+    @Override
+    protected void readRecords(RecordConsumer consumer) throws IOException
+    {
+        for (byte[] record : this.storage.getLog(this.key, Integer.MAX_VALUE)) {
+            consumer.accept(record);
+        }
+    }
+
+    @Override
+    protected List<byte[]> readLastRecords(int count) throws IOException
+    {
+        return this.storage.getLog(this.key, count);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + this.key + "] in segment storage";
+    }
+}
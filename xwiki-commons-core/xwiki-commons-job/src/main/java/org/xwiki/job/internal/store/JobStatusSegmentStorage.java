@@ -0,0 +1,977 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Store values indexed by key in a single append-only segment file.
+ * <p>
+ * Each modification appends a record at the end of the segment file and the position of the current value of each key
+ * is kept in memory. This index is saved in a separate file when the storage is closed or compacted and the records
+ * written after the last save are replayed when the storage is opened (a record which was only partially written is
+ * dropped). When the segment contains more obsolete records than live ones, the live records are copied to a new
+ * segment and the old one is deleted.
+ * <p>
+ * Keys are organized in a hierarchy based on the {@code /} separator: removing a key also removes all the keys starting
+ * with it followed by {@code /} and removing the empty key removes everything.
+ * <p>
+ * Each key can also be associated to a log: a list of records which can be extended without writing again the existing
+ * ones (see {@link #appendLog(String, List, boolean)}). The chunks of records appended to a log are stored in the
+ * segment file next to the values and removed or compacted with them.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JobStatusSegmentStorage
+{
+    /**
+     * The name of the file containing the index.
+     */
+    public static final String INDEX_FILE = "segment.index";
+
+    /**
+     * The default minimum size of the obsolete records before considering a compaction.
+     */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 16L * 1024 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobStatusSegmentStorage.class);
+
+    private static final int VERSION = 2;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".data";
+
+    private static final byte RECORD_PUT = 1;
+
+    private static final byte RECORD_REMOVE = 2;
+
+    private static final byte RECORD_LOG_APPEND = 3;
+
+    private static final byte RECORD_LOG_RESET = 4;
+
+    private static final char SEPARATOR = '/';
+
+    /**
+     * The size of the record header which does not depend on the key or the value: the type and the length of the key.
+     */
+    private static final int RECORD_HEADER = 1 + 4;
+
+    /**
+     * The size of the value header: length and checksum.
+     */
+    private static final int VALUE_HEADER = 4 + 4;
+
+    private static final int INT_SIZE = 4;
+
+    private final File folder;
+
+    private final long compactionThreshold;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, Entry> entries = new TreeMap<>();
+
+    private final NavigableMap<String, Log> logs = new TreeMap<>();
+
+    private long generation;
+
+    private FileChannel channel;
+
+    private long end;
+
+    private long liveBytes;
+
+    /**
+     * The location of a value in the segment file.
+     *
+     * @version $Id$
+     */
+    private static final class Entry
+    {
+        private final long recordOffset;
+
+        private final int recordLength;
+
+        private final int valueLength;
+
+        private final int checksum;
+
+        /**
+         * The number of log records of the chunk, 0 for a value.
+         */
+        private final int count;
+
+        Entry(long recordOffset, int recordLength, int valueLength, int checksum)
+        {
+            this(recordOffset, recordLength, valueLength, checksum, 0);
+        }
+
+        Entry(long recordOffset, int recordLength, int valueLength, int checksum, int count)
+        {
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.valueLength = valueLength;
+            this.checksum = checksum;
+            this.count = count;
+        }
+
+        long getValueOffset()
+        {
+            return this.recordOffset + this.recordLength - this.valueLength;
+        }
+    }
+
+    /**
+     * The chunks of records of a log.
+     *
+     * @version $Id$
+     */
+    private static final class Log
+    {
+        private final List<Entry> chunks = new ArrayList<>();
+
+        private int size;
+
+        private int length;
+
+        void add(Entry chunk)
+        {
+            this.chunks.add(chunk);
+            this.size += chunk.count;
+            this.length += chunk.recordLength;
+        }
+    }
+
+    /**
+     * @param folder the folder where to store the segment and index files
+     * @param compactionThreshold the minimum size of the obsolete records before considering a compaction
+     */
+    public JobStatusSegmentStorage(File folder, long compactionThreshold)
+    {
+        this.folder = folder;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * @param folder the folder where to look for a storage
+     * @return true if the folder contains a segment storage
+     */
+    public static boolean exists(File folder)
+    {
+        return new File(folder, INDEX_FILE).exists() || getSegmentFiles(folder).length > 0;
+    }
+
+    private static File[] getSegmentFiles(File folder)
+    {
+        File[] files =
+            folder.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        return files;
+    }
+
+    private static long getGeneration(File segmentFile)
+    {
+        String name = segmentFile.getName();
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private File getSegmentFile(long segmentGeneration)
+    {
+        return new File(this.folder, SEGMENT_PREFIX + segmentGeneration + SEGMENT_SUFFIX);
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Load the index and replay the records written after it was saved.
+     *
+     * @throws IOException when failing to open the storage
+     */
+    public void open() throws IOException
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            this.folder.mkdirs();
+
+            // The storage might be opened again after being closed
+            this.entries.clear();
+            this.logs.clear();
+
+            long indexedEnd = loadIndex();
+            if (indexedEnd < 0) {
+                this.generation = getLatestGeneration();
+                indexedEnd = 0;
+            }
+
+            this.channel = FileChannel.open(getSegmentFile(this.generation).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            if (this.channel.size() < indexedEnd) {
+                LOGGER.warn("The job status segment [{}] is smaller than its index, rebuilding the index",
+                    getSegmentFile(this.generation));
+
+                this.entries.clear();
+                this.logs.clear();
+                indexedEnd = 0;
+            }
+
+            this.liveBytes = 0;
+            for (Entry entry : this.entries.values()) {
+                this.liveBytes += entry.recordLength;
+            }
+            for (Log log : this.logs.values()) {
+                this.liveBytes += log.length;
+            }
+
+            this.end = replay(indexedEnd);
+            if (this.end != indexedEnd || !new File(this.folder, INDEX_FILE).exists()) {
+                saveIndex();
+            }
+
+            deleteObsoleteSegments();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private long getLatestGeneration()
+    {
+        long latest = 0;
+        for (File segmentFile : getSegmentFiles(this.folder)) {
+            latest = Math.max(latest, getGeneration(segmentFile));
+        }
+
+        return latest;
+    }
+
+    /**
+     * @return the length of the segment covered by the index or -1 if there is no valid index
+     */
+    private long loadIndex()
+    {
+        File indexFile = new File(this.folder, INDEX_FILE);
+
+        if (indexFile.exists()) {
+            try (DataInputStream input =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (input.readInt() == VERSION) {
+                    this.generation = input.readLong();
+                    long indexedEnd = input.readLong();
+                    for (int count = input.readInt(); count > 0; --count) {
+                        String key = readString(input);
+                        this.entries.put(key,
+                            new Entry(input.readLong(), input.readInt(), input.readInt(), input.readInt()));
+                    }
+                    for (int count = input.readInt(); count > 0; --count) {
+                        Log log = new Log();
+                        this.logs.put(readString(input), log);
+                        for (int chunks = input.readInt(); chunks > 0; --chunks) {
+                            log.add(new Entry(input.readLong(), input.readInt(), input.readInt(), input.readInt(),
+                                input.readInt()));
+                        }
+                    }
+
+                    return indexedEnd;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to read the job status index [{}], it will be rebuilt", indexFile, e);
+
+                this.entries.clear();
+                this.logs.clear();
+            }
+        }
+
+        return -1;
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Apply the records found after the provided position.
+     *
+     * @param position the position from where to start reading the segment
+     * @return the position of the end of the last valid record
+     */
+    private long replay(long position) throws IOException
+    {
+        long size = this.channel.size();
+        long current = position;
+
+        if (current < size) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(this.channel.position(current))))) {
+                while (current < size) {
+                    int recordLength = replayRecord(input, current, size);
+                    if (recordLength < 0) {
+                        break;
+                    }
+                    current += recordLength;
+                }
+            } catch (EOFException e) {
+                // Partially written record, ignore it
+            }
+
+            // Closing the stream closed the channel
+            this.channel = FileChannel.open(getSegmentFile(this.generation).toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+            if (current < size) {
+                LOGGER.warn("Dropping [{}] invalid bytes at the end of the job status segment [{}]", size - current,
+                    getSegmentFile(this.generation));
+
+                this.channel.truncate(current);
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * @param size the size of the segment
+     * @return the length of the record or -1 if the record is invalid
+     */
+    private int replayRecord(DataInputStream input, long recordOffset, long size) throws IOException
+    {
+        byte type = input.readByte();
+        int keyLength = input.readInt();
+        // Don't trust the lengths read from a corrupted segment
+        if (type < RECORD_PUT || type > RECORD_LOG_RESET || keyLength < 0
+            || keyLength > size - recordOffset - RECORD_HEADER) {
+            return -1;
+        }
+
+        byte[] keyBytes = new byte[keyLength];
+        input.readFully(keyBytes);
+        String key = new String(keyBytes, StandardCharsets.UTF_8);
+
+        if (type == RECORD_REMOVE) {
+            applyRemove(key);
+
+            return RECORD_HEADER + keyLength;
+        }
+
+        int valueLength = input.readInt();
+        int checksum = input.readInt();
+        byte[] value = readRecordValue(input, valueLength, checksum,
+            size - recordOffset - RECORD_HEADER - keyLength - VALUE_HEADER);
+        // A log chunk starts with the number of records it contains
+        if (value == null || (type != RECORD_PUT && valueLength < INT_SIZE)) {
+            return -1;
+        }
+
+        int recordLength = RECORD_HEADER + keyLength + VALUE_HEADER + valueLength;
+        if (type == RECORD_PUT) {
+            applyPut(key, new Entry(recordOffset, recordLength, valueLength, checksum));
+        } else {
+            int count = ByteBuffer.wrap(value).getInt(0);
+            applyLog(key, new Entry(recordOffset, recordLength, valueLength, checksum, count),
+                type == RECORD_LOG_RESET);
+        }
+
+        return recordLength;
+    }
+
+    /**
+     * @param maxLength the maximum length of the value according to the size of the segment
+     * @return the value or null if it's invalid
+     */
+    private byte[] readRecordValue(DataInputStream input, int valueLength, int checksum, long maxLength)
+        throws IOException
+    {
+        if (valueLength < 0 || valueLength > maxLength) {
+            return null;
+        }
+
+        byte[] value = new byte[valueLength];
+        input.readFully(value);
+
+        return checksum(value, 0, valueLength) == checksum ? value : null;
+    }
+
+    private void applyPut(String key, Entry entry)
+    {
+        Entry previous = this.entries.put(key, entry);
+        if (previous != null) {
+            this.liveBytes -= previous.recordLength;
+        }
+        this.liveBytes += entry.recordLength;
+    }
+
+    private void applyLog(String key, Entry chunk, boolean reset)
+    {
+        Log log = this.logs.get(key);
+
+        if (reset && log != null) {
+            this.logs.remove(key);
+            this.liveBytes -= log.length;
+            log = null;
+        }
+
+        // A chunk without records is only useful to reset the log
+        if (chunk.count > 0) {
+            if (log == null) {
+                log = new Log();
+                this.logs.put(key, log);
+            }
+            log.add(chunk);
+            this.liveBytes += chunk.recordLength;
+        }
+    }
+
+    private void applyRemove(String key)
+    {
+        for (Entry entry : removeHierarchy(this.entries, key)) {
+            this.liveBytes -= entry.recordLength;
+        }
+        for (Log log : removeHierarchy(this.logs, key)) {
+            this.liveBytes -= log.length;
+        }
+    }
+
+    /**
+     * @return the removed values
+     */
+    private static <T> List<T> removeHierarchy(NavigableMap<String, T> map, String key)
+    {
+        List<T> removed = new ArrayList<>();
+
+        Map<String, T> children;
+        if (key.isEmpty()) {
+            children = map;
+        } else {
+            T value = map.remove(key);
+            if (value != null) {
+                removed.add(value);
+            }
+            String prefix = key + SEPARATOR;
+            children = map.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+        }
+
+        removed.addAll(children.values());
+        children.clear();
+
+        return removed;
+    }
+
+    private void saveIndex() throws IOException
+    {
+        saveIndex(this.generation, this.end, this.entries, this.logs);
+    }
+
+    private void saveIndex(long indexGeneration, long indexEnd, Map<String, Entry> indexEntries,
+        Map<String, Log> indexLogs) throws IOException
+    {
+        File indexFile = new File(this.folder, INDEX_FILE);
+        File temporaryFile = File.createTempFile(INDEX_FILE, null, this.folder);
+
+        try (DataOutputStream output =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            output.writeInt(VERSION);
+            output.writeLong(indexGeneration);
+            output.writeLong(indexEnd);
+            output.writeInt(indexEntries.size());
+            for (Map.Entry<String, Entry> mapEntry : indexEntries.entrySet()) {
+                writeString(output, mapEntry.getKey());
+                writeEntry(output, mapEntry.getValue());
+            }
+            output.writeInt(indexLogs.size());
+            for (Map.Entry<String, Log> mapEntry : indexLogs.entrySet()) {
+                writeString(output, mapEntry.getKey());
+                output.writeInt(mapEntry.getValue().chunks.size());
+                for (Entry chunk : mapEntry.getValue().chunks) {
+                    writeEntry(output, chunk);
+                    output.writeInt(chunk.count);
+                }
+            }
+        }
+
+        Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeEntry(DataOutputStream output, Entry entry) throws IOException
+    {
+        output.writeLong(entry.recordOffset);
+        output.writeInt(entry.recordLength);
+        output.writeInt(entry.valueLength);
+        output.writeInt(entry.checksum);
+    }
+
+    private void deleteObsoleteSegments()
+    {
+        for (File segmentFile : getSegmentFiles(this.folder)) {
+            if (getGeneration(segmentFile) != this.generation && !segmentFile.delete()) {
+                LOGGER.warn("Failed to delete obsolete job status segment [{}]", segmentFile);
+            }
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the value associated to the key or null if there is none
+     * @throws IOException when failing to read the value
+     */
+    public byte[] get(String key) throws IOException
+    {
+        this.lock.readLock().lock();
+
+        try {
+            Entry entry = this.entries.get(key);
+
+            if (entry == null) {
+                return null;
+            }
+
+            return readValue(key, entry);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private byte[] readValue(String key, Entry entry) throws IOException
+    {
+        byte[] value = new byte[entry.valueLength];
+        read(this.channel, ByteBuffer.wrap(value), entry.getValueOffset());
+
+        if (checksum(value, 0, value.length) != entry.checksum) {
+            throw new IOException(String.format("Corrupted value for key [%s] in job status segment [%s]", key,
+                getSegmentFile(this.generation)));
+        }
+
+        return value;
+    }
+
+    private static void read(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException
+    {
+        for (long current = position; buffer.hasRemaining();) {
+            int read = fileChannel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            current += read;
+        }
+    }
+
+    private static void write(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException
+    {
+        for (long current = position; buffer.hasRemaining();) {
+            current += fileChannel.write(buffer, current);
+        }
+    }
+
+    /**
+     * @param key the key
+     * @param value the value to associate to the key
+     * @throws IOException when failing to write the value
+     */
+    public void put(String key, byte[] value) throws IOException
+    {
+        int checksum = checksum(value, 0, value.length);
+        byte[] record = createRecord(RECORD_PUT, key, value, checksum);
+
+        this.lock.writeLock().lock();
+
+        try {
+            long recordOffset = this.end;
+            append(record);
+            applyPut(key, new Entry(recordOffset, record.length, value.length, checksum));
+
+            maybeCompact();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private static byte[] createRecord(byte type, String key, byte[] value, int checksum) throws IOException
+    {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream bytes =
+            new ByteArrayOutputStream(RECORD_HEADER + keyBytes.length + VALUE_HEADER + value.length);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(type);
+        output.writeInt(keyBytes.length);
+        output.write(keyBytes);
+        output.writeInt(value.length);
+        output.writeInt(checksum);
+        output.write(value);
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param key the key
+     * @param records the records to add at the end of the log associated to the key
+     * @param reset true if the records should replace the current content of the log
+     * @throws IOException when failing to write the records
+     */
+    public void appendLog(String key, List<byte[]> records, boolean reset) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(records.size());
+        for (byte[] record : records) {
+            output.writeInt(record.length);
+            output.write(record);
+        }
+        byte[] value = bytes.toByteArray();
+        int checksum = checksum(value, 0, value.length);
+        byte[] record = createRecord(reset ? RECORD_LOG_RESET : RECORD_LOG_APPEND, key, value, checksum);
+
+        this.lock.writeLock().lock();
+
+        try {
+            // Nothing to do
+            if (records.isEmpty() && (!reset || !this.logs.containsKey(key))) {
+                return;
+            }
+
+            long recordOffset = this.end;
+            append(record);
+            applyLog(key, new Entry(recordOffset, record.length, value.length, checksum, records.size()), reset);
+
+            maybeCompact();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the number of records in the log associated to the key
+     */
+    public int getLogSize(String key)
+    {
+        this.lock.readLock().lock();
+
+        try {
+            Log log = this.logs.get(key);
+
+            return log != null ? log.size : 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key the key
+     * @param count the maximum number of records to return
+     * @return the last records of the log associated to the key
+     * @throws IOException when failing to read the records
+     */
+    public List<byte[]> getLog(String key, int count) throws IOException
+    {
+        this.lock.readLock().lock();
+
+        try {
+            Log log = this.logs.get(key);
+
+            if (log == null || count <= 0) {
+                return new ArrayList<>();
+            }
+
+            // Find the first chunk containing the requested records
+            int first = log.chunks.size();
+            int available = 0;
+            while (first > 0 && available < count) {
+                available += log.chunks.get(--first).count;
+            }
+
+            List<byte[]> records = new ArrayList<>(Math.min(count, available));
+            int skipped = available - count;
+            for (Entry chunk : log.chunks.subList(first, log.chunks.size())) {
+                ByteBuffer input = ByteBuffer.wrap(readValue(key, chunk));
+                for (int i = input.getInt(); i > 0; --i) {
+                    byte[] record = new byte[input.getInt()];
+                    input.get(record);
+                    if (skipped > 0) {
+                        --skipped;
+                    } else {
+                        records.add(record);
+                    }
+                }
+            }
+
+            return records;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the log associated to the key, but not its value.
+     *
+     * @param key the key
+     * @throws IOException when failing to remove the log
+     */
+    public void removeLog(String key) throws IOException
+    {
+        appendLog(key, new ArrayList<>(), true);
+    }
+
+    /**
+     * Remove the key and all its children.
+     *
+     * @param key the key
+     * @throws IOException when failing to remove the key
+     */
+    public void remove(String key) throws IOException
+    {
+        // The log associated to the key and its children are removed too
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER + keyBytes.length);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(RECORD_REMOVE);
+        output.writeInt(keyBytes.length);
+        output.write(keyBytes);
+
+        this.lock.writeLock().lock();
+
+        try {
+            append(bytes.toByteArray());
+            applyRemove(key);
+
+            maybeCompact();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void append(byte[] record) throws IOException
+    {
+        try {
+            write(this.channel, ByteBuffer.wrap(record), this.end);
+        } catch (IOException e) {
+            // Make sure to not leave a partial record in the middle of the segment
+            this.channel.truncate(this.end);
+
+            throw e;
+        }
+
+        this.end += record.length;
+    }
+
+    private void maybeCompact() throws IOException
+    {
+        long obsoleteBytes = this.end - this.liveBytes;
+
+        if (obsoleteBytes > this.compactionThreshold && obsoleteBytes > this.liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Copy the live records to a new segment and delete the current one.
+     *
+     * @throws IOException when failing to compact the segment
+     */
+    public void compact() throws IOException
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            long newGeneration = this.generation + 1;
+            File newSegmentFile = getSegmentFile(newGeneration);
+
+            FileChannel newChannel = FileChannel.open(newSegmentFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            // The current index and segment are left untouched until the new ones are complete
+            NavigableMap<String, Entry> newEntries = new TreeMap<>();
+            NavigableMap<String, Log> newLogs = new TreeMap<>();
+            long position;
+            try {
+                position = copyLiveRecords(newChannel, newEntries, newLogs);
+                newChannel.force(true);
+
+                // Saving the index is what makes the new segment the current one
+                saveIndex(newGeneration, position, newEntries, newLogs);
+            } catch (IOException e) {
+                newChannel.close();
+                Files.deleteIfExists(newSegmentFile.toPath());
+
+                throw e;
+            }
+
+            FileChannel oldChannel = this.channel;
+            this.channel = newChannel;
+            this.generation = newGeneration;
+            this.end = position;
+            this.liveBytes = position;
+            this.entries.clear();
+            this.entries.putAll(newEntries);
+            this.logs.clear();
+            this.logs.putAll(newLogs);
+
+            oldChannel.close();
+
+            deleteObsoleteSegments();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the size of the copied records
+     */
+    private long copyLiveRecords(FileChannel newChannel, Map<String, Entry> newEntries, Map<String, Log> newLogs)
+        throws IOException
+    {
+        long position = 0;
+
+        for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+
+            newEntries.put(mapEntry.getKey(), copyRecord(entry, newChannel, position));
+            position += entry.recordLength;
+        }
+
+        for (Map.Entry<String, Log> mapEntry : this.logs.entrySet()) {
+            Log newLog = new Log();
+            for (Entry chunk : mapEntry.getValue().chunks) {
+                newLog.add(copyRecord(chunk, newChannel, position));
+                position += chunk.recordLength;
+            }
+            newLogs.put(mapEntry.getKey(), newLog);
+        }
+
+        return position;
+    }
+
+    /**
+     * @return the entry of the copied record
+     */
+    private Entry copyRecord(Entry entry, FileChannel newChannel, long position) throws IOException
+    {
+        ByteBuffer record = ByteBuffer.allocate(entry.recordLength);
+        read(this.channel, record, entry.recordOffset);
+        record.flip();
+        write(newChannel, record, position);
+
+        return new Entry(position, entry.recordLength, entry.valueLength, entry.checksum, entry.count);
+    }
+
+    /**
+     * @return the number of keys
+     */
+    public int size()
+    {
+        this.lock.readLock().lock();
+
+        try {
+            return this.entries.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the size of the segment file
+     */
+    public long getSegmentSize()
+    {
+        this.lock.readLock().lock();
+
+        try {
+            return this.end;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Save the index and close the segment file.
+     *
+     * @throws IOException when failing to close the storage
+     */
+    public void close() throws IOException
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            if (this.channel != null) {
+                this.channel.force(true);
+                saveIndex();
+                this.channel.close();
+                this.channel = null;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * Write job statuses in a background thread.
+ * <p>
+ * The pending job statuses are indexed by key so that saving again a job status which is still waiting to be written
+ * only replaces it in the queue (it keeps its position) instead of producing another write. The queue is bounded: when
+ * it's full, adding a new job status blocks the caller until the writer thread makes some room. Job statuses are
+ * written in the order in which they were first added, by a single thread.
+ * <p>
+ * A job status is never written by two threads at the same time: a direct write waits for the write of the same job
+ * status in progress in the background thread and the background thread does not start writing a job status which is
+ * being written directly, so that an older version of a job status never overwrites a more recent one.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JobStatusWriteQueue
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobStatusWriteQueue.class);
+
+    private final int capacity;
+
+    private final Function<JobStatus, String> keyFunction;
+
+    private final Consumer<JobStatus> writer;
+
+    private final Map<String, JobStatus> pending = new LinkedHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = this.lock.newCondition();
+
+    private final Condition notFull = this.lock.newCondition();
+
+    private final Condition idle = this.lock.newCondition();
+
+    private final Condition written = this.lock.newCondition();
+
+    private final Thread thread;
+
+    /**
+     * The keys of the job statuses currently being written.
+     */
+    private final Set<String> writing = new HashSet<>();
+
+    private boolean closed;
+
+    private int maxSize;
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder blocked = new LongAdder();
+
+    private final LongAdder writes = new LongAdder();
+
+    private final LongAdder writeTime = new LongAdder();
+
+    private volatile long maxWriteTime;
+
+    /**
+     * @param capacity the maximum number of job statuses waiting to be written
+     * @param keyFunction the function returning the identifier of a job status
+     * @param writer the function used to write a job status
+     */
+    public JobStatusWriteQueue(int capacity, Function<JobStatus, String> keyFunction, Consumer<JobStatus> writer)
+    {
+        this.capacity = capacity;
+        this.keyFunction = keyFunction;
+        this.writer = writer;
+
+        this.thread = new BasicThreadFactory.Builder().namingPattern("Job status serializer").daemon(true)
+            .priority(Thread.MIN_PRIORITY).build().newThread(this::run);
+        this.thread.start();
+    }
+
+    private void run()
+    {
+        for (JobStatus status = take(); status != null; status = take()) {
+            long start = System.nanoTime();
+            try {
+                this.writer.accept(status);
+            } catch (Exception e) {
+                LOGGER.error("Failed to write job status [{}]", status, e);
+            }
+            long time = System.nanoTime() - start;
+
+            this.writes.increment();
+            this.writeTime.add(time);
+            if (time > this.maxWriteTime) {
+                this.maxWriteTime = time;
+            }
+
+            written(this.keyFunction.apply(status));
+        }
+    }
+
+    private void written(String key)
+    {
+        this.lock.lock();
+        try {
+            this.writing.remove(key);
+            this.written.signalAll();
+            // The background thread might be waiting for this job status
+            this.notEmpty.signal();
+            if (this.pending.isEmpty() && this.writing.isEmpty()) {
+                this.idle.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the next job status to write or null if the queue is closed and empty
+     */
+    private JobStatus take()
+    {
+        this.lock.lock();
+
+        try {
+            while (true) {
+                // The first job status which is not being written directly
+                for (Iterator<Map.Entry<String, JobStatus>> it = this.pending.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry<String, JobStatus> entry = it.next();
+                    if (!this.writing.contains(entry.getKey())) {
+                        it.remove();
+
+                        this.writing.add(entry.getKey());
+                        this.notFull.signal();
+
+                        return entry.getValue();
+                    }
+                }
+
+                if (this.closed && this.pending.isEmpty()) {
+                    return null;
+                }
+
+                this.notEmpty.awaitUninterruptibly();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Add a job status to write. If the same job status is already waiting to be written it's replaced. When the queue
+     * is full, wait until there is some room. When the queue is closed, the job status is written directly.
+     *
+     * @param status the job status to write
+     */
+    public void add(JobStatus status)
+    {
+        String key = this.keyFunction.apply(status);
+
+        this.lock.lock();
+
+        try {
+            if (!this.closed) {
+                if (this.pending.containsKey(key)) {
+                    this.pending.put(key, status);
+                    this.coalesced.increment();
+
+                    return;
+                }
+
+                if (this.pending.size() >= this.capacity) {
+                    this.blocked.increment();
+
+                    do {
+                        this.notFull.await();
+                    } while (this.pending.size() >= this.capacity && !this.closed);
+                }
+
+                if (!this.closed) {
+                    this.pending.put(key, status);
+                    this.maxSize = Math.max(this.maxSize, this.pending.size());
+                    this.notEmpty.signal();
+
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            LOGGER.warn("Interrupted while waiting to add job status [{}] to the write queue, writing it directly",
+                status);
+        } finally {
+            this.lock.unlock();
+        }
+
+        write(status);
+    }
+
+    /**
+     * Write a job status directly in the current thread. The version of the same job status waiting to be written is
+     * forgotten and the write of the same job status in progress in the background thread is finished first.
+     *
+     * @param status the job status to write
+     */
+    public void write(JobStatus status)
+    {
+        String key = this.keyFunction.apply(status);
+
+        this.lock.lock();
+
+        try {
+            if (this.pending.remove(key) != null) {
+                this.notFull.signalAll();
+            }
+
+            while (this.writing.contains(key)) {
+                this.written.awaitUninterruptibly();
+            }
+
+            this.writing.add(key);
+        } finally {
+            this.lock.unlock();
+        }
+
+        try {
+            this.writer.accept(status);
+        } finally {
+            written(key);
+        }
+    }
+
+    /**
+     * Forget the job statuses waiting to be written with the provided key or a key starting with the provided key
+     * followed by {@code /} and wait for the end of the writes of such job statuses which are in progress.
+     *
+     * @param key the key of the job statuses to forget
+     */
+    public void remove(String key)
+    {
+        String prefix = key + '/';
+        Predicate<String> matcher = k -> key.isEmpty() || k.equals(key) || k.startsWith(prefix);
+
+        this.lock.lock();
+
+        try {
+            if (this.pending.keySet().removeIf(matcher)) {
+                this.notFull.signalAll();
+                if (this.pending.isEmpty() && this.writing.isEmpty()) {
+                    this.idle.signalAll();
+                }
+            }
+
+            while (this.writing.stream().anyMatch(matcher)) {
+                this.written.awaitUninterruptibly();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until all the job statuses added until now are written.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all the job statuses were written, false if the timeout expired
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long remaining = unit.toNanos(timeout);
+
+        this.lock.lock();
+
+        try {
+            while (!this.pending.isEmpty() || !this.writing.isEmpty()) {
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                remaining = this.idle.awaitNanos(remaining);
+            }
+
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Write the pending job statuses and stop the writer thread. The job statuses added after that are written
+     * directly.
+     *
+     * @param timeout the maximum time to wait for the pending job statuses to be written
+     * @param unit the unit of the timeout
+     * @return true if all the pending job statuses were written, false if the timeout expired
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        this.lock.lock();
+
+        try {
+            this.closed = true;
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.thread.join(unit.toMillis(timeout));
+
+        return !this.thread.isAlive();
+    }
+
+    /**
+     * @return the number of job statuses waiting to be written
+     */
+    public int getSize()
+    {
+        this.lock.lock();
+
+        try {
+            return this.pending.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of job statuses which were waiting to be written at the same time
+     */
+    public int getMaxSize()
+    {
+        this.lock.lock();
+
+        try {
+            return this.maxSize;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of job statuses which replaced a job status already waiting to be written
+     */
+    public long getCoalescedCount()
+    {
+        return this.coalesced.sum();
+    }
+
+    /**
+     * @return the number of times a caller had to wait because the queue was full
+     */
+    public long getBlockedCount()
+    {
+        return this.blocked.sum();
+    }
+
+    /**
+     * @return the number of job statuses written by the writer thread
+     */
+    public long getWriteCount()
+    {
+        return this.writes.sum();
+    }
+
+    /**
+     * @return the average time spent writing a job status, in nanoseconds
+     */
+    public long getAverageWriteTime()
+    {
+        long count = this.writes.sum();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        return this.writeTime.sum() / count;
+    }
+
+    /**
+     * @return the maximum time spent writing a job status, in nanoseconds
+     */
+    public long getMaxWriteTime()
+    {
+        return this.maxWriteTime;
+    }
+}
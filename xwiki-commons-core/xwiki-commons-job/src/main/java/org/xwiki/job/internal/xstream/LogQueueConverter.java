@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.xstream;
+
+import java.io.IOException;
+
+import org.xwiki.job.internal.store.AbstractJobStatusLogStream;
+import org.xwiki.logging.LogQueue;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
+/**
+ * Store {@link LogQueue}s in a {@link AbstractJobStatusLogStream} instead of the XML when one is provided in the
+ * marshalling context (with the key {@link #CONTEXT_LOG_STREAM}). Otherwise the log events are serialized in the XML by
+ * the provided converter.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class LogQueueConverter implements Converter
+{
+    /**
+     * The key of the {@link AbstractJobStatusLogStream} in the marshalling context.
+     */
+    public static final String CONTEXT_LOG_STREAM = "xwiki.job.logStream";
+
+    private static final String ATTRIBUTE_STREAM = "stream";
+
+    private final Converter xmlConverter;
+
+    /**
+     * @param xmlConverter the converter used to serialize the log events in the XML
+     */
+    public LogQueueConverter(Converter xmlConverter)
+    {
+        this.xmlConverter = xmlConverter;
+    }
+
+    @Override
+    public boolean canConvert(Class type)
+    {
+        return type != null && LogQueue.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context)
+    {
+        if (context.get(CONTEXT_LOG_STREAM) != null) {
+            // The log events are stored separately
+            writer.addAttribute(ATTRIBUTE_STREAM, Boolean.TRUE.toString());
+        } else {
+            this.xmlConverter.marshal(source, writer, context);
+        }
+    }
+
+    @Override
+    public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context)
+    {
+        if (Boolean.parseBoolean(reader.getAttribute(ATTRIBUTE_STREAM))) {
+            AbstractJobStatusLogStream stream = (AbstractJobStatusLogStream) context.get(CONTEXT_LOG_STREAM);
+
+            if (stream == null) {
+                return new LogQueue();
+            }
+
+            try {
+                return stream.read();
+            } catch (IOException e) {
+                throw new ConversionException("Failed to read the log events from [" + stream + "]", e);
+            }
+        }
+
+        return this.xmlConverter.unmarshal(reader, context);
+    }
+}
@@ -19,7 +19,10 @@
  */
 package org.xwiki.job.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -29,13 +32,16 @@
 import org.xwiki.job.DefaultRequest;
 import org.xwiki.job.JobExecutor;
 import org.xwiki.job.JobGroupPath;
+import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.event.status.JobStatus.State;
 import org.xwiki.job.test.TestBasicGroupedJob;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
 
 /**
  * Validate {@link DefaultJobExecutor};
@@ -59,6 +65,21 @@ private TestBasicGroupedJob groupedJob(String... path)
         return new TestBasicGroupedJob("type", new JobGroupPath(Arrays.asList(path)), new DefaultRequest());
     }
 
+    private TestBasicGroupedJob singleJob(int priority)
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setPriority(priority);
+
+        return new TestBasicGroupedJob("type", null, request);
+    }
+
+    private void execute(TestBasicGroupedJob job) throws ComponentLookupException, InterruptedException
+    {
+        this.mocker.getComponentUnderTest().execute(job);
+        // Give enough time for the job to be fully taken into account
+        Thread.sleep(50);
+    }
+
     // Tests
 
     @Test
@@ -133,4 +154,159 @@ public void testMatchingGroupPathAreBlocked() throws ComponentLookupException, I
         assertSame(State.FINISHED, job1.getStatus().getState());
         assertSame(State.FINISHED, job1.getStatus().getState());
     }
+
+    @Test
+    public void testMaxThreadsAndPriority() throws Exception
+    {
+        when(this.mocker.<JobManagerConfiguration>getInstance(JobManagerConfiguration.class).getMaxThreads())
+            .thenReturn(1);
+
+        TestBasicGroupedJob job = singleJob(0);
+        TestBasicGroupedJob lowPriorityJob = singleJob(0);
+        TestBasicGroupedJob highPriorityJob = singleJob(10);
+
+        job.lock();
+        lowPriorityJob.lock();
+        highPriorityJob.lock();
+
+        execute(job);
+        execute(lowPriorityJob);
+        execute(highPriorityJob);
+
+        assertSame(State.WAITING, job.getStatus().getState());
+        assertNull(lowPriorityJob.getStatus().getState());
+        assertNull(highPriorityJob.getStatus().getState());
+
+        JobScheduler scheduler = ((DefaultJobExecutor) this.mocker.getComponentUnderTest()).getScheduler();
+        assertEquals(2, scheduler.getQueueSize());
+        assertEquals(1, scheduler.getThreadCount());
+
+        job.unlock();
+        Thread.sleep(50);
+
+        assertSame(State.FINISHED, job.getStatus().getState());
+        assertNull(lowPriorityJob.getStatus().getState());
+        assertSame(State.WAITING, highPriorityJob.getStatus().getState());
+
+        highPriorityJob.unlock();
+        Thread.sleep(50);
+
+        assertSame(State.FINISHED, highPriorityJob.getStatus().getState());
+        assertSame(State.WAITING, lowPriorityJob.getStatus().getState());
+
+        lowPriorityJob.unlock();
+        Thread.sleep(50);
+
+        assertSame(State.FINISHED, lowPriorityJob.getStatus().getState());
+
+        JobTypeStatistics statistics = scheduler.getStatistics().get("test");
+        assertEquals(3, statistics.getCount());
+        assertEquals(0, scheduler.getQueueSize());
+    }
+
+    @Test
+    public void testGroupMaxThreads() throws Exception
+    {
+        when(this.mocker.<JobManagerConfiguration>getInstance(JobManagerConfiguration.class).getGroupMaxThreads())
+            .thenReturn(Collections.singletonMap(new JobGroupPath(Arrays.asList("A")), 1));
+
+        TestBasicGroupedJob jobAB = groupedJob("A", "B");
+        TestBasicGroupedJob jobAC = groupedJob("A", "C");
+        TestBasicGroupedJob job12 = groupedJob("1", "2");
+        TestBasicGroupedJob job13 = groupedJob("1", "3");
+
+        jobAB.lock();
+        jobAC.lock();
+        job12.lock();
+        job13.lock();
+
+        execute(jobAB);
+        execute(jobAC);
+        execute(job12);
+        execute(job13);
+
+        // Sibling groups are executed at the same time, unless limited
+        assertSame(State.WAITING, jobAB.getStatus().getState());
+        assertNull(jobAC.getStatus().getState());
+        assertSame(State.WAITING, job12.getStatus().getState());
+        assertSame(State.WAITING, job13.getStatus().getState());
+
+        assertSame(jobAB, this.mocker.getComponentUnderTest().getCurrentJob(jobAB.getGroupPath()));
+        assertNull(this.mocker.getComponentUnderTest().getCurrentJob(jobAC.getGroupPath()));
+
+        jobAB.unlock();
+        Thread.sleep(50);
+
+        assertSame(State.FINISHED, jobAB.getStatus().getState());
+        assertSame(State.WAITING, jobAC.getStatus().getState());
+        assertSame(jobAC, this.mocker.getComponentUnderTest().getCurrentJob(jobAC.getGroupPath()));
+
+        jobAC.unlock();
+        job12.unlock();
+        job13.unlock();
+        Thread.sleep(50);
+
+        assertSame(State.FINISHED, jobAC.getStatus().getState());
+        assertSame(State.FINISHED, job12.getStatus().getState());
+        assertSame(State.FINISHED, job13.getStatus().getState());
+        assertNull(this.mocker.getComponentUnderTest().getCurrentJob(jobAC.getGroupPath()));
+    }
+
+    @Test
+    public void testParentGroupIsNotStarved() throws Exception
+    {
+        TestBasicGroupedJob jobA1 = groupedJob("A", "1");
+        TestBasicGroupedJob jobA = groupedJob("A");
+        TestBasicGroupedJob jobB = groupedJob("B");
+
+        jobA1.lock();
+        jobA.lock();
+        jobB.lock();
+
+        execute(jobA1);
+        execute(jobA);
+
+        assertSame(State.WAITING, jobA1.getStatus().getState());
+        assertNull(jobA.getStatus().getState());
+
+        // A steady stream of jobs in sub groups of the waiting job don't pass it
+        List<TestBasicGroupedJob> children = new ArrayList<>();
+        for (int i = 2; i < 7; ++i) {
+            TestBasicGroupedJob child = groupedJob("A", String.valueOf(i));
+            child.lock();
+            children.add(child);
+            execute(child);
+
+            assertNull(child.getStatus().getState());
+        }
+
+        // Unrelated groups are not blocked
+        execute(jobB);
+        assertSame(State.WAITING, jobB.getStatus().getState());
+
+        jobA1.unlock();
+        Thread.sleep(50);
+
+        assertSame(State.FINISHED, jobA1.getStatus().getState());
+        assertSame(State.WAITING, jobA.getStatus().getState());
+        for (TestBasicGroupedJob child : children) {
+            assertNull(child.getStatus().getState());
+        }
+
+        jobA.unlock();
+        Thread.sleep(50);
+
+        assertSame(State.FINISHED, jobA.getStatus().getState());
+        for (TestBasicGroupedJob child : children) {
+            assertSame(State.WAITING, child.getStatus().getState());
+            child.unlock();
+        }
+        jobB.unlock();
+        Thread.sleep(50);
+
+        for (TestBasicGroupedJob child : children) {
+            assertSame(State.FINISHED, child.getStatus().getState());
+        }
+        assertSame(State.FINISHED, jobB.getStatus().getState());
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobContext;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.job.event.status.PushLevelProgressEvent;
+import org.xwiki.job.event.status.StartStepProgressEvent;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DefaultJobProgressManager}.
+ * 
+ * @version $Id$
+ */
+public class DefaultJobProgressManagerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<JobProgressManager> mocker =
+        new MockitoComponentMockingRule<JobProgressManager>(DefaultJobProgressManager.class);
+
+    private ObservationManager observation;
+
+    private DefaultJobStatus<DefaultRequest> parentStatus;
+
+    private DefaultJobStatus<DefaultRequest> status;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.observation = this.mocker.getInstance(ObservationManager.class);
+
+        this.parentStatus = new DefaultJobStatus<>("type", new DefaultRequest(), null, this.observation,
+            mock(LoggerManager.class));
+        this.parentStatus.startListening();
+        this.status = new DefaultJobStatus<>("type", new DefaultRequest(), this.parentStatus, this.observation,
+            mock(LoggerManager.class));
+        this.status.startListening();
+
+        Job job = mock(Job.class);
+        when(job.getStatus()).thenReturn((DefaultJobStatus) this.status);
+        JobContext jobContext = this.mocker.getInstance(JobContext.class);
+        when(jobContext.getCurrentJob()).thenReturn(job);
+    }
+
+    @Test
+    public void updateProgressDirectly() throws Exception
+    {
+        when(this.observation.hasListener(any(), any())).thenReturn(false);
+
+        this.mocker.getComponentUnderTest().pushLevelProgress(2, this);
+        this.mocker.getComponentUnderTest().startStep(this);
+        this.mocker.getComponentUnderTest().startStep(this);
+
+        verify(this.observation, never()).notify(any(), any(), any());
+        verify(this.observation).hasListener(any(PushLevelProgressEvent.class),
+            eq(Arrays.asList(((DefaultJobProgress) this.status.getProgress()).getName(),
+                ((DefaultJobProgress) this.parentStatus.getProgress()).getName())));
+
+        assertEquals(0.5D, this.status.getProgress().getOffset(), 0D);
+        assertEquals(0.5D, this.parentStatus.getProgress().getOffset(), 0D);
+    }
+
+    @Test
+    public void notifyWhenOtherListeners() throws Exception
+    {
+        when(this.observation.hasListener(any(), any())).thenReturn(true);
+
+        this.mocker.getComponentUnderTest().startStep(this);
+
+        verify(this.observation).notify(eq(StartStepProgressEvent.INSTANCE), eq(this), isNull());
+        assertEquals(0, this.status.getProgress().getRootStep().getChildren().size());
+    }
+
+    @Test
+    public void notifyWhenNotListening() throws Exception
+    {
+        this.status.stopListening();
+        this.parentStatus.stopListening();
+
+        this.mocker.getComponentUnderTest().startStep(this);
+
+        verify(this.observation, never()).hasListener(any(), any());
+        verify(this.observation).notify(eq(StartStepProgressEvent.INSTANCE), eq(this), isNull());
+    }
+}
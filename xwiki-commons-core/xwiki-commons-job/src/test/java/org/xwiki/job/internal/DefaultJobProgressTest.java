@@ -35,6 +35,7 @@
 import org.xwiki.test.mockito.MockitoComponentManagerRule;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @ComponentList(DefaultObservationManager.class)
 public class DefaultJobProgressTest
@@ -422,4 +423,67 @@ public void testStartStepFromDifferentSource()
         assertEquals(0, this.progress.getRootStep().getChildren().get(1).getChildren().size());
         assertEquals(0, this.progress.getRootStep().getChildren().get(2).getChildren().size());
     }
+
+    @Test
+    public void testFoldSteps()
+    {
+        this.observation.removeListener(this.progress.getName());
+        this.progress = new DefaultJobProgress(null, 10, -1);
+        this.observation.addListener(this.progress);
+
+        this.observation.notify(new PushLevelProgressEvent(100), null, null);
+
+        for (int i = 0; i < 50; ++i) {
+            this.observation.notify(new StartStepProgressEvent(), null, null);
+            this.observation.notify(new EndStepProgressEvent(), null, null);
+        }
+
+        DefaultJobProgressStep level = this.progress.getRootStep();
+        assertEquals(50, level.getChildrenCount());
+        assertTrue(level.getChildren().size() <= 10);
+        assertEquals(50 - level.getChildren().size(), level.getFoldedChildrenCount());
+        assertEquals(49, level.getChildren().get(level.getChildren().size() - 1).index);
+        assertEquals(0.5D, this.progress.getOffset(), 0.0000001D);
+
+        // Level with an unknown number of steps
+        this.observation.notify(new StartStepProgressEvent(), null, null);
+        this.observation.notify(new PushLevelProgressEvent(), null, null);
+        for (int i = 0; i < 20; ++i) {
+            this.observation.notify(new StartStepProgressEvent(), null, null);
+        }
+
+        DefaultJobProgressStep subLevel = this.progress.getCurrentStep().getParent();
+        assertEquals(20, subLevel.getChildrenCount());
+        assertTrue(subLevel.getChildren().size() <= 10);
+        assertEquals(0.95D, subLevel.getOffset(), 0.0000001D);
+        assertEquals(0.5095D, this.progress.getOffset(), 0.0000001D);
+    }
+
+    @Test
+    public void testFoldDeepSteps()
+    {
+        this.observation.removeListener(this.progress.getName());
+        this.progress = new DefaultJobProgress(null, -1, 1);
+        this.observation.addListener(this.progress);
+
+        this.observation.notify(new PushLevelProgressEvent(2), null, null);
+        this.observation.notify(new StartStepProgressEvent(), null, null);
+        this.observation.notify(new PushLevelProgressEvent(4), null, null);
+        for (int i = 0; i < 3; ++i) {
+            this.observation.notify(new StartStepProgressEvent(), null, null);
+        }
+
+        assertEquals(1, this.progress.getRootStep().getChildren().size());
+        DefaultJobProgressStep subLevel = this.progress.getCurrentStep().getParent();
+        assertEquals(3, subLevel.getChildrenCount());
+        assertEquals(1, subLevel.getChildren().size());
+        assertEquals(0.25D, this.progress.getOffset(), 0D);
+
+        this.observation.notify(new PopLevelProgressEvent(), null, null);
+        this.observation.notify(new StartStepProgressEvent(), null, null);
+
+        // The root level is not folded
+        assertEquals(2, this.progress.getRootStep().getChildren().size());
+        assertEquals(0.5D, this.progress.getOffset(), 0D);
+    }
 }
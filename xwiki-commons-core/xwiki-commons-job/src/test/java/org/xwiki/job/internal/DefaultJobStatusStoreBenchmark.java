@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.helpers.NOPLogger;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.internal.DefaultCache;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measure the throughput of storing and loading job statuses with the different storages. The cache of the store is
+ * disabled so that each load actually reads the storage.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultJobStatusStoreBenchmark
+{
+    private static final int STATUSES = 1000;
+
+    private static final int LOGS = 20;
+
+    @Param({ "folder", DefaultJobStatusStore.STORAGE_SEGMENT })
+    private String storage;
+
+    private File folder;
+
+    private DefaultJobStatusStore store;
+
+    private JobStatus[] statuses;
+
+    private List<String>[] ids;
+
+    private int index;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        this.folder = Files.createTempDirectory("jobstatus").toFile();
+
+        JobManagerConfiguration configuration = mock(JobManagerConfiguration.class);
+        when(configuration.getStorage()).thenReturn(this.folder);
+        when(configuration.getJobStatusStorage()).thenReturn(this.storage);
+        when(configuration.getJobStatusCacheSize()).thenReturn(1);
+
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.createNewCache(any())).thenReturn(new DefaultCache<>());
+
+        this.store = new DefaultJobStatusStore();
+        ReflectionUtils.setFieldValue(this.store, "configuration", configuration);
+        ReflectionUtils.setFieldValue(this.store, "cacheManager", cacheManager);
+        ReflectionUtils.setFieldValue(this.store, "logger", NOPLogger.NOP_LOGGER);
+        this.store.initialize();
+
+        this.statuses = new JobStatus[STATUSES];
+        this.ids = new List[STATUSES];
+        for (int i = 0; i < STATUSES; ++i) {
+            DefaultRequest request = new DefaultRequest();
+            this.ids[i] = Arrays.asList("benchmark", "job" + (i % 10), String.valueOf(i));
+            request.setId(this.ids[i]);
+            DefaultJobStatus<DefaultRequest> status = new DefaultJobStatus<>("benchmark", request, null, null, null);
+            for (int j = 0; j < LOGS; ++j) {
+                status.getLog().addLogEvent(LogLevel.INFO, "Log message [{}] of job [{}]", new Object[] { j, i });
+            }
+            this.statuses[i] = status;
+
+            this.store.store(status);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        this.store.dispose();
+
+        FileUtils.deleteDirectory(this.folder);
+    }
+
+    private int next()
+    {
+        this.index = (this.index + 1) % STATUSES;
+
+        return this.index;
+    }
+
+    @Benchmark
+    public void store()
+    {
+        this.store.store(this.statuses[next()]);
+    }
+
+    @Benchmark
+    public JobStatus load()
+    {
+        return this.store.getJobStatus(this.ids[next()]);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(DefaultJobStatusStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
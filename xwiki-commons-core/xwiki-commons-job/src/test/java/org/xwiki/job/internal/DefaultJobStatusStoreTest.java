@@ -22,12 +22,17 @@
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.cache.CacheEntry;
 import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
 import org.xwiki.cache.internal.MapCache;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.util.ReflectionUtils;
@@ -35,14 +40,24 @@
 import org.xwiki.job.DefaultRequest;
 import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
+import org.xwiki.job.internal.store.JobStatusLogStream;
+import org.xwiki.job.internal.store.JobStatusSegmentStorage;
+import org.xwiki.logging.IndexedLogQueue;
+import org.xwiki.logging.LogLevel;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -80,7 +95,7 @@ public void getJobStatusWithNullId() throws Exception
 
         assertNotNull(jobStatus);
         assertNull(jobStatus.getRequest().getId());
-        assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
+        assertEquals(State.FINISHED, jobStatus.getState());
 
         assertSame(jobStatus, this.componentManager.getComponentUnderTest().getJobStatus((List<String>) null));
     }
@@ -92,7 +107,7 @@ public void getJobStatusWithMultipleId() throws Exception
 
         assertNotNull(jobStatus);
         assertEquals(Arrays.asList("id1", "id2"), jobStatus.getRequest().getId());
-        assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
+        assertEquals(State.FINISHED, jobStatus.getState());
 
         assertSame(jobStatus, this.componentManager.getComponentUnderTest().getJobStatus(Arrays.asList("id1", "id2")));
     }
@@ -105,7 +120,7 @@ public void getJobStatusInOldPlace() throws Exception
 
         assertNotNull(jobStatus);
         assertEquals(Arrays.asList("id1", "id2", "id3"), jobStatus.getRequest().getId());
-        assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
+        assertEquals(State.FINISHED, jobStatus.getState());
     }
 
     @Test
@@ -143,7 +158,7 @@ public void removeJobStatus() throws ComponentLookupException
 
         assertNotNull(jobStatus);
         assertNull(jobStatus.getRequest().getId());
-        assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
+        assertEquals(State.FINISHED, jobStatus.getState());
 
         assertSame(jobStatus, this.componentManager.getComponentUnderTest().getJobStatus(id));
 
@@ -165,4 +180,279 @@ public void storeJobStatus() throws ComponentLookupException
 
         assertSame(jobStatus, this.componentManager.getComponentUnderTest().getJobStatus(id));
     }
+
+    @Test
+    public void storeAsyncJobStatus() throws Exception
+    {
+        List<String> id = Arrays.asList("newstatus");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        JobStatus jobStatus = new DefaultJobStatus("type", request, null, null, null);
+
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+        store.storeAsync(jobStatus);
+
+        assertSame(jobStatus, store.getJobStatus(id));
+
+        assertTrue(store.getWriteQueue().flush(10, TimeUnit.SECONDS));
+        assertTrue(new File("target/test/jobs/status/newstatus/status.xml").exists());
+        assertEquals(1, store.getWriteQueue().getWriteCount());
+    }
+
+    @Test
+    public void storeJobStatusLog() throws Exception
+    {
+        List<String> id = Arrays.asList("newstatus");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>("type", request, null, null, null);
+        jobStatus.getLog().error("error");
+
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+        store.store(jobStatus);
+
+        File statusFile = new File("target/test/jobs/status/newstatus/status.xml");
+        File logFile = new File("target/test/jobs/status/newstatus/status.log");
+        assertTrue(statusFile.exists());
+        assertFalse(FileUtils.readFileToString(statusFile, "UTF-8").contains("error"));
+        long logLength = logFile.length();
+
+        jobStatus.getLog().warn("warning");
+        store.store(jobStatus);
+
+        // Only the new log event has been appended
+        JobStatusLogStream logStream = new JobStatusLogStream(logFile, new JobStatusSerializer());
+        assertEquals(2, logStream.size());
+        assertEquals("warning", logStream.readLast(1).get(0).getMessage());
+        assertTrue(logFile.length() > logLength);
+
+        // Reload the status
+        CacheManager cacheManagerMock = this.componentManager.getInstance(CacheManager.class);
+        when(cacheManagerMock.createNewCache(any())).thenReturn(new MapCache<>());
+        store.dispose();
+        store.initialize();
+
+        JobStatus storedStatus = store.getJobStatus(id);
+        assertNotSame(jobStatus, storedStatus);
+        assertEquals(2, storedStatus.getLog().size());
+        assertEquals(LogLevel.ERROR, storedStatus.getLog().peek().getLevel());
+
+        // Storing the loaded status does not write the log again
+        storedStatus.getLog().info("info");
+        store.store(storedStatus);
+        assertEquals(3, logStream.size());
+
+        store.remove(id);
+        assertFalse(logFile.exists());
+    }
+
+    @Test
+    public void storeJobStatusLogBeyondMaxInMemory() throws Exception
+    {
+        File logFolder = new File("target/test/jobs/logs");
+        FileUtils.deleteDirectory(logFolder);
+        JobManagerConfiguration jobManagerConfiguration =
+            this.componentManager.getInstance(JobManagerConfiguration.class);
+        when(jobManagerConfiguration.getMaxInMemoryLogs()).thenReturn(2);
+        when(jobManagerConfiguration.getLogTemporaryFolder()).thenReturn(logFolder);
+        MapCache<JobStatus> cache = spy(new MapCache<>());
+        CacheManager cacheManagerMock = this.componentManager.getInstance(CacheManager.class);
+        when(cacheManagerMock.<JobStatus>createNewCache(any())).thenReturn(cache);
+
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+
+        List<String> id = Arrays.asList("newstatus");
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>("type", request, null, null, null);
+        jobStatus.setState(State.FINISHED);
+        for (int i = 0; i < 5; ++i) {
+            jobStatus.getLog().error("error {}", i);
+        }
+        store.store(jobStatus);
+
+        // Reload the status
+        cache.removeAll();
+        JobStatus storedStatus = store.getJobStatus(id);
+        assertNotSame(jobStatus, storedStatus);
+        IndexedLogQueue log = (IndexedLogQueue) storedStatus.getLog();
+        assertEquals(5, log.size());
+        assertEquals(4, log.getSpilledCount());
+        assertEquals("error 0", log.peek().getFormattedMessage());
+        assertEquals(1, logFolder.list().length);
+
+        // The log events moved to disk are deleted when the status is evicted from the cache
+        ArgumentCaptor<CacheEntryListener<JobStatus>> listenerCaptor =
+            ArgumentCaptor.forClass(CacheEntryListener.class);
+        verify(cache).addCacheEntryListener(listenerCaptor.capture());
+        CacheEntry<JobStatus> entry = mock(CacheEntry.class);
+        when(entry.getValue()).thenReturn(storedStatus);
+        CacheEntryEvent<JobStatus> event = mock(CacheEntryEvent.class);
+        when(event.getEntry()).thenReturn(entry);
+        listenerCaptor.getValue().cacheEntryRemoved(event);
+
+        assertEquals(0, logFolder.list().length);
+    }
+
+    @Test
+    public void segmentStorage() throws Exception
+    {
+        JobManagerConfiguration jobManagerConfiguration =
+            this.componentManager.getInstance(JobManagerConfiguration.class);
+        when(jobManagerConfiguration.getJobStatusStorage()).thenReturn(DefaultJobStatusStore.STORAGE_SEGMENT);
+
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+
+        // The existing job statuses have been migrated
+        assertFalse(new File("target/test/jobs/status/status.xml").exists());
+        assertFalse(new File("target/test/jobs/status/id1").exists());
+
+        JobStatus jobStatus = store.getJobStatus(Arrays.asList("id1", "id2"));
+        assertEquals(Arrays.asList("id1", "id2"), jobStatus.getRequest().getId());
+        jobStatus = store.getJobStatus(Arrays.asList("id1", "id2", "id3"));
+        assertEquals(Arrays.asList("id1", "id2", "id3"), jobStatus.getRequest().getId());
+        jobStatus = store.getJobStatus(Arrays.asList("invalidlogargument"));
+        assertEquals(3, jobStatus.getLog().size());
+        assertNull(store.getJobStatus(Arrays.asList("nostatus")));
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList("new", "status"));
+        store.store(new DefaultJobStatus<>("type", request, null, null, null));
+
+        store.remove(Arrays.asList("id1"));
+
+        store.dispose();
+
+        // Reload the storage
+        JobStatusSegmentStorage storage = new JobStatusSegmentStorage(new File("target/test/jobs/status"),
+            JobStatusSegmentStorage.DEFAULT_COMPACTION_THRESHOLD);
+        storage.open();
+
+        assertNotNull(storage.get("new/status"));
+        assertNotNull(storage.get(""));
+        assertNull(storage.get("id1/id2"));
+        assertNull(storage.get("id1/id2/id3"));
+        // Stored in the wrong folder but migrated with its real id
+        assertNotNull(storage.get("invalidlogargument"));
+        assertEquals(3, storage.size());
+        storage.close();
+    }
+
+    @Test
+    public void segmentStorageLog() throws Exception
+    {
+        JobManagerConfiguration jobManagerConfiguration =
+            this.componentManager.getInstance(JobManagerConfiguration.class);
+        when(jobManagerConfiguration.getJobStatusStorage()).thenReturn(DefaultJobStatusStore.STORAGE_SEGMENT);
+
+        List<String> id = Arrays.asList("newstatus");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>("type", request, null, null, null);
+        jobStatus.getLog().error("error");
+
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+        store.store(jobStatus);
+
+        jobStatus.getLog().warn("warning");
+        store.store(jobStatus);
+
+        store.dispose();
+
+        // The log is stored in the segment storage, no file is created for the job
+        assertFalse(new File("target/test/jobs/status/newstatus").exists());
+
+        JobStatusSegmentStorage storage = new JobStatusSegmentStorage(new File("target/test/jobs/status"),
+            JobStatusSegmentStorage.DEFAULT_COMPACTION_THRESHOLD);
+        storage.open();
+        assertEquals(2, storage.getLogSize("newstatus"));
+        storage.close();
+
+        // Reload the status
+        CacheManager cacheManagerMock = this.componentManager.getInstance(CacheManager.class);
+        when(cacheManagerMock.createNewCache(any())).thenReturn(new MapCache<>());
+        store.initialize();
+
+        JobStatus storedStatus = store.getJobStatus(id);
+        assertNotSame(jobStatus, storedStatus);
+        assertEquals(2, storedStatus.getLog().size());
+        assertEquals("error", storedStatus.getLog().peek().getMessage());
+
+        store.remove(id);
+        assertNull(store.getJobStatus(id));
+
+        store.dispose();
+
+        storage.open();
+        assertEquals(0, storage.getLogSize("newstatus"));
+        assertNull(storage.get("newstatus"));
+        storage.close();
+    }
+
+    @Test
+    public void migrateLogToSegmentStorage() throws Exception
+    {
+        List<String> id = Arrays.asList("newstatus");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>("type", request, null, null, null);
+        jobStatus.getLog().error("error");
+        jobStatus.getLog().warn("warning");
+
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+        store.store(jobStatus);
+        store.dispose();
+
+        assertTrue(new File("target/test/jobs/status/newstatus/status.log").exists());
+
+        // Switch to the segment storage
+        JobManagerConfiguration jobManagerConfiguration =
+            this.componentManager.getInstance(JobManagerConfiguration.class);
+        when(jobManagerConfiguration.getJobStatusStorage()).thenReturn(DefaultJobStatusStore.STORAGE_SEGMENT);
+        CacheManager cacheManagerMock = this.componentManager.getInstance(CacheManager.class);
+        when(cacheManagerMock.createNewCache(any())).thenReturn(new MapCache<>());
+        store.initialize();
+
+        assertFalse(new File("target/test/jobs/status/newstatus").exists());
+
+        JobStatus storedStatus = store.getJobStatus(id);
+        assertEquals(2, storedStatus.getLog().size());
+        assertEquals("error", storedStatus.getLog().peek().getMessage());
+    }
+
+    @Test
+    public void storeLogWhileRunning() throws Exception
+    {
+        List<String> id = Arrays.asList("newstatus");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>("type", request, null, null, null);
+        jobStatus.setState(State.RUNNING);
+        jobStatus.getLog().error("error");
+
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+        store.storeLogWhileRunning(jobStatus);
+        store.flushRunningLogs();
+
+        assertTrue(store.getWriteQueue().flush(10, TimeUnit.SECONDS));
+
+        // Only the log of the running job is written
+        File logFile = new File("target/test/jobs/status/newstatus/status.log");
+        assertEquals(1, new JobStatusLogStream(logFile, new JobStatusSerializer()).size());
+        assertFalse(new File("target/test/jobs/status/newstatus/status.xml").exists());
+
+        jobStatus.getLog().warn("warning");
+        jobStatus.setState(State.FINISHED);
+        store.flushRunningLogs();
+        store.store(jobStatus);
+
+        assertEquals(2, new JobStatusLogStream(logFile, new JobStatusSerializer()).size());
+        assertTrue(new File("target/test/jobs/status/newstatus/status.xml").exists());
+        assertEquals(0, store.getWriteQueue().getSize());
+    }
 }
@@ -26,13 +26,17 @@
 import org.mockito.stubbing.Answer;
 import org.xwiki.job.DefaultJobStatus;
 import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Request;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.job.event.status.QuestionAnsweredEvent;
 import org.xwiki.job.event.status.QuestionAskedEvent;
+import org.xwiki.logging.IndexedLogQueue;
+import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
@@ -117,4 +121,39 @@ public Void answer(InvocationOnMock invocation) throws Throwable
         QuestionAnsweredEvent questionAnswered = new QuestionAnsweredEvent(String.class.getName(), request.getId());
         verify(this.observationManager).notify(questionAnswered, jobStatus);
     }
+
+    @Test
+    public void indexedLog()
+    {
+        DefaultJobStatus<DefaultRequest> jobStatus =
+            new DefaultJobStatus<>("type", new DefaultRequest(), null, this.observationManager, this.loggerManager);
+
+        jobStatus.getLog().error("error");
+        jobStatus.getLog().info("info");
+
+        assertSame(IndexedLogQueue.class, jobStatus.getLog().getClass());
+        assertEquals(1, jobStatus.getLog().countLogs(LogLevel.ERROR));
+        assertEquals(1, jobStatus.getLog(LogLevel.INFO).size());
+    }
+
+    @Test
+    public void logBeyondMaxInMemory() throws Exception
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setProperty(Request.PROPERTY_LOG_MAX_IN_MEMORY, 1);
+        request.setProperty(Request.PROPERTY_LOG_FOLDER, "target/test/logs");
+
+        DefaultJobStatus<DefaultRequest> jobStatus =
+            new DefaultJobStatus<>("type", request, null, this.observationManager, this.loggerManager);
+
+        jobStatus.getLog().error("error");
+        jobStatus.getLog().info("info");
+
+        IndexedLogQueue log = (IndexedLogQueue) jobStatus.getLog();
+        assertEquals(1, log.getSpilledCount());
+        assertEquals(1, log.countLogs(LogLevel.ERROR));
+        assertEquals("error", log.peek().getMessage());
+
+        log.close();
+    }
 }
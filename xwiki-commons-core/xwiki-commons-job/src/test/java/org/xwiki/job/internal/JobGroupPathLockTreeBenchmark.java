@@ -0,0 +1,161 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xwiki.job.JobGroupPath;
+
+/**
+ * Compare {@link JobGroupPathLockTree} with the previous implementation based on a never released read/write lock for
+ * each job group, when locking and unlocking a lot of distinct job groups sharing the same parents (like the jobs of
+ * the different pages of a wiki).
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JobGroupPathLockTreeBenchmark
+{
+    private static final int PATHS = 10000;
+
+    /**
+     * The previous implementation, a fair read/write lock for each job group ever locked.
+     */
+    private static class ReadWriteLockTree
+    {
+        private final Map<JobGroupPath, ReadWriteLock> tree = new ConcurrentHashMap<>();
+
+        private synchronized ReadWriteLock getLock(JobGroupPath key)
+        {
+            return this.tree.computeIfAbsent(key, k -> new ReentrantReadWriteLock(true));
+        }
+
+        public void lock(JobGroupPath key)
+        {
+            getLock(key).writeLock().lock();
+
+            for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
+                getLock(path).readLock().lock();
+            }
+        }
+
+        public void unlock(JobGroupPath key)
+        {
+            getLock(key).writeLock().unlock();
+
+            for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
+                getLock(path).readLock().unlock();
+            }
+        }
+
+        public int getNodeCount()
+        {
+            return this.tree.size();
+        }
+    }
+
+    @Param({ "readwrite", "counters" })
+    private String implementation;
+
+    private ReadWriteLockTree readWriteTree;
+
+    private JobGroupPathLockTree tree;
+
+    private JobGroupPath[] paths;
+
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+        this.readWriteTree = new ReadWriteLockTree();
+        this.tree = new JobGroupPathLockTree();
+
+        this.paths = new JobGroupPath[PATHS];
+        for (int i = 0; i < PATHS; ++i) {
+            this.paths[i] = new JobGroupPath(Arrays.asList("refactoring", "wiki", "space" + (i % 100), "page" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        System.out.println();
+        System.out.println("Retained nodes: "
+            + ("readwrite".equals(this.implementation) ? this.readWriteTree.getNodeCount() : this.tree.getNodeCount()));
+    }
+
+    private JobGroupPath nextPath()
+    {
+        // Not thread safe on purpose: only used to spread the locks on the different paths
+        int current = this.index++ & Integer.MAX_VALUE;
+
+        return this.paths[current % PATHS];
+    }
+
+    @Benchmark
+    public void lockUnlock()
+    {
+        JobGroupPath path = nextPath();
+
+        if ("readwrite".equals(this.implementation)) {
+            this.readWriteTree.lock(path);
+            this.readWriteTree.unlock(path);
+        } else {
+            // The scheduler never waits for a job group lock
+            while (!this.tree.tryLock(path)) {
+                Thread.yield();
+            }
+            this.tree.unlock(path);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(JobGroupPathLockTreeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
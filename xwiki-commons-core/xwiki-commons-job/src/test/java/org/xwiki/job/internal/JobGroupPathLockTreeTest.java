@@ -0,0 +1,181 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.xwiki.job.JobGroupPath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate {@link JobGroupPathLockTree}.
+ * 
+ * @version $Id$
+ */
+public class JobGroupPathLockTreeTest
+{
+    private JobGroupPathLockTree tree = new JobGroupPathLockTree();
+
+    private static JobGroupPath path(String... elements)
+    {
+        JobGroupPath path = null;
+        for (String element : elements) {
+            path = new JobGroupPath(element, path);
+        }
+
+        return path;
+    }
+
+    @Test
+    public void tryLock()
+    {
+        assertTrue(this.tree.tryLock(path("a", "b")));
+
+        assertTrue(this.tree.tryLock(path("a", "c")));
+        assertFalse(this.tree.tryLock(path("a", "b")));
+        assertFalse(this.tree.tryLock(path("a")));
+        assertFalse(this.tree.tryLock(path("a", "b", "c")));
+        assertEquals(3, this.tree.getFailedTryLockCount());
+
+        this.tree.unlock(path("a", "b"));
+
+        assertTrue(this.tree.tryLock(path("a", "b", "c")));
+        assertFalse(this.tree.tryLock(path("a")));
+
+        this.tree.unlock(path("a", "c"));
+        this.tree.unlock(path("a", "b", "c"));
+
+        assertTrue(this.tree.tryLock(path("a")));
+        assertFalse(this.tree.tryLock(path("a", "b")));
+
+        this.tree.unlock(path("a"));
+
+        assertEquals(4, this.tree.getLockCount());
+        assertEquals(0, this.tree.getNodeCount());
+    }
+
+    @Test
+    public void nodesAreReclaimed()
+    {
+        assertTrue(this.tree.tryLock(path("a", "b", "c")));
+        assertTrue(this.tree.tryLock(path("a", "d")));
+
+        assertEquals(4, this.tree.getNodeCount());
+
+        this.tree.unlock(path("a", "b", "c"));
+
+        assertEquals(2, this.tree.getNodeCount());
+
+        this.tree.unlock(path("a", "d"));
+
+        assertEquals(0, this.tree.getNodeCount());
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void unlockNotLocked()
+    {
+        this.tree.tryLock(path("a", "b"));
+
+        this.tree.unlock(path("a"));
+    }
+
+    @Test
+    public void stress() throws InterruptedException
+    {
+        int threadCount = 8;
+        int iterations = 2000;
+
+        // Keep a small tree to get a lot of contention
+        List<JobGroupPath> paths = new ArrayList<>();
+        for (String a : new String[] { "a", "b" }) {
+            paths.add(path(a));
+            for (String b : new String[] { "a", "b", "c" }) {
+                paths.add(path(a, b));
+                for (String c : new String[] { "a", "b" }) {
+                    paths.add(path(a, b, c));
+                }
+            }
+        }
+
+        Set<JobGroupPath> held = ConcurrentHashMap.newKeySet();
+        AtomicInteger violations = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; ++i) {
+            Random random = new Random(i);
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < iterations; ++j) {
+                    JobGroupPath path = paths.get(random.nextInt(paths.size()));
+
+                    if (!this.tree.tryLock(path)) {
+                        continue;
+                    }
+
+                    for (JobGroupPath other : held) {
+                        if (conflicts(path, other)) {
+                            violations.incrementAndGet();
+                        }
+                    }
+                    held.add(path);
+                    Thread.yield();
+                    held.remove(path);
+
+                    this.tree.unlock(path);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join(60000);
+            assertFalse(thread.isAlive());
+        }
+
+        assertEquals(0, violations.get());
+        assertEquals(0, this.tree.getNodeCount());
+        assertEquals(threadCount * iterations, this.tree.getLockCount() + this.tree.getFailedTryLockCount());
+    }
+
+    private static boolean conflicts(JobGroupPath path1, JobGroupPath path2)
+    {
+        return isParentOrSame(path1, path2) || isParentOrSame(path2, path1);
+    }
+
+    private static boolean isParentOrSame(JobGroupPath parent, JobGroupPath path)
+    {
+        for (JobGroupPath current = path; current != null; current = current.getParent()) {
+            if (current.equals(parent)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.helpers.NOPLogger;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.internal.DefaultCache;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.logging.LogLevel;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measure the time needed to save a job status containing 100k log events: serializing the whole status in XML (the
+ * export format) versus storing it with {@link DefaultJobStatusStore}, which only appends the new log events.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobStatusLogBenchmark
+{
+    private static final int LOGS = 100000;
+
+    private File folder;
+
+    private JobStatusSerializer serializer;
+
+    private DefaultJobStatusStore store;
+
+    private DefaultJobStatus<DefaultRequest> status;
+
+    private int index;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        this.folder = Files.createTempDirectory("jobstatus").toFile();
+
+        JobManagerConfiguration configuration = mock(JobManagerConfiguration.class);
+        when(configuration.getStorage()).thenReturn(this.folder);
+        when(configuration.getJobStatusStorage()).thenReturn("folder");
+        when(configuration.getJobStatusCacheSize()).thenReturn(1);
+
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.createNewCache(any())).thenReturn(new DefaultCache<>());
+
+        this.store = new DefaultJobStatusStore();
+        ReflectionUtils.setFieldValue(this.store, "configuration", configuration);
+        ReflectionUtils.setFieldValue(this.store, "cacheManager", cacheManager);
+        ReflectionUtils.setFieldValue(this.store, "logger", NOPLogger.NOP_LOGGER);
+        this.store.initialize();
+
+        this.serializer = new JobStatusSerializer();
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList("benchmark"));
+        this.status = new DefaultJobStatus<>("benchmark", request, null, null, null);
+        for (; this.index < LOGS; ++this.index) {
+            this.status.getLog().addLogEvent(LogLevel.INFO, "Log message [{}]", new Object[] { this.index });
+        }
+
+        // First save, which writes all the log events
+        this.store.store(this.status);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        this.store.dispose();
+
+        FileUtils.deleteDirectory(this.folder);
+    }
+
+    @Benchmark
+    public void exportXML() throws IOException
+    {
+        this.serializer.write(this.status, new NullOutputStream());
+    }
+
+    @Benchmark
+    public void store()
+    {
+        this.status.getLog().addLogEvent(LogLevel.INFO, "Log message [{}]", new Object[] { this.index++ });
+
+        this.store.store(this.status);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(JobStatusLogBenchmark.class.getSimpleName()).build()).run();
+    }
+}
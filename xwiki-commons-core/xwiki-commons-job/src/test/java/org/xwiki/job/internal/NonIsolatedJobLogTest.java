@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.logback.internal.LogbackEventGenerator;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.test.AllLogRule;
+import org.xwiki.test.ComponentManagerRule;
+import org.xwiki.test.annotation.ComponentList;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Validate that the log of a non isolated job is collected whatever the way {@link LogbackEventGenerator} sends the
+ * logs which are not captured.
+ *
+ * @version $Id$
+ */
+@ComponentList({
+    DefaultObservationManager.class,
+    LogbackEventGenerator.class
+})
+public class NonIsolatedJobLogTest
+{
+    @Rule
+    public final ComponentManagerRule componentManager = new ComponentManagerRule();
+
+    @Rule
+    public final AllLogRule logCapture = new AllLogRule();
+
+    private ObservationManager observationManager;
+
+    private LogbackEventGenerator generator;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.observationManager = this.componentManager.getInstance(ObservationManager.class);
+        this.generator = this.componentManager.getInstance(EventListener.class, "LogbackEventGenerator");
+    }
+
+    private DefaultJobStatus<DefaultRequest> runJob() throws Exception
+    {
+        DefaultJobStatus<DefaultRequest> status = new DefaultJobStatus<>("type", new DefaultRequest(), null,
+            this.observationManager, mock(LoggerManager.class));
+        status.setIsolated(false);
+
+        Thread thread = new Thread(() -> {
+            status.startListening();
+
+            try {
+                LoggerFactory.getLogger(NonIsolatedJobLogTest.class).error("job log");
+            } finally {
+                status.stopListening();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        return status;
+    }
+
+    private void assertJobLog(DefaultJobStatus<DefaultRequest> status)
+    {
+        assertEquals(1, status.getLog().size());
+        LogEvent logEvent = status.getLog().peek();
+        assertEquals(LogLevel.ERROR, logEvent.getLevel());
+        assertEquals("job log", logEvent.getMessage());
+
+        assertEquals("job log", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    public void capturedOnly() throws Exception
+    {
+        this.generator.setCapturedOnly(true);
+
+        try {
+            assertJobLog(runJob());
+        } finally {
+            this.generator.setCapturedOnly(false);
+        }
+    }
+
+    @Test
+    public void asynchronous() throws Exception
+    {
+        this.generator.dispose();
+        this.generator.setBufferSize(16);
+        this.generator.initialize();
+
+        try {
+            assertJobLog(runJob());
+        } finally {
+            this.generator.dispose();
+            this.generator.setBufferSize(0);
+            this.generator.initialize();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.job.internal.JobStatusSerializer;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.marker.TranslationMarker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link JobStatusLogStream}.
+ *
+ * @version $Id$
+ */
+public class JobStatusLogStreamTest
+{
+    private File folder = new File("target/test/logstream/");
+
+    private JobStatusLogStream stream;
+
+    @Before
+    public void before() throws IOException, ParserConfigurationException
+    {
+        FileUtils.deleteDirectory(this.folder);
+
+        this.stream = new JobStatusLogStream(new File(this.folder, JobStatusLogStream.FILENAME),
+            new JobStatusSerializer());
+    }
+
+    private static LogEvent event(int index)
+    {
+        return new LogEvent(new TranslationMarker("translation.key"), LogLevel.INFO, "message {}",
+            new Object[] { index }, null);
+    }
+
+    private static List<LogEvent> events(int from, int to)
+    {
+        List<LogEvent> events = new ArrayList<>();
+        for (int i = from; i < to; ++i) {
+            events.add(event(i));
+        }
+
+        return events;
+    }
+
+    private static List<String> messages(Iterable<LogEvent> events)
+    {
+        List<String> messages = new ArrayList<>();
+        for (LogEvent event : events) {
+            messages.add(event.getFormattedMessage());
+        }
+
+        return messages;
+    }
+
+    @Test
+    public void appendAndRead() throws IOException
+    {
+        assertEquals(0, this.stream.size());
+        assertTrue(this.stream.read().isEmpty());
+        assertTrue(this.stream.readLast(10).isEmpty());
+
+        this.stream.append(events(0, 3));
+        this.stream.append(events(3, 5));
+
+        assertEquals(5, this.stream.size());
+
+        LogQueue queue = this.stream.read();
+        assertEquals(Arrays.asList("message 0", "message 1", "message 2", "message 3", "message 4"),
+            messages(queue));
+        assertEquals("translation.key", queue.peek().getTranslationKey());
+        assertEquals(LogLevel.INFO, queue.peek().getLevel());
+
+        assertEquals(Arrays.asList("message 3", "message 4"), messages(this.stream.readLast(2)));
+        assertEquals(5, this.stream.readLast(10).size());
+
+        this.stream.write(events(10, 11));
+
+        assertEquals(1, this.stream.size());
+        assertEquals(Arrays.asList("message 10"), messages(this.stream.read()));
+
+        this.stream.delete();
+
+        assertEquals(0, this.stream.size());
+    }
+
+    @Test
+    public void partiallyWrittenAppend() throws IOException
+    {
+        this.stream.append(events(0, 2));
+
+        // Simulate a crash while writing a record, before the header is updated
+        try (RandomAccessFile file = new RandomAccessFile(this.stream.getFile(), "rw")) {
+            file.seek(file.length());
+            file.writeInt(1000);
+            file.write(new byte[10]);
+        }
+
+        assertEquals(2, this.stream.size());
+        assertEquals(Arrays.asList("message 0", "message 1"), messages(this.stream.read()));
+
+        this.stream.append(events(5, 6));
+
+        assertEquals(Arrays.asList("message 0", "message 1", "message 5"), messages(this.stream.read()));
+        assertEquals(Arrays.asList("message 5"), messages(this.stream.readLast(1)));
+    }
+}
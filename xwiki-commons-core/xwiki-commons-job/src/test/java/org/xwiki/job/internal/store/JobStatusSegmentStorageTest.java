@@ -0,0 +1,338 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link JobStatusSegmentStorage}.
+ *
+ * @version $Id$
+ */
+public class JobStatusSegmentStorageTest
+{
+    private File folder = new File("target/test/segment/");
+
+    @Before
+    public void before() throws IOException
+    {
+        FileUtils.deleteDirectory(this.folder);
+    }
+
+    private JobStatusSegmentStorage open(long compactionThreshold) throws IOException
+    {
+        JobStatusSegmentStorage storage = new JobStatusSegmentStorage(this.folder, compactionThreshold);
+        storage.open();
+
+        return storage;
+    }
+
+    private static byte[] bytes(String value)
+    {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertValue(String expected, JobStatusSegmentStorage storage, String key) throws IOException
+    {
+        assertArrayEquals(bytes(expected), storage.get(key));
+    }
+
+    private static List<byte[]> records(String... values)
+    {
+        return Arrays.stream(values).map(JobStatusSegmentStorageTest::bytes).collect(Collectors.toList());
+    }
+
+    private static void assertLog(List<String> expected, JobStatusSegmentStorage storage, String key, int count)
+        throws IOException
+    {
+        assertEquals(expected, storage.getLog(key, count).stream()
+            .map(record -> new String(record, StandardCharsets.UTF_8)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void putGetRemove() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(Long.MAX_VALUE);
+
+        assertNull(storage.get("key"));
+
+        storage.put("key", bytes("value1"));
+        storage.put("key", bytes("value2"));
+        storage.put("key/child", bytes("child"));
+        storage.put("key/child/child", bytes("child child"));
+        storage.put("keyother", bytes("other"));
+
+        assertValue("value2", storage, "key");
+        assertValue("child", storage, "key/child");
+        assertEquals(4, storage.size());
+
+        storage.remove("key");
+
+        assertNull(storage.get("key"));
+        assertNull(storage.get("key/child"));
+        assertNull(storage.get("key/child/child"));
+        assertValue("other", storage, "keyother");
+        assertEquals(1, storage.size());
+
+        storage.remove("");
+
+        assertEquals(0, storage.size());
+
+        storage.close();
+    }
+
+    @Test
+    public void reopen() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(Long.MAX_VALUE);
+        storage.put("key1", bytes("value1"));
+        storage.put("key2", bytes("value2"));
+        storage.remove("key2");
+        storage.close();
+
+        assertTrue(JobStatusSegmentStorage.exists(this.folder));
+
+        storage = open(Long.MAX_VALUE);
+        assertValue("value1", storage, "key1");
+        assertNull(storage.get("key2"));
+
+        // Not closed: the index does not contain the last modifications which are replayed
+        storage.put("key3", bytes("value3"));
+        storage.put("key1", bytes("value1bis"));
+
+        storage = open(Long.MAX_VALUE);
+        assertValue("value1bis", storage, "key1");
+        assertValue("value3", storage, "key3");
+        assertEquals(2, storage.size());
+        storage.close();
+
+        // Without index
+        new File(this.folder, JobStatusSegmentStorage.INDEX_FILE).delete();
+
+        storage = open(Long.MAX_VALUE);
+        assertValue("value1bis", storage, "key1");
+        assertValue("value3", storage, "key3");
+        assertEquals(2, storage.size());
+        storage.close();
+    }
+
+    @Test
+    public void partiallyWrittenRecord() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(Long.MAX_VALUE);
+        storage.put("key1", bytes("value1"));
+        storage.close();
+
+        storage = open(Long.MAX_VALUE);
+        storage.put("key2", bytes("value2"));
+        long size = storage.getSegmentSize();
+
+        // Simulate a crash in the middle of the write of the last record
+        File segmentFile = this.folder.listFiles((dir, name) -> name.endsWith(".data"))[0];
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            file.setLength(size - 2);
+        }
+
+        storage = open(Long.MAX_VALUE);
+        assertValue("value1", storage, "key1");
+        assertNull(storage.get("key2"));
+
+        storage.put("key3", bytes("value3"));
+        storage.close();
+
+        storage = open(Long.MAX_VALUE);
+        assertValue("value1", storage, "key1");
+        assertValue("value3", storage, "key3");
+        storage.close();
+    }
+
+    @Test
+    public void compaction() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(100);
+
+        storage.put("live", bytes("live value"));
+        for (int i = 0; i < 100; ++i) {
+            storage.put("key", bytes("value" + i));
+        }
+
+        // The segment is compacted as soon as the obsolete records use more than 100 bytes and the live ones
+        assertTrue(storage.getSegmentSize() < 200);
+        assertValue("live value", storage, "live");
+        assertValue("value99", storage, "key");
+
+        File[] segmentFiles = this.folder.listFiles((dir, name) -> name.endsWith(".data"));
+        assertEquals(1, segmentFiles.length);
+        assertFalse(segmentFiles[0].getName().equals("segment-0.data"));
+
+        storage.close();
+
+        storage = open(100);
+        assertValue("live value", storage, "live");
+        assertValue("value99", storage, "key");
+        storage.close();
+    }
+
+    @Test
+    public void failedCompaction() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(Long.MAX_VALUE);
+        storage.put("z", bytes("first record"));
+        storage.put("a", bytes("value a"));
+        storage.put("b", bytes("value b"));
+
+        // Make the copy fail after the copy of "a" by truncating the record of "b"
+        File segmentFile = this.folder.listFiles((dir, name) -> name.endsWith(".data"))[0];
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            file.setLength(storage.getSegmentSize() - 2);
+        }
+
+        try {
+            storage.compact();
+            fail("The compaction should have failed");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Still using the previous segment
+        assertValue("value a", storage, "a");
+        assertValue("first record", storage, "z");
+        assertEquals(1, this.folder.listFiles((dir, name) -> name.endsWith(".data")).length);
+
+        storage.close();
+    }
+
+    @Test
+    public void corruptedRecordLength() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(Long.MAX_VALUE);
+        storage.put("key1", bytes("value1"));
+        storage.close();
+
+        // Append a record announcing a huge value
+        File segmentFile = this.folder.listFiles((dir, name) -> name.endsWith(".data"))[0];
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            file.seek(file.length());
+            file.writeByte(1);
+            file.writeInt(4);
+            file.write(bytes("key2"));
+            file.writeInt(Integer.MAX_VALUE - 16);
+            file.writeInt(0);
+            file.write(bytes("value2"));
+        }
+
+        storage = open(Long.MAX_VALUE);
+        assertValue("value1", storage, "key1");
+        assertNull(storage.get("key2"));
+        assertEquals(1, storage.size());
+        storage.close();
+    }
+
+    @Test
+    public void log() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(Long.MAX_VALUE);
+
+        assertEquals(0, storage.getLogSize("key"));
+        assertLog(Collections.emptyList(), storage, "key", 10);
+
+        storage.appendLog("key", records("1", "2"), false);
+        storage.appendLog("key", records("3"), false);
+        storage.appendLog("key/child", records("child"), false);
+        storage.put("key", bytes("value"));
+
+        assertEquals(3, storage.getLogSize("key"));
+        assertLog(Arrays.asList("1", "2", "3"), storage, "key", Integer.MAX_VALUE);
+        assertLog(Arrays.asList("2", "3"), storage, "key", 2);
+
+        // Replace the log
+        storage.appendLog("key", records("4"), true);
+        assertLog(Arrays.asList("4"), storage, "key", 10);
+        storage.close();
+
+        storage = open(Long.MAX_VALUE);
+        assertLog(Arrays.asList("4"), storage, "key", 10);
+        assertLog(Arrays.asList("child"), storage, "key/child", 10);
+
+        // Not closed: the index does not contain the last modifications which are replayed
+        storage.appendLog("key", records("5"), false);
+        storage.removeLog("key/child");
+
+        storage = open(Long.MAX_VALUE);
+        assertLog(Arrays.asList("4", "5"), storage, "key", 10);
+        assertEquals(0, storage.getLogSize("key/child"));
+
+        // Removing a key also removes its log and the logs of its children
+        storage.appendLog("key/child", records("child"), false);
+        storage.remove("key");
+        assertEquals(0, storage.getLogSize("key"));
+        assertEquals(0, storage.getLogSize("key/child"));
+        storage.close();
+
+        storage = open(Long.MAX_VALUE);
+        assertEquals(0, storage.getLogSize("key"));
+        assertEquals(0, storage.getLogSize("key/child"));
+        storage.close();
+    }
+
+    @Test
+    public void logCompaction() throws IOException
+    {
+        JobStatusSegmentStorage storage = open(100);
+
+        for (int i = 0; i < 10; ++i) {
+            storage.appendLog("live", records("live" + i), false);
+        }
+        for (int i = 0; i < 100; ++i) {
+            storage.appendLog("key", records("value" + i), true);
+        }
+
+        // The replaced logs are removed by the compaction, the appended chunks are kept
+        assertTrue(storage.getSegmentSize() < 1000);
+        assertFalse(new File(this.folder, "segment-0.data").exists());
+        assertEquals(10, storage.getLogSize("live"));
+        assertLog(Arrays.asList("live8", "live9"), storage, "live", 2);
+        assertLog(Arrays.asList("value99"), storage, "key", 10);
+        storage.close();
+
+        storage = open(100);
+        assertEquals(10, storage.getLogSize("live"));
+        assertLog(Arrays.asList("value99"), storage, "key", 10);
+        storage.close();
+    }
+}
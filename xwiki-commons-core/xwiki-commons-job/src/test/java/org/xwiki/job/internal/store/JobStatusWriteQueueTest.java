@@ -0,0 +1,187 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.store;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.event.status.JobStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link JobStatusWriteQueue}.
+ *
+ * @version $Id$
+ */
+public class JobStatusWriteQueueTest
+{
+    private final List<JobStatus> written = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch writerStarted = new CountDownLatch(1);
+
+    private final CountDownLatch writerReleased = new CountDownLatch(1);
+
+    private JobStatusWriteQueue queue;
+
+    @After
+    public void after() throws InterruptedException
+    {
+        this.writerReleased.countDown();
+        this.queue.close(10, TimeUnit.SECONDS);
+    }
+
+    private JobStatusWriteQueue createQueue(int capacity)
+    {
+        this.queue = new JobStatusWriteQueue(capacity, status -> status.getRequest().getId().get(0), status -> {
+            this.writerStarted.countDown();
+            try {
+                this.writerReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.written.add(status);
+        });
+
+        return this.queue;
+    }
+
+    private static JobStatus status(String id)
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList(id));
+
+        return new DefaultJobStatus<>("type", request, null, null, null);
+    }
+
+    @Test
+    public void coalesce() throws InterruptedException
+    {
+        createQueue(10);
+
+        JobStatus blocking = status("blocking");
+        this.queue.add(blocking);
+        this.writerStarted.await();
+
+        JobStatus status1 = status("id1");
+        JobStatus status2 = status("id2");
+        JobStatus status1bis = status("id1");
+        this.queue.add(status1);
+        this.queue.add(status2);
+        this.queue.add(status1bis);
+
+        assertEquals(2, this.queue.getSize());
+        assertEquals(1, this.queue.getCoalescedCount());
+
+        this.writerReleased.countDown();
+        assertTrue(this.queue.flush(10, TimeUnit.SECONDS));
+
+        // The replaced status kept its position
+        assertEquals(Arrays.asList(blocking, status1bis, status2), this.written);
+        assertEquals(3, this.queue.getWriteCount());
+        assertEquals(2, this.queue.getMaxSize());
+    }
+
+    @Test
+    public void backPressure() throws Exception
+    {
+        createQueue(1);
+
+        this.queue.add(status("blocking"));
+        this.writerStarted.await();
+        this.queue.add(status("id1"));
+
+        JobStatus status2 = status("id2");
+        Thread thread = new Thread(() -> this.queue.add(status2));
+        thread.start();
+
+        // Wait for the thread to be blocked by the full queue
+        while (this.queue.getBlockedCount() == 0) {
+            Thread.sleep(1);
+        }
+        assertTrue(thread.isAlive());
+
+        this.writerReleased.countDown();
+        thread.join(10000);
+
+        assertTrue(this.queue.flush(10, TimeUnit.SECONDS));
+        assertEquals(3, this.written.size());
+        assertSame(status2, this.written.get(2));
+    }
+
+    @Test
+    public void removeAndClose() throws InterruptedException
+    {
+        createQueue(10);
+
+        this.queue.add(status("blocking"));
+        this.writerStarted.await();
+
+        JobStatus status1 = status("id1");
+        this.queue.add(status1);
+        this.queue.add(status("id2"));
+        this.queue.remove("id2");
+
+        this.writerReleased.countDown();
+        assertTrue(this.queue.close(10, TimeUnit.SECONDS));
+
+        assertEquals(2, this.written.size());
+        assertSame(status1, this.written.get(1));
+
+        // Written directly once closed
+        JobStatus status3 = status("id3");
+        this.queue.add(status3);
+        assertSame(status3, this.written.get(2));
+    }
+
+    @Test
+    public void writeWaitsForInProgressWrite() throws InterruptedException
+    {
+        createQueue(10);
+
+        JobStatus status = status("id");
+        this.queue.add(status);
+        this.writerStarted.await();
+
+        // The new version of the job status is written directly while the previous one is being written
+        JobStatus newStatus = status("id");
+        Thread thread = new Thread(() -> this.queue.write(newStatus));
+        thread.start();
+
+        thread.join(100);
+        assertTrue(thread.isAlive());
+        assertTrue(this.written.isEmpty());
+
+        this.writerReleased.countDown();
+        thread.join(10000);
+
+        assertEquals(Arrays.asList(status, newStatus), this.written);
+        assertTrue(this.queue.flush(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,666 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.internal.LogEventSpillFile;
+import org.xwiki.stability.Unstable;
+
+/**
+ * A {@link LogQueue} which indexes the logs by level and can move the oldest logs to disk.
+ * <p>
+ * Counting the logs of a level or checking if logs of a level exist does not depend on the number of logs and filtering
+ * the logs by level only reads the matching logs. Removing the oldest log with {@link #poll()} is cheap but the other
+ * methods removing logs (like {@link #remove(Object)} or {@link #removeIf(Predicate)}) rebuild the whole queue.
+ * <p>
+ * When a maximum number of logs to keep in memory is provided, the oldest logs are moved by chunks to a temporary file
+ * when it's exceeded and read back from it when needed. Call {@link #close()} to delete the file when the queue is not
+ * needed anymore. When serialized, the queue is replaced by a {@link LogQueue} containing all the logs.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Unstable
+public class IndexedLogQueue extends LogQueue implements Closeable
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The maximum number of logs moved to disk at once.
+     */
+    private static final int MAX_CHUNK_SIZE = 1000;
+
+    private final transient int maxInMemory;
+
+    private final transient int chunkSize;
+
+    private final transient LogEventSpillFile spillFile;
+
+    private final transient ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The logs which are not on disk.
+     */
+    private final transient List<LogEvent> memory = new ArrayList<>();
+
+    /**
+     * The number of logs on disk.
+     */
+    private transient int spilled;
+
+    /**
+     * The position of the oldest log which has not been removed with {@link #poll()}.
+     */
+    private transient int first;
+
+    private transient boolean spillFailed;
+
+    /**
+     * The positions of the logs of each level.
+     */
+    private final transient int[][] indexes = new int[LogLevel.values().length][16];
+
+    /**
+     * The number of logs of each level.
+     */
+    private final transient int[] counts = new int[LogLevel.values().length];
+
+    /**
+     * The number of logs of each level removed with {@link #poll()} (which are the first ones of the index).
+     */
+    private final transient int[] starts = new int[LogLevel.values().length];
+
+    /**
+     * The last chunk read from disk.
+     */
+    private transient volatile SpilledChunk lastChunk;
+
+    private static final class SpilledChunk
+    {
+        private final int index;
+
+        private final LogEvent[] events;
+
+        SpilledChunk(int index, LogEvent[] events)
+        {
+            this.index = index;
+            this.events = events;
+        }
+    }
+
+    private final class LogIterator implements Iterator<LogEvent>
+    {
+        private int position;
+
+        private List<LogEvent> page = new ArrayList<>();
+
+        private int pageIndex;
+
+        private boolean removable;
+
+        @Override
+        public boolean hasNext()
+        {
+            if (this.pageIndex < this.page.size()) {
+                return true;
+            }
+
+            // Load the next logs (including the ones added since the creation of the iterator)
+            this.page = getLogs(this.position, MAX_CHUNK_SIZE);
+            this.pageIndex = 0;
+
+            return !this.page.isEmpty();
+        }
+
+        @Override
+        public LogEvent next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            ++this.position;
+
+            this.removable = true;
+
+            return this.page.get(this.pageIndex++);
+        }
+
+        @Override
+        public void remove()
+        {
+            if (!this.removable) {
+                throw new IllegalStateException();
+            }
+
+            // The logs read from disk are copies so the log is removed by position
+            --this.position;
+            removeAt(this.position);
+            this.removable = false;
+        }
+    }
+
+    /**
+     * Keep all the logs in memory.
+     */
+    public IndexedLogQueue()
+    {
+        this.maxInMemory = Integer.MAX_VALUE;
+        this.chunkSize = MAX_CHUNK_SIZE;
+        this.spillFile = null;
+    }
+
+    /**
+     * @param maxInMemory the maximum number of logs to keep in memory, the oldest logs are moved to disk when it's
+     *            exceeded
+     * @param folder the folder where to create the file containing the oldest logs
+     */
+    public IndexedLogQueue(int maxInMemory, File folder)
+    {
+        this.maxInMemory = Math.max(maxInMemory, 0);
+        this.chunkSize = Math.max(Math.min(maxInMemory, MAX_CHUNK_SIZE), 1);
+        this.spillFile = new LogEventSpillFile(folder);
+    }
+
+    @Override
+    public boolean offer(LogEvent logEvent)
+    {
+        if (logEvent == null) {
+            throw new NullPointerException();
+        }
+
+        this.lock.writeLock().lock();
+
+        try {
+            int position = end();
+
+            this.memory.add(logEvent);
+
+            LogLevel level = logEvent.getLevel();
+            if (level != null) {
+                int ordinal = level.ordinal();
+                int count = this.counts[ordinal];
+                if (count == this.indexes[ordinal].length) {
+                    this.indexes[ordinal] = Arrays.copyOf(this.indexes[ordinal], count * 2);
+                }
+                this.indexes[ordinal][count] = position;
+                this.counts[ordinal] = count + 1;
+            }
+
+            if (this.memory.size() > this.maxInMemory) {
+                spill();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends LogEvent> logEvents)
+    {
+        if (logEvents == this) {
+            throw new IllegalArgumentException();
+        }
+
+        for (LogEvent logEvent : logEvents) {
+            offer(logEvent);
+        }
+
+        return !logEvents.isEmpty();
+    }
+
+    private void spill()
+    {
+        while (!this.spillFailed && this.memory.size() > this.maxInMemory && this.memory.size() >= this.chunkSize) {
+            List<LogEvent> chunk = this.memory.subList(0, this.chunkSize);
+
+            try {
+                this.spillFile.write(chunk);
+            } catch (IOException e) {
+                // Keep the logs in memory
+                this.spillFailed = true;
+
+                return;
+            }
+
+            chunk.clear();
+            this.spilled += this.chunkSize;
+        }
+    }
+
+    /**
+     * @return the position after the last log
+     */
+    private int end()
+    {
+        return this.spilled + this.memory.size();
+    }
+
+    private int size0()
+    {
+        return end() - this.first;
+    }
+
+    private LogEvent get(int position)
+    {
+        if (position >= this.spilled) {
+            return this.memory.get(position - this.spilled);
+        }
+
+        return getChunk(position / this.chunkSize)[position % this.chunkSize];
+    }
+
+    private LogEvent[] getChunk(int index)
+    {
+        SpilledChunk chunk = this.lastChunk;
+
+        if (chunk == null || chunk.index != index) {
+            try {
+                chunk = new SpilledChunk(index, this.spillFile.read(index));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read logs from disk", e);
+            }
+            this.lastChunk = chunk;
+        }
+
+        return chunk.events;
+    }
+
+    private List<LogEvent> get(int[] positions, int start, int end)
+    {
+        List<LogEvent> logs = new ArrayList<>(end - start);
+
+        for (int i = start; i < end; ++i) {
+            logs.add(get(positions[i]));
+        }
+
+        return logs;
+    }
+
+    /**
+     * @return the number of logs stored on disk
+     */
+    public int getSpilledCount()
+    {
+        this.lock.readLock().lock();
+
+        try {
+            return this.spilled;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        this.lock.readLock().lock();
+
+        try {
+            return size0();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        return new LogIterator();
+    }
+
+    @Override
+    public Spliterator<LogEvent> spliterator()
+    {
+        return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    @Override
+    public void forEach(Consumer<? super LogEvent> action)
+    {
+        for (LogEvent logEvent : this) {
+            action.accept(logEvent);
+        }
+    }
+
+    @Override
+    public LogEvent peek()
+    {
+        this.lock.readLock().lock();
+
+        try {
+            if (size0() == 0) {
+                return null;
+            }
+
+            return get(this.first);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        for (LogEvent logEvent : this) {
+            if (logEvent.equals(o)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public Object[] toArray()
+    {
+        return getLogs(0, Integer.MAX_VALUE).toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a)
+    {
+        return getLogs(0, Integer.MAX_VALUE).toArray(a);
+    }
+
+    @Override
+    public List<LogEvent> getLogs(int offset, int limit)
+    {
+        this.lock.readLock().lock();
+
+        try {
+            return getLogs0(offset, limit);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private List<LogEvent> getLogs0(int offset, int limit)
+    {
+        int start = this.first + Math.max(offset, 0);
+        int end = (int) Math.min((long) start + Math.max(limit, 0), end());
+
+        List<LogEvent> logs = new ArrayList<>(Math.max(end - start, 0));
+        for (int i = start; i < end; ++i) {
+            logs.add(get(i));
+        }
+
+        return logs;
+    }
+
+    @Override
+    public List<LogEvent> getLogs(LogLevel level)
+    {
+        this.lock.readLock().lock();
+
+        try {
+            int ordinal = level.ordinal();
+
+            return get(this.indexes[ordinal], this.starts[ordinal], this.counts[ordinal]);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<LogEvent> getLogsFrom(LogLevel level)
+    {
+        this.lock.readLock().lock();
+
+        try {
+            int size = 0;
+            for (int i = 0; i <= level.ordinal(); ++i) {
+                size += this.counts[i] - this.starts[i];
+            }
+
+            int[] positions = new int[size];
+            int index = 0;
+            for (int i = 0; i <= level.ordinal(); ++i) {
+                System.arraycopy(this.indexes[i], this.starts[i], positions, index, this.counts[i] - this.starts[i]);
+                index += this.counts[i] - this.starts[i];
+            }
+            Arrays.sort(positions);
+
+            return get(positions, 0, size);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containLogsFrom(LogLevel level)
+    {
+        this.lock.readLock().lock();
+
+        try {
+            for (int i = 0; i <= level.ordinal(); ++i) {
+                if (this.counts[i] > this.starts[i]) {
+                    return true;
+                }
+            }
+
+            return false;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countLogs(LogLevel level)
+    {
+        this.lock.readLock().lock();
+
+        try {
+            return this.counts[level.ordinal()] - this.starts[level.ordinal()];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Removal
+
+    @Override
+    public LogEvent poll()
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            if (size0() == 0) {
+                return null;
+            }
+
+            LogEvent logEvent = get(this.first);
+
+            LogLevel level = logEvent.getLevel();
+            if (level != null) {
+                ++this.starts[level.ordinal()];
+            }
+            ++this.first;
+
+            // Free the removed logs once they are the majority (so that it costs a constant time per log on average)
+            if (this.first >= this.chunkSize && this.first >= size0()) {
+                reset(getLogs0(0, Integer.MAX_VALUE));
+            }
+
+            return logEvent;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            List<LogEvent> logs = getLogs0(0, Integer.MAX_VALUE);
+            if (!logs.remove(o)) {
+                return false;
+            }
+
+            reset(logs);
+
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void removeAt(int offset)
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            List<LogEvent> logs = getLogs0(0, Integer.MAX_VALUE);
+            if (offset < logs.size()) {
+                logs.remove(offset);
+
+                reset(logs);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        return removeIf(logEvent -> !c.contains(logEvent));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super LogEvent> filter)
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            List<LogEvent> logs = getLogs0(0, Integer.MAX_VALUE);
+            if (!logs.removeIf(filter)) {
+                return false;
+            }
+
+            reset(logs);
+
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        this.lock.writeLock().lock();
+
+        try {
+            reset(Collections.<LogEvent>emptyList());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace all the logs (and indexes) of the queue.
+     *
+     * @param logs the logs to keep
+     */
+    private void reset(List<LogEvent> logs)
+    {
+        this.memory.clear();
+        this.spilled = 0;
+        this.first = 0;
+        this.spillFailed = false;
+        this.lastChunk = null;
+        Arrays.fill(this.counts, 0);
+        Arrays.fill(this.starts, 0);
+
+        if (this.spillFile != null) {
+            try {
+                this.spillFile.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete the logs stored on disk", e);
+            }
+        }
+
+        for (LogEvent logEvent : logs) {
+            offer(logEvent);
+        }
+    }
+
+    /**
+     * Delete the file containing the oldest logs. The logs stored in it can't be accessed anymore.
+     *
+     * @throws IOException when failing to delete the file
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.spillFile != null) {
+            this.spillFile.close();
+        }
+    }
+
+    /**
+     * @return a {@link LogQueue} containing all the logs, to serialize instead of this queue
+     */
+    private Object writeReplace()
+    {
+        LogQueue queue = new LogQueue();
+
+        for (LogEvent logEvent : this) {
+            queue.add(logEvent);
+        }
+
+        return queue;
+    }
+}
@@ -19,13 +19,16 @@
  */
 package org.xwiki.logging;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Marker;
+import org.xwiki.stability.Unstable;
 import org.xwiki.logging.event.LogEvent;
 
 /**
@@ -183,6 +186,51 @@ public boolean containLogsFrom(LogLevel level)
         return false;
     }
 
+    /**
+     * Count the logs of a specific level.
+     *
+     * @param level the level of the logs to count
+     * @return the number of logs of the provided level
+     * @since 10.0RC1
+     */
+    @Unstable
+    public int countLogs(LogLevel level)
+    {
+        int count = 0;
+
+        for (LogEvent log : this) {
+            if (log.getLevel() == level) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Return a page of logs, for example to only get the logs added since the last call.
+     *
+     * @param offset the index of the first log to return
+     * @param limit the maximum number of logs to return
+     * @return the logs
+     * @since 10.0RC1
+     */
+    @Unstable
+    public List<LogEvent> getLogs(int offset, int limit)
+    {
+        List<LogEvent> logs = new ArrayList<>();
+
+        Iterator<LogEvent> iterator = iterator();
+        for (int i = 0; i < offset && iterator.hasNext(); ++i) {
+            iterator.next();
+        }
+        while (logs.size() < limit && iterator.hasNext()) {
+            logs.add(iterator.next());
+        }
+
+        return logs;
+    }
+
     // Logger
 
     @Override
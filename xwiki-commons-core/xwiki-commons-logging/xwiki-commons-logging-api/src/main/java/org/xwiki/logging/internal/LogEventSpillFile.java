@@ -0,0 +1,255 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.helpers.MessageFormatter;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Store chunks of {@link LogEvent}s in a temporary file.
+ * <p>
+ * Each chunk is a Java serialized array of {@link LogEvent}s preceded by its size. To make sure the events can be read
+ * whatever the class loader, the arguments which are not simple JDK types are replaced by their formatted value and
+ * the exceptions which are not JDK exceptions are replaced by an {@link Exception} with the same message and stack
+ * trace.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class LogEventSpillFile implements Closeable
+{
+    private static final int INT_SIZE = 4;
+
+    /**
+     * The JDK types of arguments which are stored as is.
+     */
+    private static final List<Class<?>> PORTABLE_CLASSES = Arrays.<Class<?>>asList(CharSequence.class, Number.class,
+        Boolean.class, Character.class, Date.class, Enum.class);
+
+    private final File folder;
+
+    private File file;
+
+    private FileChannel channel;
+
+    private long end;
+
+    private long[] offsets = new long[16];
+
+    private int size;
+
+    /**
+     * @param folder the folder where to create the file
+     */
+    public LogEventSpillFile(File folder)
+    {
+        this.folder = folder;
+    }
+
+    /**
+     * @param events the events to add at the end of the file
+     * @return the index of the chunk
+     * @throws IOException when failing to write the events
+     */
+    public synchronized int write(List<LogEvent> events) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[INT_SIZE]);
+        try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+            LogEvent[] portableEvents = new LogEvent[events.size()];
+            for (int i = 0; i < portableEvents.length; ++i) {
+                portableEvents[i] = toPortable(events.get(i));
+            }
+            stream.writeObject(portableEvents);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.putInt(0, buffer.capacity() - INT_SIZE);
+
+        if (this.channel == null) {
+            this.folder.mkdirs();
+            this.file = File.createTempFile("logs", ".spill", this.folder);
+            this.file.deleteOnExit();
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        long offset = this.end;
+        for (long position = offset; buffer.hasRemaining();) {
+            position += this.channel.write(buffer, position);
+        }
+        this.end += buffer.capacity();
+
+        if (this.size == this.offsets.length) {
+            this.offsets = Arrays.copyOf(this.offsets, this.size * 2);
+        }
+        this.offsets[this.size] = offset;
+
+        return this.size++;
+    }
+
+    /**
+     * @param chunk the index of the chunk
+     * @return the events of the chunk
+     * @throws IOException when failing to read the events
+     */
+    public LogEvent[] read(int chunk) throws IOException
+    {
+        FileChannel currentChannel;
+        long offset;
+        synchronized (this) {
+            currentChannel = this.channel;
+            offset = this.offsets[chunk];
+        }
+
+        ByteBuffer sizeBuffer = ByteBuffer.allocate(INT_SIZE);
+        readFully(currentChannel, sizeBuffer, offset);
+        ByteBuffer buffer = ByteBuffer.allocate(sizeBuffer.getInt(0));
+        readFully(currentChannel, buffer, offset + INT_SIZE);
+
+        try (ObjectInputStream stream =
+            new ObjectInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.capacity()))) {
+            return (LogEvent[]) stream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Failed to read the log events", e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException
+    {
+        for (long position = offset; buffer.hasRemaining();) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of spill file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return the number of chunks in the file
+     */
+    public synchronized int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the size of the file
+     */
+    public synchronized long getLength()
+    {
+        return this.end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        // Can be written again after that
+        this.size = 0;
+        this.end = 0;
+
+        if (this.channel != null) {
+            FileChannel currentChannel = this.channel;
+            this.channel = null;
+
+            currentChannel.close();
+            Files.deleteIfExists(this.file.toPath());
+        }
+    }
+
+    private static LogEvent toPortable(LogEvent event)
+    {
+        Object[] arguments = event.getArgumentArray();
+        if (arguments != null) {
+            arguments = arguments.clone();
+            for (int i = 0; i < arguments.length; ++i) {
+                if (!isPortable(arguments[i])) {
+                    // Same as what the formatted message would contain
+                    arguments[i] = MessageFormatter.format("{}", arguments[i]).getMessage();
+                }
+            }
+        }
+
+        return new LogEvent(event.getMarker(), event.getLevel(), event.getMessage(), arguments,
+            toPortable(event.getThrowable()), event.getTimeStamp());
+    }
+
+    private static boolean isPortable(Object value)
+    {
+        if (value == null) {
+            return true;
+        }
+
+        if (!isJDKClass(value.getClass())) {
+            return false;
+        }
+
+        for (Class<?> portableClass : PORTABLE_CLASSES) {
+            if (portableClass.isInstance(value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isJDKClass(Class<?> clazz)
+    {
+        return clazz.getClassLoader() == null;
+    }
+
+    private static Throwable toPortable(Throwable throwable)
+    {
+        if (throwable == null || isPortableThrowable(throwable)) {
+            return throwable;
+        }
+
+        Exception exception = new Exception(throwable.toString(), toPortable(throwable.getCause()));
+        exception.setStackTrace(throwable.getStackTrace());
+
+        return exception;
+    }
+
+    private static boolean isPortableThrowable(Throwable throwable)
+    {
+        for (Throwable current = throwable; current != null; current = current.getCause()) {
+            if (!isJDKClass(current.getClass()) || current.getSuppressed().length > 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
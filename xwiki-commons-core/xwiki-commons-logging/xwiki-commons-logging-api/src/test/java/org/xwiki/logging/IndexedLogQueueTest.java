@@ -0,0 +1,302 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.logging.event.LogEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test {@link IndexedLogQueue}.
+ *
+ * @version $Id$
+ */
+public class IndexedLogQueueTest
+{
+    private static final File FOLDER = new File("target/test/spill/");
+
+    private static class Argument implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int value;
+
+        Argument(int value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "argument" + this.value;
+        }
+    }
+
+    private static class CustomException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Object notSerializable = new Object();
+
+        CustomException(String message)
+        {
+            super(message);
+        }
+    }
+
+    @Before
+    public void before() throws IOException
+    {
+        FileUtils.deleteDirectory(FOLDER);
+    }
+
+    private static List<String> messages(List<LogEvent> logs)
+    {
+        List<String> messages = new ArrayList<>();
+        for (LogEvent log : logs) {
+            messages.add(log.getFormattedMessage());
+        }
+
+        return messages;
+    }
+
+    private static void fill(LogQueue queue, int count)
+    {
+        for (int i = 0; i < count; ++i) {
+            if (i % 10 == 0) {
+                queue.error("error {}", new Argument(i), new CustomException("exception" + i));
+            } else if (i % 2 == 0) {
+                queue.warn("warn {}", i);
+            } else {
+                queue.info("info {}", i);
+            }
+        }
+    }
+
+    private static void assertLogs(LogQueue queue, int count)
+    {
+        assertEquals(count, queue.size());
+        assertEquals(count / 10, queue.countLogs(LogLevel.ERROR));
+        assertEquals(count / 2 - count / 10, queue.countLogs(LogLevel.WARN));
+        assertEquals(count / 2, queue.countLogs(LogLevel.INFO));
+        assertEquals(0, queue.countLogs(LogLevel.DEBUG));
+
+        List<LogEvent> errors = queue.getLogs(LogLevel.ERROR);
+        assertEquals(count / 10, errors.size());
+        assertEquals("error argument10", errors.get(1).getFormattedMessage());
+        assertTrue(errors.get(1).getThrowable().getMessage().contains("exception10"));
+
+        List<LogEvent> warnings = queue.getLogsFrom(LogLevel.WARN);
+        assertEquals(count / 2, warnings.size());
+        assertEquals(Arrays.asList("error argument0", "warn 2", "warn 4", "warn 6", "warn 8", "error argument10"),
+            messages(warnings.subList(0, 6)));
+
+        assertEquals(Arrays.asList("info 5", "warn 6", "info 7"), messages(queue.getLogs(5, 3)));
+        assertEquals(Arrays.asList("info " + (count - 1)), messages(queue.getLogs(count - 1, 10)));
+        assertTrue(queue.getLogs(count, 10).isEmpty());
+
+        int index = 0;
+        for (LogEvent log : queue) {
+            assertEquals(index++ % 10 == 0, log.getLevel() == LogLevel.ERROR);
+        }
+        assertEquals(count, index);
+    }
+
+    @Test
+    public void indexes()
+    {
+        IndexedLogQueue queue = new IndexedLogQueue();
+
+        assertFalse(queue.containLogsFrom(LogLevel.TRACE));
+        assertNull(queue.peek());
+
+        queue.info("info");
+
+        assertFalse(queue.containLogsFrom(LogLevel.WARN));
+        assertTrue(queue.containLogsFrom(LogLevel.INFO));
+        assertTrue(queue.containLogsFrom(LogLevel.DEBUG));
+        assertEquals("info", queue.peek().getFormattedMessage());
+
+        fill(queue, 99);
+
+        assertEquals(0, queue.getSpilledCount());
+        assertEquals(100, queue.size());
+        assertEquals(10, queue.countLogs(LogLevel.ERROR));
+        assertEquals(50, queue.countLogs(LogLevel.INFO));
+        assertTrue(queue.containLogsFrom(LogLevel.ERROR));
+    }
+
+    @Test
+    public void sameResultsAsLogQueue()
+    {
+        LogQueue reference = new LogQueue();
+        fill(reference, 100);
+        assertLogs(reference, 100);
+
+        IndexedLogQueue queue = new IndexedLogQueue();
+        fill(queue, 100);
+        assertLogs(queue, 100);
+    }
+
+    @Test
+    public void spill() throws IOException
+    {
+        IndexedLogQueue queue = new IndexedLogQueue(10, FOLDER);
+
+        fill(queue, 1000);
+
+        assertEquals(990, queue.getSpilledCount());
+        assertLogs(queue, 1000);
+        assertEquals(1, FOLDER.list().length);
+
+        // The arguments and exceptions which are not JDK types are replaced
+        LogEvent error = queue.peek();
+        assertEquals(Exception.class, error.getThrowable().getClass());
+        assertEquals(CustomException.class.getName() + ": exception0", error.getThrowable().getMessage());
+        assertEquals("argument0", error.getArgumentArray()[0]);
+
+        queue.close();
+
+        assertEquals(0, FOLDER.list().length);
+    }
+
+    @Test
+    public void serialize() throws Exception
+    {
+        IndexedLogQueue queue = new IndexedLogQueue(10, FOLDER);
+        fill(queue, 100);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+            stream.writeObject(queue);
+        }
+        queue.close();
+
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            LogQueue unserialized = (LogQueue) stream.readObject();
+
+            assertEquals(LogQueue.class, unserialized.getClass());
+            assertLogs(unserialized, 100);
+        }
+    }
+
+    @Test
+    public void poll() throws IOException
+    {
+        IndexedLogQueue queue = new IndexedLogQueue(10, FOLDER);
+        fill(queue, 1100);
+
+        // Remove the first 100 logs
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i % 10 == 0, queue.poll().getLevel() == LogLevel.ERROR);
+        }
+
+        assertEquals(1000, queue.size());
+        assertEquals(100, queue.countLogs(LogLevel.ERROR));
+        assertEquals("error argument100", queue.peek().getFormattedMessage());
+        assertEquals("error argument110", queue.getLogs(LogLevel.ERROR).get(1).getFormattedMessage());
+        assertEquals(Arrays.asList("info 105", "warn 106", "info 107"), messages(queue.getLogs(5, 3)));
+
+        assertEquals(1090, queue.getSpilledCount());
+
+        // Remove half of the logs, which frees them
+        for (int i = 0; i < 450; ++i) {
+            queue.poll();
+        }
+
+        assertEquals(550, queue.size());
+        assertEquals(540, queue.getSpilledCount());
+        assertEquals(55, queue.countLogs(LogLevel.ERROR));
+        assertEquals(275, queue.countLogs(LogLevel.INFO));
+        assertEquals("error argument550", queue.peek().getFormattedMessage());
+        assertEquals(275, queue.getLogsFrom(LogLevel.WARN).size());
+
+        for (int i = 0; i < 550; ++i) {
+            queue.poll();
+        }
+
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.containLogsFrom(LogLevel.TRACE));
+
+        queue.close();
+    }
+
+    @Test
+    public void remove() throws IOException
+    {
+        IndexedLogQueue queue = new IndexedLogQueue(10, FOLDER);
+        fill(queue, 100);
+
+        assertTrue(queue.removeIf(log -> log.getLevel() == LogLevel.INFO));
+        assertFalse(queue.removeIf(log -> log.getLevel() == LogLevel.INFO));
+
+        assertEquals(50, queue.size());
+        assertEquals(0, queue.countLogs(LogLevel.INFO));
+        assertEquals(10, queue.countLogs(LogLevel.ERROR));
+        assertEquals(Arrays.asList("error argument0", "warn 2", "warn 4"), messages(queue.getLogs(0, 3)));
+
+        LogEvent warning = queue.getLogs(1, 1).get(0);
+        assertTrue(queue.remove(warning));
+        assertFalse(queue.remove(warning));
+        assertEquals(39, queue.countLogs(LogLevel.WARN));
+        assertEquals(Arrays.asList("error argument0", "warn 4"), messages(queue.getLogs(0, 2)));
+
+        // Remove the warnings with the iterator
+        for (Iterator<LogEvent> it = queue.iterator(); it.hasNext();) {
+            if (it.next().getLevel() == LogLevel.WARN) {
+                it.remove();
+            }
+        }
+        assertEquals(10, queue.size());
+        assertEquals(queue.getLogs(LogLevel.ERROR), queue.getLogs(0, 100));
+
+        queue.clear();
+
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.countLogs(LogLevel.ERROR));
+        assertEquals(0, FOLDER.list().length);
+
+        // Still usable
+        fill(queue, 100);
+        assertLogs(queue, 100);
+
+        queue.close();
+    }
+}
@@ -89,7 +89,10 @@ public void initialize() throws InitializationException
             while (iterator.hasNext()) {
                 Appender<ILoggingEvent> appender = iterator.next();
 
-                if (!(appender instanceof LogbackEventGenerator)) {
+                if (appender instanceof LogbackEventGenerator) {
+                    // The threads which grabbed the log are the ones where a log listener is active
+                    ((LogbackEventGenerator) appender).setCapturingThreads(this.forbiddenThreads);
+                } else {
                     appender.addFilter(this.forbiddenThreads);
                 }
             }
@@ -42,13 +42,32 @@ public class ForbiddenThreadsFilter extends Filter<ILoggingEvent>
     @Override
     public FilterReply decide(ILoggingEvent event)
     {
-        if (this.threads.contains(Thread.currentThread())) {
+        if (contains(Thread.currentThread())) {
             return FilterReply.DENY;
         }
 
         return FilterReply.NEUTRAL;
     }
 
+    /**
+     * @param thread the thread
+     * @return true if the provided thread is forbidden
+     * @since 10.0RC1
+     */
+    public boolean contains(Thread thread)
+    {
+        return this.threads.contains(thread);
+    }
+
+    /**
+     * @return true if no thread is forbidden
+     * @since 10.0RC1
+     */
+    public boolean isEmpty()
+    {
+        return this.threads.isEmpty();
+    }
+
     /**
      * @param thread the new forbidden thread
      */
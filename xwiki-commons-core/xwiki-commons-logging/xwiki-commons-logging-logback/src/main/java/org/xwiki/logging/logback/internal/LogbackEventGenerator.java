@@ -21,6 +21,8 @@
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -44,7 +46,7 @@
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.ThrowableProxy;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 
 /**
  * Bridge converting log to Observation Events.
@@ -57,6 +59,21 @@
  * possibility that some logs will not be seen if some Event Listeners do logging in their initialization and it happens
  * that they're initialized before this component...).
  * </p>
+ * <p>
+ * By default each log is converted to a {@link LogEvent} and sent synchronously to all the listeners. Two system
+ * properties allow reducing the cost of the logs which are not captured, i.e. logged from a thread where no log
+ * listener was pushed with {@link org.xwiki.logging.LoggerManager#pushLogListener(EventListener)} and where no log
+ * listener bound to the thread (like the one registered by a non isolated job) was added to the
+ * {@link ObservationManager}:
+ * <ul>
+ * <li>{@value #PROPERTY_CAPTURED_ONLY}: when {@code true} the logs which are not captured are ignored (no
+ * {@link LogEvent} is even created). Only use it when no listener relies on {@link LogEvent}s which are not
+ * captured.</li>
+ * <li>{@value #PROPERTY_BUFFER_SIZE}: when greater than 0 the {@link LogEvent}s of the logs which are not captured are
+ * added to a ring buffer of this size and sent by a background thread. The captured logs are still sent synchronously
+ * since the listeners pushed by the logger manager only accept events from their own thread. When the buffer is full
+ * the {@link LogEvent} is sent synchronously.</li>
+ * </ul>
  *
  * @version $Id$
  * @since 3.2M1
@@ -64,9 +81,45 @@
 @Component
 @Named("LogbackEventGenerator")
 @Singleton
-public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implements EventListener, Initializable,
-    Disposable
+public class LogbackEventGenerator extends UnsynchronizedAppenderBase<ILoggingEvent>
+    implements EventListener, Initializable, Disposable
 {
+    /**
+     * The name of the system property indicating if the logs which are not captured should be ignored.
+     *
+     * @since 10.0RC1
+     */
+    public static final String PROPERTY_CAPTURED_ONLY = "xwiki.logging.eventGenerator.capturedOnly";
+
+    /**
+     * The name of the system property indicating the size of the buffer of the logs which are not captured.
+     *
+     * @since 10.0RC1
+     */
+    public static final String PROPERTY_BUFFER_SIZE = "xwiki.logging.eventGenerator.bufferSize";
+
+    /**
+     * The maximum time the dispatcher thread waits for new events before checking the buffer again.
+     */
+    private static final long DISPATCHER_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The time to wait for the dispatcher thread to send the remaining events when disposing the component.
+     */
+    private static final long DISPATCHER_STOP_TIMEOUT = 10000;
+
+    /**
+     * Set in the threads sending buffered events. The logs produced while sending them are ignored like the ones
+     * produced while sending an event synchronously (which are blocked by the appender re-entrance guard), otherwise
+     * each of them would be buffered and sent again, indefinitely.
+     */
+    private static final ThreadLocal<Boolean> DISPATCHING = new ThreadLocal<>();
+
+    /**
+     * The event used to check if a log listener bound to the current thread is registered.
+     */
+    private static final LogEvent CAPTURE_EVENT = new LogEvent();
+
     /**
      * The logger to log.
      */
@@ -84,6 +137,64 @@ public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implement
      */
     private LogbackUtils utils = new LogbackUtils();
 
+    /**
+     * @see #getObservationManager()
+     */
+    private volatile ObservationManager observationManager;
+
+    /**
+     * @see #setCapturingThreads(ForbiddenThreadsFilter)
+     */
+    private volatile ForbiddenThreadsFilter capturingThreads;
+
+    /**
+     * @see #setCapturedOnly(boolean)
+     */
+    private boolean capturedOnly = Boolean.getBoolean(PROPERTY_CAPTURED_ONLY);
+
+    /**
+     * @see #setBufferSize(int)
+     */
+    private int bufferSize = Integer.getInteger(PROPERTY_BUFFER_SIZE, 0);
+
+    /**
+     * The events waiting to be sent by the dispatcher thread.
+     */
+    private volatile RingBuffer<PendingLogEvent> buffer;
+
+    /**
+     * The thread sending the events of the buffer.
+     */
+    private Thread dispatcher;
+
+    /**
+     * True when the dispatcher thread is about to wait for new events.
+     */
+    private volatile boolean dispatcherWaiting;
+
+    /**
+     * True when the dispatcher thread should stop once the buffer is empty.
+     */
+    private volatile boolean dispatcherStopping;
+
+    /**
+     * A log event waiting to be sent.
+     *
+     * @version $Id$
+     */
+    private static final class PendingLogEvent
+    {
+        private final LogEvent event;
+
+        private final String source;
+
+        PendingLogEvent(LogEvent event, String source)
+        {
+            this.event = event;
+            this.source = source;
+        }
+    }
+
     @Override
     public String getName()
     {
@@ -105,6 +216,10 @@ public void initialize() throws InitializationException
         ch.qos.logback.classic.Logger rootLogger = getRootLogger();
 
         if (rootLogger != null) {
+            if (this.bufferSize > 0) {
+                startDispatcher();
+            }
+
             setContext(rootLogger.getLoggerContext());
             rootLogger.addAppender(this);
             start();
@@ -121,18 +236,81 @@ public void onEvent(Event event, Object source, Object data)
         // initialization (see the class documentation above).
     }
 
+    /**
+     * @param capturingThreads the threads where a log listener is active
+     * @since 10.0RC1
+     */
+    public void setCapturingThreads(ForbiddenThreadsFilter capturingThreads)
+    {
+        this.capturingThreads = capturingThreads;
+    }
+
+    /**
+     * @param capturedOnly true if the logs which are not captured should be ignored
+     * @since 10.0RC1
+     */
+    public void setCapturedOnly(boolean capturedOnly)
+    {
+        this.capturedOnly = capturedOnly;
+    }
+
+    /**
+     * @param bufferSize the size of the buffer of the logs which are not captured, 0 to send them synchronously, need
+     *            to be called before the initialization of the component to be taken into account
+     * @since 10.0RC1
+     */
+    public void setBufferSize(int bufferSize)
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return the number of events waiting to be sent by the dispatcher thread
+     * @since 10.0RC1
+     */
+    public int getPendingEventCount()
+    {
+        RingBuffer<PendingLogEvent> currentBuffer = this.buffer;
+
+        if (currentBuffer == null) {
+            return 0;
+        }
+
+        return currentBuffer.size();
+    }
+
     /**
      * @return the ObservationManager implementation
      * @throws ComponentLookupException failed to get ObservationManager implementation
      */
     private ObservationManager getObservationManager() throws ComponentLookupException
     {
-        return this.componentManager.getInstance(ObservationManager.class);
+        ObservationManager manager = this.observationManager;
+
+        if (manager == null) {
+            manager = this.componentManager.getInstance(ObservationManager.class);
+            this.observationManager = manager;
+        }
+
+        return manager;
     }
 
     @Override
     protected void append(ILoggingEvent event)
     {
+        if (DISPATCHING.get() != null) {
+            return;
+        }
+
+        boolean captured = false;
+        if (this.capturedOnly || this.buffer != null) {
+            captured = isCaptured();
+
+            if (!captured && this.capturedOnly) {
+                return;
+            }
+        }
+
         Throwable throwable = null;
         IThrowableProxy throwableProxy = event.getThrowableProxy();
         if (throwableProxy instanceof ThrowableProxy) {
@@ -146,14 +324,131 @@ protected void append(ILoggingEvent event)
                 LogUtils.newLogEvent(event.getMarker(), logLevel, event.getMessage(), event.getArgumentArray(),
                     throwable, event.getTimeStamp());
 
-            getObservationManager().notify(logevent, event.getLoggerName(), null);
+            if (captured || !offer(logevent, event.getLoggerName())) {
+                notify(logevent, event.getLoggerName());
+            }
         } catch (IllegalArgumentException e) {
             this.logger.debug("Unsupported log level [{}]", event.getLevel());
+        }
+    }
+
+    /**
+     * @return true if a log listener is active in the current thread
+     */
+    private boolean isCaptured()
+    {
+        ForbiddenThreadsFilter threads = this.capturingThreads;
+
+        if (threads != null && !threads.isEmpty() && threads.contains(Thread.currentThread())) {
+            return true;
+        }
+
+        // Log listeners bound to the current thread only accept events sent from it
+        try {
+            return getObservationManager().hasThreadListener(CAPTURE_EVENT);
+        } catch (ComponentLookupException e) {
+            return false;
+        }
+    }
+
+    private void notify(LogEvent logEvent, String source)
+    {
+        try {
+            getObservationManager().notify(logEvent, source, null);
         } catch (ComponentLookupException e) {
             this.logger.error("Can't find any implementation of [{}]", ObservationManager.class.getName(), e);
         }
     }
 
+    private void dispatch(PendingLogEvent pending)
+    {
+        DISPATCHING.set(Boolean.TRUE);
+
+        try {
+            notify(pending.event, pending.source);
+        } finally {
+            DISPATCHING.remove();
+        }
+    }
+
+    private boolean offer(LogEvent logEvent, String source)
+    {
+        RingBuffer<PendingLogEvent> currentBuffer = this.buffer;
+
+        if (currentBuffer != null && currentBuffer.offer(new PendingLogEvent(logEvent, source))) {
+            if (this.dispatcherWaiting) {
+                LockSupport.unpark(this.dispatcher);
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private void startDispatcher()
+    {
+        this.buffer = new RingBuffer<>(this.bufferSize);
+        this.dispatcherStopping = false;
+
+        this.dispatcher = new Thread(this::dispatch, "Log event dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    private void dispatch()
+    {
+        RingBuffer<PendingLogEvent> currentBuffer = this.buffer;
+
+        while (!this.dispatcherStopping || !currentBuffer.isEmpty()) {
+            PendingLogEvent pending = currentBuffer.poll();
+
+            if (pending != null) {
+                dispatch(pending);
+            } else if (currentBuffer.isEmpty()) {
+                this.dispatcherWaiting = true;
+                // Check again in case an event was added before the producer could see the flag
+                if (currentBuffer.isEmpty() && !this.dispatcherStopping) {
+                    LockSupport.parkNanos(this, DISPATCHER_WAIT);
+                }
+                this.dispatcherWaiting = false;
+            } else {
+                // The next event is not yet published
+                Thread.yield();
+            }
+        }
+    }
+
+    private void stopDispatcher()
+    {
+        RingBuffer<PendingLogEvent> currentBuffer = this.buffer;
+
+        if (currentBuffer != null) {
+            // New events are sent synchronously
+            this.buffer = null;
+
+            this.dispatcherStopping = true;
+            LockSupport.unpark(this.dispatcher);
+
+            try {
+                this.dispatcher.join(DISPATCHER_STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            // Send the events added after the dispatcher thread stopped
+            if (this.dispatcher.isAlive()) {
+                this.logger.warn("The log event dispatcher thread did not send the remaining [{}] events in time",
+                    currentBuffer.size());
+
+                return;
+            }
+            for (PendingLogEvent pending = currentBuffer.poll(); pending != null; pending = currentBuffer.poll()) {
+                dispatch(pending);
+            }
+        }
+    }
+
     /**
      * @return the Logback root logger or null if Logback is not available
      */
@@ -167,6 +462,8 @@ public void dispose() throws ComponentLifecycleException
     {
         stop();
 
+        stopDispatcher();
+
         // Unregister appender
         ch.qos.logback.classic.Logger rootLogger = getRootLogger();
 
@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer with several producers and a single consumer.
+ * <p>
+ * Producers reserve a slot by incrementing the tail with a compare-and-set and then publish the element in it. The
+ * consumer reads the slot at the head and frees it, an empty slot in front of the head means that the element is
+ * either not yet added or not yet published.
+ *
+ * @param <E> the type of the elements
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class RingBuffer<E>
+{
+    private final AtomicReferenceArray<E> slots;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Only modified by the consumer.
+     */
+    private volatile long head;
+
+    /**
+     * @param capacity the minimum number of elements the buffer can contain, rounded to the next power of two
+     */
+    public RingBuffer(int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the buffer should be positive");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add an element at the end of the buffer. Can be called from any thread.
+     *
+     * @param element the element to add
+     * @return true if the element was added, false if the buffer is full
+     */
+    public boolean offer(E element)
+    {
+        long position;
+        do {
+            position = this.tail.get();
+
+            if (position - this.head >= this.slots.length()) {
+                return false;
+            }
+        } while (!this.tail.compareAndSet(position, position + 1));
+
+        this.slots.set((int) position & this.mask, element);
+
+        return true;
+    }
+
+    /**
+     * Remove the element at the start of the buffer. Should be called from a single thread.
+     *
+     * @return the first element or null if there is no element ready to be consumed
+     */
+    public E poll()
+    {
+        long position = this.head;
+        int index = (int) position & this.mask;
+
+        E element = this.slots.get(index);
+        if (element != null) {
+            this.slots.lazySet(index, null);
+            this.head = position + 1;
+        }
+
+        return element;
+    }
+
+    /**
+     * @return true if no element was added since the last consumed one
+     */
+    public boolean isEmpty()
+    {
+        return this.tail.get() == this.head;
+    }
+
+    /**
+     * @return the number of elements added and not yet consumed
+     */
+    public int size()
+    {
+        return (int) (this.tail.get() - this.head);
+    }
+
+    /**
+     * @return the maximum number of elements in the buffer
+     */
+    public int getCapacity()
+    {
+        return this.slots.length();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Measure the throughput of {@link LogbackEventGenerator#doAppend(ch.qos.logback.classic.spi.ILoggingEvent)} with the
+ * different dispatch modes, with and without a log listener pushed on the current thread.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogbackEventGeneratorBenchmark
+{
+    @Param({ "synchronous", "capturedOnly", "asynchronous" })
+    private String mode;
+
+    @Param({ "false", "true" })
+    private boolean captured;
+
+    private EmbeddableComponentManager componentManager;
+
+    private LoggerManager loggerManager;
+
+    private LogbackEventGenerator generator;
+
+    private LoggingEvent event;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        this.componentManager = new EmbeddableComponentManager();
+        this.componentManager.initialize(getClass().getClassLoader());
+
+        this.generator = this.componentManager.getInstance(EventListener.class, "LogbackEventGenerator");
+        this.generator.dispose();
+        this.generator.setCapturedOnly(this.mode.equals("capturedOnly"));
+        if (this.mode.equals("asynchronous")) {
+            this.generator.setBufferSize(1024);
+        }
+        this.generator.initialize();
+
+        this.loggerManager = this.componentManager.getInstance(LoggerManager.class);
+        if (this.captured) {
+            this.loggerManager.pushLogListener(new EventListener()
+            {
+                @Override
+                public String getName()
+                {
+                    return "benchmark";
+                }
+
+                @Override
+                public List<Event> getEvents()
+                {
+                    return Arrays.<Event>asList(new LogEvent());
+                }
+
+                @Override
+                public void onEvent(Event event, Object source, Object data)
+                {
+                    // Only measure the dispatch
+                }
+            });
+        }
+
+        Logger logger = this.generator.getRootLogger().getLoggerContext().getLogger(getClass());
+        this.event = new LoggingEvent(Logger.FQCN, logger, Level.INFO, "Log message [{}]", null, new Object[] { 42 });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        if (this.captured) {
+            this.loggerManager.popLogListener();
+        }
+
+        this.componentManager.dispose();
+    }
+
+    @Benchmark
+    public void append()
+    {
+        this.generator.doAppend(this.event);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(LogbackEventGeneratorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
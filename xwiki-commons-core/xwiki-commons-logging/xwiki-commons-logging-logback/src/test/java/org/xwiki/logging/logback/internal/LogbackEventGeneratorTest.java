@@ -20,6 +20,8 @@
 package org.xwiki.logging.logback.internal;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -38,6 +40,9 @@
 import org.xwiki.test.annotation.ComponentList;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -92,6 +97,127 @@ public void verifyThatLoggingGeneratesALogEvent()
         assertEquals("error message", this.logCapture.getMessage(0));
     }
 
+    private EventListener addListener()
+    {
+        EventListener listener = mock(EventListener.class);
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(new LogEvent()));
+
+        this.observationManager.addListener(listener);
+
+        return listener;
+    }
+
+    private LogbackEventGenerator getGenerator() throws Exception
+    {
+        return this.componentManager.getInstance(EventListener.class, "LogbackEventGenerator");
+    }
+
+    @Test
+    public void capturedOnly() throws Exception
+    {
+        EventListener listener = addListener();
+
+        LogbackEventGenerator generator = getGenerator();
+        generator.setCapturedOnly(true);
+
+        try {
+            this.logger.error("not captured");
+
+            verify(listener, never()).onEvent(any(), any(), any());
+
+            ForbiddenThreadsFilter capturingThreads = new ForbiddenThreadsFilter();
+            capturingThreads.addThread(Thread.currentThread());
+            generator.setCapturingThreads(capturingThreads);
+
+            this.logger.error("captured");
+
+            Event expected = new LogEvent(null, LogLevel.ERROR, "captured", null, null);
+            verify(listener).onEvent(eq(expected), eq(getClass().getName()), eq(null));
+        } finally {
+            generator.setCapturedOnly(false);
+            generator.setCapturingThreads(null);
+        }
+
+        assertEquals(2, this.logCapture.size());
+    }
+
+    @Test
+    public void asynchronous() throws Exception
+    {
+        EventListener listener = addListener();
+        Thread testThread = Thread.currentThread();
+        List<Thread> notifiedThreads = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> notifiedThreads.add(Thread.currentThread())).when(listener).onEvent(any(), any(),
+            any());
+
+        LogbackEventGenerator generator = getGenerator();
+        generator.dispose();
+        generator.setBufferSize(16);
+        generator.initialize();
+
+        try {
+            this.logger.error("not captured");
+
+            Event expected = new LogEvent(null, LogLevel.ERROR, "not captured", null, null);
+            verify(listener, timeout(10000)).onEvent(eq(expected), eq(getClass().getName()), eq(null));
+            assertNotSame(testThread, notifiedThreads.get(0));
+
+            ForbiddenThreadsFilter capturingThreads = new ForbiddenThreadsFilter();
+            capturingThreads.addThread(testThread);
+            generator.setCapturingThreads(capturingThreads);
+
+            this.logger.error("captured");
+
+            // Captured logs are sent synchronously
+            expected = new LogEvent(null, LogLevel.ERROR, "captured", null, null);
+            verify(listener).onEvent(eq(expected), eq(getClass().getName()), eq(null));
+            assertSame(testThread, notifiedThreads.get(1));
+        } finally {
+            generator.dispose();
+            generator.setBufferSize(0);
+            generator.setCapturingThreads(null);
+            generator.initialize();
+        }
+
+        assertEquals(0, generator.getPendingEventCount());
+        assertEquals(2, this.logCapture.size());
+    }
+
+    @Test
+    public void asynchronousWhenListenerLogs() throws Exception
+    {
+        EventListener listener = addListener();
+        List<Event> events = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            events.add(invocation.getArgument(0));
+            LoggerFactory.getLogger(LogbackEventGeneratorTest.class).error("logged by the listener");
+            return null;
+        }).when(listener).onEvent(any(), any(), any());
+
+        LogbackEventGenerator generator = getGenerator();
+        generator.dispose();
+        generator.setBufferSize(16);
+        generator.initialize();
+
+        try {
+            this.logger.error("not captured");
+
+            Event expected = new LogEvent(null, LogLevel.ERROR, "not captured", null, null);
+            verify(listener, timeout(10000)).onEvent(eq(expected), eq(getClass().getName()), eq(null));
+        } finally {
+            generator.dispose();
+            generator.setBufferSize(0);
+            generator.initialize();
+        }
+
+        // The log of the listener is not sent again
+        assertEquals(Arrays.asList(new LogEvent(null, LogLevel.ERROR, "not captured", null, null)), events);
+        assertEquals(0, generator.getPendingEventCount());
+        assertEquals(2, this.logCapture.size());
+        assertEquals("logged by the listener", this.logCapture.getMessage(1));
+    }
+
     @Test
     public void initializeWhenNoLogback() throws Exception
     {
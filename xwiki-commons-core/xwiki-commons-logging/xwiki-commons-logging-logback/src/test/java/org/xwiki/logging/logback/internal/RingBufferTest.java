@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RingBuffer}.
+ *
+ * @version $Id$
+ */
+public class RingBufferTest
+{
+    @Test
+    public void offerAndPoll()
+    {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+
+        assertEquals(4, buffer.getCapacity());
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        for (int i = 0; i < 4; ++i) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertEquals(Integer.valueOf(1), buffer.poll());
+
+        // Wrap around
+        assertTrue(buffer.offer(4));
+        assertTrue(buffer.offer(5));
+        assertFalse(buffer.offer(6));
+
+        for (int i = 2; i < 6; ++i) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException
+    {
+        RingBuffer<Integer> buffer = new RingBuffer<>(16);
+        int producers = 4;
+        int count = 1000;
+
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; ++i) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < count; ++j) {
+                    while (!buffer.offer(j)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        long sum = 0;
+        for (int received = 0; received < producers * count;) {
+            Integer element = buffer.poll();
+            if (element != null) {
+                sum += element;
+                ++received;
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals((long) producers * count * (count - 1) / 2, sum);
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Marker interface for {@link EventListener}s which don't need to be called in the thread sending the event.
+ * <p>
+ * The {@link ObservationManager} call {@link #onEvent(org.xwiki.observation.event.Event, Object, Object)} in a
+ * background thread with a clean execution context, after the event was sent. A given listener always receive the
+ * events in the order they were sent. Since the event, its source and its data are shared with the thread which sent
+ * them the listener should not modify them and should not expect them to stay the same.
+ * <p>
+ * {@link org.xwiki.observation.event.CancelableEvent}s are always sent synchronously so that the listener can cancel
+ * them.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Unstable
+public interface AsynchronousEventListener extends EventListener
+{
+}
@@ -19,8 +19,11 @@
  */
 package org.xwiki.observation;
 
+import java.util.Collection;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.observation.event.Event;
+import org.xwiki.stability.Unstable;
 
 /**
  * The main orchestrator for event notification. To receive events create a component implementing the
@@ -88,4 +91,40 @@
      * @see #notify(org.xwiki.observation.event.Event, Object, Object)
      */
     void notify(Event event, Object source);
+
+    /**
+     * Indicate if notifying the passed event in the current thread would reach at least one listener. Listeners bound
+     * to another thread (see {@link AbstractThreadEventListener}) are not taken into account.
+     * <p>
+     * Mostly useful to skip producing an event which is expensive to send when nobody listens to it.
+     *
+     * @param event the event to check
+     * @param ignoredListeners the names of the listeners to not take into account
+     * @return true if at least one listener (other than the ignored ones) would receive the event, true also when it's
+     *         not possible to know it
+     * @since 10.0RC1
+     */
+    @Unstable
+    default boolean hasListener(Event event, Collection<String> ignoredListeners)
+    {
+        return true;
+    }
+
+    /**
+     * Indicate if a listener bound to the current thread (see {@link AbstractThreadEventListener}) would receive the
+     * passed event if it was notified in the current thread.
+     * <p>
+     * Useful to know if something produced in the current thread is being captured, for example by a job which is
+     * collecting the log of the thread running it.
+     *
+     * @param event the event to check
+     * @return true if at least one listener bound to the current thread would receive the event, true also when it's
+     *         not possible to know it
+     * @since 10.0RC1
+     */
+    @Unstable
+    default boolean hasThreadListener(Event event)
+    {
+        return true;
+    }
 }
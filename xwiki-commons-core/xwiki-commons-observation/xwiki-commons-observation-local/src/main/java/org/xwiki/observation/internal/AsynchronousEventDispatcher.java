@@ -0,0 +1,403 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.observation.AsynchronousEventListener;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Deliver events to {@link AsynchronousEventListener}s in background threads.
+ * <p>
+ * Each listener has its own queue so that it receives the events in the order they were sent while different
+ * listeners are called in parallel. The total number of pending events is bounded: when the limit is reached the
+ * thread sending the event waits until some room is available (except when the event is sent by an asynchronous
+ * listener, to avoid blocking the threads supposed to free the room).
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = AsynchronousEventDispatcher.class)
+@Singleton
+public class AsynchronousEventDispatcher implements Initializable, Disposable
+{
+    private static final String CONFIGURATION_PREFIX = "observation.asynchronous.";
+
+    /**
+     * The maximum number of events a listener handles before giving its thread to other listeners.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private static final ThreadLocal<Boolean> DISPATCHER_THREAD = new ThreadLocal<>();
+
+    @Inject
+    private Provider<ConfigurationSource> configuration;
+
+    /**
+     * Used to initialize the execution context of the background threads.
+     */
+    @Inject
+    private ComponentManager componentManager;
+
+    @Inject
+    private Logger logger;
+
+    private ExecutorService executor;
+
+    private Semaphore permits;
+
+    private int capacity;
+
+    private final Map<EventListener, ListenerQueue> queues = new ConcurrentHashMap<>();
+
+    private final LongAdder pending = new LongAdder();
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder overflows = new LongAdder();
+
+    /**
+     * An event waiting to be sent to a listener.
+     *
+     * @version $Id$
+     */
+    private final class Task
+    {
+        private final Event event;
+
+        private final Runnable call;
+
+        private final boolean permit;
+
+        Task(EventListener listener, Event event, Object source, Object data, boolean permit)
+        {
+            this.event = event;
+            this.call = new ExecutionContextRunnable(() -> listener.onEvent(event, source, data),
+                AsynchronousEventDispatcher.this.componentManager);
+            this.permit = permit;
+        }
+
+        void release()
+        {
+            AsynchronousEventDispatcher.this.pending.decrement();
+
+            if (this.permit) {
+                AsynchronousEventDispatcher.this.permits.release();
+            }
+        }
+    }
+
+    /**
+     * The events waiting to be sent to a given listener.
+     *
+     * @version $Id$
+     */
+    private final class ListenerQueue implements Runnable
+    {
+        private final EventListener listener;
+
+        private final Queue<Task> tasks = new ArrayDeque<>();
+
+        private boolean scheduled;
+
+        private boolean removed;
+
+        ListenerQueue(EventListener listener)
+        {
+            this.listener = listener;
+        }
+
+        /**
+         * @param task the task to execute
+         * @return false if the queue is not in use anymore and a new one should be created
+         */
+        boolean add(Task task)
+        {
+            synchronized (this) {
+                if (this.removed) {
+                    return false;
+                }
+
+                this.tasks.add(task);
+
+                if (this.scheduled) {
+                    return true;
+                }
+
+                this.scheduled = true;
+            }
+
+            schedule(this);
+
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            run(false);
+        }
+
+        /**
+         * Send all the waiting events in the current thread, without giving the thread back after each batch.
+         */
+        void runAll()
+        {
+            run(true);
+        }
+
+        private void run(boolean all)
+        {
+            // Don't leave the remaining events behind if an error escapes
+            boolean remaining = true;
+
+            Boolean dispatcherThread = DISPATCHER_THREAD.get();
+            DISPATCHER_THREAD.set(Boolean.TRUE);
+            try {
+                do {
+                    remaining = runBatch();
+                } while (remaining && all);
+            } finally {
+                if (dispatcherThread == null) {
+                    DISPATCHER_THREAD.remove();
+                }
+
+                if (remaining) {
+                    // Give other listeners a chance to use the thread
+                    schedule(this);
+                }
+            }
+        }
+
+        private boolean runBatch()
+        {
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                Task task;
+                synchronized (this) {
+                    task = this.tasks.poll();
+
+                    if (task == null) {
+                        // Forget about this queue, a new one will be created for the next event
+                        this.removed = true;
+                        AsynchronousEventDispatcher.this.queues.remove(this.listener, this);
+
+                        return false;
+                    }
+                }
+
+                run(task);
+            }
+
+            return true;
+        }
+
+        private void run(Task task)
+        {
+            try {
+                task.call.run();
+
+                AsynchronousEventDispatcher.this.delivered.increment();
+            } catch (Exception e) {
+                AsynchronousEventDispatcher.this.failed.increment();
+
+                // protect from bad listeners (and from failures to initialize the execution context)
+                AsynchronousEventDispatcher.this.logger.error(
+                    "Failed to send event [{}] to asynchronous listener [{}]", task.event, this.listener, e);
+            } finally {
+                // Outside of the execution context to always be called
+                task.release();
+            }
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        ConfigurationSource configurationSource = this.configuration.get();
+
+        int threads = configurationSource.getProperty(CONFIGURATION_PREFIX + "threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+        this.capacity = configurationSource.getProperty(CONFIGURATION_PREFIX + "queueSize", 10000);
+        boolean virtualThreads = configurationSource.getProperty(CONFIGURATION_PREFIX + "virtualThreads", true);
+
+        this.permits = new Semaphore(this.capacity);
+        this.executor = createExecutor(Math.max(1, threads), virtualThreads);
+    }
+
+    private ExecutorService createExecutor(int threads, boolean virtualThreads)
+    {
+        if (virtualThreads) {
+            try {
+                // Only available starting with Java 21
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception e) {
+                this.logger.debug("Virtual threads are not available, using a thread pool of [{}] threads", threads);
+            }
+        }
+
+        BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+            .namingPattern("Asynchronous event listener %d").daemon(true).build();
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory);
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+        return threadPoolExecutor;
+    }
+
+    private void schedule(ListenerQueue queue)
+    {
+        try {
+            this.executor.execute(queue);
+        } catch (RejectedExecutionException e) {
+            // The dispatcher is being disposed, finish the work in the current thread (in a loop since run() would
+            // schedule the queue again after each batch)
+            queue.runAll();
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdown();
+
+        try {
+            if (!this.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                this.logger.warn("[{}] events were still waiting to be sent to asynchronous listeners",
+                    getPendingEvents());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Send the event to the listener in a background thread.
+     *
+     * @param listener the listener to call
+     * @param event the event to send
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    public void dispatch(EventListener listener, Event event, Object source, Object data)
+    {
+        boolean permit = acquirePermit();
+
+        this.pending.increment();
+
+        Task task = new Task(listener, event, source, data, permit);
+
+        ListenerQueue queue;
+        do {
+            queue = this.queues.computeIfAbsent(listener, ListenerQueue::new);
+        } while (!queue.add(task));
+    }
+
+    private boolean acquirePermit()
+    {
+        if (this.permits.tryAcquire()) {
+            return true;
+        }
+
+        this.overflows.increment();
+
+        // Waiting in a dispatcher thread could block all the threads able to release a permit
+        if (DISPATCHER_THREAD.get() == null) {
+            try {
+                this.permits.acquire();
+
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Accept the event anyway
+        return false;
+    }
+
+    /**
+     * @return the maximum number of events which can wait to be sent before the sending threads are blocked
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @return the number of events waiting to be sent or being sent
+     */
+    public long getPendingEvents()
+    {
+        return this.pending.sum();
+    }
+
+    /**
+     * @return the number of events successfully sent
+     */
+    public long getDeliveredEvents()
+    {
+        return this.delivered.sum();
+    }
+
+    /**
+     * @return the number of events for which the listener failed
+     */
+    public long getFailedEvents()
+    {
+        return this.failed.sum();
+    }
+
+    /**
+     * @return the number of times an event was sent while the queue was full
+     */
+    public long getOverflows()
+    {
+        return this.overflows.sum();
+    }
+}
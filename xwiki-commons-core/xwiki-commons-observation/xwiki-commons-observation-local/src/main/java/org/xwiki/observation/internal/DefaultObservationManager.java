@@ -19,15 +19,16 @@
  */
 package org.xwiki.observation.internal;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.descriptor.ComponentDescriptor;
@@ -36,17 +37,27 @@
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.observation.AbstractThreadEventListener;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.CancelableEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.EventDispatchTable.Dispatch;
+import org.xwiki.observation.internal.jmx.JMXObservationManager;
 
 /**
  * Default implementation of the {@link ObservationManager}.
  * <p>
- * This component use synchronized for concurrent protection instead of having
- * {@link java.util.concurrent.ConcurrentHashMap} everywhere because it's more efficient since most of methods access to
- * several maps and generally do enumerations.
+ * This component use synchronized for concurrent protection of listeners registration. Notifications don't take any
+ * lock as long as the registered listeners don't change: they work on an immutable {@link EventDispatchTable} which is
+ * rebuilt on first use after each listener or listener event modification.
+ * <p>
+ * When enabled with the {@code observation.statistics.enabled} configuration property (or through JMX), the number of
+ * calls, failures and the time spent in each listener and for each event class are measured and exposed through JMX.
+ * Listener calls slower than the {@code observation.statistics.slowListenerThreshold} configuration property (in
+ * milliseconds) are logged, which also enables the measures.
  *
  * @version $Id$
  */
@@ -54,15 +65,41 @@
 @Singleton
 public class DefaultObservationManager implements ObservationManager
 {
+    private static final String CONFIGURATION_PREFIX = "observation.statistics.";
+
+    private static final String MBEAN_NAME = "type=Observation";
+
     /**
-     * @see #getListenersByEvent()
+     * @see #getListenersByName()
      */
-    private volatile Map<Class<? extends Event>, Map<String, RegisteredListener>> listenersByEvent;
+    private volatile Map<String, RegisteredListener> listenersByName;
 
     /**
-     * @see #getListenersByName()
+     * @see #getDispatchTable()
+     */
+    private volatile EventDispatchTable dispatchTable;
+
+    /**
+     * Protect the modifications of the registered listeners and the creation of the dispatch table. It's not the lock
+     * used for the initialization so that components looked up during the initialization can still send events or
+     * register listeners from other threads.
+     */
+    private final Object listenersLock = new Object();
+
+    /**
+     * @see #getAsynchronousDispatcher()
+     */
+    private volatile AsynchronousEventDispatcher asynchronousDispatcher;
+
+    /**
+     * True when the lookup of the asynchronous event dispatcher failed, so that it's not tried again for each event.
      */
-    private volatile Map<String, EventListener> listenersByName;
+    private volatile boolean asynchronousDispatcherUnavailable;
+
+    /**
+     * The time spent in the listeners.
+     */
+    private final ObservationStatistics statistics = new ObservationStatistics();
 
     /**
      * Used to find all components implementing {@link EventListener} to register them automatically.
@@ -77,85 +114,47 @@ public class DefaultObservationManager implements ObservationManager
     private Logger logger;
 
     /**
-     * Helper class to store the list of events of a given type associated with a given listener. We need this for
-     * performance reasons and also in order to be able to add events after a listener has been registered.
+     * @return the registered listeners index by listener name. It makes it fast to perform operations on already
+     *         registered listeners.
      */
-    private static class RegisteredListener
+    private Map<String, RegisteredListener> getListenersByName()
     {
-        /**
-         * Events of a given type associated with a given listener.
-         */
-        private List<Event> events = new ArrayList<>();
-
-        /**
-         * Listener associated with the events.
-         */
-        private EventListener listener;
-
-        /**
-         * @param listener the listener associated with the events.
-         * @param event the first event to associate with the passed listener. More events are added by calling
-         *            {@link #addEvent(Event)}
-         */
-        RegisteredListener(EventListener listener, Event event)
-        {
-            addEvent(event);
-
-            this.listener = listener;
-        }
-
-        /**
-         * @param event the event to add
-         */
-        void addEvent(Event event)
-        {
-            this.events.add(event);
+        if (this.listenersByName == null) {
+            initializeListeners();
         }
 
-        /**
-         * @param event the event to remove
-         */
-        void removeEvent(Event event)
-        {
-            this.events.remove(event);
-        }
+        return this.listenersByName;
     }
 
     /**
-     * @return the registered listeners indexed on Event classes so that it's fast to find all the listeners registered
-     *         for a given event, so that {@link #notify} calls execute fast and in a fixed amount a time.
+     * @return the registered listeners compiled by event class so that {@link #notify} calls execute fast and in a
+     *         fixed amount a time
      */
-    private Map<Class<? extends Event>, Map<String, RegisteredListener>> getListenersByEvent()
+    private EventDispatchTable getDispatchTable()
     {
-        if (this.listenersByEvent == null) {
-            initializeListeners();
-        }
+        EventDispatchTable table = this.dispatchTable;
 
-        return this.listenersByEvent;
-    }
+        if (table == null) {
+            Map<String, RegisteredListener> listeners = getListenersByName();
 
-    /**
-     * @return the registered listeners index by listener name. It makes it fast to perform operations on already
-     *         registered listeners.
-     */
-    private Map<String, EventListener> getListenersByName()
-    {
-        if (this.listenersByName == null) {
-            initializeListeners();
+            synchronized (this.listenersLock) {
+                if (this.dispatchTable == null) {
+                    this.dispatchTable = new EventDispatchTable(listeners.values());
+                }
+
+                table = this.dispatchTable;
+            }
         }
 
-        return this.listenersByName;
+        return table;
     }
 
     /**
      * Lazily initialized to allow @Inject {@link ObservationManager} in a listener.
-     *
-     * @todo Should we allow event inheritance ?
      */
     private synchronized void initializeListeners()
     {
         if (this.listenersByName == null) {
-            this.listenersByEvent = new ConcurrentHashMap<>();
             this.listenersByName = new ConcurrentHashMap<>();
 
             // Can be null in unit tests
@@ -168,62 +167,70 @@ private synchronized void initializeListeners()
                 } catch (ComponentLookupException e) {
                     this.logger.error("Failed to lookup listeners", e);
                 }
+
+                initializeStatistics();
             }
         }
     }
 
+    private void initializeStatistics()
+    {
+        try {
+            if (this.componentManager.hasComponent(ConfigurationSource.class)) {
+                ConfigurationSource configuration = this.componentManager.getInstance(ConfigurationSource.class);
+
+                this.statistics.setSlowListenerThreshold(TimeUnit.MILLISECONDS
+                    .toNanos(configuration.getProperty(CONFIGURATION_PREFIX + "slowListenerThreshold", 0L)));
+                this.statistics.setEnabled(configuration.getProperty(CONFIGURATION_PREFIX + "enabled", false)
+                    || this.statistics.getSlowListenerThreshold() > 0);
+            }
+
+            if (this.componentManager.hasComponent(JMXBeanRegistration.class)) {
+                this.componentManager.<JMXBeanRegistration>getInstance(JMXBeanRegistration.class)
+                    .registerMBean(new JMXObservationManager(this.statistics), MBEAN_NAME);
+            }
+        } catch (ComponentLookupException e) {
+            this.logger.warn("Failed to initialize the observation statistics: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
     @Override
     public void addListener(EventListener eventListener)
     {
-        Map<String, EventListener> listeners = getListenersByName();
+        Map<String, RegisteredListener> listeners = getListenersByName();
+        List<Event> events = eventListener.getEvents();
 
-        // Remove previous listener if any
-        EventListener previousListener = listeners.get(eventListener.getName());
-        if (previousListener != null) {
-            removeListener(eventListener.getName());
+        RegisteredListener previousListener;
+        synchronized (this.listenersLock) {
+            // Register the listener by name. If already registered, override it.
+            previousListener = listeners.put(eventListener.getName(),
+                new RegisteredListener(eventListener, events.toArray(new Event[events.size()]),
+                    this.statistics.getListenerStatistics(eventListener.getName())));
 
+            this.dispatchTable = null;
+        }
+
+        if (previousListener != null) {
             this.logger.warn(
                 "The [{}] listener is overwritting a previously "
                     + "registered listener [{}] since they both are registered under the same id [{}]. "
                     + "In the future consider removing a Listener first if you really want to register it again.",
-                new Object[] { eventListener.getClass().getName(), previousListener.getClass().getName(),
-                        eventListener.getName() });
-        }
-
-        // Register the listener by name. If already registered, override it.
-        listeners.put(eventListener.getName(), eventListener);
-
-        // For each event defined for this listener, add it to the Event Map.
-        for (Event event : eventListener.getEvents()) {
-            // Check if this is a new Event type not already registered
-            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(event.getClass());
-            if (eventListeners == null) {
-                // No listener registered for this event yet. Create a map to store listeners for this event.
-                eventListeners = new ConcurrentHashMap<String, RegisteredListener>();
-                this.listenersByEvent.put(event.getClass(), eventListeners);
-                // There is no RegisteredListener yet, create one
-                eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-            } else {
-                // Add an event to existing RegisteredListener object
-                RegisteredListener registeredListener = eventListeners.get(eventListener.getName());
-                if (registeredListener == null) {
-                    eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-                } else {
-                    registeredListener.addEvent(event);
-                }
-            }
+                new Object[] { eventListener.getClass().getName(),
+                    previousListener.getListener().getClass().getName(), eventListener.getName() });
         }
     }
 
     @Override
     public void removeListener(String listenerName)
     {
-        getListenersByName().remove(listenerName);
-        for (Map.Entry<Class<? extends Event>, Map<String, RegisteredListener>> entry : this.listenersByEvent
-            .entrySet()) {
-            entry.getValue().remove(listenerName);
-            if (entry.getValue().isEmpty()) {
-                this.listenersByEvent.remove(entry.getKey());
+        Map<String, RegisteredListener> listeners = getListenersByName();
+
+        synchronized (this.listenersLock) {
+            if (listeners.remove(listenerName) != null) {
+                this.statistics.removeListenerStatistics(listenerName);
+
+                this.dispatchTable = null;
             }
         }
     }
@@ -231,48 +238,57 @@ public void removeListener(String listenerName)
     @Override
     public void addEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = getListenersByEvent().get(event.getClass());
-        if (listeners == null) {
-            listeners = new ConcurrentHashMap<>();
-            this.listenersByEvent.put(event.getClass(), listeners);
-        }
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.addEvent(event);
-        } else {
-            listeners.put(listenerName, new RegisteredListener(this.getListener(listenerName), event));
+        Map<String, RegisteredListener> listeners = getListenersByName();
+
+        synchronized (this.listenersLock) {
+            RegisteredListener listener = listeners.get(listenerName);
+            if (listener != null) {
+                listeners.put(listenerName, listener.addEvent(event));
+
+                this.dispatchTable = null;
+            }
         }
     }
 
     @Override
     public void removeEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = getListenersByEvent().get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.removeEvent(event);
+        Map<String, RegisteredListener> listeners = getListenersByName();
+
+        synchronized (this.listenersLock) {
+            RegisteredListener listener = listeners.get(listenerName);
+            if (listener != null) {
+                RegisteredListener newListener = listener.removeEvent(event);
+                if (newListener != listener) {
+                    listeners.put(listenerName, newListener);
+
+                    this.dispatchTable = null;
+                }
+            }
         }
     }
 
     @Override
     public EventListener getListener(String listenerName)
     {
-        return getListenersByName().get(listenerName);
+        RegisteredListener listener = getListenersByName().get(listenerName);
+
+        if (listener == null) {
+            return null;
+        }
+
+        return listener.getListener();
     }
 
     @Override
     public void notify(Event event, Object source, Object data)
     {
-        // Find all listeners for this event
-        Map<String, RegisteredListener> regListeners = getListenersByEvent().get(event.getClass());
-        if (regListeners != null) {
-            notify(regListeners.values(), event, source, data);
-        }
-
-        // Find listener listening all events
-        Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent.get(AllEvent.class);
-        if (allEventRegListeners != null) {
-            notify(allEventRegListeners.values(), event, source, data);
+        if (this.statistics.isEnabled()) {
+            long start = System.nanoTime();
+            boolean failed = notifyListeners(event, source, data, true);
+            this.statistics.getEventStatistics(event.getClass()).record(System.nanoTime() - start, failed);
+        } else {
+            notifyListeners(event, source, data, false);
         }
 
         // We want this Observation Manager to be able to handle new Event Listener components being added or removed
@@ -286,33 +302,103 @@ public void notify(Event event, Object source, Object data)
     }
 
     /**
-     * Call the provided listeners matching the passed Event. The definition of <em>source</em> and <em>data</em> is
-     * purely up to the communicating classes.
-     *
-     * @param listeners the listeners to notify
-     * @param event the event to pass to the registered listeners
-     * @param source the source of the event (or <code>null</code>)
-     * @param data the additional data related to the event (or <code>null</code>)
+     * @return true if at least one of the listeners failed
      */
-    private void notify(Collection<RegisteredListener> listeners, Event event, Object source, Object data)
+    private boolean notifyListeners(Event event, Object source, Object data, boolean measure)
     {
-        for (RegisteredListener listener : listeners) {
-            // Verify that one of the events matches and send the first matching event
-            for (Event listenerEvent : listener.events) {
-                if (listenerEvent.matches(event)) {
-                    try {
-                        listener.listener.onEvent(event, source, data);
-                    } catch (Exception e) {
-                        // protect from bad listeners
-                        this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] { event,
-                            listener.listener, e });
-                    }
-
-                    // Only send the first matching event since the listener should only be called once per event.
-                    break;
+        boolean failed = false;
+
+        // Find all listeners for this event (including the ones listening to all events)
+        for (Dispatch dispatch : getDispatchTable().getDispatches(event.getClass())) {
+            // Only send the event once even if several of the listener events match it
+            if (dispatch.matches(event)) {
+                if (measure) {
+                    failed |= notifyAndMeasure(dispatch, event, source, data);
+                } else {
+                    notify(dispatch, event, source, data);
                 }
             }
         }
+
+        return failed;
+    }
+
+    /**
+     * @return true if the listener failed
+     */
+    private boolean notifyAndMeasure(Dispatch dispatch, Event event, Object source, Object data)
+    {
+        long start = System.nanoTime();
+        boolean failed = !notify(dispatch, event, source, data);
+        long duration = System.nanoTime() - start;
+
+        dispatch.getStatistics().record(duration, failed);
+
+        if (this.statistics.isSlow(duration)) {
+            this.logger.warn("The listener [{}] took [{}] ms to handle the event [{}]",
+                dispatch.getListener().getName(), TimeUnit.NANOSECONDS.toMillis(duration), event);
+        }
+
+        return failed;
+    }
+
+    /**
+     * @return false if the listener failed
+     */
+    private boolean notify(Dispatch dispatch, Event event, Object source, Object data)
+    {
+        // Cancelable events are always sent synchronously since the sender expects to know if it was canceled
+        if (dispatch.isAsynchronous() && !(event instanceof CancelableEvent)) {
+            AsynchronousEventDispatcher dispatcher = getAsynchronousDispatcher();
+
+            if (dispatcher != null) {
+                dispatcher.dispatch(dispatch.getListener(), event, source, data);
+
+                return true;
+            }
+        }
+
+        try {
+            dispatch.getListener().onEvent(event, source, data);
+
+            return true;
+        } catch (Exception e) {
+            // protect from bad listeners
+            this.logger.error("Failed to send event [{}] to listener [{}]",
+                new Object[] { event, dispatch.getListener(), e });
+
+            return false;
+        }
+    }
+
+    /**
+     * @return the time spent in the listeners
+     */
+    ObservationStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * @return the component in charge of calling the asynchronous listeners or null if it's not available (in which
+     *         case the asynchronous listeners are called synchronously)
+     */
+    private AsynchronousEventDispatcher getAsynchronousDispatcher()
+    {
+        // Can be null in unit tests
+        if (this.asynchronousDispatcher == null && !this.asynchronousDispatcherUnavailable
+            && this.componentManager != null) {
+            try {
+                this.asynchronousDispatcher = this.componentManager.getInstance(AsynchronousEventDispatcher.class);
+            } catch (ComponentLookupException e) {
+                this.asynchronousDispatcherUnavailable = true;
+
+                this.logger.warn("Failed to lookup the asynchronous event dispatcher, sending the events synchronously:"
+                    + " {}", ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return this.asynchronousDispatcher;
     }
 
     @Override
@@ -321,6 +407,42 @@ public void notify(Event event, Object source)
         notify(event, source, null);
     }
 
+    @Override
+    public boolean hasListener(Event event, Collection<String> ignoredListeners)
+    {
+        for (Dispatch dispatch : getDispatchTable().getDispatches(event.getClass())) {
+            EventListener listener = dispatch.getListener();
+
+            // Skip the listeners which are only interested in the events of another thread
+            if (listener instanceof AbstractThreadEventListener
+                && ((AbstractThreadEventListener) listener).getThread() != Thread.currentThread()) {
+                continue;
+            }
+
+            if (dispatch.matches(event) && !ignoredListeners.contains(listener.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean hasThreadListener(Event event)
+    {
+        for (Dispatch dispatch : getDispatchTable().getDispatches(event.getClass())) {
+            EventListener listener = dispatch.getListener();
+
+            if (listener instanceof AbstractThreadEventListener
+                && ((AbstractThreadEventListener) listener).getThread() == Thread.currentThread()
+                && dispatch.matches(event)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * A Component has been modified (added or removed) and we update our cache of Event Listeners if that Component is
      * an Event Listener.
@@ -382,9 +504,9 @@ private void onEventListenerComponentRemoved(ComponentDescriptorRemovedEvent eve
         ComponentManager componentManager, ComponentDescriptor<?> descriptor)
     {
         EventListener removedEventListener = null;
-        for (EventListener eventListener : getListenersByName().values()) {
-            if (eventListener.getClass() == descriptor.getImplementation()) {
-                removedEventListener = eventListener;
+        for (RegisteredListener registeredListener : getListenersByName().values()) {
+            if (registeredListener.getListener().getClass() == descriptor.getImplementation()) {
+                removedEventListener = registeredListener.getListener();
             }
         }
 
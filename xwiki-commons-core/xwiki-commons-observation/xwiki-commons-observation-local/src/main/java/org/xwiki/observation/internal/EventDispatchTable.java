@@ -0,0 +1,179 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.observation.AsynchronousEventListener;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Immutable snapshot of the registered listeners, compiled lazily into one array of {@link Dispatch} per concrete
+ * event class.
+ * <p>
+ * A listener registered for an event of class {@code A} is part of the dispatch array of every event class assignable
+ * to {@code A}, the final decision being taken by {@link Event#matches(Object)}. Listeners registered for
+ * {@link AllEvent} are part of every dispatch array, after the other listeners. A new table is created each time a
+ * listener or a listener event is added or removed, so the arrays never need to be invalidated.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+final class EventDispatchTable
+{
+    private static final Dispatch[] EMPTY = new Dispatch[0];
+
+    private final RegisteredListener[] listeners;
+
+    /**
+     * The compiled dispatch arrays. Computing the same entry twice concurrently is harmless since the result is the
+     * same.
+     */
+    private final Map<Class<? extends Event>, Dispatch[]> dispatches = new ConcurrentHashMap<>();
+
+    /**
+     * A listener and the subset of its events which can match a given event class.
+     *
+     * @version $Id$
+     */
+    static final class Dispatch
+    {
+        private final EventListener listener;
+
+        private final Event[] events;
+
+        private final boolean asynchronous;
+
+        private final InvocationStatistics statistics;
+
+        Dispatch(RegisteredListener registeredListener, Event[] events)
+        {
+            this.listener = registeredListener.getListener();
+            this.events = events;
+            this.asynchronous = this.listener instanceof AsynchronousEventListener;
+            this.statistics = registeredListener.getStatistics();
+        }
+
+        /**
+         * @return the listener to notify
+         */
+        EventListener getListener()
+        {
+            return this.listener;
+        }
+
+        /**
+         * @return true if the listener accepts to receive the events in a background thread
+         */
+        boolean isAsynchronous()
+        {
+            return this.asynchronous;
+        }
+
+        /**
+         * @return the statistics of the listener calls
+         */
+        InvocationStatistics getStatistics()
+        {
+            return this.statistics;
+        }
+
+        /**
+         * @param event the event being notified
+         * @return true if one of the listener events matches the passed event
+         */
+        boolean matches(Event event)
+        {
+            for (Event listenerEvent : this.events) {
+                if (listenerEvent.matches(event)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * @param listeners the registered listeners
+     */
+    EventDispatchTable(Collection<RegisteredListener> listeners)
+    {
+        this.listeners = listeners.toArray(new RegisteredListener[listeners.size()]);
+    }
+
+    /**
+     * @param eventClass the class of the notified event
+     * @return the listeners to test against the event, the returned array must not be modified
+     */
+    Dispatch[] getDispatches(Class<? extends Event> eventClass)
+    {
+        Dispatch[] result = this.dispatches.get(eventClass);
+
+        if (result == null) {
+            result = compile(eventClass);
+            this.dispatches.put(eventClass, result);
+        }
+
+        return result;
+    }
+
+    private Dispatch[] compile(Class<? extends Event> eventClass)
+    {
+        List<Dispatch> specific = new ArrayList<>();
+        List<Dispatch> all = new ArrayList<>();
+
+        for (RegisteredListener registeredListener : this.listeners) {
+            List<Event> specificEvents = new ArrayList<>();
+            List<Event> allEvents = new ArrayList<>();
+
+            for (Event event : registeredListener.getEvents()) {
+                if (event.getClass() == AllEvent.class) {
+                    allEvents.add(event);
+                } else if (event.getClass().isAssignableFrom(eventClass)) {
+                    specificEvents.add(event);
+                }
+            }
+
+            if (!specificEvents.isEmpty()) {
+                // Keep AllEvent at the end so that the first matching specific event is still tried first
+                specificEvents.addAll(allEvents);
+                specific.add(new Dispatch(registeredListener,
+                    specificEvents.toArray(new Event[specificEvents.size()])));
+            } else if (!allEvents.isEmpty()) {
+                all.add(new Dispatch(registeredListener, allEvents.toArray(new Event[allEvents.size()])));
+            }
+        }
+
+        if (specific.isEmpty() && all.isEmpty()) {
+            return EMPTY;
+        }
+
+        specific.addAll(all);
+
+        return specific.toArray(new Dispatch[specific.size()]);
+    }
+}
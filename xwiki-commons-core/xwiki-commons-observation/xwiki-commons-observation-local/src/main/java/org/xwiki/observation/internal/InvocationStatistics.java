@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count invocations, failures and durations with a low contention cost so that it can be updated by many threads at
+ * the same time.
+ * <p>
+ * Durations are stored in an histogram of power of two buckets (the bucket {@code i} contains the durations between
+ * {@code 2^(i-1)} and {@code 2^i} nanoseconds) which is enough to get an idea of the percentiles without keeping all
+ * the values.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class InvocationStatistics
+{
+    /**
+     * The last bucket contains all the durations greater than 2^31 nanoseconds (around 2 seconds).
+     */
+    private static final int BUCKETS = 33;
+
+    private final LongAdder invocations = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder totalTime = new LongAdder();
+
+    private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    /**
+     * Default constructor.
+     */
+    public InvocationStatistics()
+    {
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanoseconds the duration of the invocation
+     * @param failed true if the invocation failed
+     */
+    public void record(long nanoseconds, boolean failed)
+    {
+        this.invocations.increment();
+        if (failed) {
+            this.failures.increment();
+        }
+
+        this.totalTime.add(nanoseconds);
+        this.maxTime.accumulate(nanoseconds);
+        this.histogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanoseconds))].increment();
+    }
+
+    /**
+     * @return the number of invocations
+     */
+    public long getInvocations()
+    {
+        return this.invocations.sum();
+    }
+
+    /**
+     * @return the number of failed invocations
+     */
+    public long getFailures()
+    {
+        return this.failures.sum();
+    }
+
+    /**
+     * @return the cumulated duration of all the invocations in nanoseconds
+     */
+    public long getTotalTime()
+    {
+        return this.totalTime.sum();
+    }
+
+    /**
+     * @return the longest invocation duration in nanoseconds
+     */
+    public long getMaxTime()
+    {
+        return this.maxTime.get();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 1
+     * @return the upper bound (in nanoseconds) of the duration of the passed percentile of the invocations
+     */
+    public long getPercentile(double percentile)
+    {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = this.histogram[i].sum();
+            total += counts[i];
+        }
+
+        long threshold = (long) Math.ceil(total * percentile);
+        long current = 0;
+        for (int i = 0; i < BUCKETS - 1; ++i) {
+            current += counts[i];
+            if (current >= threshold && current > 0) {
+                return Math.min(1L << i, getMaxTime());
+            }
+        }
+
+        return getMaxTime();
+    }
+
+    /**
+     * Reset all the counters.
+     */
+    public void reset()
+    {
+        this.invocations.reset();
+        this.failures.reset();
+        this.totalTime.reset();
+        this.maxTime.reset();
+        for (LongAdder bucket : this.histogram) {
+            bucket.reset();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * The time spent in the listeners, per listener and per event class.
+ * <p>
+ * Disabled by default. The statistics of a listener are forgotten when it's removed and the event classes are only
+ * referenced by name so that the statistics never prevent a class loader from being garbage collected.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class ObservationStatistics
+{
+    private final Map<String, InvocationStatistics> listeners = new ConcurrentHashMap<>();
+
+    private final Map<String, InvocationStatistics> events = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+
+    private volatile long slowListenerThreshold;
+
+    /**
+     * @return true if the time spent in the listeners should be measured
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * @param enabled true if the time spent in the listeners should be measured
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the duration in nanoseconds above which a listener call is logged, 0 or less to never log
+     */
+    public long getSlowListenerThreshold()
+    {
+        return this.slowListenerThreshold;
+    }
+
+    /**
+     * @param slowListenerThreshold the duration in nanoseconds above which a listener call is logged, 0 or less to
+     *            never log
+     */
+    public void setSlowListenerThreshold(long slowListenerThreshold)
+    {
+        this.slowListenerThreshold = slowListenerThreshold;
+    }
+
+    /**
+     * @param nanoseconds the duration of a listener call
+     * @return true if the duration is above the configured threshold
+     */
+    public boolean isSlow(long nanoseconds)
+    {
+        long threshold = this.slowListenerThreshold;
+
+        return threshold > 0 && nanoseconds > threshold;
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @return the statistics of the listener
+     */
+    public InvocationStatistics getListenerStatistics(String listenerName)
+    {
+        return this.listeners.computeIfAbsent(listenerName, key -> new InvocationStatistics());
+    }
+
+    /**
+     * Forget the statistics of a listener.
+     *
+     * @param listenerName the name of the listener
+     */
+    public void removeListenerStatistics(String listenerName)
+    {
+        this.listeners.remove(listenerName);
+    }
+
+    /**
+     * @param eventClass the class of the notified event
+     * @return the statistics of all the notifications of events of the passed class
+     */
+    public InvocationStatistics getEventStatistics(Class<? extends Event> eventClass)
+    {
+        String eventClassName = eventClass.getName();
+
+        InvocationStatistics statistics = this.events.get(eventClassName);
+
+        if (statistics == null) {
+            statistics = this.events.computeIfAbsent(eventClassName, key -> new InvocationStatistics());
+        }
+
+        return statistics;
+    }
+
+    /**
+     * @return the statistics of each listener indexed by listener name
+     */
+    public Map<String, InvocationStatistics> getListenersStatistics()
+    {
+        return Collections.unmodifiableMap(this.listeners);
+    }
+
+    /**
+     * @return the statistics of each notified event class indexed by class name
+     */
+    public Map<String, InvocationStatistics> getEventsStatistics()
+    {
+        return Collections.unmodifiableMap(this.events);
+    }
+
+    /**
+     * Reset all the counters.
+     */
+    public void reset()
+    {
+        this.listeners.values().forEach(InvocationStatistics::reset);
+        this.events.values().forEach(InvocationStatistics::reset);
+    }
+
+    /**
+     * @param nanoseconds a duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    public static double toMilliseconds(long nanoseconds)
+    {
+        return (double) nanoseconds / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Arrays;
+
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Immutable association between a listener and the events it's registered for. Adding or removing an event produces
+ * a new instance so that a {@link EventDispatchTable} built from it never changes behind the dispatching threads.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+final class RegisteredListener
+{
+    private final EventListener listener;
+
+    private final Event[] events;
+
+    private final InvocationStatistics statistics;
+
+    /**
+     * @param listener the listener associated with the events
+     * @param events the events associated with the listener
+     * @param statistics the statistics of the listener calls
+     */
+    RegisteredListener(EventListener listener, Event[] events, InvocationStatistics statistics)
+    {
+        this.listener = listener;
+        this.events = events;
+        this.statistics = statistics;
+    }
+
+    /**
+     * @return the listener associated with the events
+     */
+    EventListener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * @return the events associated with the listener, the returned array must not be modified
+     */
+    Event[] getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * @return the statistics of the listener calls
+     */
+    InvocationStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * @param event the event to add
+     * @return a new registration containing the current events plus the passed one
+     */
+    RegisteredListener addEvent(Event event)
+    {
+        Event[] newEvents = Arrays.copyOf(this.events, this.events.length + 1);
+        newEvents[this.events.length] = event;
+
+        return new RegisteredListener(this.listener, newEvents, this.statistics);
+    }
+
+    /**
+     * @param event the event to remove
+     * @return a new registration without the first occurrence of the passed event, or this instance if the event is
+     *         not registered
+     */
+    RegisteredListener removeEvent(Event event)
+    {
+        for (int i = 0; i < this.events.length; ++i) {
+            if (this.events[i].equals(event)) {
+                Event[] newEvents = new Event[this.events.length - 1];
+                System.arraycopy(this.events, 0, newEvents, 0, i);
+                System.arraycopy(this.events, i + 1, newEvents, i, newEvents.length - i);
+
+                return new RegisteredListener(this.listener, newEvents, this.statistics);
+            }
+        }
+
+        return this;
+    }
+}
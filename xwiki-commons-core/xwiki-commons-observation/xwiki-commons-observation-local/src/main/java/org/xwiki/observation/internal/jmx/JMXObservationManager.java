@@ -0,0 +1,148 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.observation.internal.InvocationStatistics;
+import org.xwiki.observation.internal.ObservationStatistics;
+
+/**
+ * Expose the {@link ObservationStatistics} of the Observation Manager.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class JMXObservationManager implements JMXObservationManagerMBean
+{
+    private static final String[] COLUMN_NAMES = new String[] { "name", "invocations", "failures", "totalTime",
+        "averageTime", "50thPercentile", "95thPercentile", "99thPercentile", "maxTime" };
+
+    private static final String[] COLUMN_DESCRIPTIONS = new String[] { "The name", "The number of invocations",
+        "The number of failed invocations", "The total time spent in milliseconds",
+        "The average time spent in milliseconds", "The median time spent in milliseconds (approximation)",
+        "The 95th percentile of the time spent in milliseconds (approximation)",
+        "The 99th percentile of the time spent in milliseconds (approximation)",
+        "The longest time spent in milliseconds" };
+
+    private static final OpenType<?>[] COLUMN_TYPES = new OpenType<?>[] { SimpleType.STRING, SimpleType.LONG,
+        SimpleType.LONG, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE,
+        SimpleType.DOUBLE };
+
+    /**
+     * The statistics to expose.
+     */
+    private final ObservationStatistics statistics;
+
+    /**
+     * @param statistics the statistics to expose
+     */
+    public JMXObservationManager(ObservationStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public TabularData getListeners()
+    {
+        return toTabularData("listeners", "Time spent in each listener", this.statistics.getListenersStatistics());
+    }
+
+    @Override
+    public TabularData getEvents()
+    {
+        return toTabularData("events", "Time spent in the listeners for each event class",
+            this.statistics.getEventsStatistics());
+    }
+
+    private TabularData toTabularData(String name, String description, Map<String, InvocationStatistics> entries)
+    {
+        try {
+            CompositeType rowType = new CompositeType(name + "Row", description, COLUMN_NAMES, COLUMN_DESCRIPTIONS,
+                COLUMN_TYPES);
+            TabularType type = new TabularType(name, description, rowType, new String[] { COLUMN_NAMES[0] });
+            TabularData data = new TabularDataSupport(type);
+
+            for (Map.Entry<String, InvocationStatistics> entry : entries.entrySet()) {
+                data.put(new CompositeDataSupport(rowType, COLUMN_NAMES, toRow(entry.getKey(), entry.getValue())));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather the observation statistics", e);
+        }
+    }
+
+    private Object[] toRow(String name, InvocationStatistics entry)
+    {
+        long invocations = entry.getInvocations();
+        long totalTime = entry.getTotalTime();
+        double averageTime = 0;
+        if (invocations > 0) {
+            averageTime = ObservationStatistics.toMilliseconds(totalTime / invocations);
+        }
+
+        return new Object[] { name, invocations, entry.getFailures(), ObservationStatistics.toMilliseconds(totalTime),
+            averageTime, ObservationStatistics.toMilliseconds(entry.getPercentile(0.5)),
+            ObservationStatistics.toMilliseconds(entry.getPercentile(0.95)),
+            ObservationStatistics.toMilliseconds(entry.getPercentile(0.99)),
+            ObservationStatistics.toMilliseconds(entry.getMaxTime()) };
+    }
+
+    @Override
+    public boolean isStatisticsEnabled()
+    {
+        return this.statistics.isEnabled();
+    }
+
+    @Override
+    public void setStatisticsEnabled(boolean enabled)
+    {
+        this.statistics.setEnabled(enabled);
+    }
+
+    @Override
+    public long getSlowListenerThreshold()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, this.statistics.getSlowListenerThreshold()));
+    }
+
+    @Override
+    public void setSlowListenerThreshold(long milliseconds)
+    {
+        this.statistics.setSlowListenerThreshold(TimeUnit.MILLISECONDS.toNanos(milliseconds));
+    }
+
+    @Override
+    public void resetStatistics()
+    {
+        this.statistics.reset();
+    }
+}
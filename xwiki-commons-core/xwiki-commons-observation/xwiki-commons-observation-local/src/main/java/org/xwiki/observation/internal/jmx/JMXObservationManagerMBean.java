@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * MBean API related to the Observation Manager. Supports the following features:
+ * <ul>
+ * <li>Retrieve the number of calls, failures and the time spent in each listener</li>
+ * <li>Retrieve the number of notifications, failures and the time spent in the listeners for each event class</li>
+ * <li>Change the duration above which a listener call is logged</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public interface JMXObservationManagerMBean
+{
+    /**
+     * @return the statistics of each listener
+     */
+    TabularData getListeners();
+
+    /**
+     * @return the statistics of each notified event class
+     */
+    TabularData getEvents();
+
+    /**
+     * @return true if the time spent in the listeners is measured
+     */
+    boolean isStatisticsEnabled();
+
+    /**
+     * @param enabled true if the time spent in the listeners should be measured
+     */
+    void setStatisticsEnabled(boolean enabled);
+
+    /**
+     * @return the duration in milliseconds above which a listener call is logged, 0 when disabled
+     */
+    long getSlowListenerThreshold();
+
+    /**
+     * @param milliseconds the duration in milliseconds above which a listener call is logged, 0 to disable
+     */
+    void setSlowListenerThreshold(long milliseconds);
+
+    /**
+     * Reset all the statistics.
+     */
+    void resetStatistics();
+}
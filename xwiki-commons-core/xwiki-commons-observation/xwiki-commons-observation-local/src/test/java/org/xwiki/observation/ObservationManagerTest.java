@@ -22,23 +22,38 @@
 import java.util.Arrays;
 import java.util.Collections;
 
+import javax.management.openmbean.CompositeData;
+
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.management.JMXBeanRegistration;
 import org.xwiki.observation.event.ActionExecutionEvent;
 import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.ApplicationStartedEvent;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
+import org.xwiki.observation.event.CancelableEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.AsynchronousEventDispatcher;
 import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.internal.jmx.JMXObservationManagerMBean;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -234,4 +249,249 @@ public void testRegisterListenerForTwoEventsOfSameType() throws ComponentLookupE
         verify(listener).onEvent(eventMatcher1, "some source", "some data");
         verify(listener).onEvent(eventMatcher2, "some source", "some data");
     }
+
+    /** Verify that a listener registered for a parent event type receives the events of its sub types. */
+    @Test
+    public void testNotifyWithEventSubType() throws ComponentLookupException
+    {
+        final EventListener listener = mock(EventListener.class);
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.<Event>asList(new ApplicationStartedEvent()));
+
+        Event subEvent = new ApplicationStartedEvent()
+        {
+        };
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        this.mocker.getComponentUnderTest().notify(subEvent, "some source", "some data");
+        this.mocker.getComponentUnderTest().notify(new ApplicationStoppedEvent(), "some source", "some data");
+        verify(listener).onEvent(subEvent, "some source", "some data");
+        verify(listener, never()).onEvent(any(ApplicationStoppedEvent.class), any(), any());
+    }
+
+    /** Verify that a listener is only called once even if several of its events match. */
+    @Test
+    public void testNotifyWhenSeveralEventsMatch() throws ComponentLookupException
+    {
+        final EventListener listener = mock(EventListener.class);
+        final Event event = new ApplicationStartedEvent();
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(AllEvent.ALLEVENT, new ApplicationStartedEvent()));
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        this.mocker.getComponentUnderTest().notify(event, "some source", "some data");
+        verify(listener).onEvent(event, "some source", "some data");
+    }
+
+    /** Verify that the listeners registered after a first notification are taken into account. */
+    @Test
+    public void testNotifyAfterListenersModification() throws ComponentLookupException
+    {
+        final EventListener listener1 = mock(EventListener.class, "listener1");
+        final EventListener listener2 = mock(EventListener.class, "listener2");
+        final Event event = new ApplicationStartedEvent();
+
+        when(listener1.getName()).thenReturn("listener 1");
+        when(listener2.getName()).thenReturn("listener 2");
+        when(listener1.getEvents()).thenReturn(Arrays.<Event>asList(new ApplicationStartedEvent()));
+        when(listener2.getEvents()).thenReturn(Collections.<Event>emptyList());
+
+        this.mocker.getComponentUnderTest().addListener(listener1);
+        this.mocker.getComponentUnderTest().notify(event, null);
+        this.mocker.getComponentUnderTest().addListener(listener2);
+        this.mocker.getComponentUnderTest().addEvent("listener 2", new ApplicationStartedEvent());
+        this.mocker.getComponentUnderTest().removeListener("listener 1");
+        this.mocker.getComponentUnderTest().notify(event, null);
+
+        verify(listener1).onEvent(event, null, null);
+        verify(listener2).onEvent(event, null, null);
+    }
+
+    /** Verify that asynchronous listeners are given to the dispatcher except for cancelable events. */
+    @Test
+    public void testNotifyAsynchronousListener() throws Exception
+    {
+        AsynchronousEventDispatcher dispatcher = this.mocker.registerMockComponent(AsynchronousEventDispatcher.class);
+
+        final EventListener listener = mock(AsynchronousEventListener.class);
+        final Event event = mock(Event.class);
+        final CancelableEvent cancelableEvent = mock(CancelableEvent.class);
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(AllEvent.ALLEVENT));
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        this.mocker.getComponentUnderTest().notify(event, "some source", "some data");
+        this.mocker.getComponentUnderTest().notify(cancelableEvent, "some source", "some data");
+
+        verify(dispatcher).dispatch(listener, event, "some source", "some data");
+        verify(listener, never()).onEvent(event, "some source", "some data");
+        verify(listener).onEvent(cancelableEvent, "some source", "some data");
+    }
+
+    /** Verify that a missing dispatcher is looked up only once. */
+    @Test
+    public void testNotifyAsynchronousListenerWithoutDispatcher() throws Exception
+    {
+        final EventListener listener = mock(AsynchronousEventListener.class);
+        final Event event = mock(Event.class);
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(AllEvent.ALLEVENT));
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        this.mocker.getComponentUnderTest().notify(event, "some source", "some data");
+        this.mocker.getComponentUnderTest().notify(event, "some source", "some data");
+
+        verify(listener, times(2)).onEvent(event, "some source", "some data");
+        verify(this.mocker.getMockedLogger()).warn(anyString(), anyString());
+    }
+
+    /** Verify that the time spent in the listeners is measured and exposed through JMX. */
+    @Test
+    public void testStatistics() throws Exception
+    {
+        ConfigurationSource configuration = this.mocker.registerMockComponent(ConfigurationSource.class);
+        when(configuration.getProperty("observation.statistics.enabled", false)).thenReturn(true);
+        when(configuration.getProperty("observation.statistics.slowListenerThreshold", 0L)).thenReturn(1L);
+        JMXBeanRegistration jmxRegistration = this.mocker.registerMockComponent(JMXBeanRegistration.class);
+
+        final EventListener slowListener = mock(EventListener.class, "slow");
+        final EventListener failingListener = mock(EventListener.class, "failing");
+        final Event event = new ApplicationStartedEvent();
+
+        when(slowListener.getName()).thenReturn("slowlistener");
+        when(slowListener.getEvents()).thenReturn(Arrays.asList(event));
+        doAnswer(invocation -> {
+            Thread.sleep(10);
+            return null;
+        }).when(slowListener).onEvent(any(), any(), any());
+        when(failingListener.getName()).thenReturn("failinglistener");
+        when(failingListener.getEvents()).thenReturn(Arrays.asList(event));
+        doThrow(new RuntimeException()).when(failingListener).onEvent(any(), any(), any());
+
+        this.mocker.getComponentUnderTest().addListener(slowListener);
+        this.mocker.getComponentUnderTest().addListener(failingListener);
+        this.mocker.getComponentUnderTest().notify(event, null);
+        this.mocker.getComponentUnderTest().notify(event, null);
+
+        ArgumentCaptor<Object> mbeanCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(jmxRegistration).registerMBean(mbeanCaptor.capture(), eq("type=Observation"));
+        JMXObservationManagerMBean mbean = (JMXObservationManagerMBean) mbeanCaptor.getValue();
+
+        CompositeData slowRow = mbean.getListeners().get(new Object[] { "slowlistener" });
+        Assert.assertEquals(2L, slowRow.get("invocations"));
+        Assert.assertEquals(0L, slowRow.get("failures"));
+        Assert.assertTrue((Double) slowRow.get("maxTime") >= 10);
+
+        CompositeData failingRow = mbean.getListeners().get(new Object[] { "failinglistener" });
+        Assert.assertEquals(2L, failingRow.get("invocations"));
+        Assert.assertEquals(2L, failingRow.get("failures"));
+
+        CompositeData eventRow = mbean.getEvents().get(new Object[] { ApplicationStartedEvent.class.getName() });
+        Assert.assertEquals(2L, eventRow.get("invocations"));
+        Assert.assertEquals(2L, eventRow.get("failures"));
+        Assert.assertTrue((Double) eventRow.get("totalTime") >= 20);
+
+        verify(this.mocker.getMockedLogger(), times(2)).warn(
+            eq("The listener [{}] took [{}] ms to handle the event [{}]"), eq("slowlistener"), any(), same(event));
+
+        mbean.resetStatistics();
+        Assert.assertEquals(0L, mbean.getListeners().get(new Object[] { "slowlistener" }).get("invocations"));
+    }
+
+    /** Verify that the statistics are disabled by default and forgotten when the listener is removed. */
+    @Test
+    public void testStatisticsOptIn() throws Exception
+    {
+        JMXBeanRegistration jmxRegistration = this.mocker.registerMockComponent(JMXBeanRegistration.class);
+
+        final EventListener listener = mock(EventListener.class);
+        final Event event = new ApplicationStartedEvent();
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        this.mocker.getComponentUnderTest().notify(event, null);
+
+        ArgumentCaptor<Object> mbeanCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(jmxRegistration).registerMBean(mbeanCaptor.capture(), eq("type=Observation"));
+        JMXObservationManagerMBean mbean = (JMXObservationManagerMBean) mbeanCaptor.getValue();
+
+        Assert.assertFalse(mbean.isStatisticsEnabled());
+        Assert.assertEquals(0L, mbean.getListeners().get(new Object[] { "mylistener" }).get("invocations"));
+        Assert.assertTrue(mbean.getEvents().isEmpty());
+
+        mbean.setStatisticsEnabled(true);
+        this.mocker.getComponentUnderTest().notify(event, null);
+
+        Assert.assertEquals(1L, mbean.getListeners().get(new Object[] { "mylistener" }).get("invocations"));
+
+        this.mocker.getComponentUnderTest().removeListener("mylistener");
+
+        Assert.assertTrue(mbean.getListeners().isEmpty());
+    }
+
+    @Test
+    public void testHasListener() throws Exception
+    {
+        final EventListener listener = mock(EventListener.class);
+        final Event event = new ApplicationStartedEvent();
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+
+        ObservationManager manager = this.mocker.getComponentUnderTest();
+
+        Assert.assertFalse(manager.hasListener(event, Collections.emptySet()));
+
+        // Listener bound to another thread
+        Thread thread = new Thread(() -> manager.addListener(new WrappedThreadEventListener(listener)));
+        thread.start();
+        thread.join();
+
+        Assert.assertFalse(manager.hasListener(event, Collections.emptySet()));
+
+        manager.removeListener("mylistener");
+        manager.addListener(new WrappedThreadEventListener(listener));
+
+        Assert.assertTrue(manager.hasListener(event, Collections.emptySet()));
+        Assert.assertFalse(manager.hasListener(new ApplicationStoppedEvent(), Collections.emptySet()));
+        Assert.assertFalse(manager.hasListener(event, Collections.singleton("mylistener")));
+    }
+
+    @Test
+    public void testHasThreadListener() throws Exception
+    {
+        final EventListener listener = mock(EventListener.class);
+        final Event event = new ApplicationStartedEvent();
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+
+        ObservationManager manager = this.mocker.getComponentUnderTest();
+
+        // Listener not bound to any thread
+        manager.addListener(listener);
+
+        Assert.assertFalse(manager.hasThreadListener(event));
+
+        // Listener bound to another thread
+        manager.removeListener("mylistener");
+        Thread thread = new Thread(() -> manager.addListener(new WrappedThreadEventListener(listener)));
+        thread.start();
+        thread.join();
+
+        Assert.assertFalse(manager.hasThreadListener(event));
+
+        // Listener bound to the current thread
+        manager.removeListener("mylistener");
+        manager.addListener(new WrappedThreadEventListener(listener));
+
+        Assert.assertTrue(manager.hasThreadListener(event));
+        Assert.assertFalse(manager.hasThreadListener(new ApplicationStoppedEvent()));
+    }
 }
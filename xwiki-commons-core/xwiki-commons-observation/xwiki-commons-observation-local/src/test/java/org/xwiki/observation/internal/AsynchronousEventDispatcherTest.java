@@ -0,0 +1,216 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.AsynchronousEventListener;
+import org.xwiki.observation.event.ApplicationStartedEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link AsynchronousEventDispatcher}.
+ *
+ * @version $Id$
+ */
+public class AsynchronousEventDispatcherTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<AsynchronousEventDispatcher> mocker =
+        new MockitoComponentMockingRule<>(AsynchronousEventDispatcher.class);
+
+    private static class RecordingListener extends AbstractEventListener implements AsynchronousEventListener
+    {
+        private final List<Object> sources = new ArrayList<>();
+
+        private final CountDownLatch latch;
+
+        private Thread thread;
+
+        RecordingListener(int expected)
+        {
+            super("recording", new ApplicationStartedEvent());
+
+            this.latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.thread = Thread.currentThread();
+            this.sources.add(source);
+
+            if (source instanceof RuntimeException) {
+                throw (RuntimeException) source;
+            }
+
+            this.latch.countDown();
+        }
+    }
+
+    @Before
+    public void before() throws Exception
+    {
+        this.mocker.registerMockComponent(ExecutionContextManager.class);
+        this.mocker.registerMockComponent(Execution.class);
+
+        ConfigurationSource configuration = this.mocker.getInstance(ConfigurationSource.class);
+        when(configuration.getProperty(anyString(), any(Object.class)))
+            .then(invocation -> invocation.getArgument(1));
+        when(configuration.getProperty("observation.asynchronous.queueSize", 10000)).thenReturn(10);
+    }
+
+    @Test
+    public void dispatchInOrder() throws Exception
+    {
+        RecordingListener listener = new RecordingListener(100);
+
+        for (int i = 0; i < 100; ++i) {
+            this.mocker.getComponentUnderTest().dispatch(listener, new ApplicationStartedEvent(), i, null);
+        }
+
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+
+        assertNotSame(Thread.currentThread(), listener.thread);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i, listener.sources.get(i));
+        }
+
+        assertEquals(10, this.mocker.getComponentUnderTest().getCapacity());
+    }
+
+    @Test
+    public void dispatchWithFailingListener() throws Exception
+    {
+        RecordingListener listener = new RecordingListener(1);
+
+        RuntimeException exception = new RuntimeException();
+        this.mocker.getComponentUnderTest().dispatch(listener, new ApplicationStartedEvent(), exception, null);
+        this.mocker.getComponentUnderTest().dispatch(listener, new ApplicationStartedEvent(), "source", null);
+
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+
+        assertEquals(1, this.mocker.getComponentUnderTest().getFailedEvents());
+    }
+
+    @Test(timeout = 10000)
+    public void dispatchWithFailingExecutionContext() throws Exception
+    {
+        ExecutionContextManager executionContextManager = this.mocker.getInstance(ExecutionContextManager.class);
+        doThrow(new ExecutionContextException("failed")).doNothing().when(executionContextManager)
+            .initialize(any(ExecutionContext.class));
+
+        // More events than the capacity, which would block if the failed event kept its room
+        RecordingListener listener = new RecordingListener(20);
+        for (int i = 0; i <= 20; ++i) {
+            this.mocker.getComponentUnderTest().dispatch(listener, new ApplicationStartedEvent(), i, null);
+        }
+
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+
+        while (this.mocker.getComponentUnderTest().getPendingEvents() > 0) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, this.mocker.getComponentUnderTest().getFailedEvents());
+        assertEquals(20, listener.sources.size());
+    }
+
+    @Test(timeout = 20000)
+    public void dispatchWhileDisposing() throws Exception
+    {
+        ConfigurationSource configuration = this.mocker.getInstance(ConfigurationSource.class);
+        when(configuration.getProperty("observation.asynchronous.queueSize", 10000)).thenReturn(1000);
+
+        AsynchronousEventDispatcher dispatcher = this.mocker.getComponentUnderTest();
+
+        CountDownLatch release = new CountDownLatch(1);
+        Set<Integer> stackDepths = ConcurrentHashMap.newKeySet();
+        RecordingListener listener = new RecordingListener(500)
+        {
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                stackDepths.add(Thread.currentThread().getStackTrace().length);
+
+                super.onEvent(event, source, data);
+            }
+        };
+
+        for (int i = 0; i < 500; ++i) {
+            dispatcher.dispatch(listener, new ApplicationStartedEvent(), i, null);
+        }
+
+        // The remaining events are sent after the executor refused them
+        Thread disposer = new Thread(() -> {
+            try {
+                dispatcher.dispose();
+            } catch (ComponentLifecycleException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        disposer.start();
+        while (disposer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        disposer.join();
+
+        assertEquals(500, dispatcher.getDeliveredEvents());
+        for (int i = 0; i < 500; ++i) {
+            assertEquals(i, listener.sources.get(i));
+        }
+
+        // The first batch and then all the others from the same place, without going deeper for each batch
+        assertTrue(stackDepths.size() <= 2);
+    }
+}
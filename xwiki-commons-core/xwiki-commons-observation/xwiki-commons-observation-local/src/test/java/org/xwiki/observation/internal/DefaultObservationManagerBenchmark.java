@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.ApplicationStartedEvent;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Measure the throughput of {@link DefaultObservationManager#notify(Event, Object, Object)} depending on the number of
+ * registered listeners.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultObservationManagerBenchmark
+{
+    private static class BenchmarkEventListener extends AbstractEventListener
+    {
+        private final Blackhole blackhole;
+
+        BenchmarkEventListener(String name, Blackhole blackhole, Event... events)
+        {
+            super(name, events);
+
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.blackhole.consume(event);
+        }
+    }
+
+    private static class UnlistenedEvent implements Event
+    {
+        @Override
+        public boolean matches(Object otherEvent)
+        {
+            return otherEvent instanceof UnlistenedEvent;
+        }
+    }
+
+    @Param({ "10", "100", "1000" })
+    private int listeners;
+
+    private DefaultObservationManager observationManager;
+
+    private final Event startedEvent = new ApplicationStartedEvent();
+
+    private final Event stoppedEvent = new ApplicationStoppedEvent();
+
+    private final Event unlistenedEvent = new UnlistenedEvent();
+
+    @Setup
+    public void setup(Blackhole blackhole)
+    {
+        this.observationManager = new DefaultObservationManager();
+        ReflectionUtils.setFieldValue(this.observationManager, "logger",
+            LoggerFactory.getLogger(DefaultObservationManager.class));
+
+        // 80% of the listeners listen to started events, 10% to stopped events and 10% to all events
+        for (int i = 0; i < this.listeners; ++i) {
+            Event event;
+            if (i % 10 == 0) {
+                event = AllEvent.ALLEVENT;
+            } else if (i % 10 == 1) {
+                event = new ApplicationStoppedEvent();
+            } else {
+                event = new ApplicationStartedEvent();
+            }
+
+            this.observationManager.addListener(new BenchmarkEventListener("listener" + i, blackhole, event));
+        }
+    }
+
+    @Benchmark
+    public void notifyMostListeners()
+    {
+        this.observationManager.notify(this.startedEvent, null, null);
+    }
+
+    @Benchmark
+    public void notifyFewListeners()
+    {
+        this.observationManager.notify(this.stoppedEvent, null, null);
+    }
+
+    @Benchmark
+    public void notifyAllEventListeners()
+    {
+        this.observationManager.notify(this.unlistenedEvent, null, null);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(DefaultObservationManagerBenchmark.class.getSimpleName()).build())
+            .run();
+    }
+}
@@ -27,6 +27,7 @@
 import java.lang.reflect.Modifier;
 import java.text.MessageFormat;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -63,6 +64,13 @@ public class DefaultBeanDescriptor implements BeanDescriptor
      */
     private Map<String, PropertyDescriptor> parameterDescriptorMap = new LinkedHashMap<String, PropertyDescriptor>();
 
+    /**
+     * The properties of the bean indexed by lower case identifier.
+     *
+     * @see #getPropertyIgnoreCase(String)
+     */
+    private volatile Map<String, PropertyDescriptor> lowerCaseParameterDescriptorMap;
+
     /**
      * @param beanClass the class of the JAVA bean.
      */
@@ -269,4 +277,29 @@ public PropertyDescriptor getProperty(String propertyName)
     {
         return this.parameterDescriptorMap.get(propertyName);
     }
+
+    /**
+     * @param propertyName the name of the property, whatever its case
+     * @return the property with the passed name, or with a name which only differs by its case, null if there is none
+     * @since 10.0RC1
+     */
+    public PropertyDescriptor getPropertyIgnoreCase(String propertyName)
+    {
+        PropertyDescriptor property = this.parameterDescriptorMap.get(propertyName);
+
+        if (property == null) {
+            // Created lazily since the properties are extracted by protected methods
+            if (this.lowerCaseParameterDescriptorMap == null) {
+                Map<String, PropertyDescriptor> map = new HashMap<String, PropertyDescriptor>();
+                for (PropertyDescriptor descriptor : this.parameterDescriptorMap.values()) {
+                    map.putIfAbsent(descriptor.getId().toLowerCase(), descriptor);
+                }
+                this.lowerCaseParameterDescriptorMap = map;
+            }
+
+            property = this.lowerCaseParameterDescriptorMap.get(propertyName.toLowerCase());
+        }
+
+        return property;
+    }
 }
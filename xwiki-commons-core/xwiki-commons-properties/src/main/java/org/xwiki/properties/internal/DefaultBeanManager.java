@@ -22,10 +22,10 @@
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -64,8 +64,13 @@ public class DefaultBeanManager implements BeanManager
     /**
      * Cache the already parsed classes.
      */
-    private Map<Class<?>, BeanDescriptor> beanDescriptorCache =
-        Collections.synchronizedMap(new HashMap<Class<?>, BeanDescriptor>());
+    private Map<Class<?>, DefaultBeanDescriptor> beanDescriptorCache =
+        new ConcurrentHashMap<Class<?>, DefaultBeanDescriptor>();
+
+    /**
+     * Cache the result of the search for JSR 303 constraints in the already validated classes.
+     */
+    private Map<Class<?>, Boolean> constrainedCache = new ConcurrentHashMap<Class<?>, Boolean>();
 
     /**
      * The logger to use for logging.
@@ -84,6 +89,11 @@ public class DefaultBeanManager implements BeanManager
      */
     private ValidatorFactory validatorFactory;
 
+    /**
+     * The validator to use to validate the beans (JSR 303 validators are thread safe).
+     */
+    private volatile Validator validator;
+
     /**
      * @return the factory to use to get new JSR 303 validators.
      */
@@ -103,13 +113,17 @@ public ValidatorFactory getValidatorFactory()
     @Override
     public void populate(Object bean, Map<String, ?> values) throws PropertyException
     {
-        Map<String, Object> remainingValues = new HashMap<String, Object>(values);
+        // Only keep track of the values which don't match any property when they can be injected in the bean
+        Map<String, Object> remainingValues = null;
+        if (bean instanceof RawProperties) {
+            remainingValues = new HashMap<String, Object>(values);
+        }
 
         // Populate
-        populateBean(bean, remainingValues);
+        populateBean(bean, values, remainingValues);
 
         // If the bean implements RawProperties, inject remaining properties
-        if (!remainingValues.isEmpty() && bean instanceof RawProperties) {
+        if (remainingValues != null && !remainingValues.isEmpty()) {
             RawProperties rawProperties = (RawProperties) bean;
             for (Map.Entry<String, Object> entry : remainingValues.entrySet()) {
                 rawProperties.set(entry.getKey(), entry.getValue());
@@ -122,30 +136,28 @@ public void populate(Object bean, Map<String, ?> values) throws PropertyExceptio
 
     /**
      * Populate the provided bean with provided values.
-     * <p>
-     * <code>values</code> is "consumed": when method executing is finished it only contains not populated properties.
      *
      * @param bean the java bean to populate
      * @param values the values to convert and inject in the java bean
+     * @param remainingValues when not null, the values which have been injected are removed from it
      * @throws PropertyException error when populating the bean
      */
-    private void populateBean(Object bean, Map<String, Object> values) throws PropertyException
+    private void populateBean(Object bean, Map<String, ?> values, Map<String, Object> remainingValues)
+        throws PropertyException
     {
-        BeanDescriptor beanDescriptor = getBeanDescriptor(bean.getClass());
+        DefaultBeanDescriptor beanDescriptor = getDefaultBeanDescriptor(bean.getClass());
 
-        // Lower case provided properties to easily ignore properties name case
-        Map<String, String> lowerKeyMap = new HashMap<String, String>(values.size());
-        for (Map.Entry<String, ?> entry : values.entrySet()) {
-            lowerKeyMap.put(entry.getKey().toLowerCase(), entry.getKey());
-        }
+        Map<String, String> caseInsensitiveKeys = getCaseInsensitiveKeys(beanDescriptor, values);
 
         for (PropertyDescriptor propertyDescriptor : beanDescriptor.getProperties()) {
-            String propertyId = propertyDescriptor.getId();
-            Object value = values.get(propertyId);
+            String key = propertyDescriptor.getId();
+            Object value = values.get(key);
 
-            if (value == null) {
-                propertyId = propertyId.toLowerCase();
-                value = values.get(lowerKeyMap.get(propertyId));
+            if (value == null && caseInsensitiveKeys != null) {
+                key = caseInsensitiveKeys.get(key);
+                if (key != null) {
+                    value = values.get(key);
+                }
             }
 
             if (value != null) {
@@ -153,31 +165,69 @@ private void populateBean(Object bean, Map<String, Object> values) throws Proper
                     // Convert
                     Object convertedValue = this.converterManager.convert(propertyDescriptor.getPropertyType(), value);
 
-                    if (propertyDescriptor.getWriteMethod() != null) {
-                        Method writerMethod = propertyDescriptor.getWriteMethod();
-
-                        setAccessibleSafely(writerMethod);
-
-                        // Invoke the method
-                        writerMethod.invoke(bean, convertedValue);
-                    } else if (propertyDescriptor.getField() != null) {
-                        Field field = propertyDescriptor.getField();
-
-                        setAccessibleSafely(field);
-
-                        // Set the field
-                        field.set(bean, convertedValue);
-                    }
+                    setValue(bean, propertyDescriptor, convertedValue);
                 } catch (Exception e) {
-                    throw new PropertyException("Failed to populate property [" + propertyId + "]", e);
+                    throw new PropertyException("Failed to populate property [" + propertyDescriptor.getId() + "]",
+                        e);
                 }
 
                 // "Tick" already populated properties
-                values.remove(propertyId);
+                if (remainingValues != null) {
+                    remainingValues.remove(key);
+                }
             } else if (propertyDescriptor.isMandatory()) {
-                throw new PropertyMandatoryException(propertyId);
+                throw new PropertyMandatoryException(propertyDescriptor.getId());
+            }
+        }
+    }
+
+    /**
+     * Find the provided properties which don't exactly match a property identifier to easily ignore properties name
+     * case.
+     *
+     * @param beanDescriptor the descriptor of the bean to populate
+     * @param values the values to inject in the java bean
+     * @return the provided properties names indexed by property identifier, null if there is none
+     */
+    private Map<String, String> getCaseInsensitiveKeys(DefaultBeanDescriptor beanDescriptor, Map<String, ?> values)
+    {
+        Map<String, String> caseInsensitiveKeys = null;
+
+        for (String key : values.keySet()) {
+            if (beanDescriptor.getProperty(key) == null) {
+                PropertyDescriptor propertyDescriptor = beanDescriptor.getPropertyIgnoreCase(key);
+                if (propertyDescriptor != null) {
+                    if (caseInsensitiveKeys == null) {
+                        caseInsensitiveKeys = new HashMap<String, String>();
+                    }
+                    caseInsensitiveKeys.put(propertyDescriptor.getId(), key);
+                }
             }
         }
+
+        return caseInsensitiveKeys;
+    }
+
+    private void setValue(Object bean, PropertyDescriptor propertyDescriptor, Object value) throws Exception
+    {
+        if (propertyDescriptor instanceof DefaultPropertyDescriptor) {
+            // Use the setter compiled when the descriptor was created
+            ((DefaultPropertyDescriptor) propertyDescriptor).setValue(bean, value);
+        } else if (propertyDescriptor.getWriteMethod() != null) {
+            Method writerMethod = propertyDescriptor.getWriteMethod();
+
+            setAccessibleSafely(writerMethod);
+
+            // Invoke the method
+            writerMethod.invoke(bean, value);
+        } else if (propertyDescriptor.getField() != null) {
+            Field field = propertyDescriptor.getField();
+
+            setAccessibleSafely(field);
+
+            // Set the field
+            field.set(bean, value);
+        }
     }
 
     /**
@@ -204,9 +254,11 @@ private void setAccessibleSafely(AccessibleObject classMember)
      */
     private void validateBean(Object bean) throws PropertyException
     {
-        if (getValidatorFactory() != null) {
-            Validator validator = getValidatorFactory().getValidator();
-            Set<ConstraintViolation<Object>> constraintViolations = validator.validate(bean);
+        Validator beanValidator = getValidator();
+
+        // Don't waste time validating beans which don't have any constraint
+        if (beanValidator != null && isConstrained(beanValidator, bean.getClass())) {
+            Set<ConstraintViolation<Object>> constraintViolations = beanValidator.validate(bean);
             if (!constraintViolations.isEmpty()) {
                 throw new PropertyException(
                     "Failed to validate bean: [" + constraintViolations.iterator().next().getMessage() + "]");
@@ -214,21 +266,34 @@ private void validateBean(Object bean) throws PropertyException
         }
     }
 
+    private Validator getValidator()
+    {
+        if (this.validator == null && getValidatorFactory() != null) {
+            this.validator = getValidatorFactory().getValidator();
+        }
+
+        return this.validator;
+    }
+
+    private boolean isConstrained(Validator beanValidator, Class<?> beanClass)
+    {
+        return this.constrainedCache.computeIfAbsent(beanClass,
+            key -> beanValidator.getConstraintsForClass(key).isBeanConstrained());
+    }
+
     @Override
     public BeanDescriptor getBeanDescriptor(Class<?> beanClass)
     {
-        BeanDescriptor beanDescriptor = null;
-
-        if (beanClass != null) {
-            // Since the bean descriptor are cached, lock based on the class to not generate twice the same bean
-            // descriptor.
-            synchronized (beanClass) {
-                beanDescriptor = this.beanDescriptorCache.get(beanClass);
-                if (beanDescriptor == null) {
-                    beanDescriptor = new DefaultBeanDescriptor(beanClass);
-                    this.beanDescriptorCache.put(beanClass, beanDescriptor);
-                }
-            }
+        return beanClass != null ? getDefaultBeanDescriptor(beanClass) : null;
+    }
+
+    private DefaultBeanDescriptor getDefaultBeanDescriptor(Class<?> beanClass)
+    {
+        DefaultBeanDescriptor beanDescriptor = this.beanDescriptorCache.get(beanClass);
+
+        if (beanDescriptor == null) {
+            // Make sure the same bean descriptor is not generated twice
+            beanDescriptor = this.beanDescriptorCache.computeIfAbsent(beanClass, DefaultBeanDescriptor::new);
         }
 
         return beanDescriptor;
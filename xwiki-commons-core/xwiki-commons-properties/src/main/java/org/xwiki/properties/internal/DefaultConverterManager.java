@@ -22,6 +22,11 @@
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.WildcardType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -47,6 +52,10 @@
  * <li>then it use the default {@link Converter} (which is based on {@link org.apache.commons.beanutils.ConvertUtils} by
  * default)</li>
  * </ul>
+ * <p>
+ * The resolved {@link Converter}s (including the absence of {@link Converter}) are cached by target type as long as
+ * the component manager notify the registration and unregistration of components (see
+ * {@link ConverterComponentListener}).
  *
  * @version $Id$
  * @since 2.0M2
@@ -55,6 +64,18 @@
 @Singleton
 public class DefaultConverterManager implements ConverterManager
 {
+    /**
+     * Cached in place of null when no {@link Converter} can be found for a type.
+     */
+    private static final Converter<?> NO_CONVERTER = new Converter<Object>()
+    {
+        @Override
+        public <G> G convert(Type targetType, Object sourceValue)
+        {
+            return null;
+        }
+    };
+
     /**
      * Use to find the proper {@link Converter} component for provided target type.
      */
@@ -81,6 +102,39 @@ public class DefaultConverterManager implements ConverterManager
     @Inject
     private Logger logger;
 
+    /**
+     * The component manager in which this component is registered, used to know if the component events are
+     * produced.
+     */
+    @Inject
+    private ComponentManager rootComponentManager;
+
+    /**
+     * The {@link Converter} to use for each type (the result of {@link #lookupConverter(Type)}).
+     */
+    private final Map<Type, Converter<?>> resolvedConverters = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link Converter} component registered for each type (the result of {@link #getConverter(Type)}).
+     */
+    private final Map<Type, Converter<?>> registeredConverters = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time the caches are invalidated, to not cache a {@link Converter} resolved before the
+     * invalidation.
+     */
+    private final AtomicLong cacheVersion = new AtomicLong();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * True when {@link Converter} components have been registered in another component manager than the root one: the
+     * resolved {@link Converter} then depends on the current namespace so it cannot be cached by type.
+     */
+    private volatile boolean namespacedConverters;
+
     @Override
     public <T> T convert(Type targetType, Object value)
     {
@@ -126,6 +180,11 @@ public <T> T convert(Type targetType, Object value)
      * @return the {@link Converter} corresponding to the class
      */
     private <T> Converter<T> lookupConverter(Type targetType)
+    {
+        return getCached(this.resolvedConverters, targetType, this::resolveConverter);
+    }
+
+    private <T> Converter<T> resolveConverter(Type targetType)
     {
         // Try with complete type
         Converter<T> converter = getConverter(targetType);
@@ -154,6 +213,11 @@ private <T> Converter<T> lookupConverter(Type targetType)
 
     @Override
     public <T> Converter<T> getConverter(Type targetType)
+    {
+        return getCached(this.registeredConverters, targetType, this::findConverter);
+    }
+
+    private <T> Converter<T> findConverter(Type targetType)
     {
         try {
             ComponentManager componentManager = this.componentManagerProvider.get();
@@ -175,6 +239,81 @@ public <T> Converter<T> getConverter(Type targetType)
         return null;
     }
 
+    private <T> Converter<T> getCached(Map<Type, Converter<?>> cache, Type targetType,
+        Function<Type, Converter<T>> resolver)
+    {
+        if (!isCacheEnabled()) {
+            return resolver.apply(targetType);
+        }
+
+        Converter<?> converter = cache.get(targetType);
+
+        if (converter != null) {
+            this.cacheHits.increment();
+        } else {
+            this.cacheMisses.increment();
+
+            long version = this.cacheVersion.get();
+            converter = resolver.apply(targetType);
+            if (converter == null) {
+                converter = NO_CONVERTER;
+            }
+            cache.put(targetType, converter);
+            // Don't keep what was resolved during an invalidation
+            if (this.cacheVersion.get() != version) {
+                cache.remove(targetType, converter);
+            }
+        }
+
+        if (converter == NO_CONVERTER) {
+            return null;
+        }
+
+        return (Converter<T>) converter;
+    }
+
+    private boolean isCacheEnabled()
+    {
+        // Without component events there is no way to know when to invalidate the cache
+        return !this.namespacedConverters && this.rootComponentManager.getComponentEventManager() != null;
+    }
+
+    /**
+     * Invalidate the cached {@link Converter}s.
+     *
+     * @param componentManager the component manager in which a {@link Converter} component has been registered or
+     *            unregistered, null if unknown
+     * @since 10.0RC1
+     */
+    public void onConverterModified(ComponentManager componentManager)
+    {
+        if (componentManager != null && componentManager != this.rootComponentManager) {
+            this.namespacedConverters = true;
+        }
+
+        this.cacheVersion.incrementAndGet();
+        this.resolvedConverters.clear();
+        this.registeredConverters.clear();
+    }
+
+    /**
+     * @return the number of conversions which found the {@link Converter} to use in the cache
+     * @since 10.0RC1
+     */
+    public long getCacheHits()
+    {
+        return this.cacheHits.sum();
+    }
+
+    /**
+     * @return the number of conversions which had to search the {@link Converter} to use in the component manager
+     * @since 10.0RC1
+     */
+    public long getCacheMisses()
+    {
+        return this.cacheMisses.sum();
+    }
+
     /**
      * Get class name without generics.
      *
@@ -19,7 +19,12 @@
  */
 package org.xwiki.properties.internal;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -34,6 +39,8 @@
  */
 public class DefaultPropertyDescriptor implements PropertyDescriptor
 {
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     /**
      * @see #getId()
      * @since 2.1M1
@@ -81,6 +88,13 @@ public class DefaultPropertyDescriptor implements PropertyDescriptor
      */
     private Method writeMethod;
 
+    /**
+     * The compiled version of the write method or the field, with signature {@code (Object, Object)void}.
+     *
+     * @see #setValue(Object, Object)
+     */
+    private MethodHandle setter;
+
     @Override
     public String getId()
     {
@@ -196,6 +210,8 @@ public void setMandatory(boolean mandatory)
     public void setField(Field field)
     {
         this.field = field;
+
+        updateSetter();
     }
 
     @Override
@@ -233,6 +249,8 @@ public Method getReadMethod()
     public void setWriteMethod(Method writeMethod)
     {
         this.writeMethod = writeMethod;
+
+        updateSetter();
     }
 
     @Override
@@ -240,4 +258,65 @@ public Method getWriteMethod()
     {
         return this.writeMethod;
     }
+
+    /**
+     * Set the value of the property in the passed bean using the write method or the field.
+     *
+     * @param bean the bean to modify
+     * @param value the value to set, already converted to the type of the property
+     * @throws Exception when failing to set the value
+     * @since 10.0RC1
+     */
+    public void setValue(Object bean, Object value) throws Exception
+    {
+        if (this.setter != null) {
+            try {
+                this.setter.invokeExact(bean, value);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        } else if (this.writeMethod != null) {
+            this.writeMethod.invoke(bean, value);
+        } else if (this.field != null) {
+            this.field.set(bean, value);
+        }
+    }
+
+    /**
+     * Compile the write method (or the field when there is no write method) once and for all.
+     */
+    private void updateSetter()
+    {
+        this.setter = null;
+
+        try {
+            if (this.writeMethod != null) {
+                setAccessibleSafely(this.writeMethod);
+                this.setter = MethodHandles.lookup().unreflect(this.writeMethod).asType(SETTER_TYPE);
+            } else if (this.field != null) {
+                setAccessibleSafely(this.field);
+                this.setter = MethodHandles.lookup().unreflectSetter(this.field).asType(SETTER_TYPE);
+            }
+        } catch (IllegalAccessException e) {
+            // Fallback on reflection
+        }
+    }
+
+    /**
+     * Support nested private classes with public setters. Workaround for
+     * <a href="http://bugs.java.com/bugdatabase/view_bug.do?bug_id=4533479">java reflections bug JDK-4533479</a>.
+     *
+     * @param classMember the class member to make accessible
+     */
+    private static void setAccessibleSafely(AccessibleObject classMember)
+    {
+        try {
+            // We do this in a try/catch to avoid false positives caused by existing SecurityManagers.
+            classMember.setAccessible(true);
+        } catch (SecurityException e) {
+            // Try anyway
+        }
+    }
 }
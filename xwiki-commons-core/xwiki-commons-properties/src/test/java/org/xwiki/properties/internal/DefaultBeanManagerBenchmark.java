@@ -0,0 +1,225 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.properties.internal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.properties.BeanManager;
+import org.xwiki.properties.PropertyException;
+import org.xwiki.properties.annotation.PropertyMandatory;
+
+/**
+ * Measure the cost of populating a 10 properties bean from a map of strings, like it's done for each macro call.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultBeanManagerBenchmark
+{
+    public enum Layout
+    {
+        HORIZONTAL,
+        VERTICAL
+    }
+
+    public static class BenchmarkBean
+    {
+        public String publicField;
+
+        private String title;
+
+        private String cssClass;
+
+        private String image;
+
+        private int width;
+
+        private int height;
+
+        private boolean fullWidth;
+
+        private Long timeout;
+
+        private Layout layout;
+
+        private List<Integer> sizes;
+
+        public String getTitle()
+        {
+            return this.title;
+        }
+
+        @PropertyMandatory
+        public void setTitle(String title)
+        {
+            this.title = title;
+        }
+
+        public String getCssClass()
+        {
+            return this.cssClass;
+        }
+
+        public void setCssClass(String cssClass)
+        {
+            this.cssClass = cssClass;
+        }
+
+        public String getImage()
+        {
+            return this.image;
+        }
+
+        public void setImage(String image)
+        {
+            this.image = image;
+        }
+
+        public int getWidth()
+        {
+            return this.width;
+        }
+
+        public void setWidth(int width)
+        {
+            this.width = width;
+        }
+
+        public int getHeight()
+        {
+            return this.height;
+        }
+
+        public void setHeight(int height)
+        {
+            this.height = height;
+        }
+
+        public boolean isFullWidth()
+        {
+            return this.fullWidth;
+        }
+
+        public void setFullWidth(boolean fullWidth)
+        {
+            this.fullWidth = fullWidth;
+        }
+
+        public Long getTimeout()
+        {
+            return this.timeout;
+        }
+
+        public void setTimeout(Long timeout)
+        {
+            this.timeout = timeout;
+        }
+
+        public Layout getLayout()
+        {
+            return this.layout;
+        }
+
+        public void setLayout(Layout layout)
+        {
+            this.layout = layout;
+        }
+
+        public List<Integer> getSizes()
+        {
+            return this.sizes;
+        }
+
+        public void setSizes(List<Integer> sizes)
+        {
+            this.sizes = sizes;
+        }
+    }
+
+    private BeanManager beanManager;
+
+    private Map<String, String> values;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(getClass().getClassLoader());
+        // Like in a real application, where there is always a context component manager
+        DefaultComponentDescriptor<ComponentManager> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(ComponentManager.class);
+        descriptor.setRoleHint("context");
+        componentManager.registerComponent(descriptor, componentManager);
+
+        this.beanManager = componentManager.getInstance(BeanManager.class);
+
+        // Mix exact and case insensitive property names, like in macro calls
+        this.values = new HashMap<>();
+        this.values.put("publicField", "value");
+        this.values.put("title", "Title");
+        this.values.put("cssclass", "box");
+        this.values.put("image", "image.png");
+        this.values.put("width", "100");
+        this.values.put("HEIGHT", "200");
+        this.values.put("fullwidth", "true");
+        this.values.put("timeout", "1000");
+        this.values.put("layout", "vertical");
+        this.values.put("sizes", "1,2,3");
+    }
+
+    @Benchmark
+    public Object populate() throws PropertyException
+    {
+        BenchmarkBean bean = new BenchmarkBean();
+
+        this.beanManager.populate(bean, this.values);
+
+        return bean;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(DefaultBeanManagerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -24,12 +24,23 @@
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.observation.EventListener;
 import org.xwiki.properties.ConverterManager;
 import org.xwiki.properties.converter.ConversionException;
+import org.xwiki.properties.converter.Converter;
 import org.xwiki.test.annotation.AllComponents;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  * Validate {@link DefaultConverterManager}.
  *
@@ -77,4 +88,49 @@ public void testConvertSame() throws ComponentLookupException
     {
         Assert.assertSame(Color.WHITE, this.mocker.getComponentUnderTest().convert(Color.class, Color.WHITE));
     }
+
+    @Test
+    public void testConverterCache() throws Exception
+    {
+        DefaultConverterManager converterManager = (DefaultConverterManager) this.mocker.getComponentUnderTest();
+
+        // No cache when the component manager does not send component events
+        Assert.assertEquals(Integer.valueOf(42), converterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(0, converterManager.getCacheMisses());
+
+        this.mocker.setComponentEventManager(mock(ComponentEventManager.class));
+
+        Assert.assertEquals(Integer.valueOf(42), converterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(0, converterManager.getCacheHits());
+        Assert.assertEquals(2, converterManager.getCacheMisses());
+        Assert.assertEquals(Integer.valueOf(42), converterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(1, converterManager.getCacheHits());
+        Assert.assertEquals(2, converterManager.getCacheMisses());
+
+        // Negative result
+        Assert.assertNull(converterManager.getConverter(Integer.class));
+        Assert.assertEquals(2, converterManager.getCacheHits());
+
+        // Register a new converter
+        DefaultParameterizedType converterType = new DefaultParameterizedType(null, Converter.class, Integer.class);
+        Converter<Integer> integerConverter = this.mocker.registerMockComponent(converterType);
+        when(integerConverter.convert(same(Integer.class), any())).thenReturn(43);
+
+        Assert.assertEquals(Integer.valueOf(42), converterManager.convert(Integer.class, "42"));
+
+        EventListener listener = this.mocker.getInstance(EventListener.class, ConverterComponentListener.NAME);
+        listener.onEvent(new ComponentDescriptorAddedEvent(converterType), this.mocker, null);
+
+        Assert.assertEquals(Integer.valueOf(43), converterManager.convert(Integer.class, "42"));
+        Assert.assertSame(integerConverter, converterManager.getConverter(Integer.class));
+
+        // Converters registered in another component manager disable the cache
+        listener.onEvent(new ComponentDescriptorAddedEvent(converterType), mock(ComponentManager.class), null);
+
+        long hits = converterManager.getCacheHits();
+        long misses = converterManager.getCacheMisses();
+        Assert.assertEquals(Integer.valueOf(43), converterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(hits, converterManager.getCacheHits());
+        Assert.assertEquals(misses, converterManager.getCacheMisses());
+    }
 }
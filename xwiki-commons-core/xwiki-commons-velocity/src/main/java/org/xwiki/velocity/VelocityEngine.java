@@ -25,6 +25,7 @@
 
 import org.apache.velocity.context.Context;
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Initialize a Velocity Engine and make Velocity services available.
@@ -93,4 +94,34 @@
      * @since 2.4RC1
      */
     void stoppedUsingMacroNamespace(String namespace);
+
+    /**
+     * Register the macros defined in the passed content in a library shared by all the namespaces, instead of
+     * registering them again in each namespace needing them. A macro of the library redefined in a namespace is
+     * replaced only in this namespace. Registering again a library with the same name replaces its macros.
+     *
+     * @param name the name of the library
+     * @param source the content defining the macros, anything else than macro definitions is ignored
+     * @return true if the library has been registered, false if shared macro libraries are not supported by this
+     *         engine (in which case the content should be evaluated in each namespace needing the macros)
+     * @throws XWikiVelocityException when failing to parse the content
+     * @since 10.0RC1
+     */
+    @Unstable
+    default boolean addMacroLibrary(String name, String source) throws XWikiVelocityException
+    {
+        return false;
+    }
+
+    /**
+     * Unregister the macros of the passed library.
+     *
+     * @param name the name of the library
+     * @since 10.0RC1
+     */
+    @Unstable
+    default void removeMacroLibrary(String name)
+    {
+        // Shared macro libraries are not supported by default
+    }
 }
@@ -19,29 +19,36 @@
  */
 package org.xwiki.velocity.internal;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
 import java.util.Enumeration;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.context.InternalContextAdapterImpl;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.directive.Scope;
 import org.apache.velocity.runtime.directive.StopCommand;
+import org.apache.velocity.runtime.parser.ParseException;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.slf4j.Logger;
+import org.xwiki.cache.CacheManager;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.velocity.VelocityConfiguration;
 import org.xwiki.velocity.VelocityContextFactory;
 import org.xwiki.velocity.VelocityEngine;
@@ -61,8 +68,16 @@
  */
 @Component
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
-public class DefaultVelocityEngine extends AbstractSLF4JLogChute implements VelocityEngine
+public class DefaultVelocityEngine extends AbstractSLF4JLogChute implements VelocityEngine, Disposable
 {
+    /**
+     * The name of the Velocity property containing the maximum number of parsed contents to keep in memory (see
+     * {@link ParsedTemplateCache}). The parsed contents are not cached when not set or lower than 1.
+     *
+     * @since 10.0RC1
+     */
+    public static final String PARSECACHE_SIZE_PROPERTY = "xwiki.parsecache.size";
+
     /**
      * The name of the context variable used for the template-level scope.
      */
@@ -104,8 +119,21 @@ public class DefaultVelocityEngine extends AbstractSLF4JLogChute implements Velo
      */
     private RuntimeServices rsvc;
 
-    /** Counter for the number of active rendering processes using each namespace. */
-    private final Map<String, Integer> namespaceUsageCount = new ConcurrentHashMap<String, Integer>();
+    /**
+     * Counter for the number of active rendering processes using each namespace. The counters are only modified through
+     * the atomic operations of {@link ConcurrentHashMap} which lock only the entry being updated.
+     */
+    private final Map<String, Integer> namespaceUsageCount = new ConcurrentHashMap<>();
+
+    /**
+     * The already parsed contents, null if disabled.
+     */
+    private ParsedTemplateCache parsedTemplateCache;
+
+    /**
+     * The macro libraries shared by all namespaces, null if not supported.
+     */
+    private MacroLibraries macroLibraries;
 
     @Override
     public void initialize(Properties overridingProperties) throws XWikiVelocityException
@@ -128,6 +156,58 @@ public void initialize(Properties overridingProperties) throws XWikiVelocityExce
         }
 
         this.engine = velocityEngine;
+
+        // The trees parsed by the previous Velocity engine (if any) can't be reused
+        disposeParsedTemplateCache();
+        this.parsedTemplateCache = createParsedTemplateCache(velocityEngine);
+
+        try {
+            this.macroLibraries = new MacroLibraries(this.rsvc);
+        } catch (Exception e) {
+            this.macroLibraries = null;
+            this.logger.warn("Shared macro libraries are not supported by this version of Velocity: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private ParsedTemplateCache createParsedTemplateCache(org.apache.velocity.app.VelocityEngine velocityEngine)
+    {
+        Object size = velocityEngine.getProperty(PARSECACHE_SIZE_PROPERTY);
+        int maxSize = NumberUtils.toInt(Objects.toString(size, null));
+
+        if (maxSize > 0) {
+            try {
+                return new ParsedTemplateCache(this.componentManager.getInstance(CacheManager.class), maxSize);
+            } catch (Exception e) {
+                this.logger.warn("Failed to create the cache of parsed Velocity contents, the content will be parsed"
+                    + " at each evaluation: {}", ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return null;
+    }
+
+    private void disposeParsedTemplateCache()
+    {
+        if (this.parsedTemplateCache != null) {
+            this.parsedTemplateCache.dispose();
+            this.parsedTemplateCache = null;
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        disposeParsedTemplateCache();
+    }
+
+    /**
+     * @return the cache of parsed contents, null if disabled
+     * @since 10.0RC1
+     */
+    public ParsedTemplateCache getParsedTemplateCache()
+    {
+        return this.parsedTemplateCache;
     }
 
     /**
@@ -219,7 +299,7 @@ public boolean evaluate(Context context, Writer out, String templateName, Reader
                 startedUsingMacroNamespaceInternal(namespace);
             }
 
-            return evaluateInternal(context, out, namespace, source);
+            return evaluateInternal(context, out, templateName, namespace, source);
         } catch (StopCommand s) {
             // Someone explicitly stopped the script with something like #stop. No reason to make a scene.
             return true;
@@ -232,15 +312,27 @@ public boolean evaluate(Context context, Writer out, String templateName, Reader
         }
     }
 
-    private boolean evaluateInternal(Context context, Writer out, String namespace, Reader source) throws Exception
+    private boolean evaluateInternal(Context context, Writer out, String templateName, String namespace, Reader source)
+        throws Exception
     {
+        ParsedTemplateCache cache = this.parsedTemplateCache;
+
+        if (cache != null) {
+            return cache.evaluate(read(source), templateName, namespace, this.rsvc,
+                nodeTree -> evaluateInternal(context, out, namespace, nodeTree));
+        }
+
         // The trick is done here: We use the signature that allows
         // passing a boolean and we pass false, thus preventing Velocity
         // from cleaning the namespace of its velocimacros even though the
         // config property velocimacro.permissions.allow.inline.local.scope
         // is set to true.
-        SimpleNode nodeTree = this.rsvc.parse(source, namespace, false);
+        return evaluateInternal(context, out, namespace, this.rsvc.parse(source, namespace, false));
+    }
 
+    private boolean evaluateInternal(Context context, Writer out, String namespace, SimpleNode nodeTree)
+        throws Exception
+    {
         if (nodeTree != null) {
             InternalContextAdapterImpl ica =
                 new InternalContextAdapterImpl(context != null ? context : this.velocityContextFactory.createContext());
@@ -276,6 +368,18 @@ private boolean evaluateInternal(Context context, Writer out, String namespace,
         return false;
     }
 
+    private static String read(Reader source) throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+
+        char[] buffer = new char[4096];
+        for (int length = source.read(buffer); length != -1; length = source.read(buffer)) {
+            builder.append(buffer, 0, length);
+        }
+
+        return builder.toString();
+    }
+
     @Override
     public void clearMacroNamespace(String templateName)
     {
@@ -290,12 +394,7 @@ public void startedUsingMacroNamespace(String namespace)
 
     private void startedUsingMacroNamespaceInternal(String namespace)
     {
-        Integer count = this.namespaceUsageCount.get(namespace);
-        if (count == null) {
-            count = Integer.valueOf(0);
-        }
-        count = count + 1;
-        this.namespaceUsageCount.put(namespace, count);
+        this.namespaceUsageCount.merge(namespace, 1, Integer::sum);
     }
 
     @Override
@@ -306,18 +405,47 @@ public void stoppedUsingMacroNamespace(String namespace)
 
     private void stoppedUsingMacroNamespaceInternal(String namespace)
     {
-        Integer count = this.namespaceUsageCount.get(namespace);
-        if (count == null) {
-            // This shouldn't happen
-            this.logger.warn("Wrong usage count for namespace [{}]", namespace);
-            return;
+        // The namespace is dumped while the counter is locked so that it cannot be dumped after someone started using
+        // it again
+        this.namespaceUsageCount.compute(namespace, (key, count) -> {
+            if (count == null) {
+                // This shouldn't happen
+                this.logger.warn("Wrong usage count for namespace [{}]", key);
+            } else if (count > 1) {
+                return count - 1;
+            } else {
+                this.rsvc.dumpVMNamespace(key);
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public boolean addMacroLibrary(String name, String source) throws XWikiVelocityException
+    {
+        MacroLibraries libraries = this.macroLibraries;
+
+        if (libraries == null) {
+            return false;
         }
-        count = count - 1;
-        if (count <= 0) {
-            this.namespaceUsageCount.remove(namespace);
-            this.rsvc.dumpVMNamespace(namespace);
-        } else {
-            this.namespaceUsageCount.put(namespace, count);
+
+        try {
+            libraries.add(name, source);
+        } catch (ParseException e) {
+            throw new XWikiVelocityException("Failed to parse the macro library [" + name + "]", e);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void removeMacroLibrary(String name)
+    {
+        MacroLibraries libraries = this.macroLibraries;
+
+        if (libraries != null) {
+            libraries.remove(name);
         }
     }
 
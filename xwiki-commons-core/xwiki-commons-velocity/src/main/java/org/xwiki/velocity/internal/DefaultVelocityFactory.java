@@ -26,9 +26,13 @@
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.management.JMXBeanRegistration;
 import org.xwiki.velocity.VelocityEngine;
 import org.xwiki.velocity.VelocityFactory;
@@ -60,6 +64,9 @@ public class DefaultVelocityFactory implements VelocityFactory
     @Inject
     private JMXBeanRegistration jmxRegistration;
 
+    @Inject
+    private Logger logger;
+
     /**
      * A cache of Velocity Engines. See {@link org.xwiki.velocity.VelocityFactory} for more details as to why we need
      * this cache.
@@ -103,6 +110,18 @@ public VelocityEngine removeVelocityEngine(String key)
     {
         this.jmxRegistration.unregisterMBean(MBEANNAME_PREFIX + key);
 
-        return this.velocityEngines.remove(key);
+        VelocityEngine engine = this.velocityEngines.remove(key);
+
+        // Velocity engines are not singletons so the component manager does not dispose them
+        if (engine instanceof Disposable) {
+            try {
+                ((Disposable) engine).dispose();
+            } catch (ComponentLifecycleException e) {
+                this.logger.warn("Failed to dispose Velocity engine [{}]: {}", key,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return engine;
     }
 }
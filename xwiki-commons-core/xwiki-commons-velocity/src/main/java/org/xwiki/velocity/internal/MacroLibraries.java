@@ -0,0 +1,213 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.internal;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * Registers macro libraries shared by all the namespaces of a Velocity engine, instead of registering the same macros
+ * again in each namespace needing them.
+ * <p>
+ * The namespace in which a library is parsed is declared as a Velocity library namespace so that Velocity registers
+ * the macros it defines in its global namespace. Macros are always searched in the namespace being rendered before
+ * the global namespace, so a macro of a library redefined in a namespace is shadowed only in this namespace and the
+ * shared definition is never modified by an evaluation.
+ * <p>
+ * Velocity doesn't offer any API to manipulate its library namespaces so this class uses non-stable introspection
+ * (ie might need to be modified when we upgrade the Velocity JAR) to access private fields of Velocity, like
+ * {@link org.xwiki.velocity.internal.jmx.JMXVelocityEngine} does.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class MacroLibraries
+{
+    private static final String NAMESPACE_PREFIX = "library:";
+
+    private static final String MACRO_DIRECTIVE = "macro";
+
+    /**
+     * A registered library.
+     *
+     * @version $Id$
+     */
+    private static final class MacroLibrary
+    {
+        private final String source;
+
+        /**
+         * The Velocity entries of the registered macros, indexed by macro name.
+         */
+        private final Map<String, Object> macros;
+
+        private MacroLibrary(String source, Map<String, Object> macros)
+        {
+            this.source = source;
+            this.macros = macros;
+        }
+    }
+
+    private final RuntimeServices runtimeServices;
+
+    /**
+     * The Velocity namespaces registering their macros in the global namespace.
+     */
+    private final Set<String> libraryNamespaces;
+
+    /**
+     * The Velocity global namespace (the macro entries indexed by macro name).
+     */
+    private final Map<String, Object> globalNamespace;
+
+    private final Map<String, MacroLibrary> libraries = new ConcurrentHashMap<>();
+
+    /**
+     * @param runtimeServices the Velocity runtime in which to register the macros
+     * @throws ReflectiveOperationException when failing to access Velocity macros manager
+     */
+    @SuppressWarnings("unchecked")
+    public MacroLibraries(RuntimeServices runtimeServices) throws ReflectiveOperationException
+    {
+        this.runtimeServices = runtimeServices;
+
+        Object vmFactory = getField(runtimeServices, "vmFactory");
+        Object vmManager = getField(vmFactory, "vmManager");
+
+        this.libraryNamespaces = (Set<String>) getField(vmManager, "libraries");
+        this.globalNamespace = (Map<String, Object>) getField(vmManager, "globalNamespace");
+    }
+
+    private static Object getField(Object instance, String fieldName) throws ReflectiveOperationException
+    {
+        Field field = instance.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field.get(instance);
+    }
+
+    /**
+     * Register the macros defined in the passed content. When a library with the same name is already registered its
+     * macros are replaced: the new macros are registered before the ones not defined anymore are removed so that a
+     * concurrent evaluation always find the macros defined in both versions.
+     *
+     * @param name the name of the library
+     * @param source the content defining the macros
+     * @throws ParseException when failing to parse the content
+     */
+    public synchronized void add(String name, String source) throws ParseException
+    {
+        MacroLibrary previous = this.libraries.get(name);
+
+        if (previous != null && previous.source.equals(source)) {
+            // Nothing changed
+            return;
+        }
+
+        String namespace = NAMESPACE_PREFIX + name;
+
+        this.libraryNamespaces.add(namespace);
+
+        SimpleNode tree = this.runtimeServices.parse(new StringReader(source), namespace, false);
+
+        Map<String, Object> macros = new HashMap<>();
+        if (tree != null) {
+            // Initializing the tree registers the macros (and prepares their body to be rendered)
+            tree.init(new InternalContextAdapterImpl(new VelocityContext()), this.runtimeServices);
+
+            List<Node> macroNodes = new ArrayList<>();
+            collectMacros(tree, macroNodes);
+            for (Node macroNode : macroNodes) {
+                // The first argument of the #macro directive is the name of the macro
+                String macroName = macroNode.jjtGetChild(0).getFirstToken().image;
+                macros.put(macroName, this.globalNamespace.get(macroName));
+            }
+        }
+
+        this.libraries.put(name, new MacroLibrary(source, Collections.unmodifiableMap(macros)));
+
+        if (previous != null) {
+            for (Map.Entry<String, Object> entry : previous.macros.entrySet()) {
+                if (!macros.containsKey(entry.getKey())) {
+                    unregister(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private void collectMacros(Node node, List<Node> macroNodes)
+    {
+        if (node instanceof ASTDirective && MACRO_DIRECTIVE.equals(((ASTDirective) node).getDirectiveName())) {
+            macroNodes.add(node);
+        }
+
+        for (int i = 0; i < node.jjtGetNumChildren(); ++i) {
+            collectMacros(node.jjtGetChild(i), macroNodes);
+        }
+    }
+
+    private void unregister(String macroName, Object macro)
+    {
+        // Don't remove a macro redefined in the meantime by another library
+        if (macro != null) {
+            this.globalNamespace.remove(macroName, macro);
+        }
+    }
+
+    /**
+     * Unregister the macros of the passed library.
+     *
+     * @param name the name of the library
+     */
+    public synchronized void remove(String name)
+    {
+        MacroLibrary library = this.libraries.remove(name);
+
+        if (library != null) {
+            for (Map.Entry<String, Object> entry : library.macros.entrySet()) {
+                unregister(entry.getKey(), entry.getValue());
+            }
+
+            this.libraryNamespaces.remove(NAMESPACE_PREFIX + name);
+        }
+    }
+
+    /**
+     * @return the names of the registered libraries
+     */
+    public Set<String> getNames()
+    {
+        return Collections.unmodifiableSet(this.libraries.keySet());
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.internal;
+
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.directive.Macro;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+/**
+ * Keep the result of the parsing of Velocity content to not parse it again when the same content is evaluated again
+ * with the same template name.
+ * <p>
+ * The key of a tree contains the template name and a hash of the content, and the content itself is stored with the
+ * tree and compared before reusing it, so that modified content is never evaluated with an old tree.
+ * <p>
+ * A parsed tree is modified when initialized, so it's used by only one evaluation at a time: a content evaluated while
+ * its cached tree is being used is parsed again and that new tree is not cached. A tree also remembers the namespace in
+ * which it was parsed, which is where the macros it defines are registered and where its macro calls are resolved.
+ * Since {@link DefaultVelocityEngine} uses a different namespace for each thread, a tree defining or calling macros is
+ * only cached when evaluated without namespace.
+ * <p>
+ * Velocity registers the macros defined in a tree only the first time the tree is initialized, while the namespace
+ * holding them is generally cleaned after each evaluation. So the macros are registered again each time a tree is
+ * reused.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class ParsedTemplateCache implements CacheEntryListener<ParsedTemplateCache.ParsedTemplate>
+{
+    /**
+     * A parsed content.
+     *
+     * @version $Id$
+     */
+    public static final class ParsedTemplate
+    {
+        private final String source;
+
+        private final SimpleNode tree;
+
+        private final long parseTime;
+
+        private final boolean macros;
+
+        private final AtomicBoolean used = new AtomicBoolean(true);
+
+        private ParsedTemplate(String source, SimpleNode tree, long parseTime, boolean macros)
+        {
+            this.source = source;
+            this.tree = tree;
+            this.parseTime = parseTime;
+            this.macros = macros;
+        }
+    }
+
+    /**
+     * The evaluation of a parsed tree.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface Evaluation
+    {
+        /**
+         * @param tree the parsed tree to evaluate, null if the content is empty
+         * @return the result of the evaluation
+         * @throws Exception when failing to evaluate the tree
+         */
+        boolean evaluate(SimpleNode tree) throws Exception;
+    }
+
+    private static final String MACRO_DIRECTIVE = "macro";
+
+    private final Cache<ParsedTemplate> cache;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder savedTime = new LongAdder();
+
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * @param cacheManager the manager used to create the cache in which to store the parsed trees
+     * @param maxSize the maximum number of parsed trees to keep
+     * @throws CacheException when failing to create the cache
+     */
+    public ParsedTemplateCache(CacheManager cacheManager, int maxSize) throws CacheException
+    {
+        // Don't give any name to the cache since each Velocity engine needs its own
+        this.cache = cacheManager.createNewLocalCache(new LRUCacheConfiguration(null, maxSize));
+        this.cache.addCacheEntryListener(this);
+    }
+
+    /**
+     * @param source the content to evaluate
+     * @param templateName the name of the evaluated template
+     * @param namespace the namespace in which to parse the content
+     * @param runtimeServices the Velocity runtime used to parse the content
+     * @param evaluation the evaluation of the parsed tree, taken from the cache when the same content was already
+     *            parsed with the same template name and is not being evaluated
+     * @return the result of the evaluation
+     * @throws Exception when failing to parse or evaluate the content
+     */
+    public boolean evaluate(String source, String templateName, String namespace, RuntimeServices runtimeServices,
+        Evaluation evaluation) throws Exception
+    {
+        ParsedTemplate parsedTemplate = parse(source, templateName, namespace, runtimeServices);
+
+        try {
+            return evaluation.evaluate(parsedTemplate.tree);
+        } finally {
+            // The tree can be reused
+            parsedTemplate.used.set(false);
+        }
+    }
+
+    private ParsedTemplate parse(String source, String templateName, String namespace,
+        RuntimeServices runtimeServices) throws ParseException
+    {
+        String key = getKey(source, templateName);
+
+        ParsedTemplate parsedTemplate = this.cache.get(key);
+        boolean cached = parsedTemplate != null && parsedTemplate.source.equals(source);
+        if (cached && parsedTemplate.used.compareAndSet(false, true)) {
+            this.hits.increment();
+            this.savedTime.add(parsedTemplate.parseTime);
+
+            if (parsedTemplate.macros) {
+                registerMacros(parsedTemplate.tree, runtimeServices);
+            }
+
+            return parsedTemplate;
+        }
+
+        this.misses.increment();
+
+        long start = System.nanoTime();
+        // Don't clean the namespace of its macros, see DefaultVelocityEngine#evaluateInternal()
+        SimpleNode tree = runtimeServices.parse(new StringReader(source), namespace, false);
+        long parseTime = System.nanoTime() - start;
+
+        boolean macros = tree != null && containsMacros(tree, runtimeServices);
+        parsedTemplate = new ParsedTemplate(source, tree, parseTime, macros);
+
+        // Don't replace a tree currently used by another evaluation and don't share a tree which depends on the
+        // namespace of the current thread
+        if (tree != null && !cached && (!macros || StringUtils.isEmpty(namespace))) {
+            this.cache.set(key, parsedTemplate);
+        }
+
+        return parsedTemplate;
+    }
+
+    private boolean containsMacros(Node node, RuntimeServices runtimeServices)
+    {
+        if (node instanceof ASTDirective) {
+            String directiveName = ((ASTDirective) node).getDirectiveName();
+
+            // A directive which is not registered is a macro call
+            if (MACRO_DIRECTIVE.equals(directiveName) || runtimeServices.getDirective(directiveName) == null) {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < node.jjtGetNumChildren(); ++i) {
+            if (containsMacros(node.jjtGetChild(i), runtimeServices)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void registerMacros(Node node, RuntimeServices runtimeServices)
+    {
+        if (node instanceof ASTDirective && MACRO_DIRECTIVE.equals(((ASTDirective) node).getDirectiveName())) {
+            // Does exactly what is done when the #macro directive is initialized
+            new Macro().init(runtimeServices, null, node);
+        }
+
+        for (int i = 0; i < node.jjtGetNumChildren(); ++i) {
+            registerMacros(node.jjtGetChild(i), runtimeServices);
+        }
+    }
+
+    private String getKey(String source, String templateName)
+    {
+        StringBuilder key = new StringBuilder();
+
+        if (templateName != null) {
+            key.append(templateName);
+        }
+        key.append('#');
+        key.append(Integer.toHexString(source.hashCode()));
+
+        return key.toString();
+    }
+
+    /**
+     * Remove all the parsed trees.
+     */
+    public void clear()
+    {
+        this.cache.removeAll();
+    }
+
+    /**
+     * Release the cache.
+     */
+    public void dispose()
+    {
+        this.cache.removeCacheEntryListener(this);
+        this.cache.dispose();
+        this.size.set(0);
+    }
+
+    /**
+     * @return the number of times a parsed tree was reused
+     */
+    public long getHitCount()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of times the content had to be parsed
+     */
+    public long getMissCount()
+    {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the ratio of evaluations which reused a parsed tree, 1.0 if nothing was evaluated yet
+     */
+    public double getHitRate()
+    {
+        long hitCount = getHitCount();
+        long requestCount = hitCount + getMissCount();
+
+        if (requestCount == 0) {
+            return 1.0;
+        }
+
+        return (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return the total time it would have taken to parse again the reused trees, in nanoseconds
+     */
+    public long getSavedParseTime()
+    {
+        return this.savedTime.sum();
+    }
+
+    /**
+     * @return the number of parsed trees currently in the cache
+     */
+    public long getSize()
+    {
+        return this.size.get();
+    }
+
+    @Override
+    public void cacheEntryAdded(CacheEntryEvent<ParsedTemplate> event)
+    {
+        this.size.incrementAndGet();
+    }
+
+    @Override
+    public void cacheEntryRemoved(CacheEntryEvent<ParsedTemplate> event)
+    {
+        this.size.decrementAndGet();
+    }
+
+    @Override
+    public void cacheEntryModified(CacheEntryEvent<ParsedTemplate> event)
+    {
+        // The number of entries did not change
+    }
+}
@@ -22,6 +22,7 @@
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.openmbean.ArrayType;
 import javax.management.openmbean.CompositeData;
@@ -34,6 +35,8 @@
 import javax.management.openmbean.TabularType;
 
 import org.xwiki.velocity.VelocityEngine;
+import org.xwiki.velocity.internal.DefaultVelocityEngine;
+import org.xwiki.velocity.internal.ParsedTemplateCache;
 
 /**
  * Uses non-stable (ie might need to be modified when we upgrade the Velocity JAR) introspection to access private
@@ -100,6 +103,39 @@ public TabularData getTemplates()
         return data;
     }
 
+    @Override
+    public double getParseCacheHitRate()
+    {
+        ParsedTemplateCache cache = getParsedTemplateCache();
+
+        return cache != null ? cache.getHitRate() : 0;
+    }
+
+    @Override
+    public long getParseCacheSize()
+    {
+        ParsedTemplateCache cache = getParsedTemplateCache();
+
+        return cache != null ? cache.getSize() : 0;
+    }
+
+    @Override
+    public long getParseCacheSavedTime()
+    {
+        ParsedTemplateCache cache = getParsedTemplateCache();
+
+        return cache != null ? TimeUnit.NANOSECONDS.toMillis(cache.getSavedParseTime()) : 0;
+    }
+
+    private ParsedTemplateCache getParsedTemplateCache()
+    {
+        if (this.engine instanceof DefaultVelocityEngine) {
+            return ((DefaultVelocityEngine) this.engine).getParsedTemplateCache();
+        }
+
+        return null;
+    }
+
     /**
      * @return the data using standard Java classes, {@link #getTemplates()} wraps it in generic Open types to make the
      *         returned data portable and accessible remotely from a JMX management console
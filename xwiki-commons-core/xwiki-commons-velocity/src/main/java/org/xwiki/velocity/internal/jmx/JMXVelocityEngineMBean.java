@@ -25,6 +25,7 @@
  * MBean API related to Velocity Engines. Supports the following features:
  * <ul>
  *   <li>Retrieve list of template namespaces along with the name of macros registered in each template namespace</li>
+ *   <li>Retrieve statistics about the cache of parsed contents</li>
  * </ul>
  *
  * @version $Id$
@@ -36,4 +37,23 @@
      * @return the list of template namespaces along with the name of macros registered in each template namespace
      */
     TabularData getTemplates();
+
+    /**
+     * @return the ratio of evaluations which reused an already parsed content, 0 if the cache of parsed contents is
+     *         disabled
+     * @since 10.0RC1
+     */
+    double getParseCacheHitRate();
+
+    /**
+     * @return the number of parsed contents in the cache, 0 if the cache of parsed contents is disabled
+     * @since 10.0RC1
+     */
+    long getParseCacheSize();
+
+    /**
+     * @return the total time it would have taken to parse again the reused contents, in milliseconds
+     * @since 10.0RC1
+     */
+    long getParseCacheSavedTime();
 }
@@ -22,8 +22,13 @@
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.reflect.TypeUtils;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.util.RuntimeServicesAware;
@@ -46,6 +51,10 @@
  * obj.someMethod(SomeEnum.VALUE)
  * // if obj has someMethod(SomeEnum) and not someMethod(String)}
  * </pre>
+ * <p>
+ * The methods which can be called by converting the arguments (or the absence of such methods) are remembered for the
+ * most recently used classes, method names and argument types, until the Velocity engine is initialized again. The
+ * returned method also remembers the conversion which worked so that it's not searched again on each call.
  *
  * @since 4.1M2
  * @version $Id$
@@ -53,11 +62,115 @@
  */
 public class MethodArgumentsUberspector extends AbstractChainableUberspector implements RuntimeServicesAware
 {
+    private static final int RESOLUTIONS_CACHE_SIZE = 1000;
+
+    private static final int METHOD_FIELDS_CACHE_SIZE = 10;
+
     /**
      * The component used to convert method arguments to formal parameter types.
      */
     private ConverterManager converterManager;
 
+    /**
+     * The possible conversions of the arguments, indexed by class, method name and argument types.
+     */
+    private final Map<ResolutionKey, Resolution> resolutions =
+        Collections.synchronizedMap(new LRUMap<>(RESOLUTIONS_CACHE_SIZE));
+
+    /**
+     * The private field holding the {@link Method}, indexed by {@link VelMethod} implementation.
+     */
+    private final Map<Class<?>, Field> methodFields =
+        Collections.synchronizedMap(new LRUMap<>(METHOD_FIELDS_CACHE_SIZE));
+
+    /**
+     * The key of a {@link Resolution}.
+     *
+     * @version $Id$
+     */
+    private static final class ResolutionKey
+    {
+        private final Class<?> type;
+
+        private final String methodName;
+
+        private final Class<?>[] argumentTypes;
+
+        private final int hashCode;
+
+        ResolutionKey(Class<?> type, String methodName, Object[] args)
+        {
+            this.type = type;
+            this.methodName = methodName;
+            this.argumentTypes = getArgumentTypes(args);
+
+            this.hashCode =
+                (31 * type.hashCode() + methodName.hashCode()) * 31 + Arrays.hashCode(this.argumentTypes);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof ResolutionKey) {
+                ResolutionKey other = (ResolutionKey) obj;
+
+                return this.type == other.type && this.methodName.equals(other.methodName)
+                    && Arrays.equals(this.argumentTypes, other.argumentTypes);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * The methods with a compatible signature, in the order in which they should be tried.
+     *
+     * @version $Id$
+     */
+    private static final class Resolution
+    {
+        /**
+         * No method can be called by converting the arguments.
+         */
+        static final Resolution NONE = new Resolution(Collections.emptyList());
+
+        private final List<Type[]> conversions;
+
+        Resolution(List<Type[]> conversions)
+        {
+            this.conversions = conversions;
+        }
+
+        /**
+         * @return for each method, the types to which each argument should be converted, {@code null} when the
+         *         argument does not need to be converted
+         */
+        List<Type[]> getConversions()
+        {
+            return this.conversions;
+        }
+    }
+
+    @Override
+    public void init()
+    {
+        super.init();
+
+        // The Velocity engine is being (re)initialized
+        this.resolutions.clear();
+        this.methodFields.clear();
+    }
+
     @Override
     public void setRuntimeServices(RuntimeServices runtimeServices)
     {
@@ -103,13 +216,17 @@ public VelMethod getMethod(Object obj, String methodName, Object[] args, Info i)
 
         if (shouldConvert) {
             // Try to convert method arguments to formal parameter types.
-            Object[] convertedArguments = this.convertArguments(obj, methodName, args);
-            if (convertedArguments != null) {
-                velMethod = super.getMethod(obj, methodName, convertedArguments, i);
-                if (velMethod != null) {
-                    velMethod = new ConvertingVelMethod(velMethod);
-                } else {
-                    velMethod = initialVelMethod;
+            for (Type[] targetTypes : getResolution(obj.getClass(), methodName, args).getConversions()) {
+                Object[] convertedArguments = tryConvertArguments(args, targetTypes);
+                if (convertedArguments != null) {
+                    velMethod = super.getMethod(obj, methodName, convertedArguments, i);
+                    if (velMethod != null) {
+                        velMethod = new ConvertingVelMethod(velMethod, getArgumentTypes(args), targetTypes);
+                    } else {
+                        velMethod = initialVelMethod;
+                    }
+
+                    break;
                 }
             }
         }
@@ -122,14 +239,15 @@ public VelMethod getMethod(Object obj, String methodName, Object[] args, Info i)
      */
     private Method getPrivateMethod(VelMethod velMethod) throws Exception
     {
-        Field methodField = velMethod.getClass().getDeclaredField("method");
-        boolean isAccessible = methodField.isAccessible();
-        try {
+        Field methodField = this.methodFields.get(velMethod.getClass());
+        if (methodField == null) {
+            methodField = velMethod.getClass().getDeclaredField("method");
+            // Only affects this instance of the field
             methodField.setAccessible(true);
-            return (Method) methodField.get(velMethod);
-        } finally {
-            methodField.setAccessible(isAccessible);
+            this.methodFields.put(velMethod.getClass(), methodField);
         }
+
+        return (Method) methodField.get(velMethod);
     }
 
     /**
@@ -144,35 +262,81 @@ private Method getPrivateMethod(VelMethod velMethod) throws Exception
      */
     private Object[] convertArguments(Object obj, String methodName, Object[] args)
     {
-        for (Method method : obj.getClass().getMethods()) {
+        for (Type[] targetTypes : getResolution(obj.getClass(), methodName, args).getConversions()) {
+            Object[] convertedArguments = tryConvertArguments(args, targetTypes);
+            if (convertedArguments != null) {
+                return convertedArguments;
+            }
+        }
+
+        return null;
+    }
+
+    private Object[] tryConvertArguments(Object[] args, Type[] targetTypes)
+    {
+        try {
+            return convertArguments(args, targetTypes);
+        } catch (Exception e) {
+            // Ignore and try the next method.
+            return null;
+        }
+    }
+
+    private static Class<?>[] getArgumentTypes(Object[] args)
+    {
+        Class<?>[] argumentTypes = new Class<?>[args.length];
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i] != null) {
+                argumentTypes[i] = args[i].getClass();
+            }
+        }
+
+        return argumentTypes;
+    }
+
+    private Resolution getResolution(Class<?> type, String methodName, Object[] args)
+    {
+        ResolutionKey key = new ResolutionKey(type, methodName, args);
+
+        Resolution resolution = this.resolutions.get(key);
+        if (resolution == null) {
+            resolution = resolve(type, methodName, args);
+            this.resolutions.put(key, resolution);
+        }
+
+        return resolution;
+    }
+
+    private Resolution resolve(Class<?> type, String methodName, Object[] args)
+    {
+        List<Type[]> conversions = new ArrayList<>();
+
+        for (Method method : type.getMethods()) {
             if (method.getName().equalsIgnoreCase(methodName)
                 && (method.getGenericParameterTypes().length == args.length || method.isVarArgs())) {
                 try {
-                    return convertArguments(args, method.getGenericParameterTypes(), method.isVarArgs());
-                } catch (Exception e) {
-                    // Ignore and try the next method.
+                    conversions.add(getTargetTypes(args, method.getGenericParameterTypes(), method.isVarArgs()));
+                } catch (ClassCastException e) {
+                    // Generic varargs are not supported, ignore and try the next method.
                 }
             }
         }
 
-        return null;
+        return conversions.isEmpty() ? Resolution.NONE : new Resolution(conversions);
     }
 
     /**
-     * Tries to convert the given arguments to match the specified formal parameters types.
-     * <p>
-     * Throws a runtime exception if the conversion fails.
-     *
      * @param arguments the method actual arguments
      * @param parameterTypes the method formal parameter types
      * @param isVarArgs true if the method contains a varargs (ie the last parameter is a varargs)
-     * @return a new array of arguments where some values have been converted to match the formal method parameter types
+     * @return the types to which each argument should be converted, {@code null} for the arguments which don't need
+     *         to be converted
      */
-    private Object[] convertArguments(Object[] arguments, Type[] parameterTypes, boolean isVarArgs)
+    private Type[] getTargetTypes(Object[] arguments, Type[] parameterTypes, boolean isVarArgs)
     {
-        Object[] convertedArguments = Arrays.copyOf(arguments, arguments.length);
+        Type[] targetTypes = new Type[arguments.length];
         for (int i = 0; i < arguments.length; i++) {
-            // Try to convert the argument if it's not null and if it doesn't match the parameter type.
+            // Convert the argument if it's not null and if it doesn't match the parameter type.
             // If the method is a varargs then extract the type from the vararg array
             Type expectedType;
             if (isVarArgs && i >= parameterTypes.length - 1) {
@@ -182,7 +346,29 @@ private Object[] convertArguments(Object[] arguments, Type[] parameterTypes, boo
             }
 
             if (arguments[i] != null && !TypeUtils.isInstance(arguments[i], expectedType)) {
-                convertedArguments[i] = this.converterManager.convert(expectedType, arguments[i]);
+                targetTypes[i] = expectedType;
+            }
+        }
+
+        return targetTypes;
+    }
+
+    /**
+     * Tries to convert the given arguments to the specified types.
+     * <p>
+     * Throws a runtime exception if the conversion fails.
+     *
+     * @param arguments the method actual arguments
+     * @param targetTypes the types to which each argument should be converted, {@code null} when it should not be
+     *            converted
+     * @return a new array of arguments where some values have been converted to match the formal method parameter types
+     */
+    private Object[] convertArguments(Object[] arguments, Type[] targetTypes)
+    {
+        Object[] convertedArguments = Arrays.copyOf(arguments, arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            if (targetTypes[i] != null) {
+                convertedArguments[i] = this.converterManager.convert(targetTypes[i], arguments[i]);
             }
         }
 
@@ -199,20 +385,41 @@ private class ConvertingVelMethod implements VelMethod
         /** The real method that performs the actual call. */
         private VelMethod innerMethod;
 
+        /** The types of the arguments for which the method was found. */
+        private Class<?>[] argumentTypes;
+
+        /** The types to which the arguments were successfully converted when the method was found. */
+        private Type[] targetTypes;
+
         /**
          * Constructor.
          *
          * @param realMethod the real method to wrap
+         * @param argumentTypes the types of the arguments for which the method was found
+         * @param targetTypes the types to which the arguments were successfully converted
          */
-        ConvertingVelMethod(VelMethod realMethod)
+        ConvertingVelMethod(VelMethod realMethod, Class<?>[] argumentTypes, Type[] targetTypes)
         {
             this.innerMethod = realMethod;
+            this.argumentTypes = argumentTypes;
+            this.targetTypes = targetTypes;
         }
 
         @Override
         public Object invoke(Object o, Object[] params) throws Exception
         {
-            return this.innerMethod.invoke(o, convertArguments(o, this.innerMethod.getMethodName(), params));
+            Object[] convertedArguments = null;
+
+            // Reuse the conversion which worked when the method was found if the arguments have the same types
+            if (Arrays.equals(this.argumentTypes, getArgumentTypes(params))) {
+                convertedArguments = tryConvertArguments(params, this.targetTypes);
+            }
+
+            if (convertedArguments == null) {
+                convertedArguments = convertArguments(o, this.innerMethod.getMethodName(), params);
+            }
+
+            return this.innerMethod.invoke(o, convertedArguments);
         }
 
         @Override
@@ -19,12 +19,15 @@
  */
 package org.xwiki.velocity.internal;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.Callable;
@@ -38,6 +41,9 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.tinylfu.internal.TinyLFUCache;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 import org.xwiki.velocity.VelocityConfiguration;
 import org.xwiki.velocity.XWikiVelocityException;
@@ -262,4 +268,226 @@ public void testEvaluateWithStopCommand() throws Exception
 
         assertEvaluate("hello world", "hello world#stop", "mytemplate");
     }
+
+    private Properties enableParseCache() throws Exception
+    {
+        CacheManager cacheManager = this.mocker.registerMockComponent(CacheManager.class);
+        when(cacheManager.createNewLocalCache(any()))
+            .thenAnswer(invocation -> new TinyLFUCache<>(invocation.<CacheConfiguration>getArgument(0), null));
+
+        Properties properties = new Properties();
+        properties.setProperty(DefaultVelocityEngine.PARSECACHE_SIZE_PROPERTY, "10");
+
+        return properties;
+    }
+
+    @Test
+    public void testParseCache() throws Exception
+    {
+        this.engine.initialize(enableParseCache());
+
+        ParsedTemplateCache cache = this.engine.getParsedTemplateCache();
+        Assert.assertNotNull(cache);
+
+        String content = "#set($var = 'test')$var";
+        assertEvaluate("test", content, "mytemplate");
+        assertEvaluate("test", content, "mytemplate");
+        assertEvaluate("test", content, "mytemplate");
+
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getSize());
+
+        // Modified content is never evaluated with the old tree
+        assertEvaluate("modified", "#set($var = 'modified')$var", "mytemplate");
+
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(2, cache.getSize());
+
+        // The macro is registered again when the cached content is evaluated
+        String macroContent = "#macro(mymacro)test#end#mymacro()";
+        assertEvaluate("test", macroContent, "");
+        assertEvaluate("test", macroContent, "");
+
+        Assert.assertEquals(3, cache.getHitCount());
+        Assert.assertEquals(3, cache.getMissCount());
+        Assert.assertEquals(3, cache.getSize());
+
+        // Initializing the engine again forget the parsed content
+        this.engine.initialize(enableParseCache());
+
+        Assert.assertNotSame(cache, this.engine.getParsedTemplateCache());
+        Assert.assertEquals(0, this.engine.getParsedTemplateCache().getSize());
+
+        this.engine.dispose();
+
+        Assert.assertNull(this.engine.getParsedTemplateCache());
+    }
+
+    @Test
+    public void testParseCacheThreadsafeNamespaces() throws Exception
+    {
+        this.engine.initialize(enableParseCache());
+
+        this.engine.startedUsingMacroNamespace("namespace");
+
+        // Content defining or calling macros depends on the namespace of the thread so it's not cached
+        Context context = new org.apache.velocity.VelocityContext();
+        this.engine.evaluate(context, new StringWriter(), "namespace", "#macro(mymacro)test#end");
+        this.engine.evaluate(context, new StringWriter(), "namespace", "#macro(mymacro)test#end");
+
+        assertEvaluate("test", "#mymacro", "namespace");
+
+        assertEvaluate("shared", "#set($var = 'shared')$var", "namespace");
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Void> future = pool.submit(() -> {
+            // The macros of the other thread are not visible
+            assertEvaluate("#mymacro", "#mymacro", "namespace");
+
+            // The content which doesn't depend on the namespace is shared between threads
+            assertEvaluate("shared", "#set($var = 'shared')$var", "namespace");
+
+            return null;
+        });
+        future.get();
+        pool.shutdown();
+
+        Assert.assertEquals(1, this.engine.getParsedTemplateCache().getHitCount());
+        Assert.assertEquals(5, this.engine.getParsedTemplateCache().getMissCount());
+        Assert.assertEquals(1, this.engine.getParsedTemplateCache().getSize());
+
+        this.engine.stoppedUsingMacroNamespace("namespace");
+    }
+
+    /**
+     * Evaluates again the content in which it's called.
+     *
+     * @version $Id$
+     */
+    public class NestedEvaluation
+    {
+        private int depth;
+
+        public String evaluate() throws XWikiVelocityException
+        {
+            if (this.depth > 0) {
+                return "";
+            }
+
+            this.depth++;
+            try {
+                StringWriter writer = new StringWriter();
+                engine.evaluate(new org.apache.velocity.VelocityContext(new HashMap<>(Collections.singletonMap(
+                    "nested", this))), writer, "mytemplate", "x$nested.evaluate()");
+
+                return writer.toString();
+            } finally {
+                this.depth--;
+            }
+        }
+    }
+
+    @Test
+    public void testParseCacheNestedEvaluation() throws Exception
+    {
+        this.engine.initialize(enableParseCache());
+
+        Context context = new org.apache.velocity.VelocityContext();
+        context.put("nested", new NestedEvaluation());
+
+        // The tree being evaluated is not reused by the nested evaluation
+        assertEvaluate("xx", "x$nested.evaluate()", "mytemplate", context);
+
+        Assert.assertEquals(0, this.engine.getParsedTemplateCache().getHitCount());
+        Assert.assertEquals(2, this.engine.getParsedTemplateCache().getMissCount());
+        Assert.assertEquals(1, this.engine.getParsedTemplateCache().getSize());
+
+        // It's reused once released
+        assertEvaluate("xx", "x$nested.evaluate()", "mytemplate", context);
+
+        Assert.assertEquals(1, this.engine.getParsedTemplateCache().getHitCount());
+    }
+
+    @Test
+    public void testMacroLibrary() throws Exception
+    {
+        this.engine.initialize(new Properties());
+
+        Assert.assertTrue(this.engine.addMacroLibrary("library", "#macro(libmacro)library#end"));
+
+        assertEvaluate("library", "#libmacro()", "namespace");
+
+        // The library is shared with the other threads
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        pool.submit(() -> {
+            assertEvaluate("library", "#libmacro()", "namespace");
+
+            return null;
+        }).get();
+
+        // A redefinition only affects the namespace in which it's done
+        this.engine.startedUsingMacroNamespace("namespace");
+        assertEvaluate("local", "#macro(libmacro)local#end#libmacro()", "namespace");
+        assertEvaluate("local", "#libmacro()", "namespace");
+        assertEvaluate("library", "#libmacro()", "othernamespace");
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        assertEvaluate("library", "#libmacro()", "namespace");
+
+        // Replace the library
+        this.engine.addMacroLibrary("library", "#macro(libmacro)new#end#macro(othermacro)other#end");
+        assertEvaluate("new other", "#libmacro() #othermacro()", "namespace");
+        this.engine.addMacroLibrary("library", "#macro(othermacro)other#end");
+        assertEvaluate("#libmacro() other", "#libmacro() #othermacro()", "namespace");
+
+        // A macro redefined by another library is not removed with the first library
+        this.engine.addMacroLibrary("library2", "#macro(othermacro)other2#end");
+        this.engine.removeMacroLibrary("library");
+        assertEvaluate("other2", "#othermacro()", "namespace");
+
+        this.engine.removeMacroLibrary("library2");
+        assertEvaluate("#othermacro()", "#othermacro()", "namespace");
+
+        pool.shutdown();
+    }
+
+    @Test
+    public void testMacroLibraryNotAvailableAfterReinitialization() throws Exception
+    {
+        this.engine.initialize(new Properties());
+        this.engine.addMacroLibrary("library", "#macro(libmacro)library#end");
+
+        this.engine.initialize(new Properties());
+        assertEvaluate("#libmacro()", "#libmacro()", "namespace");
+
+        // Registering the same content again works with the new Velocity engine
+        this.engine.addMacroLibrary("library", "#macro(libmacro)library#end");
+        assertEvaluate("library", "#libmacro()", "namespace");
+    }
+
+    @Test
+    public void testNamespaceUsageCount() throws Exception
+    {
+        this.engine.initialize(new Properties());
+
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.evaluate(new org.apache.velocity.VelocityContext(), new StringWriter(), "namespace",
+            "#macro(mymacro)test#end");
+
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        assertEvaluate("test", "#mymacro", "namespace");
+
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        assertEvaluate("#mymacro", "#mymacro", "namespace");
+
+        // Too many stops don't break anything
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.evaluate(new org.apache.velocity.VelocityContext(), new StringWriter(), "namespace",
+            "#macro(mymacro)test#end");
+        assertEvaluate("test", "#mymacro", "namespace");
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        assertEvaluate("#mymacro", "#mymacro", "namespace");
+    }
 }
@@ -100,4 +100,16 @@ public void testGetTemplates() throws Exception
             engine.stoppedUsingMacroNamespace("testmacronamespace");
         }
     }
+
+    @Test
+    public void testParseCacheStatisticsWhenDisabled() throws Exception
+    {
+        VelocityEngine engine = this.componentManager.getInstance(VelocityEngine.class);
+        engine.initialize(new Properties());
+        JMXVelocityEngine jmxBean = new JMXVelocityEngine(engine);
+
+        Assert.assertEquals(0, jmxBean.getParseCacheSize());
+        Assert.assertEquals(0, jmxBean.getParseCacheSavedTime());
+        Assert.assertEquals(0, jmxBean.getParseCacheHitRate(), 0);
+    }
 }
@@ -243,4 +243,51 @@ public void getMethodWithGeneric() throws Exception
         this.engine.evaluate(this.context, this.writer, "template", new StringReader("$var.methodWithGeneric('en, fr')"));
         assertEquals("success", this.writer.toString());
     }
+
+    @Test
+    public void getMethodWhenConversionFailedForAnotherValue() throws Exception
+    {
+        when(this.converterManager.convert(List.class, "invalid")).thenThrow(new RuntimeException());
+        when(this.converterManager.convert(List.class, "test")).thenReturn(Arrays.asList("converted"));
+
+        try {
+            this.engine.evaluate(this.context, this.writer, "template", new StringReader("$var.method('invalid')"));
+            fail("Should have raised an exception");
+        } catch (XWikiVelocityException expected) {
+            // Velocity falls back on method()
+            assertEquals("IllegalArgumentException: wrong number of arguments",
+                ExceptionUtils.getRootCauseMessage(expected));
+        }
+
+        // The failure depends on the value, not only on its type
+        VelocityContext otherContext = new VelocityContext();
+        otherContext.put("var", new ExtendingClass());
+        this.engine.evaluate(otherContext, this.writer, "template",
+            new StringReader("$var.method('test') $var.method('test')"));
+        assertEquals("success success", this.writer.toString());
+    }
+
+    @Test
+    public void getMethodWhenCalledSeveralTimes() throws Exception
+    {
+        when(this.converterManager.convert(List.class, "test")).thenReturn(Arrays.asList("converted"));
+        when(this.converterManager.convert(List.class, "other")).thenReturn(Arrays.asList("other"));
+
+        // The same method is called with values of the same type and then with a value of another type
+        this.engine.evaluate(this.context, this.writer, "template",
+            new StringReader("#foreach ($value in ['test', 'other', 'test', ['converted']])$var.method($value) #end"));
+        assertEquals("success failure success success ", this.writer.toString());
+    }
+
+    @Test
+    public void getMethodAfterEngineReinitialization() throws Exception
+    {
+        when(this.converterManager.convert(List.class, "test")).thenReturn(Arrays.asList("converted"));
+        this.engine.evaluate(this.context, this.writer, "template", new StringReader("$var.method('test')"));
+
+        this.engine.initialize(new Properties());
+
+        this.engine.evaluate(this.context, this.writer, "template", new StringReader("$var.method('test')"));
+        assertEquals("successsuccess", this.writer.toString());
+    }
 }
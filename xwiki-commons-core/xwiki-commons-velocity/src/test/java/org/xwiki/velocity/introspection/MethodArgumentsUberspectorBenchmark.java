@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.introspection;
+
+import java.lang.reflect.Type;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.LocaleUtils;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.log.Log;
+import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.UberspectImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.properties.ConverterManager;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compare the cost of a method call which requires converting its argument with the cost of the same call with an
+ * argument of the right type, as done by Velocity when evaluating {@code $target.language('fr')} and
+ * {@code $target.language($locale)} with a new context (the method is resolved and then invoked).
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodArgumentsUberspectorBenchmark
+{
+    private static final String METHOD_NAME = "language";
+
+    /**
+     * The object on which the method is called.
+     *
+     * @version $Id$
+     */
+    public static class Target
+    {
+        /**
+         * @param locale a locale
+         * @return the language of the locale
+         */
+        public String language(Locale locale)
+        {
+            return locale.getLanguage();
+        }
+    }
+
+    private final Target target = new Target();
+
+    private final Info info = new Info("benchmark", 1, 1);
+
+    private final Object[] directArguments = new Object[] { Locale.FRENCH };
+
+    private final Object[] convertingArguments = new Object[] { "fr" };
+
+    private MethodArgumentsUberspector uberspector;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        ConverterManager converterManager = new ConverterManager()
+        {
+            @Override
+            public <T> T convert(Type targetType, Object sourceValue)
+            {
+                return (T) LocaleUtils.toLocale((String) sourceValue);
+            }
+        };
+        ComponentManager componentManager = mock(ComponentManager.class);
+        when(componentManager.getInstance(ConverterManager.class)).thenReturn(converterManager);
+
+        RuntimeInstance runtime = new RuntimeInstance();
+        runtime.setApplicationAttribute(ComponentManager.class.getName(), componentManager);
+
+        Log log = new Log();
+        UberspectImpl velocityUberspector = new UberspectImpl();
+        velocityUberspector.setLog(log);
+
+        this.uberspector = new MethodArgumentsUberspector();
+        this.uberspector.setLog(log);
+        this.uberspector.wrap(velocityUberspector);
+        this.uberspector.setRuntimeServices(runtime);
+        this.uberspector.init();
+    }
+
+    private Object call(Object[] arguments) throws Exception
+    {
+        return this.uberspector.getMethod(this.target, METHOD_NAME, arguments, this.info).invoke(this.target,
+            arguments);
+    }
+
+    @Benchmark
+    public Object directCall() throws Exception
+    {
+        return call(this.directArguments);
+    }
+
+    @Benchmark
+    public Object convertingCall() throws Exception
+    {
+        return call(this.convertingArguments);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(MethodArgumentsUberspectorBenchmark.class.getSimpleName()).build())
+            .run();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.xml.html.filter;
+
+import java.util.Map;
+
+import org.htmlcleaner.TagNode;
+import org.xwiki.stability.Unstable;
+
+/**
+ * An {@link HTMLFilter} which can also filter the tree produced by HTML Cleaner, one element at a time, before it's
+ * converted into a {@link org.w3c.dom.Document}. The {@link org.xwiki.xml.html.HTMLCleaner} applies all the
+ * consecutive filters of this kind which are at the beginning of the filters list in a single traversal of the tree,
+ * instead of one traversal of the {@link org.w3c.dom.Document} per filter. The other filters are still applied on the
+ * {@link org.w3c.dom.Document}, in the configured order.
+ * <p>
+ * Since the filters are applied on each element in turn, a filter must produce the same result as its
+ * {@link #filter(org.w3c.dom.Document, Map)} implementation when it only modifies the passed element: its name (by
+ * replacing it), its attributes or its children. It must never modify the ancestors or the siblings of the element.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Unstable
+public interface HTMLTagNodeFilter extends HTMLFilter
+{
+    /**
+     * Filter an element. The elements are filtered in document order, the children of an element being filtered after
+     * it (and after it has been replaced, if it is).
+     *
+     * @param element the element to filter
+     * @param cleaningParameters additional cleaning parameters for the filter
+     * @return the element which replaced the passed element in the tree, the passed element if it wasn't replaced or
+     *         {@code null} if it was removed from the tree
+     */
+    TagNode filter(TagNode element, Map<String, String> cleaningParameters);
+}
@@ -166,6 +166,11 @@ public Document clean(Reader originalHtmlContent, HTMLCleanerConfiguration confi
             throw new RuntimeException("Unhandled error when cleaning HTML", e);
         }
 
+        // Apply the filters which support it directly on the HTML Cleaner tree, all at once.
+        TagNodeFilterChain filterChain =
+            new TagNodeFilterChain(configuration.getFilters(), configuration.getParameters());
+        filterChain.filter(cleanedNode);
+
         try {
             // Ideally we would use SF's HTMLCleaner DomSerializer but there are outstanding issues with it, so we're
             // using a custom XWikiDOMSerializer (see its javadoc for more details).
@@ -180,8 +185,8 @@ public Document clean(Reader originalHtmlContent, HTMLCleanerConfiguration confi
             throw new RuntimeException("Error while serializing TagNode into w3c dom.", ex);
         }
 
-        // Finally apply filters.
-        for (HTMLFilter filter : configuration.getFilters()) {
+        // Finally apply the remaining filters.
+        for (HTMLFilter filter : filterChain.getDocumentFilters()) {
             filter.filter(result, configuration.getParameters());
         }
 
@@ -192,13 +197,15 @@ public Document clean(Reader originalHtmlContent, HTMLCleanerConfiguration confi
     public HTMLCleanerConfiguration getDefaultConfiguration()
     {
         HTMLCleanerConfiguration configuration = new DefaultHTMLCleanerConfiguration();
+        // The filters which can be applied on the HTML Cleaner tree come first so that they're all applied in a single
+        // pass (they don't depend on the changes made by the other filters).
         configuration.setFilters(Arrays.asList(
-            this.bodyFilter,
-            this.listItemFilter,
-            this.listFilter,
             this.fontFilter,
             this.attributeFilter,
-            this.linkFilter));
+            this.linkFilter,
+            this.bodyFilter,
+            this.listItemFilter,
+            this.listFilter));
         return configuration;
     }
 
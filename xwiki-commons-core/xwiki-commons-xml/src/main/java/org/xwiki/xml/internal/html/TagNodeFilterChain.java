@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.xml.internal.html;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.htmlcleaner.BaseToken;
+import org.htmlcleaner.TagNode;
+import org.xwiki.xml.html.filter.HTMLFilter;
+import org.xwiki.xml.html.filter.HTMLTagNodeFilter;
+
+/**
+ * Applies the {@link HTMLTagNodeFilter}s which are at the beginning of a list of filters in a single traversal of the
+ * tree produced by HTML Cleaner.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class TagNodeFilterChain
+{
+    private final List<HTMLTagNodeFilter> tagNodeFilters = new ArrayList<>();
+
+    private final List<HTMLFilter> documentFilters;
+
+    private final Map<String, String> cleaningParameters;
+
+    /**
+     * @param filters the filters to apply, in order
+     * @param cleaningParameters additional cleaning parameters for the filters
+     */
+    public TagNodeFilterChain(List<HTMLFilter> filters, Map<String, String> cleaningParameters)
+    {
+        // Stop at the first filter which doesn't support the tree of HTML Cleaner to keep the order of the filters
+        int index = 0;
+        while (index < filters.size() && filters.get(index) instanceof HTMLTagNodeFilter) {
+            this.tagNodeFilters.add((HTMLTagNodeFilter) filters.get(index));
+            ++index;
+        }
+
+        this.documentFilters = filters.subList(index, filters.size());
+        this.cleaningParameters = cleaningParameters;
+    }
+
+    /**
+     * @return the filters which have to be applied on the {@link org.w3c.dom.Document}, after the ones applied by
+     *         {@link #filter(TagNode)}
+     */
+    public List<HTMLFilter> getDocumentFilters()
+    {
+        return this.documentFilters;
+    }
+
+    /**
+     * Apply the filters supporting the tree of HTML Cleaner.
+     *
+     * @param root the root of the tree to filter
+     */
+    public void filter(TagNode root)
+    {
+        if (!this.tagNodeFilters.isEmpty()) {
+            filterElement(root);
+        }
+    }
+
+    /**
+     * @return true if the element is still in the tree
+     */
+    private boolean filterElement(TagNode element)
+    {
+        TagNode current = element;
+        for (HTMLTagNodeFilter filter : this.tagNodeFilters) {
+            current = filter.filter(current, this.cleaningParameters);
+
+            if (current == null) {
+                return false;
+            }
+        }
+
+        List<? extends BaseToken> children = current.getAllChildren();
+        int index = 0;
+        while (index < children.size()) {
+            BaseToken child = children.get(index);
+            // A replaced child takes the place of the filtered child while the next child takes the place of a removed
+            // child
+            if (!(child instanceof TagNode) || filterElement((TagNode) child)) {
+                ++index;
+            }
+        }
+
+        return true;
+    }
+}
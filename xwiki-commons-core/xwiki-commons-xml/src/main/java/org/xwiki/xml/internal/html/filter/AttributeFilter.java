@@ -19,25 +19,21 @@
  */
 package org.xwiki.xml.internal.html.filter;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
-import org.slf4j.Logger;
-import org.w3c.dom.Attr;
+import org.htmlcleaner.TagNode;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.xml.html.HTMLConstants;
 import org.xwiki.xml.html.filter.AbstractHTMLFilter;
+import org.xwiki.xml.html.filter.HTMLTagNodeFilter;
 
 /**
  * Filters attributes that are used by many different elements. Writing transformations for these attributes is tedious
@@ -56,72 +52,77 @@
 @Component
 @Named("attribute")
 @Singleton
-public class AttributeFilter extends AbstractHTMLFilter
+public class AttributeFilter extends AbstractHTMLFilter implements HTMLTagNodeFilter
 {
-    /**
-     * The map between HTML attribute names and the corresponding CSS property name.
-     */
-    private static final Map<String, String> ATTRIBUTE_TO_CSS_PROPERTY = new HashMap<String, String>();
-
     /**
      * The 'vertical-align' CSS property.
      */
     private static final String VERTICAL_ALIGN = "vertical-align";
 
     /**
-     * The logger.
+     * The map between HTML attribute names and the corresponding CSS property name, in the order in which the
+     * attributes are converted (alphabetical order, which is the order of the attributes of a DOM element).
      */
-    @Inject
-    private Logger logger;
+    private static final Map<String, String> ATTRIBUTE_TO_CSS_PROPERTY;
 
-    {
-        ATTRIBUTE_TO_CSS_PROPERTY.put("align", "text-align");
-        ATTRIBUTE_TO_CSS_PROPERTY.put("valign", VERTICAL_ALIGN);
-        ATTRIBUTE_TO_CSS_PROPERTY.put("bgcolor", "background-color");
+    static {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("align", "text-align");
+        map.put("bgcolor", "background-color");
+        map.put("valign", VERTICAL_ALIGN);
+        ATTRIBUTE_TO_CSS_PROPERTY = Collections.unmodifiableMap(map);
     }
 
     @Override
     public void filter(Document document, Map<String, String> cleaningParameters)
     {
-        StringBuilder xpathExpression = new StringBuilder();
-        for (String attributeName : ATTRIBUTE_TO_CSS_PROPERTY.keySet()) {
-            if (xpathExpression.length() > 0) {
-                xpathExpression.append('|');
+        NodeList elements = document.getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            for (String attributeName : ATTRIBUTE_TO_CSS_PROPERTY.keySet()) {
+                if (element.hasAttribute(attributeName)) {
+                    String style = getStyle(element.getTagName(), attributeName, element.getAttribute(attributeName),
+                        element.getAttribute(ATTRIBUTE_STYLE));
+                    element.setAttribute(ATTRIBUTE_STYLE, style);
+                    element.removeAttribute(attributeName);
+                }
             }
-            xpathExpression.append("//@").append(attributeName);
         }
+    }
 
-        NodeList attributes = null;
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        try {
-            attributes = (NodeList) xpath.evaluate(xpathExpression.toString(), document, XPathConstants.NODESET);
-        } catch (XPathExpressionException e) {
-            // Shouldn't happen.
-            this.logger.error("Failed to apply the HTML attribute cleaning filter.", e);
-            return;
+    /**
+     * {@inheritDoc}
+     *
+     * @since 10.0RC1
+     */
+    @Override
+    public TagNode filter(TagNode element, Map<String, String> cleaningParameters)
+    {
+        for (String attributeName : ATTRIBUTE_TO_CSS_PROPERTY.keySet()) {
+            String value = element.getAttributeByName(attributeName);
+            if (value != null) {
+                String style =
+                    getStyle(element.getName(), attributeName, value, element.getAttributeByName(ATTRIBUTE_STYLE));
+                element.addAttribute(ATTRIBUTE_STYLE, style);
+                element.removeAttribute(attributeName);
+            }
         }
 
-        for (int i = 0; i < attributes.getLength(); i++) {
-            filterAttribute((Attr) attributes.item(i));
-        }
+        return element;
     }
 
-    private void filterAttribute(Attr attribute)
+    private String getStyle(String elementName, String attributeName, String value, String currentStyle)
     {
-        Element element = attribute.getOwnerElement();
-        String property = ATTRIBUTE_TO_CSS_PROPERTY.get(attribute.getName());
-        String value = attribute.getValue();
-        if (HTMLConstants.TAG_IMG.equals(element.getTagName())
-            && HTMLConstants.ATTRIBUTE_ALIGN.equals(attribute.getName())) {
+        String property = ATTRIBUTE_TO_CSS_PROPERTY.get(attributeName);
+        if (HTMLConstants.TAG_IMG.equals(elementName) && HTMLConstants.ATTRIBUTE_ALIGN.equals(attributeName)) {
             // We need to transform the align attribute differently when it is used on an image element.
             property = "left".equals(value) || "right".equals(value) ? "float" : VERTICAL_ALIGN;
         }
-        StringBuilder style = new StringBuilder(element.getAttribute(ATTRIBUTE_STYLE).trim());
+        StringBuilder style = new StringBuilder(currentStyle != null ? currentStyle.trim() : "");
         if (style.length() > 0 && style.charAt(style.length() - 1) != ';') {
             style.append(';');
         }
         style.append(property).append(':').append(value);
-        element.setAttribute(ATTRIBUTE_STYLE, style.toString());
-        element.removeAttributeNode(attribute);
+        return style.toString();
     }
 }
@@ -19,17 +19,22 @@
  */
 package org.xwiki.xml.internal.html.filter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.htmlcleaner.BaseToken;
+import org.htmlcleaner.TagNode;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.xml.html.filter.AbstractHTMLFilter;
+import org.xwiki.xml.html.filter.HTMLTagNodeFilter;
 
 /**
  * Replaces invalid &lt;font&gt; tags with equivalent &lt;span&gt; tags using inline css rules.
@@ -40,7 +45,7 @@
 @Component
 @Named("font")
 @Singleton
-public class FontFilter extends AbstractHTMLFilter
+public class FontFilter extends AbstractHTMLFilter implements HTMLTagNodeFilter
 {
     /**
      * A map holding the translation from 'size' attribute of html font tag to 'font-size' css property.
@@ -76,27 +81,71 @@ public void filter(Document document, Map<String, String> cleaningParameters)
         for (Element fontTag : fontTags) {
             Element span = document.createElement(TAG_SPAN);
             moveChildren(fontTag, span);
-            StringBuffer buffer = new StringBuffer();
-            if (fontTag.hasAttribute(ATTRIBUTE_FONTCOLOR)) {
-                buffer.append(String.format("color:%s;", fontTag.getAttribute(ATTRIBUTE_FONTCOLOR)));
-            }
-            if (fontTag.hasAttribute(ATTRIBUTE_FONTFACE)) {
-                buffer.append(String.format("font-family:%s;", fontTag.getAttribute(ATTRIBUTE_FONTFACE)));
-            }
-            if (fontTag.hasAttribute(ATTRIBUTE_FONTSIZE)) {
-                String fontSize = fontTag.getAttribute(ATTRIBUTE_FONTSIZE);
-                String fontSizeCss = FONT_SIZE_MAP.get(fontSize);
-                fontSizeCss = (fontSizeCss != null) ? fontSizeCss : fontSize;
-                buffer.append(String.format("font-size:%s;", fontSizeCss));
-            }
-            if (fontTag.hasAttribute(ATTRIBUTE_STYLE) && fontTag.getAttribute(ATTRIBUTE_STYLE).trim().length() == 0) {
-                buffer.append(fontTag.getAttribute(ATTRIBUTE_STYLE));
-            }
-            if (buffer.length() > 0) {
-                span.setAttribute(ATTRIBUTE_STYLE, buffer.toString());
+            String style = getStyle(name -> fontTag.hasAttribute(name) ? fontTag.getAttribute(name) : null);
+            if (style.length() > 0) {
+                span.setAttribute(ATTRIBUTE_STYLE, style);
             }
             fontTag.getParentNode().insertBefore(span, fontTag);
             fontTag.getParentNode().removeChild(fontTag);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The {@link FontFilter} does not use any cleaningParameters passed in.
+     * </p>
+     *
+     * @since 10.0RC1
+     */
+    @Override
+    public TagNode filter(TagNode element, Map<String, String> cleaningParameters)
+    {
+        TagNode parent = element.getParent();
+        if (parent == null || !TAG_FONT.equals(element.getName())) {
+            return element;
+        }
+
+        TagNode span = new TagNode(TAG_SPAN);
+        String style = getStyle(element::getAttributeByName);
+        if (style.length() > 0) {
+            span.addAttribute(ATTRIBUTE_STYLE, style);
+        }
+
+        List<? extends BaseToken> children = new ArrayList<>(element.getAllChildren());
+        parent.insertChildBefore(element, span);
+        element.removeFromTree();
+        span.addChildren(children);
+
+        return span;
+    }
+
+    /**
+     * @param attributes the attributes of the font element, returns {@code null} for missing attributes
+     * @return the style of the span replacing the font element
+     */
+    private String getStyle(UnaryOperator<String> attributes)
+    {
+        StringBuilder buffer = new StringBuilder();
+        String color = attributes.apply(ATTRIBUTE_FONTCOLOR);
+        if (color != null) {
+            buffer.append(String.format("color:%s;", color));
+        }
+        String face = attributes.apply(ATTRIBUTE_FONTFACE);
+        if (face != null) {
+            buffer.append(String.format("font-family:%s;", face));
+        }
+        String fontSize = attributes.apply(ATTRIBUTE_FONTSIZE);
+        if (fontSize != null) {
+            String fontSizeCss = FONT_SIZE_MAP.get(fontSize);
+            fontSizeCss = (fontSizeCss != null) ? fontSizeCss : fontSize;
+            buffer.append(String.format("font-size:%s;", fontSizeCss));
+        }
+        String style = attributes.apply(ATTRIBUTE_STYLE);
+        if (style != null && style.trim().length() == 0) {
+            buffer.append(style);
+        }
+
+        return buffer.toString();
+    }
 }
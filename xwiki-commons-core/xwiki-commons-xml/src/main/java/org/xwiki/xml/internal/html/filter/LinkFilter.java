@@ -29,11 +29,13 @@
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.htmlcleaner.TagNode;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.text.StringUtils;
 import org.xwiki.xml.html.filter.AbstractHTMLFilter;
+import org.xwiki.xml.html.filter.HTMLTagNodeFilter;
 
 /**
  * When a link is open in an other window or in an other frame, the loaded page has some restricted access to the
@@ -54,7 +56,7 @@
 @Component
 @Named("link")
 @Singleton
-public class LinkFilter extends AbstractHTMLFilter
+public class LinkFilter extends AbstractHTMLFilter implements HTMLTagNodeFilter
 {
     private static final String NOOPENER = "noopener";
 
@@ -71,12 +73,47 @@ public void filter(Document document, Map<String, String> cleaningParameters)
 
     private void filter(Element link)
     {
-        // Do not handle internal link
-        if (!isExternalLink(link.getAttribute(ATTRIBUTE_HREF))) {
-            return;
+        String rel = getRel(link.getAttribute(ATTRIBUTE_HREF), link.getAttribute(ATTRIBUTE_TARGET),
+            link.getAttribute(ATTRIBUTE_REL));
+        if (rel != null) {
+            link.setAttribute(ATTRIBUTE_REL, rel);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 10.0RC1
+     */
+    @Override
+    public TagNode filter(TagNode element, Map<String, String> cleaningParameters)
+    {
+        if (TAG_A.equals(element.getName())) {
+            // Missing attributes are handled like in the DOM
+            String rel = getRel(StringUtils.defaultString(element.getAttributeByName(ATTRIBUTE_HREF)),
+                element.getAttributeByName(ATTRIBUTE_TARGET),
+                StringUtils.defaultString(element.getAttributeByName(ATTRIBUTE_REL)));
+            if (rel != null) {
+                // Keep the value as is, like in the DOM
+                boolean trimAttributeValues = element.isTrimAttributeValues();
+                element.setTrimAttributeValues(false);
+                element.addAttribute(ATTRIBUTE_REL, rel);
+                element.setTrimAttributeValues(trimAttributeValues);
+            }
         }
 
-        String target = link.getAttribute(ATTRIBUTE_TARGET);
+        return element;
+    }
+
+    /**
+     * @return the new value of the rel attribute, {@code null} if it doesn't need to be modified
+     */
+    private String getRel(String href, String target, String relAttribute)
+    {
+        // Do not handle internal link
+        if (!isExternalLink(href)) {
+            return null;
+        }
         // Target can have these values:
         //
         // "_blank" which opens the link in a new window
@@ -90,7 +127,6 @@ private void filter(Element link)
             List<String> relAttributes = new ArrayList<>();
 
             // Parse the current values
-            String relAttribute = link.getAttribute(ATTRIBUTE_REL);
             if (relAttribute != null) {
                 relAttributes.addAll(Arrays.asList(relAttribute.split(" ")));
             }
@@ -106,10 +142,10 @@ private void filter(Element link)
             }
 
             // Serialize the attributes
-            if (!relAttributes.isEmpty()) {
-                link.setAttribute(ATTRIBUTE_REL, String.join(" ", relAttributes));
-            }
+            return String.join(" ", relAttributes);
         }
+
+        return null;
     }
 
     private boolean isExternalLink(String href)
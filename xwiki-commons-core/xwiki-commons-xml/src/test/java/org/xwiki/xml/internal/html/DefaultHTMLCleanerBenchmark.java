@@ -0,0 +1,150 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.xml.internal.html;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.xml.html.HTMLCleaner;
+import org.xwiki.xml.html.HTMLCleanerConfiguration;
+import org.xwiki.xml.html.HTMLUtils;
+import org.xwiki.xml.html.filter.HTMLFilter;
+
+/**
+ * Measure the cleaning (and serialization) of representative HTML documents, with the default configuration, which
+ * applies the font, attribute and link filters in a single pass on the HTML Cleaner tree, and with the same filters
+ * all applied on the DOM document, one pass per filter.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultHTMLCleanerBenchmark
+{
+    private static final String SMALL = "<p>Some <b>bold</b> and <a href=\"http://xwiki.org\">linked</a> text</p>";
+
+    /**
+     * The kind of content pasted from an office suite: lots of fonts, aligned cells and paragraphs, lists and links.
+     */
+    private static final String PASTED_BLOCK = "<p align=\"center\"><font face=\"Arial\" size=\"2\" color=\"#333333\">"
+        + "Some <b>pasted</b> text with a <a href=\"http://www.xwiki.org\" target=\"_blank\">link</a></font></p>"
+        + "<table border=\"1\"><tr><td align=\"right\" valign=\"top\" bgcolor=\"#eeeeee\"><font size=\"+1\">cell"
+        + "</font></td><td align=\"left\"><img src=\"image.png\" align=\"left\"/>text</td></tr></table>"
+        + "<ul><li><font color=\"red\">item</font></li>text outside item<li>other item</li></ul>"
+        + "loose text <font face=\"Courier\">in a font</font>";
+
+    private static final String TEXT_BLOCK = "<h2>Title</h2><p>Lorem ipsum dolor sit amet, <em>consectetur</em>"
+        + " adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.</p>";
+
+    /**
+     * The document to clean.
+     */
+    @Param({ "small", "pasted", "text" })
+    public String document;
+
+    private String html;
+
+    private HTMLCleaner cleaner;
+
+    private HTMLCleanerConfiguration documentOnlyConfiguration;
+
+    /**
+     * Create the cleaner and the document.
+     *
+     * @throws Exception when failing to create the cleaner
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(getClass().getClassLoader());
+        this.cleaner = componentManager.getInstance(HTMLCleaner.class);
+
+        // The historical order of the filters: since the first one only supports the DOM, they're all applied on the
+        // DOM document
+        this.documentOnlyConfiguration = this.cleaner.getDefaultConfiguration();
+        this.documentOnlyConfiguration.setFilters(Arrays.<HTMLFilter>asList(
+            componentManager.getInstance(HTMLFilter.class, "body"),
+            componentManager.getInstance(HTMLFilter.class, "listitem"),
+            componentManager.getInstance(HTMLFilter.class, "list"),
+            componentManager.getInstance(HTMLFilter.class, "font"),
+            componentManager.getInstance(HTMLFilter.class, "attribute"),
+            componentManager.getInstance(HTMLFilter.class, "link")));
+
+        if ("small".equals(this.document)) {
+            this.html = SMALL;
+        } else {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 200; ++i) {
+                builder.append("pasted".equals(this.document) ? PASTED_BLOCK : TEXT_BLOCK);
+            }
+            this.html = builder.toString();
+        }
+    }
+
+    /**
+     * @return the cleaned document serialized
+     */
+    @Benchmark
+    public String clean()
+    {
+        return HTMLUtils.toString(this.cleaner.clean(new StringReader(this.html)));
+    }
+
+    /**
+     * @return the cleaned document serialized
+     */
+    @Benchmark
+    public String cleanWithDocumentFilters()
+    {
+        return HTMLUtils.toString(this.cleaner.clean(new StringReader(this.html), this.documentOnlyConfiguration));
+    }
+
+    /**
+     * Run the benchmark from the IDE.
+     *
+     * @param args the arguments
+     * @throws RunnerException when failing to run the benchmark
+     */
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(DefaultHTMLCleanerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -26,17 +26,20 @@
 import java.util.List;
 import java.util.Map;
 
+import org.htmlcleaner.TagNode;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.w3c.dom.Document;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 import org.xwiki.xml.html.HTMLCleaner;
 import org.xwiki.xml.html.HTMLCleanerConfiguration;
 import org.xwiki.xml.html.HTMLUtils;
 import org.xwiki.xml.html.filter.HTMLFilter;
+import org.xwiki.xml.html.filter.HTMLTagNodeFilter;
 import org.xwiki.xml.internal.html.filter.AttributeFilter;
 import org.xwiki.xml.internal.html.filter.BodyFilter;
 import org.xwiki.xml.internal.html.filter.FontFilter;
@@ -427,6 +430,76 @@ public void verifyIFRAMECleaning() throws Exception
             "\r\n<iframe src=\"whatever\"/>\r\n<iframe src=\"whatever\"/>\r\n");
     }
 
+    /**
+     * Verify that the filters applied on the HTML Cleaner tree produce the same result as when they're applied on the
+     * DOM document (which is the case when they're configured after a filter supporting only the DOM).
+     */
+    @Test
+    public void tagNodeFiltersProduceSameResultAsDocumentFilters() throws Exception
+    {
+        String html = "<p align=\"center\"><font face=\"Arial\" size=\"2\" style=\" \">a "
+            + "<a href=\"http://xwiki.org\" target=\"_blank\" rel=\"nofollow\">link</a></font></p>"
+            + "<table><tr><td valign=top align=left style=\"color:red\">x</td></tr></table>"
+            + "<font color=red>text</font><font><font size=7>nested</font></font>"
+            + "<ul><font>not an item</font><li><font color=blue>item</font></li></ul><img align=\"top\"/>";
+
+        HTMLCleanerConfiguration configuration = this.mocker.getComponentUnderTest().getDefaultConfiguration();
+        String tagNodeResult =
+            HTMLUtils.toString(this.mocker.getComponentUnderTest().clean(new StringReader(html), configuration));
+
+        List<HTMLFilter> filters = new ArrayList<HTMLFilter>(configuration.getFilters());
+        // Move the first filters (which support the HTML Cleaner tree) after the other filters
+        Collections.rotate(filters, -3);
+        configuration.setFilters(filters);
+        String documentResult =
+            HTMLUtils.toString(this.mocker.getComponentUnderTest().clean(new StringReader(html), configuration));
+
+        Assert.assertEquals(documentResult, tagNodeResult);
+        Assert.assertFalse(tagNodeResult.contains("<font"));
+    }
+
+    /**
+     * Verify that an {@link HTMLTagNodeFilter} can replace and remove elements.
+     */
+    @Test
+    public void tagNodeFilterReplacingAndRemovingElements() throws Exception
+    {
+        HTMLTagNodeFilter filter = new HTMLTagNodeFilter()
+        {
+            @Override
+            public void filter(Document document, Map<String, String> cleaningParameters)
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public TagNode filter(TagNode element, Map<String, String> cleaningParameters)
+            {
+                if (element.getName().equals("em")) {
+                    element.removeFromTree();
+                    return null;
+                } else if (element.getName().equals("strong")) {
+                    TagNode span = new TagNode("span");
+                    span.addChildren(new ArrayList<>(element.getAllChildren()));
+                    element.getParent().insertChildBefore(element, span);
+                    element.removeFromTree();
+                    return span;
+                }
+                return element;
+            }
+        };
+
+        HTMLCleanerConfiguration configuration = this.mocker.getComponentUnderTest().getDefaultConfiguration();
+        List<HTMLFilter> filters = new ArrayList<HTMLFilter>();
+        filters.add(filter);
+        filters.addAll(configuration.getFilters());
+        configuration.setFilters(filters);
+
+        Assert.assertEquals(HEADER_FULL + "<p>a<span>b<span>c</span></span>d</p>" + FOOTER,
+            HTMLUtils.toString(this.mocker.getComponentUnderTest().clean(
+                new StringReader("a<i>x</i><i>y</i><b>b<b>c</b></b><i>z</i>d"), configuration)));
+    }
+
     private void assertHTML(String expected, String actual) throws ComponentLookupException
     {
         Assert.assertEquals(HEADER_FULL + expected + FOOTER,